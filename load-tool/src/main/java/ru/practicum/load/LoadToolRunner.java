@@ -0,0 +1,59 @@
+package ru.practicum.load;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import ru.practicum.load.dataset.Dataset;
+import ru.practicum.load.dataset.DatasetDiscovery;
+import ru.practicum.load.dataset.DatasetGenerator;
+import ru.practicum.load.dataset.DatasetWriter;
+import ru.practicum.load.dataset.JdbcDatasetWriter;
+import ru.practicum.load.dataset.RestDatasetWriter;
+import ru.practicum.load.driver.LoadDriver;
+
+import java.util.List;
+
+/**
+ * Команды запуска: generate — сгенерировать и загрузить данные, run — дать нагрузку.
+ * Команды можно совместить: {@code generate run} нагружает только что созданные данные,
+ * а {@code run} без generate работает с данными, найденными через API основного сервиса.
+ * Настройки передаются как обычные свойства Spring, например {@code --load-tool.target=jdbc}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadToolRunner implements ApplicationRunner {
+
+    private final DatasetGenerator generator;
+    private final DatasetDiscovery discovery;
+    private final RestDatasetWriter restWriter;
+    private final JdbcDatasetWriter jdbcWriter;
+    private final LoadDriver driver;
+
+    @Value("${load-tool.target:rest}")
+    private String target;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> commands = args.getNonOptionArgs();
+        if (commands.isEmpty() || !List.of("generate", "run").containsAll(commands)) {
+            throw new IllegalArgumentException("Укажите команды generate и/или run, получено: " + commands);
+        }
+        Dataset dataset = null;
+        if (commands.contains("generate")) {
+            DatasetWriter writer = switch (target) {
+                case "rest" -> restWriter;
+                case "jdbc" -> jdbcWriter;
+                default -> throw new IllegalArgumentException("Неизвестный load-tool.target: " + target);
+            };
+            log.info("Генерация данных, запись через {}", target);
+            dataset = generator.generate(writer);
+        }
+        if (commands.contains("run")) {
+            driver.run(dataset != null ? dataset : discovery.discover());
+        }
+    }
+}
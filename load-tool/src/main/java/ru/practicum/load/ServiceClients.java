@@ -0,0 +1,41 @@
+package ru.practicum.load;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * HTTP-клиенты основного сервиса и сервиса статистики с общим пулом соединений.
+ */
+@Component
+public class ServiceClients {
+
+    private final RestClient main;
+    private final RestClient stats;
+
+    public ServiceClients(@Value("${load-tool.main-service.url}") String mainServiceUrl,
+                          @Value("${load-tool.stat-service.url}") String statServiceUrl,
+                          @Value("${load-tool.http.timeout:10s}") Duration timeout,
+                          RestClient.Builder builder) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(timeout);
+        this.main = builder.clone().requestFactory(requestFactory).baseUrl(mainServiceUrl).build();
+        this.stats = builder.clone().requestFactory(requestFactory).baseUrl(statServiceUrl).build();
+    }
+
+    public RestClient main() {
+        return main;
+    }
+
+    public RestClient stats() {
+        return stats;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.load.dataset;
+
+import java.util.List;
+
+/**
+ * Идентификаторы данных, с которыми работает нагрузка. Опубликованные события упорядочены
+ * по убыванию популярности: чем меньше индекс, тем чаще событие просматривают и комментируют.
+ */
+public record Dataset(List<Long> userIds, List<Long> categoryIds, List<EventRef> events) {
+
+    public record EventRef(long id, long initiatorId, long categoryId, int participantLimit,
+                           boolean requestModeration) {
+    }
+
+    public boolean isEmpty() {
+        return userIds.isEmpty() || events.isEmpty();
+    }
+}
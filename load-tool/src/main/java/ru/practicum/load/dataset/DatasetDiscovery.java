@@ -0,0 +1,71 @@
+package ru.practicum.load.dataset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriBuilder;
+import ru.practicum.load.ServiceClients;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Чтение уже загруженных данных через API основного сервиса, когда нагрузка запускается
+ * без генерации. Популярность событий восстанавливается по числу просмотров.
+ */
+@Slf4j
+@Component
+public class DatasetDiscovery {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final ServiceClients clients;
+    private final int limit;
+
+    public DatasetDiscovery(ServiceClients clients,
+                            @Value("${load-tool.run.discover-limit:10000}") int limit) {
+        this.clients = clients;
+        this.limit = limit;
+    }
+
+    public Dataset discover() {
+        List<Long> userIds = new ArrayList<>();
+        pages(builder -> builder.path("/admin/users"), node -> userIds.add(node.get("id").asLong()));
+        List<Long> categoryIds = new ArrayList<>();
+        pages(builder -> builder.path("/categories"), node -> categoryIds.add(node.get("id").asLong()));
+        List<JsonNode> events = new ArrayList<>();
+        pages(builder -> builder.path("/admin/events").queryParam("states", "PUBLISHED"), events::add);
+        events.sort(Comparator.comparingLong((JsonNode node) -> node.path("views").asLong()).reversed());
+        List<Dataset.EventRef> refs = events.stream()
+                .map(node -> new Dataset.EventRef(node.get("id").asLong(), node.path("initiator").path("id").asLong(),
+                        node.path("category").path("id").asLong(), node.path("participantLimit").asInt(),
+                        node.path("requestModeration").asBoolean()))
+                .toList();
+        log.info("Найдены данные: пользователей {}, категорий {}, опубликованных событий {}",
+                userIds.size(), categoryIds.size(), refs.size());
+        return new Dataset(userIds, categoryIds, refs);
+    }
+
+    private void pages(Function<UriBuilder, UriBuilder> path, Consumer<JsonNode> consumer) {
+        int read = 0;
+        while (read < limit) {
+            int from = read;
+            JsonNode page = clients.main().get()
+                    .uri(builder -> path.apply(builder)
+                            .queryParam("from", from)
+                            .queryParam("size", Math.min(PAGE_SIZE, limit - from))
+                            .build())
+                    .retrieve()
+                    .body(JsonNode.class);
+            if (page == null || page.isEmpty()) {
+                return;
+            }
+            page.forEach(consumer);
+            read += page.size();
+        }
+    }
+}
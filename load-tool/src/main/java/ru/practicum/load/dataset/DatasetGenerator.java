@@ -0,0 +1,228 @@
+package ru.practicum.load.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.load.dataset.DatasetWriter.NewComment;
+import ru.practicum.load.dataset.DatasetWriter.NewEvent;
+import ru.practicum.load.dataset.DatasetWriter.NewRequest;
+import ru.practicum.load.dataset.DatasetWriter.NewUser;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Генерация набора данных: пользователи, категории, события, заявки на участие, комментарии
+ * и посещения. Популярность опубликованных событий и категорий распределена по закону Ципфа:
+ * немногие события собирают большую часть просмотров, заявок и комментариев. При одинаковом seed
+ * генерируются одни и те же данные, кроме уникальных имён и email, которые отличаются меткой tag.
+ */
+@Slf4j
+@Component
+public class DatasetGenerator {
+
+    private static final String APP = "ExploreWithMe";
+
+    private static final int HITS_CHUNK = 10_000;
+    private static final String[] WORDS = {"концерт", "выставка", "лекция", "поход", "кино", "спектакль",
+            "фестиваль", "мастер-класс", "экскурсия", "турнир", "встреча", "квиз"};
+    private static final String[] COMMENTS = {"Отличное мероприятие!", "Было интересно, спасибо организаторам.",
+            "Кто-нибудь идёт компанией?", "Сколько длится?", "Жаль, что билеты закончились.",
+            "Приду обязательно.", "Можно ли с детьми?", "Был в прошлом году — рекомендую."};
+
+    @Value("${load-tool.seed:42}")
+    private long seed;
+
+    @Value("${load-tool.dataset.tag:}")
+    private String tag;
+
+    @Value("${load-tool.dataset.users:1000}")
+    private int users;
+
+    @Value("${load-tool.dataset.categories:30}")
+    private int categories;
+
+    @Value("${load-tool.dataset.events:5000}")
+    private int events;
+
+    @Value("${load-tool.dataset.published-share:0.9}")
+    private double publishedShare;
+
+    @Value("${load-tool.dataset.requests:20000}")
+    private int requests;
+
+    @Value("${load-tool.dataset.comments:10000}")
+    private int comments;
+
+    @Value("${load-tool.dataset.hits:1000000}")
+    private long hits;
+
+    @Value("${load-tool.dataset.hits-period:30d}")
+    private Duration hitsPeriod;
+
+    @Value("${load-tool.dataset.zipf-exponent:1.1}")
+    private double zipfExponent;
+
+    public Dataset generate(DatasetWriter writer) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        String runTag = tag.isBlank() ? Long.toString(System.currentTimeMillis(), 36) : tag;
+
+        long started = System.nanoTime();
+        List<NewUser> newUsers = new ArrayList<>(users);
+        for (int i = 1; i <= users; i++) {
+            newUsers.add(new NewUser("Пользователь " + i, "user" + i + "." + runTag + "@load.test"));
+        }
+        List<Long> userIds = nonNull(writer.saveUsers(newUsers));
+        log.info("Пользователи: {} за {} мс", userIds.size(), elapsed(started));
+
+        started = System.nanoTime();
+        List<String> names = new ArrayList<>(categories);
+        for (int i = 1; i <= categories; i++) {
+            names.add("Категория " + i + " " + runTag);
+        }
+        List<Long> categoryIds = nonNull(writer.saveCategories(names));
+        log.info("Категории: {} за {} мс", categoryIds.size(), elapsed(started));
+        if (userIds.isEmpty() || categoryIds.isEmpty()) {
+            throw new IllegalStateException("Не удалось создать пользователей или категории");
+        }
+
+        started = System.nanoTime();
+        Zipf categoryPopularity = new Zipf(categoryIds.size(), zipfExponent);
+        List<NewEvent> newEvents = new ArrayList<>(events);
+        for (int i = 1; i <= events; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            boolean limited = random.nextInt(2) == 0;
+            newEvents.add(new NewEvent(
+                    userIds.get(random.nextInt(userIds.size())),
+                    categoryIds.get(categoryPopularity.next(random)),
+                    "Событие " + i + ": " + word,
+                    "Анонс события " + i + " — " + word + " для всех желающих",
+                    "Подробное описание события " + i + ". Формат: " + word + ". Приходите вовремя.",
+                    now.plusHours(24 + random.nextInt(180 * 24)),
+                    random.nextDouble(-90, 90),
+                    random.nextDouble(-180, 180),
+                    random.nextInt(3) == 0,
+                    limited ? 10 + random.nextInt(191) : 0,
+                    random.nextBoolean(),
+                    random.nextDouble() < publishedShare,
+                    now.minusSeconds(random.nextLong(Math.max(1, hitsPeriod.toSeconds())))));
+        }
+        List<Long> eventIds = writer.saveEvents(newEvents);
+        List<Dataset.EventRef> published = new ArrayList<>();
+        for (int i = 0; i < newEvents.size(); i++) {
+            NewEvent event = newEvents.get(i);
+            if (eventIds.get(i) != null && event.published()) {
+                published.add(new Dataset.EventRef(eventIds.get(i), event.initiatorId(), event.categoryId(),
+                        event.participantLimit(), event.requestModeration()));
+            }
+        }
+        Collections.shuffle(published, new Random(seed));
+        log.info("События: {}, опубликовано {} за {} мс", nonNull(eventIds).size(), published.size(), elapsed(started));
+        if (published.isEmpty()) {
+            throw new IllegalStateException("Нет опубликованных событий");
+        }
+        Zipf eventPopularity = new Zipf(published.size(), zipfExponent);
+
+        started = System.nanoTime();
+        int savedRequests = writer.saveRequests(requests(random, now, userIds, published, eventPopularity));
+        log.info("Заявки на участие: {} за {} мс", savedRequests, elapsed(started));
+
+        started = System.nanoTime();
+        List<NewComment> newComments = new ArrayList<>(comments);
+        for (int i = 0; i < comments; i++) {
+            Dataset.EventRef event = published.get(eventPopularity.next(random));
+            newComments.add(new NewComment(event.id(), userIds.get(random.nextInt(userIds.size())),
+                    COMMENTS[random.nextInt(COMMENTS.length)], now.minusMinutes(random.nextInt(30 * 24 * 60))));
+        }
+        log.info("Комментарии: {} за {} мс", writer.saveComments(newComments), elapsed(started));
+
+        started = System.nanoTime();
+        long savedHits = hits(writer, random, now, published, eventPopularity);
+        log.info("Посещения: {} из {} за {} мс", savedHits, hits, elapsed(started));
+
+        return new Dataset(userIds, categoryIds, published);
+    }
+
+    /**
+     * Заявки с итоговыми статусами: без модерации или без лимита заявка подтверждается сразу, иначе
+     * часть заявок остаётся на рассмотрении, а часть отклоняется. Заявки сверх лимита не создаются.
+     */
+    private List<NewRequest> requests(SplittableRandom random, LocalDateTime now, List<Long> userIds,
+                                      List<Dataset.EventRef> published, Zipf eventPopularity) {
+        List<NewRequest> result = new ArrayList<>(requests);
+        Set<List<Long>> pairs = new HashSet<>();
+        Map<Long, Integer> confirmed = new HashMap<>();
+        for (int attempt = 0; attempt < requests * 2 && result.size() < requests; attempt++) {
+            Dataset.EventRef event = published.get(eventPopularity.next(random));
+            long requester = userIds.get(random.nextInt(userIds.size()));
+            if (requester == event.initiatorId() || !pairs.add(List.of(event.id(), requester))) {
+                continue;
+            }
+            boolean full = event.participantLimit() > 0
+                    && confirmed.getOrDefault(event.id(), 0) >= event.participantLimit();
+            if (full) {
+                continue;
+            }
+            String status;
+            if (!event.requestModeration() || event.participantLimit() == 0) {
+                status = "CONFIRMED";
+            } else {
+                int roll = random.nextInt(100);
+                status = roll < 50 ? "CONFIRMED" : roll < 80 ? "PENDING" : "REJECTED";
+            }
+            if ("CONFIRMED".equals(status)) {
+                confirmed.merge(event.id(), 1, Integer::sum);
+            }
+            result.add(new NewRequest(event.id(), event.initiatorId(), requester, status,
+                    now.minusMinutes(random.nextInt(30 * 24 * 60))));
+        }
+        return result;
+    }
+
+    /**
+     * Посещения страниц событий по популярности и списка событий за последние hits-period.
+     * Возвращает число сохранённых посещений.
+     */
+    private long hits(DatasetWriter writer, SplittableRandom random, LocalDateTime now,
+                      List<Dataset.EventRef> published, Zipf eventPopularity) {
+        int ipPool = (int) Math.max(1000, Math.min(Integer.MAX_VALUE, hits / 20));
+        long period = Math.max(1, hitsPeriod.toSeconds());
+        List<EndpointHitDto> chunk = new ArrayList<>(HITS_CHUNK);
+        long saved = 0;
+        for (long i = 1; i <= hits; i++) {
+            String uri = random.nextInt(10) == 0 ? "/events" : "/events/" + published.get(eventPopularity.next(random)).id();
+            int ip = random.nextInt(ipPool);
+            chunk.add(new EndpointHitDto(APP, uri, "10." + (ip >>> 16) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF),
+                    now.minusSeconds(random.nextLong(period))));
+            if (chunk.size() == HITS_CHUNK || i == hits) {
+                saved += writer.saveHits(chunk);
+                chunk = new ArrayList<>(HITS_CHUNK);
+                if (i % (HITS_CHUNK * 50L) == 0) {
+                    log.info("Записано посещений: {} из {}", saved, hits);
+                }
+            }
+        }
+        return saved;
+    }
+
+    private static List<Long> nonNull(List<Long> ids) {
+        return ids.stream().filter(Objects::nonNull).toList();
+    }
+
+    private static long elapsed(long started) {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
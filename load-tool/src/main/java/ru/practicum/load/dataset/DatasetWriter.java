@@ -0,0 +1,51 @@
+package ru.practicum.load.dataset;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Запись сгенерированных данных. Методы с идентификаторами возвращают их в порядке входного списка,
+ * null — запись не удалась.
+ */
+public interface DatasetWriter {
+
+    record NewUser(String name, String email) {
+    }
+
+    record NewEvent(long initiatorId, long categoryId, String title, String annotation, String description,
+                    LocalDateTime eventDate, double lat, double lon, boolean paid, int participantLimit,
+                    boolean requestModeration, boolean published, LocalDateTime createdOn) {
+    }
+
+    /**
+     * Заявка на участие. status — итоговый статус, который заявка должна получить.
+     */
+    record NewRequest(long eventId, long initiatorId, long requesterId, String status, LocalDateTime created) {
+    }
+
+    record NewComment(long eventId, long authorId, String text, LocalDateTime created) {
+    }
+
+    List<Long> saveUsers(List<NewUser> users);
+
+    List<Long> saveCategories(List<String> names);
+
+    List<Long> saveEvents(List<NewEvent> events);
+
+    /**
+     * Возвращает число сохранённых заявок.
+     */
+    int saveRequests(List<NewRequest> requests);
+
+    /**
+     * Возвращает число сохранённых комментариев.
+     */
+    int saveComments(List<NewComment> comments);
+
+    /**
+     * Возвращает число сохранённых посещений.
+     */
+    int saveHits(List<EndpointHitDto> hits);
+}
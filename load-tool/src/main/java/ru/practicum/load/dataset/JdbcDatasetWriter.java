@@ -0,0 +1,172 @@
+package ru.practicum.load.dataset;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Запись данных напрямую в базы основного сервиса и сервиса статистики пакетными вставками —
+ * на порядки быстрее записи через API. Идентификаторы назначаются явно, после вставки
+ * последовательности сдвигаются за максимальный id. Счётчик подтверждённых заявок событий
+ * увеличивается вместе со вставкой заявок.
+ * <p>
+ * Посещения пишутся в endpoint_hits, то есть только для stat-service.storage.encoding=plain.
+ * Агрегаты stat-service заполняет по таблице посещений при запуске, если они пусты, поэтому
+ * посещения лучше загружать в чистую базу статистики при остановленном сервисе.
+ */
+@Component
+public class JdbcDatasetWriter implements DatasetWriter {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final HikariDataSource mainDataSource;
+    private final HikariDataSource statsDataSource;
+    private final JdbcTemplate main;
+    private final JdbcTemplate stats;
+
+    public JdbcDatasetWriter(@Value("${load-tool.jdbc.main.url}") String mainUrl,
+                             @Value("${load-tool.jdbc.main.username}") String mainUsername,
+                             @Value("${load-tool.jdbc.main.password}") String mainPassword,
+                             @Value("${load-tool.jdbc.stats.url}") String statsUrl,
+                             @Value("${load-tool.jdbc.stats.username}") String statsUsername,
+                             @Value("${load-tool.jdbc.stats.password}") String statsPassword) {
+        this.mainDataSource = dataSource(mainUrl, mainUsername, mainPassword);
+        this.statsDataSource = dataSource(statsUrl, statsUsername, statsPassword);
+        this.main = new JdbcTemplate(mainDataSource);
+        this.stats = new JdbcTemplate(statsDataSource);
+    }
+
+    @PreDestroy
+    void close() {
+        mainDataSource.close();
+        statsDataSource.close();
+    }
+
+    @Override
+    public List<Long> saveUsers(List<NewUser> users) {
+        return insertWithIds("users", "INSERT INTO users (id, name, email) VALUES (?, ?, ?)", users,
+                user -> new Object[]{user.name(), user.email()});
+    }
+
+    @Override
+    public List<Long> saveCategories(List<String> names) {
+        return insertWithIds("categories", "INSERT INTO categories (id, name) VALUES (?, ?)", names,
+                name -> new Object[]{name});
+    }
+
+    @Override
+    public List<Long> saveEvents(List<NewEvent> events) {
+        return insertWithIds("events", "INSERT INTO events (id, title, description, annotation, lat, lon, "
+                        + "event_date, category_id, initiator_id, state, paid, created_on, published_on, "
+                        + "participant_limit, request_moderation) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                events, event -> new Object[]{event.title(), event.description(), event.annotation(), event.lat(),
+                        event.lon(), Timestamp.valueOf(event.eventDate()), event.categoryId(), event.initiatorId(),
+                        event.published() ? "PUBLISHED" : "PENDING", event.paid(), Timestamp.valueOf(event.createdOn()),
+                        event.published() ? Timestamp.valueOf(event.createdOn().plusHours(1)) : null,
+                        event.participantLimit(), event.requestModeration()});
+    }
+
+    @Override
+    public int saveRequests(List<NewRequest> requests) {
+        List<Object[]> rows = new ArrayList<>(requests.size());
+        Map<Long, Integer> confirmed = new HashMap<>();
+        for (NewRequest request : requests) {
+            rows.add(new Object[]{request.eventId(), request.requesterId(), request.status(),
+                    Timestamp.valueOf(request.created())});
+            if ("CONFIRMED".equals(request.status())) {
+                confirmed.merge(request.eventId(), 1, Integer::sum);
+            }
+        }
+        batch(main, "INSERT INTO participation_requests (event_id, requester_id, status, created) VALUES (?, ?, ?, ?)",
+                rows);
+        List<Object[]> counters = new ArrayList<>(confirmed.size());
+        confirmed.forEach((eventId, count) -> counters.add(new Object[]{count, eventId}));
+        batch(main, "UPDATE events SET confirmed_requests = confirmed_requests + ? WHERE id = ?", counters);
+        return rows.size();
+    }
+
+    @Override
+    public int saveComments(List<NewComment> comments) {
+        List<Object[]> rows = new ArrayList<>(comments.size());
+        for (NewComment comment : comments) {
+            rows.add(new Object[]{comment.text(), comment.eventId(), comment.authorId(),
+                    Timestamp.valueOf(comment.created())});
+        }
+        batch(main, "INSERT INTO comments (text, event_id, author_id, created) VALUES (?, ?, ?, ?)", rows);
+        return rows.size();
+    }
+
+    @Override
+    public int saveHits(List<EndpointHitDto> hits) {
+        List<Object[]> rows = new ArrayList<>(hits.size());
+        for (EndpointHitDto hit : hits) {
+            rows.add(new Object[]{hit.getApp(), hit.getUri(), hit.getIp(), Timestamp.valueOf(hit.getTimestamp())});
+        }
+        batch(stats, "INSERT INTO endpoint_hits (app, uri, ip, timestamp) VALUES (?, ?, ?, ?)", rows);
+        return rows.size();
+    }
+
+    /**
+     * Вставка с явными id после текущего максимума. Первый параметр sql — id, остальные даёт columns.
+     */
+    private <T> List<Long> insertWithIds(String table, String sql, List<T> items, Function<T, Object[]> columns) {
+        Long max = main.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        long next = max == null ? 1 : max + 1;
+        List<Long> ids = new ArrayList<>(items.size());
+        List<Object[]> rows = new ArrayList<>(items.size());
+        for (T item : items) {
+            Object[] values = columns.apply(item);
+            Object[] row = new Object[values.length + 1];
+            row[0] = next;
+            System.arraycopy(values, 0, row, 1, values.length);
+            rows.add(row);
+            ids.add(next++);
+        }
+        batch(main, sql, rows);
+        restartIdentity(table, next);
+        return ids;
+    }
+
+    private void restartIdentity(String table, long next) {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(mainDataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Не удалось определить СУБД основного сервиса", e);
+        }
+        if ("PostgreSQL".equals(product)) {
+            main.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), ?, false)", Long.class, table, next);
+        } else {
+            main.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+        }
+    }
+
+    private static void batch(JdbcTemplate jdbcTemplate, String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE)));
+        }
+    }
+
+    private static HikariDataSource dataSource(String url, String username, String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+    }
+}
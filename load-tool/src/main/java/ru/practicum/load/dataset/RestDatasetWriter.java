@@ -0,0 +1,192 @@
+package ru.practicum.load.dataset;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.load.ServiceClients;
+
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Запись данных через API сервисов — так же, как это делают пользователи: события создаются
+ * инициаторами и публикуются администратором, заявки подаются участниками и затем подтверждаются
+ * или отклоняются инициатором. Запросы выполняются параллельно, не больше rest.concurrency одновременно.
+ */
+@Slf4j
+@Component
+public class RestDatasetWriter implements DatasetWriter {
+
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int HITS_BATCH_SIZE = 1000;
+
+    private final ServiceClients clients;
+    private final int concurrency;
+
+    public RestDatasetWriter(ServiceClients clients,
+                             @Value("${load-tool.rest.concurrency:16}") int concurrency) {
+        this.clients = clients;
+        this.concurrency = concurrency;
+    }
+
+    @Override
+    public List<Long> saveUsers(List<NewUser> users) {
+        return parallel("пользователи", users, user -> id(clients.main().post()
+                .uri("/admin/users")
+                .body(Map.of("name", user.name(), "email", user.email()))
+                .retrieve()
+                .body(JsonNode.class)));
+    }
+
+    @Override
+    public List<Long> saveCategories(List<String> names) {
+        return parallel("категории", names, name -> id(clients.main().post()
+                .uri("/admin/categories")
+                .body(Map.of("name", name))
+                .retrieve()
+                .body(JsonNode.class)));
+    }
+
+    @Override
+    public List<Long> saveEvents(List<NewEvent> events) {
+        return parallel("события", events, event -> {
+            Map<String, Object> body = new HashMap<>();
+            body.put("annotation", event.annotation());
+            body.put("category", event.categoryId());
+            body.put("description", event.description());
+            body.put("eventDate", event.eventDate().format(DTF));
+            body.put("location", Map.of("lat", event.lat(), "lon", event.lon()));
+            body.put("paid", event.paid());
+            body.put("participantLimit", event.participantLimit());
+            body.put("requestModeration", event.requestModeration());
+            body.put("title", event.title());
+            Long id = id(clients.main().post()
+                    .uri("/users/{userId}/events", event.initiatorId())
+                    .body(body)
+                    .retrieve()
+                    .body(JsonNode.class));
+            if (id != null && event.published()) {
+                clients.main().patch()
+                        .uri("/admin/events/{eventId}", id)
+                        .body(Map.of("stateAction", "PUBLISH_EVENT"))
+                        .retrieve()
+                        .toBodilessEntity();
+            }
+            return id;
+        });
+    }
+
+    @Override
+    public int saveRequests(List<NewRequest> requests) {
+        AtomicInteger saved = new AtomicInteger();
+        List<Long> pendingIds = parallel("заявки", requests, request -> {
+            JsonNode node = clients.main().post()
+                    .uri(builder -> builder.path("/users/{userId}/requests")
+                            .queryParam("eventId", request.eventId())
+                            .build(request.requesterId()))
+                    .retrieve()
+                    .body(JsonNode.class);
+            saved.incrementAndGet();
+            return "PENDING".equals(node.path("status").asText()) ? id(node) : null;
+        });
+        Map<StatusUpdate, List<Long>> updates = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            NewRequest request = requests.get(i);
+            Long id = pendingIds.get(i);
+            if (id != null && !"PENDING".equals(request.status())) {
+                updates.computeIfAbsent(new StatusUpdate(request.eventId(), request.initiatorId(), request.status()),
+                        key -> new ArrayList<>()).add(id);
+            }
+        }
+        parallel("статусы заявок", new ArrayList<>(updates.entrySet()), update -> {
+            clients.main().patch()
+                    .uri("/users/{userId}/events/{eventId}/requests", update.getKey().initiatorId(),
+                            update.getKey().eventId())
+                    .body(Map.of("requestIds", update.getValue(), "status", update.getKey().status()))
+                    .retrieve()
+                    .toBodilessEntity();
+            return 0L;
+        });
+        return saved.get();
+    }
+
+    @Override
+    public int saveComments(List<NewComment> comments) {
+        return (int) parallel("комментарии", comments, comment -> id(clients.main().post()
+                .uri("/users/{userId}/events/{eventId}/comments", comment.authorId(), comment.eventId())
+                .body(Map.of("text", comment.text()))
+                .retrieve()
+                .body(JsonNode.class))).stream().filter(Objects::nonNull).count();
+    }
+
+    @Override
+    public int saveHits(List<EndpointHitDto> hits) {
+        List<List<EndpointHitDto>> batches = new ArrayList<>();
+        for (int from = 0; from < hits.size(); from += HITS_BATCH_SIZE) {
+            batches.add(hits.subList(from, Math.min(hits.size(), from + HITS_BATCH_SIZE)));
+        }
+        return (int) parallel("посещения", batches, batch -> {
+            clients.stats().post()
+                    .uri("/hits")
+                    .body(batch)
+                    .retrieve()
+                    .toBodilessEntity();
+            return (long) batch.size();
+        }).stream().filter(Objects::nonNull).mapToLong(Long::longValue).sum();
+    }
+
+    private static Long id(JsonNode node) {
+        return node == null || !node.hasNonNull("id") ? null : node.get("id").asLong();
+    }
+
+    /**
+     * Выполнение call для каждого элемента с ограничением числа одновременных запросов.
+     * Ошибки не прерывают запись: результат для такого элемента — null.
+     */
+    private <T> List<Long> parallel(String what, List<T> items, Function<T, Long> call) {
+        Long[] results = new Long[items.size()];
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<String> lastError = new AtomicReference<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < items.size(); i++) {
+                permits.acquireUninterruptibly();
+                int index = i;
+                executor.submit(() -> {
+                    try {
+                        results[index] = call.apply(items.get(index));
+                    } catch (RestClientException | CancellationException e) {
+                        failures.incrementAndGet();
+                        lastError.set(e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        if (failures.get() > 0) {
+            log.warn("Не удалось записать {}: {} из {}, последняя ошибка: {}", what, failures.get(), items.size(),
+                    lastError.get());
+        }
+        return Arrays.asList(results);
+    }
+
+    private record StatusUpdate(long eventId, long initiatorId, String status) {
+    }
+}
@@ -0,0 +1,291 @@
+package ru.practicum.load.driver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.util.UriBuilder;
+import ru.practicum.load.ServiceClients;
+import ru.practicum.load.dataset.Dataset;
+import ru.practicum.load.dataset.Zipf;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Нагрузка на основной сервис и сервис статистики смесью запросов из load-tool.run.mix
+ * (операция:вес через запятую). Запросы выполняют concurrency виртуальных потоков.
+ * <p>
+ * При rate = 0 нагрузка замкнутая: каждый поток отправляет следующий запрос сразу после ответа.
+ * При rate > 0 запросы отправляются по расписанию с суммарной частотой rate в секунду, а задержка
+ * считается от запланированного момента отправки, чтобы медленные ответы не занижали перцентили.
+ * Первые warmup секунд в отчёт не попадают.
+ */
+@Slf4j
+@Component
+public class LoadDriver {
+
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Duration[] STATS_WINDOWS = {Duration.ofHours(1), Duration.ofDays(1), Duration.ofDays(30)};
+
+    private final ServiceClients clients;
+    private final Duration duration;
+    private final Duration warmup;
+    private final int concurrency;
+    private final double rate;
+    private final Duration reportInterval;
+    private final Map<Operation, Integer> mix;
+    private final long seed;
+    private final double zipfExponent;
+
+    public LoadDriver(ServiceClients clients,
+                      @Value("${load-tool.run.duration:1m}") Duration duration,
+                      @Value("${load-tool.run.warmup:10s}") Duration warmup,
+                      @Value("${load-tool.run.concurrency:32}") int concurrency,
+                      @Value("${load-tool.run.rate:0}") double rate,
+                      @Value("${load-tool.run.report-interval:10s}") Duration reportInterval,
+                      @Value("${load-tool.run.mix}") String mix,
+                      @Value("${load-tool.seed:42}") long seed,
+                      @Value("${load-tool.dataset.zipf-exponent:1.1}") double zipfExponent) {
+        this.clients = clients;
+        this.duration = duration;
+        this.warmup = warmup;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.reportInterval = reportInterval;
+        this.mix = parseMix(mix);
+        this.seed = seed;
+        this.zipfExponent = zipfExponent;
+    }
+
+    public void run(Dataset dataset) {
+        if (dataset.isEmpty()) {
+            throw new IllegalStateException("Нет пользователей или опубликованных событий для нагрузки");
+        }
+        Operation[] operations = mix.keySet().toArray(Operation[]::new);
+        int[] cumulative = new int[operations.length];
+        int sum = 0;
+        for (int i = 0; i < operations.length; i++) {
+            sum += mix.get(operations[i]);
+            cumulative[i] = sum;
+        }
+        Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+        Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+        Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+        for (Operation operation : operations) {
+            recorders.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+            totals.put(operation, new Histogram(3));
+        }
+        Zipf popularity = new Zipf(dataset.events().size(), zipfExponent);
+        long started = System.nanoTime();
+        long measureFrom = started + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+        long period = rate > 0 ? (long) (concurrency * 1e9 / rate) : 0;
+        log.info("Нагрузка: {} потоков, {}, прогрев {}, длительность {}, смесь {}", concurrency,
+                rate > 0 ? rate + " запросов в секунду" : "без ограничения частоты", warmup, duration, mix);
+
+        int total = sum;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                SplittableRandom random = new SplittableRandom(seed + worker);
+                long firstAt = started + (period > 0 ? period * worker / concurrency : 0);
+                executor.submit(() -> {
+                    long scheduled = firstAt;
+                    while (scheduled < deadline) {
+                        if (period > 0) {
+                            LockSupport.parkNanos(scheduled - System.nanoTime());
+                        } else {
+                            scheduled = System.nanoTime();
+                        }
+                        int roll = random.nextInt(total);
+                        int index = 0;
+                        while (cumulative[index] <= roll) {
+                            index++;
+                        }
+                        Operation operation = operations[index];
+                        boolean ok = execute(operation, dataset, popularity, random);
+                        long finished = System.nanoTime();
+                        if (ok) {
+                            recorders.get(operation).recordValue(Math.max(0, (finished - scheduled) / 1000));
+                        } else if (finished >= measureFrom) {
+                            errors.get(operation).increment();
+                        }
+                        scheduled += period;
+                    }
+                });
+            }
+            boolean measuring = warmup.isZero();
+            long intervalStart = started;
+            while (System.nanoTime() < deadline) {
+                long until = Math.min(System.nanoTime() + reportInterval.toNanos(), measuring ? deadline : measureFrom);
+                LockSupport.parkNanos(until - System.nanoTime());
+                long now = System.nanoTime();
+                Histogram interval = new Histogram(3);
+                for (Operation operation : operations) {
+                    Histogram histogram = recorders.get(operation).getIntervalHistogram();
+                    interval.add(histogram);
+                    if (measuring) {
+                        totals.get(operation).add(histogram);
+                    }
+                }
+                log.info("{} {} запросов/с, p50 {} мс, p99 {} мс", measuring ? "Замер:" : "Прогрев:",
+                        Math.round(interval.getTotalCount() * 1e9 / Math.max(1, now - intervalStart)),
+                        millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)));
+                intervalStart = now;
+                measuring = now >= measureFrom;
+            }
+        }
+        for (Operation operation : operations) {
+            totals.get(operation).add(recorders.get(operation).getIntervalHistogram());
+        }
+        report(totals, errors, System.nanoTime() - measureFrom);
+    }
+
+    /**
+     * Запрос операции; true — сервис ответил кодом 2xx. Тело ответа читается полностью.
+     * Тайм-аут чтения JDK-клиент сообщает через CancellationException, он тоже считается ошибкой.
+     */
+    private boolean execute(Operation operation, Dataset dataset, Zipf popularity, SplittableRandom random) {
+        RestClient client = operation == Operation.STATS ? clients.stats() : clients.main();
+        Function<UriBuilder, URI> uri = uri(operation, dataset, popularity, random);
+        try {
+            return client.get()
+                    .uri(uri)
+                    .exchange((request, response) -> {
+                        try (InputStream body = response.getBody()) {
+                            body.transferTo(OutputStream.nullOutputStream());
+                        }
+                        return response.getStatusCode().is2xxSuccessful();
+                    });
+        } catch (RestClientException | CancellationException e) {
+            return false;
+        }
+    }
+
+    private Function<UriBuilder, URI> uri(Operation operation, Dataset dataset, Zipf popularity,
+                                          SplittableRandom random) {
+        Dataset.EventRef event = dataset.events().get(popularity.next(random));
+        List<Long> users = dataset.userIds();
+        return switch (operation) {
+            case PUBLIC_EVENTS -> builder -> {
+                builder.path("/events")
+                        .queryParam("sort", random.nextBoolean() ? "EVENT_DATE" : "VIEWS")
+                        .queryParam("from", 10 * random.nextInt(5))
+                        .queryParam("size", 10);
+                if (random.nextBoolean()) {
+                    builder.queryParam("categories", event.categoryId());
+                }
+                if (random.nextInt(4) == 0) {
+                    builder.queryParam("paid", random.nextBoolean());
+                }
+                if (random.nextInt(4) == 0) {
+                    builder.queryParam("onlyAvailable", true);
+                }
+                if (random.nextInt(4) == 0) {
+                    builder.queryParam("text", "событие");
+                }
+                return builder.build();
+            };
+            case PUBLIC_EVENT -> builder -> builder.path("/events/{id}").build(event.id());
+            case STATS -> builder -> {
+                if (random.nextInt(10) == 0) {
+                    return builder.path("/stats/top").queryParam("n", 10).build();
+                }
+                LocalDateTime end = LocalDateTime.now();
+                builder.path("/stats")
+                        .queryParam("start", end.minus(STATS_WINDOWS[random.nextInt(STATS_WINDOWS.length)]).format(DTF))
+                        .queryParam("end", end.format(DTF))
+                        .queryParam("unique", random.nextBoolean());
+                if (random.nextInt(5) != 0) {
+                    int count = 1 + random.nextInt(10);
+                    for (int i = 0; i < count; i++) {
+                        builder.queryParam("uris", "/events/" + dataset.events().get(popularity.next(random)).id());
+                    }
+                }
+                return builder.build();
+            };
+            case PRIVATE_EVENTS -> builder -> builder.path("/users/{userId}/events")
+                    .queryParam("from", 0)
+                    .queryParam("size", 10)
+                    .build(event.initiatorId());
+            case PRIVATE_REQUESTS -> builder -> builder.path("/users/{userId}/requests")
+                    .build(users.get(random.nextInt(users.size())));
+            case ADMIN_EVENTS -> builder -> {
+                builder.path("/admin/events")
+                        .queryParam("states", "PUBLISHED")
+                        .queryParam("from", 10 * random.nextInt(5))
+                        .queryParam("size", 10);
+                if (random.nextBoolean()) {
+                    builder.queryParam("categories", event.categoryId());
+                }
+                return builder.build();
+            };
+            case ADMIN_COMMENTS -> builder -> builder.path("/admin/comments")
+                    .queryParam("eventsIds", event.id())
+                    .queryParam("from", 0)
+                    .queryParam("size", 10)
+                    .build();
+        };
+    }
+
+    private void report(Map<Operation, Histogram> totals, Map<Operation, LongAdder> errors, long elapsedNanos) {
+        String format = "%-18s %10s %8s %10s %9s %9s %9s %9s %9s";
+        log.info("Итоги за {} с:", Math.round(elapsedNanos / 1e9));
+        log.info(String.format(format, "операция", "запросов", "ошибок", "запросов/с", "p50, мс", "p90, мс",
+                "p99, мс", "p99.9, мс", "max, мс"));
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        for (Map.Entry<Operation, Histogram> entry : totals.entrySet()) {
+            long operationErrors = errors.get(entry.getKey()).sum();
+            log.info(row(format, entry.getKey().key(), entry.getValue(), operationErrors, elapsedNanos));
+            all.add(entry.getValue());
+            allErrors += operationErrors;
+        }
+        log.info(row(format, "всего", all, allErrors, elapsedNanos));
+    }
+
+    private static String row(String format, String name, Histogram histogram, long errors, long elapsedNanos) {
+        return String.format(format, name, histogram.getTotalCount(), errors,
+                Math.round(histogram.getTotalCount() * 1e9 / elapsedNanos),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.1f", micros / 1000.0);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) {
+                weights.merge(Operation.of(pair[0].trim()), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Пустая смесь нагрузки load-tool.run.mix");
+        }
+        return weights;
+    }
+}
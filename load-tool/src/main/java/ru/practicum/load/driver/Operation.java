@@ -0,0 +1,34 @@
+package ru.practicum.load.driver;
+
+import java.util.Arrays;
+
+/**
+ * Виды запросов нагрузки. key — имя в load-tool.run.mix.
+ */
+public enum Operation {
+    PUBLIC_EVENTS("public-events"),
+    PUBLIC_EVENT("public-event"),
+    STATS("stats"),
+    PRIVATE_EVENTS("private-events"),
+    PRIVATE_REQUESTS("private-requests"),
+    ADMIN_EVENTS("admin-events"),
+    ADMIN_COMMENTS("admin-comments");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Operation of(String key) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестная операция нагрузки: " + key
+                        + ", допустимые: " + Arrays.stream(values()).map(Operation::key).toList()));
+    }
+}
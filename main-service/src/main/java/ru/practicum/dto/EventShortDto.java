@@ -38,5 +38,8 @@ public class EventShortDto {
     @PositiveOrZero
     private long views;
 
+    /**
+     * Комментарии события; null — комментарии не загружены к сроку дополнения ответа.
+     */
     private List<CommentEventResponseDto> comments;
 }
@@ -21,6 +21,8 @@ public interface EventMapper {
     EventShortDto toEventShortDto(Event event);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "views", ignore = true)
+    @Mapping(target = "confirmedRequests", ignore = true)
     @Mapping(target = "state", constant = "PENDING")
     @Mapping(source = "category", target = "category", qualifiedByName = "mapCategory") // Переводим Long → Category
     Event toEntity(NewEventDto dto);
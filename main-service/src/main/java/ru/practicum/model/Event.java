@@ -61,4 +61,18 @@ public class Event {
 
     @Column(name = "request_moderation")
     private Boolean requestModeration;
+
+    /**
+     * Уникальные просмотры с момента публикации, периодически переносимые из сервиса статистики.
+     * Меняется только запросом {@link ru.practicum.repository.EventRepository#updateViews}.
+     */
+    @Column(insertable = false, updatable = false)
+    private long views;
+
+    /**
+     * Подтверждённые заявки на участие. Меняется только запросами EventRepository
+     * в транзакции, меняющей статус заявки.
+     */
+    @Column(name = "confirmed_requests", insertable = false, updatable = false)
+    private long confirmedRequests;
 }
@@ -0,0 +1,22 @@
+package ru.practicum.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние переноса просмотров в events.views: единственная строка с id = 1.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "views_sync")
+public class ViewsSync {
+    @Id
+    private Integer id;
+
+    @Column(name = "last_sync")
+    private LocalDateTime lastSync;
+}
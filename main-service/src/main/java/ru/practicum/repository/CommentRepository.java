@@ -4,10 +4,13 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.util.CollectionUtils;
 import ru.practicum.model.Comment;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long>, JpaSpecificationExecutor<Comment> {
@@ -15,6 +18,19 @@ public interface CommentRepository extends JpaRepository<Comment, Long>, JpaSpec
 
     List<Comment> findAllByAuthor_Id(Long authorId);
 
+    /**
+     * Комментарии к событиям: не больше perEventLimit последних на событие, строки
+     * (event_id, id, text, имя автора, created, updated) по событию и от старых к новым.
+     */
+    @Query(value = "SELECT c.event_id, c.id, c.text, u.name, c.created, c.updated " +
+            "FROM (SELECT cm.*, ROW_NUMBER() OVER (PARTITION BY cm.event_id ORDER BY cm.created DESC, cm.id DESC) AS rn " +
+            "FROM comments cm WHERE cm.event_id IN (:eventIds)) c " +
+            "JOIN users u ON u.id = c.author_id " +
+            "WHERE c.rn <= :perEventLimit " +
+            "ORDER BY c.event_id, c.created, c.id", nativeQuery = true)
+    List<Object[]> findForEvents(@Param("eventIds") Collection<Long> eventIds,
+                                 @Param("perEventLimit") int perEventLimit);
+
     default List<Comment> findWithFilters(List<Long> users,
                                           List<Long> events,
                                           List<Long> comments,
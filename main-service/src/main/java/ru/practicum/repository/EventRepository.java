@@ -4,6 +4,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,6 +13,7 @@ import ru.practicum.enums.EventState;
 import ru.practicum.model.Event;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,33 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
 
     boolean existsByCategory_Id(Long catId);
 
+    @Query("SELECT e.id, e.publishedOn FROM Event e WHERE e.state = 'PUBLISHED' AND e.publishedOn IS NOT NULL " +
+            "AND e.id > :afterId ORDER BY e.id")
+    List<Object[]> findPublishedAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT e.id, e.publishedOn FROM Event e WHERE e.state = 'PUBLISHED' AND e.publishedOn IS NOT NULL " +
+            "AND e.id IN :eventIds")
+    List<Object[]> findPublished(@Param("eventIds") Collection<Long> eventIds);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.views = :views WHERE e.id = :eventId AND e.views < :views")
+    int updateViews(@Param("eventId") Long eventId, @Param("views") long views);
+
+    /**
+     * Подтверждение count заявок, если лимит участников позволяет. Проверка и увеличение
+     * счётчика выполняются одним запросом; 0 — лимит исчерпан.
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :count WHERE e.id = :eventId " +
+            "AND (e.participantLimit IS NULL OR e.participantLimit = 0 " +
+            "OR e.confirmedRequests + :count <= e.participantLimit)")
+    int reserveConfirmedRequests(@Param("eventId") Long eventId, @Param("count") long count);
+
+    @Modifying
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests - :count " +
+            "WHERE e.id = :eventId AND e.confirmedRequests >= :count")
+    int releaseConfirmedRequests(@Param("eventId") Long eventId, @Param("count") long count);
+
     default List<Event> findWithFilters(List<Long> users,
                                         List<EventState> states,
                                         List<Long> categories,
@@ -34,6 +63,7 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
                                         LocalDateTime rangeEnd,
                                         Boolean paid,
                                         String text,
+                                        boolean onlyAvailable,
                                         Pageable pageable) {
         var predicates = Specification.allOf(Specs.after(rangeStart),
                 Specs.states(states),
@@ -41,7 +71,8 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
                 Specs.categories(categories),
                 Specs.paid(paid),
                 Specs.text(text),
-                Specs.users(users));
+                Specs.users(users),
+                Specs.available(onlyAvailable));
         return findAll(predicates, pageable).getContent();
     }
 
@@ -83,6 +114,14 @@ public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecific
                             cb.like(cb.lower(entity.get("description")), "%" + text + "%"));
         }
 
+        static Specification<Event> available(boolean onlyAvailable) {
+            return !onlyAvailable ? null :
+                    (entity, query, cb)
+                            -> cb.or(cb.isNull(entity.get("participantLimit")),
+                            cb.equal(entity.get("participantLimit"), 0),
+                            cb.lessThan(entity.get("confirmedRequests"), entity.get("participantLimit")));
+        }
+
         static Specification<Event> paid(Boolean paid) {
             return paid == null ? null :
                     (entity, query, cb)
@@ -1,10 +1,7 @@
 package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import ru.practicum.enums.RequestStatus;
 import ru.practicum.model.ParticipationRequest;
 
 import java.util.List;
@@ -16,11 +13,5 @@ public interface ParticipationRequestRepository extends JpaRepository<Participat
 
     boolean existsByRequesterAndEvent(Long requesterId, Long eventId);
 
-    long countByEventAndStatus(Long eventId, RequestStatus status);
-
     List<ParticipationRequest> findByEvent(Long eventId);
-
-    @Query("SELECT p.event, COUNT(p) FROM ParticipationRequest p WHERE p.event IN :eventIds AND p.status = 'CONFIRMED' GROUP BY p.event")
-    List<Object[]> countConfirmedRequestsForEvents(@Param("eventIds") List<Long> eventIds);
-
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package ru.practicum.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.model.ViewsSync;
+
+import java.util.Optional;
+
+public interface ViewsSyncRepository extends JpaRepository<ViewsSync, Integer> {
+
+    /**
+     * Блокировка строки состояния до конца транзакции; пусто, если строку держит проход
+     * на другом экземпляре сервиса.
+     */
+    @Query(value = "SELECT * FROM views_sync WHERE id = 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<ViewsSync> lock();
+}
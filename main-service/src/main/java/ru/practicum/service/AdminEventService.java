@@ -10,7 +10,6 @@ import org.springframework.stereotype.Service;
 import ru.practicum.StatsClient;
 import ru.practicum.dto.*;
 import ru.practicum.enums.EventState;
-import ru.practicum.enums.RequestStatus;
 import ru.practicum.enums.StateAction;
 import ru.practicum.exception.AppException;
 import ru.practicum.mapper.CommentMapper;
@@ -19,7 +18,6 @@ import ru.practicum.model.Event;
 import ru.practicum.repository.CategoryRepository;
 import ru.practicum.repository.CommentRepository;
 import ru.practicum.repository.EventRepository;
-import ru.practicum.repository.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -39,10 +37,11 @@ public class AdminEventService {
     private final EventRepository eventRepository;
     private final EventMapper eventMapper;
     private final CategoryRepository categoryRepository;
-    private final ParticipationRequestRepository participationRequestRepository;
     private final StatsClient statsClient;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final EnrichmentPipeline enrichmentPipeline;
+    private final EventCommentsLoader eventCommentsLoader;
 
     public List<EventFullDto> getEvents(List<Long> users, List<EventState> states, List<Long> categories,
                                         LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size) {
@@ -66,54 +65,50 @@ public class AdminEventService {
                 filterDates ? rangeEnd : null,
                 null,
                 null,
+                false,
                 pageable
         );
 
         if (events.isEmpty()) return List.of();
 
-        Map<Long, Long> confirmedRequestsMap = getconfirmedRequestsMap(events);
-
         Map<String, Event> uriToEventMap = events.stream()
                 .filter(e -> e.getPublishedOn() != null)
                 .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
 
-        List<ViewStats> stats = statsClient.getStats(
-                uriToEventMap.entrySet().stream()
-                        .map(entry -> ViewsStatsRequest.builder()
-                                .uri(entry.getKey())
-                                .start(entry.getValue().getPublishedOn())
-                                .end(LocalDateTime.now())
-                                .unique(true)
-                                .build())
-                        .toList()
-        );
-
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        EnrichmentPipeline.Enrichment enrichment = enrichmentPipeline.start();
+        EnrichmentPipeline.Lookup<Map<String, Long>> viewsLookup = enrichment.fork("просмотры", () -> {
+            if (uriToEventMap.isEmpty()) {
+                return Map.of();
+            }
+            List<ViewStats> stats = statsClient.getStats(
+                    uriToEventMap.entrySet().stream()
+                            .map(entry -> ViewsStatsRequest.builder()
+                                    .uri(entry.getKey())
+                                    .start(entry.getValue().getPublishedOn())
+                                    .end(LocalDateTime.now())
+                                    .unique(true)
+                                    .build())
+                            .toList()
+            );
+            return stats.stream()
+                    .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        });
+
+        EnrichmentPipeline.Lookup<Map<Long, List<CommentEventResponseDto>>> commentsLookup = enrichment.fork("комментарии",
+                () -> eventCommentsLoader.load(events.stream().map(Event::getId).toList()), null);
+
+        Map<String, Long> viewsMap = viewsLookup.get();
+        Map<Long, List<CommentEventResponseDto>> commentsMap = commentsLookup.get();
 
         return events.stream()
                 .map(event -> {
                     EventFullDto dto = eventMapper.toEventFullDto(event);
-                    dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(event.getId(), 0L));
                     dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    List<CommentEventResponseDto> commentsDto = (commentMapper.toCommentEventResponseDto(commentRepository.findAllByEvent_Id(event.getId())));
-                    dto.setComments(commentsDto);
+                    dto.setComments(commentsMap == null ? null : commentsMap.getOrDefault(event.getId(), List.of()));
                     return dto;
                 }).collect(Collectors.toList());
     }
 
-    private Map<Long, Long> getconfirmedRequestsMap(List<Event> events) {
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        Map<Long, Long> map = participationRequestRepository
-                .countConfirmedRequestsForEvents(eventIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
-        return map;
-    }
-
     public EventFullDto updateEvent(Long eventId, UpdateEventAdminRequest updateRequest) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new AppException("Событие с id=" + eventId + " не найдено.", HttpStatus.NOT_FOUND));
@@ -165,7 +160,6 @@ public class AdminEventService {
 
         Event saved = eventRepository.save(event);
         EventFullDto dto = eventMapper.toEventFullDto(saved);
-        dto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED));
 
         if (event.getPublishedOn() != null) {
             ViewsStatsRequest statsRequest = ViewsStatsRequest.builder()
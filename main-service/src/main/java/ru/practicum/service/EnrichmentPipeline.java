@@ -0,0 +1,132 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.practicum.exception.AppException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Параллельное дополнение найденных событий: заявки, просмотры и комментарии не зависят друг
+ * от друга и загружаются одновременно в виртуальных потоках. У всех загрузок одного ответа общий
+ * срок main-service.enrichment.timeout, поэтому ответ ждёт самую медленную загрузку, а не их сумму.
+ * <p>
+ * Загрузки выполняются вне транзакции и сессии запроса, поэтому результат должен быть готов
+ * к использованию без ленивой подгрузки связей.
+ * <p>
+ * Загрузки, у которых есть собственный срок и собственный запасной результат, — просмотры из
+ * StatsClient с его таймаутом и последними известными значениями — общим сроком не ограничиваются:
+ * иначе нулевое значение по умолчанию подменило бы последние известные просмотры.
+ */
+@Slf4j
+@Component
+public class EnrichmentPipeline {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Duration timeout;
+
+    public EnrichmentPipeline(@Value("${main-service.enrichment.timeout:2s}") Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Новый набор загрузок; срок отсчитывается с этого момента.
+     */
+    public Enrichment start() {
+        return new Enrichment(System.nanoTime() + timeout.toNanos());
+    }
+
+    @PreDestroy
+    void close() {
+        executor.shutdownNow();
+    }
+
+    public final class Enrichment {
+        private final long deadline;
+
+        private Enrichment(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Загрузка со значением по умолчанию: если она не успела к сроку или завершилась ошибкой,
+         * используется fallback.
+         */
+        public <T> Lookup<T> fork(String name, Supplier<T> task, T fallback) {
+            return new Lookup<>(name, executor.submit(task::get), deadline, fallback);
+        }
+
+        /**
+         * Загрузка с собственным сроком и запасным результатом: результат ожидается без общего срока,
+         * ошибка загрузки передаётся вызывающему.
+         */
+        public <T> Lookup<T> fork(String name, Supplier<T> task) {
+            return new Lookup<>(name, executor.submit(task::get), Long.MAX_VALUE, null);
+        }
+    }
+
+    public static final class Lookup<T> {
+        private final String name;
+        private final Future<T> future;
+        private final long deadline;
+        private final T fallback;
+
+        private Lookup(String name, Future<T> future, long deadline, T fallback) {
+            this.name = name;
+            this.future = future;
+            this.deadline = deadline;
+            this.fallback = fallback;
+        }
+
+        /**
+         * Результат загрузки, ожидание — не дольше общего срока. Ответ без дополнительных данных
+         * лучше ошибки, поэтому при превышении срока или ошибке загрузки возвращается fallback.
+         */
+        public T get() {
+            if (deadline == Long.MAX_VALUE) {
+                return join();
+            }
+            try {
+                return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("Загрузка «{}» не успела к сроку, используется значение по умолчанию", name);
+                return fallback;
+            } catch (ExecutionException e) {
+                log.warn("Ошибка загрузки «{}», используется значение по умолчанию: {}", name,
+                        e.getCause().getMessage());
+                return fallback;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new AppException("Загрузка прервана: " + name, HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+
+        private T join() {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new AppException("Ошибка загрузки «" + name + "»: " + e.getCause().getMessage(),
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new AppException("Загрузка прервана: " + name, HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.CommentEventResponseDto;
+import ru.practicum.dto.UserForCommentDto;
+import ru.practicum.repository.CommentRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Комментарии к событиям списка одним запросом вместо запроса на каждое событие. Загружаются
+ * только поля ответа, без сущностей события и автора. При main-service.comments.per-event-limit > 0
+ * к каждому событию загружается не больше указанного числа последних комментариев.
+ */
+@Component
+public class EventCommentsLoader {
+
+    private final CommentRepository commentRepository;
+    private final int perEventLimit;
+
+    public EventCommentsLoader(CommentRepository commentRepository,
+                               @Value("${main-service.comments.per-event-limit:0}") int perEventLimit) {
+        this.commentRepository = commentRepository;
+        this.perEventLimit = perEventLimit;
+    }
+
+    /**
+     * Комментарии по id события, от старых к новым. Для событий без комментариев — пустой список.
+     */
+    public Map<Long, List<CommentEventResponseDto>> load(Collection<Long> eventIds) {
+        Map<Long, List<CommentEventResponseDto>> result = new HashMap<>();
+        if (eventIds.isEmpty()) {
+            return result;
+        }
+        eventIds.forEach(eventId -> result.put(eventId, new ArrayList<>()));
+        List<Object[]> rows = commentRepository.findForEvents(eventIds,
+                perEventLimit > 0 ? perEventLimit : Integer.MAX_VALUE);
+        for (Object[] row : rows) {
+            UserForCommentDto author = new UserForCommentDto();
+            author.setName((String) row[3]);
+            CommentEventResponseDto comment = CommentEventResponseDto.builder()
+                    .id(((Number) row[1]).longValue())
+                    .text((String) row[2])
+                    .author(author)
+                    .created(dateTime(row[4]))
+                    .updated(dateTime(row[5]))
+                    .build();
+            result.computeIfAbsent(((Number) row[0]).longValue(), eventId -> new ArrayList<>()).add(comment);
+        }
+        return result;
+    }
+
+    private static LocalDateTime dateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+}
@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.dto.EventRequestStatusUpdateResult;
 import ru.practicum.dto.ParticipationRequestDto;
@@ -31,6 +32,7 @@ public class ParticipationRequestService {
     private final ParticipationRequestMapper participationRequestMapper;
     private final EventRepository eventRepository;
 
+    @Transactional
     public ParticipationRequestDto createRequest(Long userId, Long eventId) {
         if (!userService.userExists(userId)) {
             throw new AppException("Пользователь с id=" + userId + " не найден.", HttpStatus.NOT_FOUND);
@@ -51,10 +53,8 @@ public class ParticipationRequestService {
             throw new AppException("Запрос на участие уже существует.", HttpStatus.CONFLICT);
         }
 
-        long confirmedRequests = participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED);
-        if (event.getParticipantLimit() > 0 && confirmedRequests >= event.getParticipantLimit()) {
-            throw new AppException("Достигнуто максимальное количество участников для события c id: " + eventId + ".",
-                    HttpStatus.CONFLICT);
+        if (event.getParticipantLimit() > 0 && event.getConfirmedRequests() >= event.getParticipantLimit()) {
+            throw participantLimitReached(eventId);
         }
 
         ParticipationRequest request = ParticipationRequest.builder()
@@ -68,12 +68,17 @@ public class ParticipationRequestService {
             request.setStatus(RequestStatus.CONFIRMED);
         }
 
+        if (request.getStatus() == RequestStatus.CONFIRMED && eventRepository.reserveConfirmedRequests(eventId, 1) == 0) {
+            throw participantLimitReached(eventId);
+        }
+
         ParticipationRequest savedRequest = participationRequestRepository.save(request);
 
         return participationRequestMapper.toDto(savedRequest);
     }
 
 
+    @Transactional
     public EventRequestStatusUpdateResult updateRequestStatus(Long userId, Long eventId, EventRequestStatusUpdateRequest request) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new AppException("Событие с id=" + eventId + " не найдено.", HttpStatus.NOT_FOUND));
@@ -93,7 +98,7 @@ public class ParticipationRequestService {
             }
         }
 
-        long confirmedRequests = participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED);
+        long confirmedRequests = event.getConfirmedRequests();
         if (event.getParticipantLimit() > 0 && confirmedRequests >= event.getParticipantLimit()) {
             throw new AppException("Достигнут лимит заявок на участие.", HttpStatus.CONFLICT);
         }
@@ -117,6 +122,11 @@ public class ParticipationRequestService {
             }
         }
 
+        // Лимит проверяется ещё раз при увеличении счётчика: заявки могли подтвердить параллельно
+        if (!confirmed.isEmpty() && eventRepository.reserveConfirmedRequests(eventId, confirmed.size()) == 0) {
+            throw new AppException("Достигнут лимит заявок на участие.", HttpStatus.CONFLICT);
+        }
+
         participationRequestRepository.saveAll(requests);
 
         return new EventRequestStatusUpdateResult(
@@ -135,6 +145,7 @@ public class ParticipationRequestService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional
     public ParticipationRequestDto cancelRequest(Long userId, Long requestId) {
         if (!userService.userExists(userId)) {
             throw new AppException("Пользователь с id=" + userId + " не найден.", HttpStatus.NOT_FOUND);
@@ -143,6 +154,9 @@ public class ParticipationRequestService {
         ParticipationRequest participationRequest = participationRequestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException("Запрос на участие с id=" + requestId + " не найден.", HttpStatus.NOT_FOUND));
 
+        if (participationRequest.getStatus() == RequestStatus.CONFIRMED) {
+            eventRepository.releaseConfirmedRequests(participationRequest.getEvent(), 1);
+        }
         participationRequest.setStatus(RequestStatus.CANCELED);
 
         participationRequestRepository.save(participationRequest);
@@ -162,4 +176,9 @@ public class ParticipationRequestService {
         return participationRequestMapper.toDtoList(requests);
     }
 
+    private static AppException participantLimitReached(Long eventId) {
+        return new AppException("Достигнуто максимальное количество участников для события c id: " + eventId + ".",
+                HttpStatus.CONFLICT);
+    }
+
 }
@@ -10,7 +10,6 @@ import org.springframework.stereotype.Service;
 import ru.practicum.StatsClient;
 import ru.practicum.dto.*;
 import ru.practicum.enums.EventState;
-import ru.practicum.enums.RequestStatus;
 import ru.practicum.enums.UserStateAction;
 import ru.practicum.exception.AppException;
 import ru.practicum.mapper.CommentMapper;
@@ -44,10 +43,11 @@ public class PrivateEventService {
     private final EventMapper eventMapper;
     private final CategoryRepository categoryRepository;
     private final UserRepository userRepository;
-    private final ParticipationRequestRepository participationRequestRepository;
     private final StatsClient statsClient;
     private final CommentMapper commentMapper;
     private final CommentRepository commentRepository;
+    private final EnrichmentPipeline enrichmentPipeline;
+    private final EventCommentsLoader eventCommentsLoader;
 
     public EventFullDto createEvent(Long userId, NewEventDto newEventDto) {
         User user = userRepository.findById(userId)
@@ -111,9 +111,7 @@ public class PrivateEventService {
                 .orElse(EventState.PENDING));
 
         Event updated = eventRepository.save(event);
-        EventFullDto dto = eventMapper.toEventFullDto(updated);
-        dto.setConfirmedRequests(participationRequestRepository.countByEventAndStatus(eventId, RequestStatus.CONFIRMED));
-        return dto;
+        return eventMapper.toEventFullDto(updated);
     }
 
     public List<EventShortDto> getUserEvents(Long userId, int from, int size) {
@@ -126,31 +124,33 @@ public class PrivateEventService {
         List<Event> events = eventRepository.findByInitiatorId(userId, pageable);
         if (events.isEmpty()) return List.of();
 
-        // Подсчёт подтверждённых заявок
-        Map<Long, Long> confirmedRequestsMap = getconfirmedRequestsMap(events);
-
         // Подготовка URI -> ID и дат
         Map<String, Event> uriToEventMap = events.stream()
                 .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
 
+        EnrichmentPipeline.Enrichment enrichment = enrichmentPipeline.start();
         // Запрос статистики
-        ViewsStatsRequest statsRequest = ViewsStatsRequest.builder()
-                .uris(uriToEventMap.keySet())
-                .unique(true)
-                .build();
+        EnrichmentPipeline.Lookup<Map<String, Long>> viewsLookup = enrichment.fork("просмотры", () -> {
+            ViewsStatsRequest statsRequest = ViewsStatsRequest.builder()
+                    .uris(uriToEventMap.keySet())
+                    .unique(true)
+                    .build();
+
+            return statsClient.getStats(List.of(statsRequest)).stream()
+                    .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        });
 
-        List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
+        EnrichmentPipeline.Lookup<Map<Long, List<CommentEventResponseDto>>> commentsLookup = enrichment.fork("комментарии",
+                () -> eventCommentsLoader.load(events.stream().map(Event::getId).toList()), null);
 
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
+        Map<String, Long> viewsMap = viewsLookup.get();
+        Map<Long, List<CommentEventResponseDto>> commentsMap = commentsLookup.get();
 
         return events.stream()
                 .map(event -> {
                     EventShortDto dto = eventMapper.toEventShortDto(event);
-                    dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(event.getId(), 0L));
                     dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    List<CommentEventResponseDto> commentsDto = (commentMapper.toCommentEventResponseDto(commentRepository.findAllByEvent_Id(event.getId())));
-                    dto.setComments(commentsDto);
+                    dto.setComments(commentsMap == null ? null : commentsMap.getOrDefault(event.getId(), List.of()));
                     return dto;
                 }).collect(Collectors.toList());
     }
@@ -159,19 +159,7 @@ public class PrivateEventService {
         Event event = eventRepository.findByIdAndInitiatorId(eventId, userId)
                 .orElseThrow(() -> new AppException("Событие с id=" + eventId + " не найдено или не принадлежит пользователю id=" + userId, HttpStatus.NOT_FOUND));
 
-        return feelViewsField(eventId, event, commentMapper, commentRepository, eventMapper, participationRequestRepository, statsClient);
-    }
-
-    private Map<Long, Long> getconfirmedRequestsMap(List<Event> events) {
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        Map<Long, Long> map = participationRequestRepository
-                .countConfirmedRequestsForEvents(eventIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
-        return map;
+        return feelViewsField(eventId, event, commentMapper, commentRepository, eventMapper, statsClient, enrichmentPipeline);
     }
 
     private <T> void updateField(T value, Consumer<T> setter) {
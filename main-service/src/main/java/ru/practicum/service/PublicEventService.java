@@ -18,7 +18,6 @@ import ru.practicum.mapper.EventMapper;
 import ru.practicum.model.Event;
 import ru.practicum.repository.CommentRepository;
 import ru.practicum.repository.EventRepository;
-import ru.practicum.repository.ParticipationRequestRepository;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -32,11 +31,11 @@ import static ru.practicum.service.EventFullDtoCreator.feelViewsField;
 public class PublicEventService {
 
     private final EventRepository eventRepository;
-    private final ParticipationRequestRepository requestRepository;
     private final EventMapper eventMapper;
     private final StatsClient statsClient;
     private final CommentMapper commentMapper;
     private final CommentRepository commentRepository;
+    private final EnrichmentPipeline enrichmentPipeline;
 
     public List<EventShortDto> getPublicEvents(String text, List<Long> categories, Boolean paid,
                                                LocalDateTime rangeStart, LocalDateTime rangeEnd,
@@ -59,6 +58,7 @@ public class PublicEventService {
         List<Event> events = eventRepository.findWithFilters(null, List.of(EventState.PUBLISHED),
                 categories, rangeStart, rangeEnd, paid,
                 StringUtils.isNotBlank(text) ? text : null,
+                Boolean.TRUE.equals(onlyAvailable),
                 pageable);
 
         log.info("Найдено событий: {}", events.size());
@@ -66,36 +66,9 @@ public class PublicEventService {
             return List.of();
         }
 
-        List<Long> eventIds = events.stream().map(Event::getId).toList();
-
-        Map<Long, Long> confirmedRequests = requestRepository.countConfirmedRequestsForEvents(eventIds).stream()
-                .collect(Collectors.toMap(
-                        row -> (Long) row[0],
-                        row -> (Long) row[1]
-                ));
-
-        Map<String, Event> uriToEventMap = events.stream()
-                .collect(Collectors.toMap(e -> "/events/" + e.getId(), e -> e));
-
-        // Запрос статистики
-        ViewsStatsRequest statsRequest = ViewsStatsRequest.builder()
-                .uris(uriToEventMap.keySet())
-                .unique(true)
-                .build();
-
-        List<ViewStats> stats = statsClient.getStats(List.of(statsRequest));
-
-        Map<String, Long> viewsMap = stats.stream()
-                .collect(Collectors.toMap(ViewStats::getUri, ViewStats::getHits));
-
+        // Просмотры берутся из events.views — того же значения, по которому отсортирована страница
         return events.stream()
-                .filter(event -> !onlyAvailable || confirmedRequests.getOrDefault(event.getId(), 0L) < event.getParticipantLimit())
-                .map(event -> {
-                    EventShortDto dto = eventMapper.toEventShortDto(event);
-                    dto.setConfirmedRequests(confirmedRequests.getOrDefault(event.getId(), 0L));
-                    dto.setViews(viewsMap.getOrDefault("/events/" + event.getId(), 0L));
-                    return dto;
-                })
+                .map(eventMapper::toEventShortDto)
                 .collect(Collectors.toList());
     }
 
@@ -103,12 +76,12 @@ public class PublicEventService {
         Event event = eventRepository.findPublishedEventById(eventId)
                 .orElseThrow(() -> new AppException("Событие с id=" + eventId + " не найдено.", HttpStatus.NOT_FOUND));
 
-        return feelViewsField(eventId, event, commentMapper, commentRepository, eventMapper, requestRepository, statsClient);
+        return feelViewsField(eventId, event, commentMapper, commentRepository, eventMapper, statsClient, enrichmentPipeline);
     }
 
     private Sort getSort(EventSort sort) {
         return sort == EventSort.VIEWS
-                ? Sort.by(Sort.Direction.DESC, "views") :
+                ? Sort.by(Sort.Direction.DESC, "views").and(Sort.by("id")) :
                 Sort.by(Sort.Direction.ASC, "eventDate");
     }
 }
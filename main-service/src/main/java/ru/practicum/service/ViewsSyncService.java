@@ -0,0 +1,168 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.model.ViewsSync;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.ViewsSyncRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Перенос просмотров из сервиса статистики в колонку events.views, по которой каталог
+ * сортируется и разбивается на страницы в базе. Первый проход пересчитывает все опубликованные
+ * события, следующие — только события, которые посещали с прошлого прохода (за вычетом overlap
+ * на посещения, доставленные с задержкой). Просмотры считаются так же, как в ответах
+ * администратору: уникальные посещения с момента публикации. Значение в колонке только растёт.
+ * <p>
+ * Граница прошлого прохода хранится в таблице views_sync. Проход держит её строку заблокированной,
+ * поэтому из нескольких экземпляров сервиса проход выполняет один, остальные его пропускают.
+ * Просмотры обновляются пакетами в отдельных транзакциях, граница — в конце прохода: после сбоя
+ * следующий проход повторяет окно целиком.
+ */
+@Slf4j
+@Service
+public class ViewsSyncService {
+
+    private static final Pattern EVENT_URI = Pattern.compile("/events/(\\d+)");
+
+    private final EventRepository eventRepository;
+    private final ViewsSyncRepository viewsSyncRepository;
+    private final StatsClient statsClient;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate batchTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration overlap;
+
+    public ViewsSyncService(EventRepository eventRepository,
+                            ViewsSyncRepository viewsSyncRepository,
+                            StatsClient statsClient,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${main-service.views-sync.enabled:true}") boolean enabled,
+                            @Value("${main-service.views-sync.batch-size:200}") int batchSize,
+                            @Value("${main-service.views-sync.overlap:1m}") Duration overlap) {
+        this.eventRepository = eventRepository;
+        this.viewsSyncRepository = viewsSyncRepository;
+        this.statsClient = statsClient;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchTemplate = new TransactionTemplate(transactionManager);
+        this.batchTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.overlap = overlap;
+    }
+
+    @Scheduled(fixedDelayString = "${main-service.views-sync.interval:1m}",
+            initialDelayString = "${main-service.views-sync.initial-delay:30s}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> viewsSyncRepository.lock().ifPresentOrElse(
+                this::sync,
+                () -> log.debug("Просмотры событий переносит другой экземпляр сервиса, проход пропущен")));
+    }
+
+    private void sync(ViewsSync state) {
+        LocalDateTime started = LocalDateTime.now();
+        long updated;
+        if (state.getLastSync() == null) {
+            updated = syncAll();
+            state.setLastSync(started);
+            log.info("Просмотры событий перенесены из сервиса статистики, обновлено событий: {}", updated);
+            return;
+        }
+        Set<Long> visited = visitedSince(state.getLastSync().minus(overlap), started);
+        if (visited.isEmpty()) {
+            // Пустой ответ не отличить от недоступного сервиса: окно растёт до первого непустого ответа
+            return;
+        }
+        updated = 0;
+        List<Long> ids = new ArrayList<>(visited);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            updated += update(eventRepository.findPublished(ids.subList(from, Math.min(ids.size(), from + batchSize))));
+        }
+        state.setLastSync(started);
+        log.debug("Просмотры событий обновлены: посещались {}, обновлено {}", visited.size(), updated);
+    }
+
+    private long syncAll() {
+        long updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> events = eventRepository.findPublishedAfter(afterId, PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return updated;
+            }
+            updated += update(events);
+            afterId = (Long) events.getLast()[0];
+        }
+    }
+
+    /**
+     * События, страницы которых посещали в [start, end], по всем uri из сервиса статистики.
+     */
+    private Set<Long> visitedSince(LocalDateTime start, LocalDateTime end) {
+        List<ViewStats> stats = statsClient.getFreshStats(List.of(ViewsStatsRequest.builder()
+                .start(start)
+                .end(end)
+                .build()));
+        Set<Long> ids = new TreeSet<>();
+        for (ViewStats row : stats) {
+            Matcher matcher = EVENT_URI.matcher(row.getUri());
+            if (matcher.matches()) {
+                ids.add(Long.parseLong(matcher.group(1)));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Обновление просмотров по строкам (id, publishedOn) одним запросом статистики.
+     * События без строки в ответе и устаревшие значения не меняются.
+     */
+    private long update(List<Object[]> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<ViewsStatsRequest> requests = new ArrayList<>(events.size());
+        for (Object[] event : events) {
+            requests.add(ViewsStatsRequest.builder()
+                    .uri("/events/" + event[0])
+                    .start((LocalDateTime) event[1])
+                    .end(now)
+                    .unique(true)
+                    .build());
+        }
+        List<ViewStats> stats = statsClient.getFreshStats(requests);
+        Long updated = batchTemplate.execute(status -> {
+            long count = 0;
+            for (ViewStats row : stats) {
+                Matcher matcher = EVENT_URI.matcher(row.getUri());
+                if (!row.isStale() && row.getHits() != null && matcher.matches()) {
+                    count += eventRepository.updateViews(Long.parseLong(matcher.group(1)), row.getHits());
+                }
+            }
+            return count;
+        });
+        return updated == null ? 0 : updated;
+    }
+}
@@ -32,6 +32,17 @@ CREATE TABLE IF NOT EXISTS events (
     FOREIGN KEY (initiator_id) REFERENCES users(id)
     );
 
+-- Уникальные просмотры событий, переносимые из сервиса статистики
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS idx_events_views ON events (views);
+
+-- Граница переноса просмотров: одна строка, которую проход синхронизации держит заблокированной
+CREATE TABLE IF NOT EXISTS views_sync (
+    id INT PRIMARY KEY CHECK (id = 1),
+    last_sync TIMESTAMP
+);
+INSERT INTO views_sync (id) SELECT 1 WHERE NOT EXISTS (SELECT 1 FROM views_sync);
+
 --Таблица подборок
 CREATE TABLE IF NOT EXISTS compilations (
     compilation_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -67,4 +78,15 @@ CREATE TABLE IF NOT EXISTS comments (
     author_id BIGINT NOT NULL REFERENCES users (id) ON DELETE CASCADE,
     created TIMESTAMP NOT NULL DEFAULT NOW (),
     updated TiMESTAMP
-    );
\ No newline at end of file
+    );
+
+-- Число подтверждённых заявок события, поддерживаемое при изменении статусов заявок.
+-- Заполняется по таблице заявок для событий, где счётчик ещё не заполнен
+ALTER TABLE events ADD COLUMN IF NOT EXISTS confirmed_requests BIGINT NOT NULL DEFAULT 0;
+UPDATE events e SET confirmed_requests = (
+    SELECT COUNT(*) FROM participation_requests r WHERE r.event_id = e.id AND r.status = 'CONFIRMED')
+WHERE e.confirmed_requests = 0
+  AND EXISTS (SELECT 1 FROM participation_requests r WHERE r.event_id = e.id AND r.status = 'CONFIRMED');
+
+-- Комментарии загружаются по событию
+CREATE INDEX IF NOT EXISTS idx_comments_event ON comments (event_id, created);
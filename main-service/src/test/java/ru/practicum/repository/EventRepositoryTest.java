@@ -0,0 +1,135 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.Location;
+import ru.practicum.enums.EventState;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EventRepositoryTest {
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void reservesWithinParticipantLimit() {
+        long eventId = event(2);
+
+        assertEquals(1, reserve(eventId, 1));
+        assertEquals(1, reserve(eventId, 1));
+        assertEquals(0, reserve(eventId, 1));
+
+        assertEquals(2, confirmed(eventId));
+    }
+
+    @Test
+    void batchIsReservedWholeOrNotAtAll() {
+        long eventId = event(3);
+
+        assertEquals(1, reserve(eventId, 2));
+        assertEquals(0, reserve(eventId, 2));
+
+        assertEquals(2, confirmed(eventId));
+    }
+
+    @Test
+    void eventWithoutLimitAcceptsAnyCount() {
+        long eventId = event(0);
+
+        assertEquals(1, reserve(eventId, 100));
+
+        assertEquals(100, confirmed(eventId));
+    }
+
+    @Test
+    void releaseDoesNotGoBelowZero() {
+        long eventId = event(5);
+        reserve(eventId, 2);
+
+        assertEquals(0, release(eventId, 3));
+        assertEquals(1, release(eventId, 2));
+
+        assertEquals(0, confirmed(eventId));
+    }
+
+    @Test
+    void concurrentReservationsDoNotExceedLimit() throws Exception {
+        long eventId = event(5);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> reserve(eventId, 1));
+        }
+
+        int reserved = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (Future<Integer> result : executor.invokeAll(tasks)) {
+                reserved += result.get();
+            }
+        }
+
+        assertEquals(5, reserved);
+        assertEquals(5, confirmed(eventId));
+    }
+
+    private long event(int participantLimit) {
+        return transactionTemplate.execute(status -> {
+            String suffix = UUID.randomUUID().toString();
+            User user = userRepository.save(User.builder().name("user").email(suffix + "@mail.ru").build());
+            Category category = categoryRepository.save(Category.builder().name(suffix).build());
+            Event event = Event.builder()
+                    .title("title")
+                    .description("description")
+                    .annotation("annotation")
+                    .location(new Location(55.75, 37.61))
+                    .eventDate(LocalDateTime.now().plusDays(1))
+                    .category(category)
+                    .initiator(user)
+                    .state(EventState.PUBLISHED)
+                    .participantLimit(participantLimit)
+                    .requestModeration(true)
+                    .build();
+            return eventRepository.save(event).getId();
+        });
+    }
+
+    private int reserve(long eventId, long count) {
+        return transactionTemplate.execute(status -> eventRepository.reserveConfirmedRequests(eventId, count));
+    }
+
+    private int release(long eventId, long count) {
+        return transactionTemplate.execute(status -> eventRepository.releaseConfirmedRequests(eventId, count));
+    }
+
+    private long confirmed(long eventId) {
+        return transactionTemplate.execute(status -> eventRepository.findById(eventId).orElseThrow()
+                .getConfirmedRequests());
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnrichmentPipelineTest {
+
+    private final EnrichmentPipeline pipeline = new EnrichmentPipeline(Duration.ofMillis(300));
+
+    @AfterEach
+    void tearDown() {
+        pipeline.close();
+    }
+
+    @Test
+    void lookupsShareOneDeadline() {
+        EnrichmentPipeline.Enrichment enrichment = pipeline.start();
+        long started = System.nanoTime();
+
+        EnrichmentPipeline.Lookup<String> first = enrichment.fork("первая", () -> slow("a", 200), null);
+        EnrichmentPipeline.Lookup<String> second = enrichment.fork("вторая", () -> slow("b", 200), null);
+
+        assertEquals("a", first.get());
+        assertEquals("b", second.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 400);
+    }
+
+    @Test
+    void lookupMissingDeadlineReturnsFallback() {
+        EnrichmentPipeline.Enrichment enrichment = pipeline.start();
+
+        EnrichmentPipeline.Lookup<List<String>> comments = enrichment.fork("комментарии",
+                () -> slow(List.of("a"), 2_000), null);
+
+        assertNull(comments.get());
+    }
+
+    @Test
+    void failedLookupReturnsFallback() {
+        EnrichmentPipeline.Enrichment enrichment = pipeline.start();
+
+        EnrichmentPipeline.Lookup<Long> views = enrichment.fork("просмотры", () -> {
+            throw new IllegalStateException("нет связи");
+        }, -1L);
+
+        assertEquals(-1L, views.get());
+    }
+
+    @Test
+    void lookupWithoutFallbackIsNotBoundByDeadline() {
+        EnrichmentPipeline.Enrichment enrichment = pipeline.start();
+
+        EnrichmentPipeline.Lookup<Long> views = enrichment.fork("просмотры", () -> slow(42L, 500));
+
+        assertEquals(42L, views.get());
+    }
+
+    @Test
+    void lookupWithoutFallbackPropagatesError() {
+        EnrichmentPipeline.Enrichment enrichment = pipeline.start();
+
+        EnrichmentPipeline.Lookup<Long> views = enrichment.fork("просмотры", () -> {
+            throw new IllegalStateException("нет связи");
+        });
+
+        assertThrows(IllegalStateException.class, views::get);
+    }
+
+    private static <T> T slow(T value, long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
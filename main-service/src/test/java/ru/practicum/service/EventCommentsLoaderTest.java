@@ -0,0 +1,127 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.CommentEventResponseDto;
+import ru.practicum.dto.Location;
+import ru.practicum.enums.EventState;
+import ru.practicum.model.Category;
+import ru.practicum.model.Comment;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.CommentRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EventCommentsLoaderTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void loadsCommentsOfAllEventsOldestFirst() {
+        User author = user("author");
+        long first = event(author);
+        long second = event(author);
+        long empty = event(author);
+        comment(first, author, "first-1", CREATED);
+        comment(second, author, "second-1", CREATED.plusMinutes(5));
+        comment(first, author, "first-2", CREATED.plusMinutes(10));
+
+        Map<Long, List<CommentEventResponseDto>> comments = load(0, List.of(first, second, empty));
+
+        assertEquals(List.of("first-1", "first-2"), texts(comments.get(first)));
+        assertEquals(List.of("second-1"), texts(comments.get(second)));
+        assertEquals(List.of(), comments.get(empty));
+        assertEquals("author", comments.get(first).get(0).getAuthor().getName());
+        assertEquals(CREATED, comments.get(first).get(0).getCreated());
+    }
+
+    @Test
+    void perEventLimitKeepsNewestComments() {
+        User author = user("author");
+        long first = event(author);
+        long second = event(author);
+        for (int i = 1; i <= 4; i++) {
+            comment(first, author, "first-" + i, CREATED.plusMinutes(i));
+        }
+        comment(second, author, "second-1", CREATED);
+
+        Map<Long, List<CommentEventResponseDto>> comments = load(2, List.of(first, second));
+
+        assertEquals(List.of("first-3", "first-4"), texts(comments.get(first)));
+        assertEquals(List.of("second-1"), texts(comments.get(second)));
+    }
+
+    @Test
+    void noEventsMeansNoQuery() {
+        assertEquals(Map.of(), load(0, List.of()));
+    }
+
+    private Map<Long, List<CommentEventResponseDto>> load(int perEventLimit, List<Long> eventIds) {
+        EventCommentsLoader loader = new EventCommentsLoader(commentRepository, perEventLimit);
+        return transactionTemplate.execute(status -> loader.load(eventIds));
+    }
+
+    private static List<String> texts(List<CommentEventResponseDto> comments) {
+        return comments.stream().map(CommentEventResponseDto::getText).toList();
+    }
+
+    private User user(String name) {
+        return userRepository.save(User.builder().name(name).email(UUID.randomUUID() + "@mail.ru").build());
+    }
+
+    private long event(User initiator) {
+        Category category = categoryRepository.save(Category.builder().name(UUID.randomUUID().toString()).build());
+        Event event = Event.builder()
+                .title("title")
+                .description("description")
+                .annotation("annotation")
+                .location(new Location(55.75, 37.61))
+                .eventDate(LocalDateTime.now().plusDays(1))
+                .category(category)
+                .initiator(initiator)
+                .state(EventState.PUBLISHED)
+                .participantLimit(0)
+                .requestModeration(true)
+                .build();
+        return eventRepository.save(event).getId();
+    }
+
+    private void comment(long eventId, User author, String text, LocalDateTime created) {
+        commentRepository.save(Comment.builder()
+                .event(eventRepository.getReferenceById(eventId))
+                .author(author)
+                .text(text)
+                .created(created)
+                .build());
+    }
+}
@@ -0,0 +1,226 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.Location;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.enums.EventState;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.User;
+import ru.practicum.repository.CategoryRepository;
+import ru.practicum.repository.EventRepository;
+import ru.practicum.repository.UserRepository;
+import ru.practicum.repository.ViewsSyncRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ViewsSyncServiceTest {
+
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ViewsSyncRepository viewsSyncRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private FakeStatsClient statsClient;
+    private ViewsSyncService service;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statsClient = new FakeStatsClient();
+        service = new ViewsSyncService(eventRepository, viewsSyncRepository, statsClient, transactionManager,
+                true, 2, OVERLAP);
+        saveLastSync(null);
+    }
+
+    @Test
+    void firstSyncTakesAllPublishedEvents() {
+        long first = event();
+        long second = event();
+        long third = event();
+        statsClient.views(first, 5);
+        statsClient.views(second, 7);
+        statsClient.views(third, 1);
+
+        service.sync();
+
+        assertEquals(5, views(first));
+        assertEquals(7, views(second));
+        assertEquals(1, views(third));
+        assertTrue(lastSync() != null);
+    }
+
+    @Test
+    void nextSyncUpdatesOnlyVisitedEventsSinceWatermark() {
+        long visited = event();
+        long idle = event();
+        statsClient.views(visited, 5);
+        statsClient.views(idle, 7);
+        service.sync();
+        LocalDateTime watermark = lastSync();
+
+        statsClient.views(visited, 9);
+        statsClient.views(idle, 10);
+        statsClient.visited(visited);
+        statsClient.requests.clear();
+        service.sync();
+
+        assertEquals(9, views(visited));
+        assertEquals(7, views(idle));
+        assertEquals(watermark.minus(OVERLAP), statsClient.requests.getFirst().getStart());
+        assertTrue(lastSync().isAfter(watermark));
+    }
+
+    @Test
+    void emptyWindowKeepsWatermark() {
+        long eventId = event();
+        statsClient.views(eventId, 3);
+        service.sync();
+        LocalDateTime watermark = lastSync();
+
+        service.sync();
+
+        assertEquals(watermark, lastSync());
+    }
+
+    @Test
+    void syncIsSkippedWhileAnotherInstanceHoldsTheRow() throws Exception {
+        long eventId = event();
+        statsClient.views(eventId, 4);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread other = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            viewsSyncRepository.lock().orElseThrow();
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        other.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        service.sync();
+        release.countDown();
+        other.join();
+
+        assertTrue(statsClient.requests.isEmpty());
+        assertEquals(0, views(eventId));
+        assertNull(lastSync());
+    }
+
+    private long event() {
+        return transactionTemplate.execute(status -> {
+            String suffix = UUID.randomUUID().toString();
+            User user = userRepository.save(User.builder().name("user").email(suffix + "@mail.ru").build());
+            Category category = categoryRepository.save(Category.builder().name(suffix).build());
+            Event event = Event.builder()
+                    .title("title")
+                    .description("description")
+                    .annotation("annotation")
+                    .location(new Location(55.75, 37.61))
+                    .eventDate(LocalDateTime.now().plusDays(1))
+                    .category(category)
+                    .initiator(user)
+                    .state(EventState.PUBLISHED)
+                    .publishedOn(LocalDateTime.now().minusDays(1))
+                    .requestModeration(true)
+                    .build();
+            return eventRepository.save(event).getId();
+        });
+    }
+
+    private long views(long eventId) {
+        return transactionTemplate.execute(status -> eventRepository.findById(eventId).orElseThrow().getViews());
+    }
+
+    private LocalDateTime lastSync() {
+        return transactionTemplate.execute(status -> viewsSyncRepository.findById(1).orElseThrow().getLastSync());
+    }
+
+    private void saveLastSync(LocalDateTime lastSync) {
+        transactionTemplate.executeWithoutResult(status ->
+                viewsSyncRepository.findById(1).orElseThrow().setLastSync(lastSync));
+    }
+
+    /**
+     * Сервис статистики: уникальные просмотры по uri события и список uri, посещённых в окне.
+     */
+    private static class FakeStatsClient extends StatsClient {
+        private final Map<String, Long> views = new HashMap<>();
+        private final Set<String> visited = new HashSet<>();
+        private final List<ViewsStatsRequest> requests = new CopyOnWriteArrayList<>();
+
+        FakeStatsClient() {
+            super("http://localhost:0", false, 1, 1, Duration.ZERO, 0, Duration.ZERO, null, false, null,
+                    Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1), 5, Duration.ofSeconds(10),
+                    10, false, Duration.ofSeconds(5), 0.8, 10,
+                    new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        }
+
+        void views(long eventId, long hits) {
+            views.put("/events/" + eventId, hits);
+        }
+
+        void visited(long eventId) {
+            visited.add("/events/" + eventId);
+        }
+
+        @Override
+        public List<ViewStats> getFreshStats(List<ViewsStatsRequest> requests) {
+            this.requests.addAll(requests);
+            List<ViewStats> stats = new ArrayList<>();
+            for (ViewsStatsRequest request : requests) {
+                Set<String> uris = request.getUris().isEmpty() ? visited : request.getUris();
+                for (String uri : uris) {
+                    if (views.containsKey(uri)) {
+                        stats.add(new ViewStats("ewm-main-service", uri, views.get(uri)));
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+}
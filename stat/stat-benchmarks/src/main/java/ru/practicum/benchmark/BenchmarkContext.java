@@ -0,0 +1,131 @@
+package ru.practicum.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.StatsServiceApplication;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Общая часть бенчмарков: контекст stat-service на встроенной H2 в памяти и заполнение
+ * таблицы посещений синтетическими данными. Популярность uri распределена по закону Ципфа,
+ * ip выбираются из пула, время посещений равномерно распределено по последним DAYS суткам.
+ */
+public final class BenchmarkContext {
+
+    public static final String APP = "ewm-main-service";
+    public static final int DAYS = 30;
+    public static final int URIS = 1000;
+    public static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private static final int IPS = 50_000;
+    private static final int BATCH_SIZE = 5_000;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Запуск контекста без веб-сервера на отдельной базе H2 в памяти.
+     * properties дополняют и переопределяют настройки по умолчанию.
+     */
+    public static ConfigurableApplicationContext start(Map<String, Object> properties) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.main.banner-mode", "off");
+        defaults.put("spring.docker.compose.enabled", "false");
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        defaults.put("spring.datasource.username", "sa");
+        defaults.put("spring.datasource.password", "");
+        defaults.put("spring.sql.init.mode", "always");
+        defaults.put("spring.sql.init.platform", "h2");
+        defaults.put("spring.jpa.hibernate.ddl-auto", "none");
+        defaults.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("logging.level.org.hibernate.SQL", "WARN");
+        defaults.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        defaults.putAll(properties);
+        String[] args = defaults.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(StatsServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    public static String uri(int index) {
+        return "/events/" + index;
+    }
+
+    /**
+     * Первые count uri по популярности.
+     */
+    public static List<String> uris(int count) {
+        List<String> uris = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            uris.add(uri(i));
+        }
+        return uris;
+    }
+
+    public static String ip(SplittableRandom random) {
+        int ip = random.nextInt(IPS);
+        return "10." + (ip >>> 16) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+    }
+
+    /**
+     * Заполнение endpoint_hits: hits посещений за DAYS суток до {@link #NOW}.
+     */
+    public static void seed(JdbcTemplate jdbcTemplate, int hits, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] cumulative = zipf(URIS);
+        long window = DAYS * 24L * 3600;
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < hits; i++) {
+            batch.add(new Object[]{APP, uri(sample(cumulative, random.nextDouble())), ip(random),
+                    Timestamp.valueOf(NOW.minusSeconds(1 + random.nextLong(window)))});
+            if (batch.size() == BATCH_SIZE || i == hits - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO endpoint_hits (app, uri, ip, timestamp) VALUES (?, ?, ?, ?)",
+                        batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private static double[] zipf(int n) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low + 1;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.mapper.EndpointHitMapper;
+import ru.practicum.mapper.EndpointHitMapperImpl;
+import ru.practicum.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Преобразования {@link EndpointHitMapper} без контекста Spring: одиночное посещение и пакет размером batchSize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointHitMapperBenchmark {
+
+    @Param({"1", "500"})
+    private int batchSize;
+
+    private final EndpointHitMapper mapper = new EndpointHitMapperImpl();
+    private EndpointHitDto dto;
+    private EndpointHit entity;
+    private List<EndpointHitDto> dtos;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        dtos = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            dtos.add(new EndpointHitDto(BenchmarkContext.APP, BenchmarkContext.uri(1 + random.nextInt(BenchmarkContext.URIS)),
+                    BenchmarkContext.ip(random), BenchmarkContext.NOW.minusSeconds(i)));
+        }
+        dto = dtos.get(0);
+        entity = mapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public EndpointHit toEntity() {
+        return mapper.toEntity(dto);
+    }
+
+    @Benchmark
+    public List<EndpointHit> toEntityList() {
+        return mapper.toEntityList(dtos);
+    }
+
+    @Benchmark
+    public EndpointHitDto toDto() {
+        return mapper.toDto(entity);
+    }
+}
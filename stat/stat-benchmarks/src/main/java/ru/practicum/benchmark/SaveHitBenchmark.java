@@ -0,0 +1,85 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.service.StatsService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность записи посещений через {@link StatsService#saveHit} в каждом режиме приёма:
+ * sync — транзакция на посещение, buffered — очередь с пакетной записью, log — журнал на диске.
+ * Таблица заранее заполнена seedHits посещениями, чтобы учитывать стоимость индексов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SaveHitBenchmark {
+
+    @Param({"sync", "buffered", "log"})
+    private String mode;
+
+    @Param("100000")
+    private int seedHits;
+
+    private ConfigurableApplicationContext context;
+    private StatsService statsService;
+    private Path logDir;
+
+    @State(Scope.Thread)
+    public static class Hits {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        EndpointHitDto next() {
+            return new EndpointHitDto(BenchmarkContext.APP, BenchmarkContext.uri(1 + random.nextInt(BenchmarkContext.URIS)),
+                    BenchmarkContext.ip(random), BenchmarkContext.NOW);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logDir = Files.createTempDirectory("stat-bench-wal");
+        context = BenchmarkContext.start(Map.of(
+                "stat-service.ingest.mode", mode,
+                "stat-service.ingest.log.dir", logDir.toString()));
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), seedHits, 42);
+        statsService = context.getBean(StatsService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(logDir);
+    }
+
+    @Benchmark
+    public void saveHit(Hits hits) {
+        statsService.saveHit(hits.next());
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.repository.StatsRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запрос статистики к таблице посещений ({@link StatsRepository#getStats}) в обход кэшей и агрегатов.
+ * Параметры: размер таблицы, подсчёт уникальных ip, число uri в фильтре (0 — все) и длина периода,
+ * который заканчивается в {@link BenchmarkContext#NOW}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsRepositoryBenchmark {
+
+    @Param("100000")
+    private int hits;
+
+    @Param({"false", "true"})
+    private boolean unique;
+
+    @Param({"0", "1", "10", "100"})
+    private int uriCount;
+
+    @Param({"PT1H", "P1D", "P30D"})
+    private String window;
+
+    private ConfigurableApplicationContext context;
+    private StatsRepository statsRepository;
+    private LocalDateTime start;
+    private List<String> uris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "stat-service.rollup.enabled", "false",
+                "stat-service.sketch.enabled", "false",
+                "stat-service.hot-window.enabled", "false",
+                "stat-service.top.enabled", "false",
+                "stat-service.query-cache.enabled", "false"));
+        BenchmarkContext.seed(context.getBean(JdbcTemplate.class), hits, 42);
+        statsRepository = context.getBean(StatsRepository.class);
+        start = BenchmarkContext.NOW.minus(Duration.parse(window));
+        uris = uriCount == 0 ? null : BenchmarkContext.uris(uriCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ViewStats> getStats() {
+        return statsRepository.getStats(start, BenchmarkContext.NOW, uris, unique);
+    }
+}
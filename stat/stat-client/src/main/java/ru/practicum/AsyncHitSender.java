@@ -0,0 +1,146 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Фоновая отправка посещений в сервис статистики.
+ * Посещения копятся в ограниченной очереди и уходят пакетами: по достижении batchSize
+ * или по истечении linger с момента постановки первого посещения пакета.
+ */
+@Slf4j
+class AsyncHitSender {
+
+    enum DropPolicy {
+        /**
+         * При переполнении отбрасывается новое посещение
+         */
+        DROP_NEWEST,
+        /**
+         * При переполнении вытесняется самое старое посещение
+         */
+        DROP_OLDEST
+    }
+
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final Consumer<List<EndpointHitDto>> transport;
+    private final int batchSize;
+    private final Duration linger;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final DropPolicy dropPolicy;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    AsyncHitSender(Consumer<List<EndpointHitDto>> transport, int capacity, int batchSize, Duration linger,
+                   int maxRetries, Duration retryBackoff, DropPolicy dropPolicy) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.dropPolicy = dropPolicy;
+        this.worker = new Thread(this::sendLoop, "stats-hit-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    void enqueue(EndpointHitDto hit) {
+        if (dropPolicy == DropPolicy.DROP_OLDEST) {
+            while (!queue.offer(hit)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        } else if (!queue.offer(hit)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    int queueSize() {
+        return queue.size();
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    long sentCount() {
+        return sent.get();
+    }
+
+    private void sendLoop() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                EndpointHitDto first = queue.poll(linger.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + linger.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    EndpointHitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                sendWithRetries(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendWithRetries(List<EndpointHitDto> batch) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                transport.accept(batch);
+                sent.addAndGet(batch.size());
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries || !running) {
+                    dropped.addAndGet(batch.size());
+                    log.error("Не удалось отправить пакет статистики после {} попыток, отброшено: {}",
+                            attempt + 1, batch.size(), e);
+                    return;
+                }
+                log.warn("Ошибка отправки пакета статистики, попытка {}: {}", attempt + 1, e.getMessage());
+                Thread.sleep(retryBackoff.toMillis() * (attempt + 1));
+            }
+        }
+    }
+
+    /**
+     * Остановка отправителя с попыткой доставить остаток очереди.
+     */
+    void close() throws InterruptedException {
+        running = false;
+        worker.join(linger.toMillis() * 2);
+        List<EndpointHitDto> rest = new ArrayList<>(queue.size());
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            sendWithRetries(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum;
+
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewsStatsRequest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Последние полученные от сервиса статистики значения просмотров. Ключ — uri, начало периода
+ * с точностью до минуты и признак уникальности; конец периода не учитывается, так как
+ * запрашивается статистика по текущий момент. Хранится не больше maxEntries значений,
+ * давно не использованные вытесняются.
+ */
+class LastKnownStats {
+
+    private final Map<Key, Value> values;
+
+    LastKnownStats(int maxEntries) {
+        this.values = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    void remember(ViewsStatsRequest request, List<ViewStats> stats) {
+        if (request.getUris() == null || request.getUris().isEmpty()) {
+            return;
+        }
+        synchronized (values) {
+            for (ViewStats row : stats) {
+                if (row.getHits() != null && request.getUris().contains(row.getUri())) {
+                    values.put(Key.of(request, row.getUri()), new Value(row.getApp(), row.getHits()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Последние известные значения по uri запроса, помеченные как устаревшие.
+     * Для uri без сохранённого значения строк нет.
+     */
+    List<ViewStats> recall(ViewsStatsRequest request) {
+        if (request.getUris() == null || request.getUris().isEmpty()) {
+            return List.of();
+        }
+        List<ViewStats> result = new ArrayList<>();
+        synchronized (values) {
+            for (String uri : request.getUris()) {
+                Value value = values.get(Key.of(request, uri));
+                if (value != null) {
+                    ViewStats row = new ViewStats(value.app(), uri, value.hits());
+                    row.setStale(true);
+                    result.add(row);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    private record Key(String uri, LocalDateTime start, boolean unique) {
+        static Key of(ViewsStatsRequest request, String uri) {
+            LocalDateTime start = request.getStart() == null ? null : request.getStart().truncatedTo(ChronoUnit.MINUTES);
+            return new Key(uri, start, request.isUnique());
+        }
+    }
+
+    private record Value(String app, long hits) {
+    }
+}
@@ -1,38 +1,128 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestClient;
+import ru.practicum.codec.StatsBinaryHttpMessageConverter;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.ViewStats;
 import ru.practicum.dto.ViewsStatsRequest;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @Component
 public class StatsClient {
     private final RestClient restClient;
+    private final RestClient statsRestClient;
+    private final AsyncHitSender hitSender;
+    private final CircuitBreaker breaker;
+    private final LastKnownStats lastKnown;
+    private final ViewStatsCache cache;
+    private final Counter staleResponses;
+    private final boolean approximateUnique;
+    private final MediaType wireType;
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ParameterizedTypeReference<List<EndpointHitDto>> HITS_TYPE = new ParameterizedTypeReference<>() {
+    };
 
-    public StatsClient(@Value("${stat-service.url}") String statsServiceUrl) {
-        this.restClient = RestClient.builder()
+    /**
+     * Формат тел запросов с посещениями и ответов со статистикой. В режиме binary ответ JSON
+     * тоже принимается, но отправка посещений требует stat-service с поддержкой application/x-ewm-stats.
+     */
+    enum WireFormat {
+        JSON,
+        BINARY
+    }
+
+    public StatsClient(@Value("${stat-service.url}") String statsServiceUrl,
+                       @Value("${stat-client.hits.async:true}") boolean async,
+                       @Value("${stat-client.hits.queue-capacity:10000}") int queueCapacity,
+                       @Value("${stat-client.hits.batch-size:200}") int batchSize,
+                       @Value("${stat-client.hits.linger:500ms}") Duration linger,
+                       @Value("${stat-client.hits.max-retries:3}") int maxRetries,
+                       @Value("${stat-client.hits.retry-backoff:200ms}") Duration retryBackoff,
+                       @Value("${stat-client.hits.drop-policy:drop-newest}") AsyncHitSender.DropPolicy dropPolicy,
+                       @Value("${stat-client.stats.approximate-unique:false}") boolean approximateUnique,
+                       @Value("${stat-client.wire-format:json}") WireFormat wireFormat,
+                       @Value("${stat-client.connect-timeout:1s}") Duration connectTimeout,
+                       @Value("${stat-client.hits.timeout:5s}") Duration hitsTimeout,
+                       @Value("${stat-client.stats.timeout:1s}") Duration statsTimeout,
+                       @Value("${stat-client.stats.breaker.failure-threshold:5}") int failureThreshold,
+                       @Value("${stat-client.stats.breaker.open-duration:10s}") Duration openDuration,
+                       @Value("${stat-client.stats.last-known.max-entries:100000}") int lastKnownMaxEntries,
+                       @Value("${stat-client.stats.cache.enabled:false}") boolean cacheEnabled,
+                       @Value("${stat-client.stats.cache.ttl:5s}") Duration cacheTtl,
+                       @Value("${stat-client.stats.cache.refresh-ahead:0.8}") double cacheRefreshAhead,
+                       @Value("${stat-client.stats.cache.max-entries:10000}") int cacheMaxEntries,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
+        this.wireType = wireFormat == WireFormat.BINARY
+                ? StatsBinaryHttpMessageConverter.MEDIA_TYPE
+                : MediaType.APPLICATION_JSON;
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .build();
+        RestClient.Builder builder = RestClient.builder()
                 .baseUrl(statsServiceUrl)
-                .defaultHeaders(headers -> headers.setContentType(MediaType.APPLICATION_JSON))
+                .messageConverters(converters -> converters.add(0, new StatsBinaryHttpMessageConverter()))
+                .defaultHeaders(headers -> headers.setAccept(wireFormat == WireFormat.BINARY
+                        ? List.of(StatsBinaryHttpMessageConverter.MEDIA_TYPE, MediaType.APPLICATION_JSON)
+                        : List.of(MediaType.APPLICATION_JSON)));
+        this.restClient = builder.clone()
+                .requestFactory(requestFactory(httpClient, hitsTimeout))
                 .build();
+        this.statsRestClient = builder
+                .requestFactory(requestFactory(httpClient, statsTimeout))
+                .build();
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.lastKnown = new LastKnownStats(lastKnownMaxEntries);
+        this.cache = cacheEnabled ? new ViewStatsCache(cacheTtl, cacheRefreshAhead, cacheMaxEntries) : null;
+        this.hitSender = async
+                ? new AsyncHitSender(this::postHits, queueCapacity, batchSize, linger, maxRetries, retryBackoff, dropPolicy)
+                : null;
+        this.approximateUnique = approximateUnique;
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.staleResponses = registry == null ? null : bindMetrics(registry);
+    }
+
+    private static JdkClientHttpRequestFactory requestFactory(HttpClient httpClient, Duration timeout) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(timeout);
+        return factory;
     }
 
+    /**
+     * Регистрация посещения. В асинхронном режиме посещение ставится в очередь
+     * и отправляется фоновым потоком, не задерживая обработку запроса.
+     */
     public void sendHit(EndpointHitDto hit) {
+        if (hitSender != null) {
+            log.debug("Постановка статистики в очередь: {}", hit);
+            hitSender.enqueue(hit);
+            return;
+        }
         log.info("Отправка статистики: {}", hit);
         try {
             restClient.post()
                     .uri("/hit")
+                    .contentType(wireType)
                     .body(hit)
                     .retrieve()
                     .toBodilessEntity();
@@ -43,28 +133,175 @@ public class StatsClient {
         }
     }
 
+    public void sendHits(List<EndpointHitDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        log.info("Отправка пакета статистики, количество: {}", hits.size());
+        try {
+            postHits(hits);
+        } catch (HttpStatusCodeException e) {
+            log.error("Ошибка отправки пакета статистики: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+        } catch (Exception e) {
+            log.error("Ошибка при отправке пакета статистики: {}", e.getMessage(), e);
+        }
+    }
+
+    private void postHits(List<EndpointHitDto> hits) {
+        restClient.post()
+                .uri("/hits")
+                .contentType(wireType)
+                .body(hits, HITS_TYPE)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    /**
+     * Статистика по списку запросов. Несколько запросов отправляются одним вызовом POST /stats/query.
+     * Ожидание ответа ограничено stat-client.stats.timeout. Если сервис не ответил вовремя, вернул
+     * ошибку 5xx или вызовы приостановлены предохранителем, возвращаются последние известные значения
+     * с признаком stale; uri без таких значений в ответ не попадают.
+     * При stat-client.stats.cache.enabled значения по uri берутся из локального кэша, см. {@link ViewStatsCache}.
+     */
     public List<ViewStats> getStats(List<ViewsStatsRequest> requests) {
-        List<ViewStats> allStats = new ArrayList<>();
-        for (ViewsStatsRequest req : requests) {
-            try {
-                List<ViewStats> stats = restClient.get()
-                        .uri(uriBuilder -> uriBuilder.path("/stats")
-                                .queryParam("start", DTF.format(req.getStart()))
-                                .queryParam("end", DTF.format(req.getEnd()))
-                                .queryParam("uris", req.getUris())
-                                .queryParam("unique", req.isUnique())
-                                .build())
-                        .retrieve()
-                        .body(new ParameterizedTypeReference<>() {
-                        });
-                assert stats != null;
-                allStats.addAll(stats);
-            } catch (HttpStatusCodeException e) {
-                log.error("Ошибка получения статистики: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            } catch (Exception e) {
-                log.error("Ошибка при запросе статистики: {}", e.getMessage(), e);
-            }
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        if (cache != null) {
+            return cache.get(requests, this::load);
+        }
+        return load(requests).stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Статистика по списку запросов без локального кэша: для фоновых задач, которым нужны свежие
+     * значения и которые не должны вытеснять из кэша значения для чтения.
+     */
+    public List<ViewStats> getFreshStats(List<ViewsStatsRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        return load(requests).stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Загрузка статистики из сервиса: по списку строк на каждый запрос, в том же порядке.
+     */
+    private List<List<ViewStats>> load(List<ViewsStatsRequest> requests) {
+        if (!breaker.allowRequest()) {
+            log.debug("Запросы статистики приостановлены, используются последние известные значения");
+            return recall(requests);
+        }
+        List<List<ViewStats>> stats;
+        try {
+            stats = requests.size() > 1 ? fetchBatch(requests) : List.of(fetch(requests.getFirst()));
+        } catch (HttpClientErrorException e) {
+            breaker.onSuccess();
+            log.error("Ошибка получения статистики: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
+            return requests.stream().map(req -> List.<ViewStats>of()).toList();
+        } catch (Exception e) {
+            breaker.onFailure();
+            log.error("Ошибка при запросе статистики, используются последние известные значения: {}",
+                    e instanceof CancellationException ? "превышено время ожидания ответа" : e.getMessage());
+            return recall(requests);
+        }
+        breaker.onSuccess();
+        List<List<ViewStats>> result = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            List<ViewStats> rows = i < stats.size() ? stats.get(i) : List.of();
+            lastKnown.remember(requests.get(i), rows);
+            result.add(rows);
+        }
+        return result;
+    }
+
+    private List<ViewStats> fetch(ViewsStatsRequest req) {
+        List<ViewStats> stats = statsRestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/stats")
+                        .queryParam("start", DTF.format(req.getStart()))
+                        .queryParam("end", DTF.format(req.getEnd()))
+                        .queryParam("uris", req.getUris())
+                        .queryParam("unique", req.isUnique())
+                        .queryParam("approximate", isApproximate(req))
+                        .build())
+                .retrieve()
+                .body(new ParameterizedTypeReference<>() {
+                });
+        return stats == null ? List.of() : stats;
+    }
+
+    private List<List<ViewStats>> fetchBatch(List<ViewsStatsRequest> requests) {
+        List<ViewsStatsRequest> body = requests.stream()
+                .map(req -> req.toBuilder().approximate(isApproximate(req)).build())
+                .toList();
+        List<List<ViewStats>> stats = statsRestClient.post()
+                .uri("/stats/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(new ParameterizedTypeReference<>() {
+                });
+        return stats == null ? List.of() : stats;
+    }
+
+    private List<List<ViewStats>> recall(List<ViewsStatsRequest> requests) {
+        List<List<ViewStats>> stats = requests.stream().map(lastKnown::recall).toList();
+        if (staleResponses != null) {
+            staleResponses.increment();
+        }
+        return stats;
+    }
+
+    private boolean isApproximate(ViewsStatsRequest req) {
+        return req.isApproximate() || req.isUnique() && approximateUnique;
+    }
+
+    private Counter bindMetrics(MeterRegistry registry) {
+        Gauge.builder("stats.client.stats.breaker.state", breaker, b -> b.state().ordinal())
+                .description("Состояние предохранителя запросов статистики: 0 - закрыт, 1 - разомкнут, 2 - пробный вызов")
+                .register(registry);
+        Gauge.builder("stats.client.stats.last-known.size", lastKnown, LastKnownStats::size)
+                .description("Сохранённые последние известные значения просмотров")
+                .register(registry);
+        Counter stale = Counter.builder("stats.client.stats.stale")
+                .description("Ответы на запросы статистики из последних известных значений")
+                .register(registry);
+        if (cache != null) {
+            Gauge.builder("stats.client.stats.cache.size", cache, ViewStatsCache::size)
+                    .description("Значения просмотров в локальном кэше")
+                    .register(registry);
+            FunctionCounter.builder("stats.client.stats.cache.hits", cache, ViewStatsCache::hitCount)
+                    .description("Uri, просмотры которых взяты из локального кэша")
+                    .register(registry);
+            FunctionCounter.builder("stats.client.stats.cache.misses", cache, ViewStatsCache::missCount)
+                    .description("Uri, просмотры которых загружены из сервиса статистики при чтении")
+                    .register(registry);
+            FunctionCounter.builder("stats.client.stats.cache.refreshes", cache, ViewStatsCache::refreshCount)
+                    .description("Фоновые обновления кэша просмотров")
+                    .register(registry);
+        }
+        if (hitSender == null) {
+            return stale;
+        }
+        Gauge.builder("stats.client.hits.queue.size", hitSender, AsyncHitSender::queueSize)
+                .description("Посещения, ожидающие отправки в сервис статистики")
+                .register(registry);
+        FunctionCounter.builder("stats.client.hits.dropped", hitSender, AsyncHitSender::droppedCount)
+                .description("Посещения, отброшенные из-за переполнения очереди или ошибок отправки")
+                .register(registry);
+        FunctionCounter.builder("stats.client.hits.sent", hitSender, AsyncHitSender::sentCount)
+                .description("Посещения, доставленные в сервис статистики")
+                .register(registry);
+        return stale;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (cache != null) {
+            cache.close();
+        }
+        if (hitSender != null) {
+            hitSender.close();
         }
-        return allStats;
     }
 }
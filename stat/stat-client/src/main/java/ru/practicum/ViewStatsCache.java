@@ -0,0 +1,207 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Локальный кэш просмотров по uri. Значение живёт ttl; если к нему обращаются после
+ * refreshAhead * ttl, оно отдаётся из кэша, а новое значение загружается в фоне — часто
+ * читаемые uri обновляются без ожидания сервиса статистики. Хранится не больше maxEntries
+ * значений, давно не использованные вытесняются.
+ * <p>
+ * Ключ — uri, начало периода с точностью до минуты и признак уникальности. Конец периода
+ * не учитывается: кэшируются только запросы по текущий момент, запросы с концом периода
+ * в прошлом и без списка uri идут в сервис напрямую. Uri без просмотров тоже кэшируются,
+ * устаревшие значения из ответа (stale) — нет.
+ */
+@Slf4j
+class ViewStatsCache {
+
+    private final long ttlNanos;
+    private final long refreshNanos;
+    private final Duration ttl;
+    private final Map<Key, Entry> entries;
+    private final Set<Key> refreshing = new HashSet<>();
+    private final ExecutorService refresher = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    ViewStatsCache(Duration ttl, double refreshAhead, int maxEntries) {
+        this.ttl = ttl;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshNanos = (long) (ttlNanos * Math.min(1.0, Math.max(0.0, refreshAhead)));
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Статистика по запросам: свежие значения берутся из кэша, остальные загружаются через loader
+     * одним вызовом. Loader возвращает по списку строк на каждый запрос, в том же порядке.
+     */
+    List<ViewStats> get(List<ViewsStatsRequest> requests,
+                        Function<List<ViewsStatsRequest>, List<List<ViewStats>>> loader) {
+        long now = System.nanoTime();
+        LocalDateTime oldestEnd = LocalDateTime.now().minus(ttl);
+        List<ViewStats> result = new ArrayList<>();
+        List<ViewsStatsRequest> missed = new ArrayList<>();
+        List<Boolean> cacheable = new ArrayList<>();
+        List<ViewsStatsRequest> refresh = new ArrayList<>();
+        for (ViewsStatsRequest req : requests) {
+            if (req.getUris() == null || req.getUris().isEmpty()
+                    || req.getEnd() != null && req.getEnd().isBefore(oldestEnd)) {
+                missed.add(req);
+                cacheable.add(false);
+                continue;
+            }
+            Set<String> missedUris = new HashSet<>();
+            Set<String> refreshUris = new HashSet<>();
+            synchronized (entries) {
+                for (String uri : req.getUris()) {
+                    Key key = Key.of(req, uri);
+                    Entry entry = entries.get(key);
+                    long age = entry == null ? Long.MAX_VALUE : now - entry.loadedAt();
+                    if (age >= ttlNanos) {
+                        missedUris.add(uri);
+                        continue;
+                    }
+                    if (entry.hits() != null) {
+                        result.add(new ViewStats(entry.app(), uri, entry.hits()));
+                    }
+                    if (age >= refreshNanos && refreshing.add(key)) {
+                        refreshUris.add(uri);
+                    }
+                }
+            }
+            hits.addAndGet(req.getUris().size() - missedUris.size());
+            misses.addAndGet(missedUris.size());
+            if (!missedUris.isEmpty()) {
+                missed.add(req.toBuilder().clearUris().uris(missedUris).build());
+                cacheable.add(true);
+            }
+            if (!refreshUris.isEmpty()) {
+                refresh.add(req.toBuilder().clearUris().uris(refreshUris).build());
+            }
+        }
+        if (!missed.isEmpty()) {
+            List<List<ViewStats>> loaded = loader.apply(missed);
+            for (int i = 0; i < missed.size(); i++) {
+                List<ViewStats> rows = i < loaded.size() ? loaded.get(i) : List.of();
+                result.addAll(rows);
+                if (cacheable.get(i)) {
+                    put(missed.get(i), rows);
+                }
+            }
+        }
+        if (!refresh.isEmpty()) {
+            refreshAsync(refresh, loader);
+        }
+        result.sort(Comparator.comparing(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    private void refreshAsync(List<ViewsStatsRequest> requests,
+                              Function<List<ViewsStatsRequest>, List<List<ViewStats>>> loader) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    List<List<ViewStats>> loaded = loader.apply(requests);
+                    for (int i = 0; i < requests.size() && i < loaded.size(); i++) {
+                        put(requests.get(i), loaded.get(i));
+                    }
+                    refreshes.incrementAndGet();
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось обновить кэш просмотров: {}", e.getMessage());
+                } finally {
+                    release(requests);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(requests);
+        }
+    }
+
+    /**
+     * Сохранение ответа по запросу. Uri запроса без строки в ответе сохраняются как uri без просмотров.
+     * Ответ с устаревшими значениями не сохраняется: в кэше остаётся прежнее значение.
+     */
+    private void put(ViewsStatsRequest req, List<ViewStats> rows) {
+        if (rows.stream().anyMatch(ViewStats::isStale)) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            for (String uri : req.getUris()) {
+                entries.put(Key.of(req, uri), new Entry(null, null, now));
+            }
+            for (ViewStats row : rows) {
+                if (req.getUris().contains(row.getUri())) {
+                    entries.put(Key.of(req, row.getUri()), new Entry(row.getApp(), row.getHits(), now));
+                }
+            }
+        }
+    }
+
+    private void release(List<ViewsStatsRequest> requests) {
+        synchronized (entries) {
+            for (ViewsStatsRequest req : requests) {
+                for (String uri : req.getUris()) {
+                    refreshing.remove(Key.of(req, uri));
+                }
+            }
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long hitCount() {
+        return hits.get();
+    }
+
+    long missCount() {
+        return misses.get();
+    }
+
+    long refreshCount() {
+        return refreshes.get();
+    }
+
+    void close() {
+        refresher.shutdownNow();
+    }
+
+    private record Key(String uri, LocalDateTime start, boolean unique) {
+        static Key of(ViewsStatsRequest request, String uri) {
+            LocalDateTime start = request.getStart() == null ? null : request.getStart().truncatedTo(ChronoUnit.MINUTES);
+            return new Key(uri, start, request.isUnique());
+        }
+    }
+
+    private record Entry(String app, Long hits, long loadedAt) {
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncHitSenderTest {
+
+    private static final Duration LINGER = Duration.ofMillis(50);
+    private static final Duration BACKOFF = Duration.ofMillis(1);
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    void dropNewestKeepsQueuedHits() throws Exception {
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncHitSender sender = new AsyncHitSender(blocking(taken, release), 2, 1, LINGER, 0, BACKOFF,
+                AsyncHitSender.DropPolicy.DROP_NEWEST);
+        sender.enqueue(hit("/events/1"));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+
+        sender.enqueue(hit("/events/2"));
+        sender.enqueue(hit("/events/3"));
+        sender.enqueue(hit("/events/4"));
+        release.countDown();
+        sender.close();
+
+        assertEquals(1, sender.droppedCount());
+        assertEquals(List.of("/events/1", "/events/2", "/events/3"), delivered);
+    }
+
+    @Test
+    void dropOldestEvictsHeadOfQueue() throws Exception {
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncHitSender sender = new AsyncHitSender(blocking(taken, release), 2, 1, LINGER, 0, BACKOFF,
+                AsyncHitSender.DropPolicy.DROP_OLDEST);
+        sender.enqueue(hit("/events/1"));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+
+        sender.enqueue(hit("/events/2"));
+        sender.enqueue(hit("/events/3"));
+        sender.enqueue(hit("/events/4"));
+        release.countDown();
+        sender.close();
+
+        assertEquals(1, sender.droppedCount());
+        assertEquals(List.of("/events/1", "/events/3", "/events/4"), delivered);
+    }
+
+    @Test
+    void failedBatchIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AsyncHitSender sender = new AsyncHitSender(batch -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("сервис статистики недоступен");
+            }
+            batch.forEach(hit -> delivered.add(hit.getUri()));
+        }, 10, 10, LINGER, 3, BACKOFF, AsyncHitSender.DropPolicy.DROP_NEWEST);
+
+        sender.enqueue(hit("/events/1"));
+        sender.enqueue(hit("/events/2"));
+        awaitUntil(() -> sender.sentCount() == 2);
+        sender.close();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, sender.sentCount());
+        assertEquals(0, sender.droppedCount());
+        assertEquals(List.of("/events/1", "/events/2"), delivered);
+    }
+
+    @Test
+    void batchIsDroppedAfterLastRetry() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        AsyncHitSender sender = new AsyncHitSender(batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("сервис статистики недоступен");
+        }, 10, 10, LINGER, 2, BACKOFF, AsyncHitSender.DropPolicy.DROP_NEWEST);
+
+        sender.enqueue(hit("/events/1"));
+        sender.enqueue(hit("/events/2"));
+        awaitUntil(() -> sender.droppedCount() == 2);
+        sender.close();
+
+        assertEquals(3, attempts.get());
+        assertEquals(0, sender.sentCount());
+        assertEquals(2, sender.droppedCount());
+    }
+
+    @Test
+    void hitsAreSentInBatchesOfBatchSize() throws Exception {
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        CountDownLatch sent = new CountDownLatch(2);
+        AsyncHitSender sender = new AsyncHitSender(batch -> {
+            sizes.add(batch.size());
+            sent.countDown();
+        }, 10, 3, Duration.ofSeconds(5), 0, BACKOFF, AsyncHitSender.DropPolicy.DROP_NEWEST);
+
+        for (int i = 0; i < 6; i++) {
+            sender.enqueue(hit("/events/" + i));
+        }
+
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 3), sizes);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Транспорт, который задерживает первый пакет до release, чтобы очередь успела заполниться.
+     */
+    private Consumer<List<EndpointHitDto>> blocking(CountDownLatch taken, CountDownLatch release) {
+        return batch -> {
+            taken.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batch.forEach(hit -> delivered.add(hit.getUri()));
+        };
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return new EndpointHitDto("ewm-main-service", uri, "10.0.0.1", LocalDateTime.now());
+    }
+}
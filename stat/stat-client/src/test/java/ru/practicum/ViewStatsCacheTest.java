@@ -0,0 +1,161 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewsStatsRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ViewStatsCacheTest {
+
+    private static final String APP = "ewm-main-service";
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private final Map<String, Long> views = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private boolean stale;
+    private ViewStatsCache cache;
+
+    @AfterEach
+    void close() {
+        cache.close();
+    }
+
+    @Test
+    void freshValueIsServedFromCache() {
+        cache = new ViewStatsCache(Duration.ofMinutes(1), 1.0, 100);
+        views.put("/events/1", 5L);
+
+        assertEquals(List.of(stats("/events/1", 5)), cache.get(List.of(request("/events/1")), this::load));
+        views.put("/events/1", 6L);
+        assertEquals(List.of(stats("/events/1", 5)), cache.get(List.of(request("/events/1")), this::load));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void onlyMissingUrisAreLoaded() {
+        cache = new ViewStatsCache(Duration.ofMinutes(1), 1.0, 100);
+        views.put("/events/1", 5L);
+        views.put("/events/2", 7L);
+        cache.get(List.of(request("/events/1")), this::load);
+
+        List<ViewsStatsRequest> loaded = new ArrayList<>();
+        List<ViewStats> result = cache.get(List.of(request("/events/1", "/events/2", "/events/3")), requests -> {
+            loaded.addAll(requests);
+            return load(requests);
+        });
+
+        assertEquals(List.of(stats("/events/2", 7), stats("/events/1", 5)), result);
+        assertEquals(1, loaded.size());
+        assertEquals(Set.of("/events/2", "/events/3"), loaded.get(0).getUris());
+        cache.get(List.of(request("/events/3")), this::load);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void expiredValueIsReloaded() throws Exception {
+        cache = new ViewStatsCache(Duration.ofMillis(20), 1.0, 100);
+        views.put("/events/1", 5L);
+        cache.get(List.of(request("/events/1")), this::load);
+        views.put("/events/1", 6L);
+
+        TimeUnit.MILLISECONDS.sleep(40);
+
+        assertEquals(List.of(stats("/events/1", 6)), cache.get(List.of(request("/events/1")), this::load));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void readAfterRefreshAheadReturnsCachedValueAndReloadsInBackground() throws Exception {
+        cache = new ViewStatsCache(Duration.ofMinutes(1), 0.0, 100);
+        views.put("/events/1", 5L);
+        cache.get(List.of(request("/events/1")), this::load);
+        views.put("/events/1", 6L);
+
+        assertEquals(List.of(stats("/events/1", 5)), cache.get(List.of(request("/events/1")), this::load));
+        awaitUntil(() -> cache.refreshCount() == 1);
+
+        assertEquals(List.of(stats("/events/1", 6)), cache.get(List.of(request("/events/1")), this::load));
+    }
+
+    @Test
+    void staleResponseIsNotCached() {
+        cache = new ViewStatsCache(Duration.ofMinutes(1), 1.0, 100);
+        views.put("/events/1", 5L);
+        stale = true;
+        cache.get(List.of(request("/events/1")), this::load);
+        stale = false;
+
+        cache.get(List.of(request("/events/1")), this::load);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void pastPeriodsBypassCacheAndEldestEntriesAreEvicted() {
+        cache = new ViewStatsCache(Duration.ofMinutes(1), 1.0, 2);
+        ViewsStatsRequest past = request("/events/1").toBuilder().end(START.plusDays(1)).build();
+        cache.get(List.of(past), this::load);
+        cache.get(List.of(past), this::load);
+        assertEquals(0, cache.size());
+        assertEquals(2, calls.get());
+
+        cache.get(List.of(request("/events/1", "/events/2", "/events/3")), this::load);
+
+        assertEquals(2, cache.size());
+    }
+
+    private List<List<ViewStats>> load(List<ViewsStatsRequest> requests) {
+        calls.incrementAndGet();
+        List<List<ViewStats>> result = new ArrayList<>();
+        for (ViewsStatsRequest request : requests) {
+            List<ViewStats> rows = new ArrayList<>();
+            for (String uri : request.getUris()) {
+                Long hits = views.get(uri);
+                if (hits != null) {
+                    ViewStats row = stats(uri, hits);
+                    row.setStale(stale);
+                    rows.add(row);
+                }
+            }
+            result.add(rows);
+        }
+        return result;
+    }
+
+    private static ViewsStatsRequest request(String... uris) {
+        return ViewsStatsRequest.builder()
+                .uris(List.of(uris))
+                .start(START)
+                .end(LocalDateTime.now())
+                .build();
+    }
+
+    private static ViewStats stats(String uri, long hits) {
+        return new ViewStats(APP, uri, hits);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
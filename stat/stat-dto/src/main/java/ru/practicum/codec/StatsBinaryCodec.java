@@ -0,0 +1,291 @@
+package ru.practicum.codec;
+
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компактный двоичный формат обмена между StatsClient и stat-service (тип application/x-ewm-stats).
+ * <p>
+ * Сообщение начинается с заголовка: два байта 'E', 'S', версия формата и тип содержимого.
+ * Целые числа пишутся как varint (LEB128), время посещения — разницей в секундах с предыдущим
+ * посещением в zigzag-кодировании. Строки (app, uri, ip) пишутся один раз на сообщение,
+ * повторы заменяются номером в таблице строк: 0 — null, 1 — новая строка (длина и UTF-8),
+ * n ≥ 2 — строка с номером n - 2. Время передаётся с точностью до секунды, как и в JSON.
+ * <p>
+ * Размер списка в сообщении не больше maxListSize, по умолчанию {@link #DEFAULT_MAX_LIST_SIZE}.
+ * Память под список выделяется по мере чтения элементов, а не по заявленному размеру, поэтому
+ * короткое сообщение с огромным размером отклоняется, не занимая памяти.
+ */
+public final class StatsBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-ewm-stats";
+
+    public static final byte TYPE_HIT = 1;
+    public static final byte TYPE_HITS = 2;
+    public static final byte TYPE_STATS = 3;
+    public static final byte TYPE_STATS_BATCH = 4;
+
+    public static final int DEFAULT_MAX_LIST_SIZE = 100_000;
+
+    private static final byte MAGIC_1 = 'E';
+    private static final byte MAGIC_2 = 'S';
+    private static final byte VERSION = 1;
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private StatsBinaryCodec() {
+    }
+
+    public static void writeHit(EndpointHitDto hit, OutputStream out) throws IOException {
+        Writer writer = new Writer(out, TYPE_HIT);
+        writer.hit(hit);
+        writer.flush();
+    }
+
+    public static void writeHits(List<EndpointHitDto> hits, OutputStream out) throws IOException {
+        Writer writer = new Writer(out, TYPE_HITS);
+        writer.varint(hits.size());
+        for (EndpointHitDto hit : hits) {
+            writer.hit(hit);
+        }
+        writer.flush();
+    }
+
+    public static void writeStats(List<ViewStats> stats, OutputStream out) throws IOException {
+        Writer writer = new Writer(out, TYPE_STATS);
+        writer.stats(stats);
+        writer.flush();
+    }
+
+    public static void writeStatsBatch(List<List<ViewStats>> batch, OutputStream out) throws IOException {
+        Writer writer = new Writer(out, TYPE_STATS_BATCH);
+        writer.varint(batch.size());
+        for (List<ViewStats> stats : batch) {
+            writer.stats(stats);
+        }
+        writer.flush();
+    }
+
+    public static EndpointHitDto readHit(InputStream in) throws IOException {
+        return new Reader(in, TYPE_HIT, DEFAULT_MAX_LIST_SIZE).hit();
+    }
+
+    public static List<EndpointHitDto> readHits(InputStream in) throws IOException {
+        return readHits(in, DEFAULT_MAX_LIST_SIZE);
+    }
+
+    public static List<EndpointHitDto> readHits(InputStream in, int maxListSize) throws IOException {
+        Reader reader = new Reader(in, TYPE_HITS, maxListSize);
+        int size = reader.listSize();
+        List<EndpointHitDto> hits = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            hits.add(reader.hit());
+        }
+        return hits;
+    }
+
+    public static List<ViewStats> readStats(InputStream in) throws IOException {
+        return readStats(in, DEFAULT_MAX_LIST_SIZE);
+    }
+
+    public static List<ViewStats> readStats(InputStream in, int maxListSize) throws IOException {
+        return new Reader(in, TYPE_STATS, maxListSize).stats();
+    }
+
+    public static List<List<ViewStats>> readStatsBatch(InputStream in) throws IOException {
+        return readStatsBatch(in, DEFAULT_MAX_LIST_SIZE);
+    }
+
+    public static List<List<ViewStats>> readStatsBatch(InputStream in, int maxListSize) throws IOException {
+        Reader reader = new Reader(in, TYPE_STATS_BATCH, maxListSize);
+        int size = reader.listSize();
+        List<List<ViewStats>> batch = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < size; i++) {
+            batch.add(reader.stats());
+        }
+        return batch;
+    }
+
+    private static final class Writer {
+        private final OutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> strings = new HashMap<>();
+        private long lastEpochSecond;
+
+        private Writer(OutputStream out, byte type) {
+            this.out = out;
+            buffer.write(MAGIC_1);
+            buffer.write(MAGIC_2);
+            buffer.write(VERSION);
+            buffer.write(type);
+        }
+
+        void hit(EndpointHitDto hit) {
+            string(hit.getApp());
+            string(hit.getUri());
+            string(hit.getIp());
+            if (hit.getTimestamp() == null) {
+                buffer.write(0);
+                return;
+            }
+            buffer.write(1);
+            long epochSecond = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            long delta = epochSecond - lastEpochSecond;
+            varint((delta << 1) ^ (delta >> 63));
+            lastEpochSecond = epochSecond;
+        }
+
+        void stats(List<ViewStats> stats) {
+            varint(stats.size());
+            for (ViewStats row : stats) {
+                string(row.getApp());
+                string(row.getUri());
+                varint(row.getHits() == null ? 0 : row.getHits());
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                buffer.write(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                varint(index + 2L);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.write(1);
+            varint(bytes.length);
+            buffer.write(bytes, 0, bytes.length);
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.write((int) value);
+        }
+
+        void flush() throws IOException {
+            buffer.writeTo(out);
+            out.flush();
+        }
+    }
+
+    private static final class Reader {
+        private final InputStream in;
+        private final int maxListSize;
+        private final List<String> strings = new ArrayList<>();
+        private long lastEpochSecond;
+
+        private Reader(InputStream in, byte expectedType, int maxListSize) throws IOException {
+            this.in = in;
+            this.maxListSize = maxListSize;
+            if (readByte() != MAGIC_1 || readByte() != MAGIC_2) {
+                throw new IOException("Неверный заголовок сообщения " + MEDIA_TYPE);
+            }
+            int version = readByte();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия формата " + MEDIA_TYPE + ": " + version);
+            }
+            int type = readByte();
+            if (type != expectedType) {
+                throw new IOException("Ожидалось сообщение типа " + expectedType + ", получено " + type);
+            }
+        }
+
+        EndpointHitDto hit() throws IOException {
+            EndpointHitDto hit = new EndpointHitDto();
+            hit.setApp(string());
+            hit.setUri(string());
+            hit.setIp(string());
+            if (readByte() != 0) {
+                long encoded = varint();
+                lastEpochSecond += (encoded >>> 1) ^ -(encoded & 1);
+                hit.setTimestamp(LocalDateTime.ofEpochSecond(lastEpochSecond, 0, ZoneOffset.UTC));
+            }
+            return hit;
+        }
+
+        List<ViewStats> stats() throws IOException {
+            int size = listSize();
+            List<ViewStats> stats = new ArrayList<>(Math.min(size, MAX_INITIAL_CAPACITY));
+            for (int i = 0; i < size; i++) {
+                stats.add(new ViewStats(string(), string(), varint()));
+            }
+            return stats;
+        }
+
+        int listSize() throws IOException {
+            int size = size();
+            if (size > maxListSize) {
+                throw new IOException("Слишком большой размер списка: " + size + " > " + maxListSize);
+            }
+            return size;
+        }
+
+        int size() throws IOException {
+            long size = varint();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Слишком большой размер списка: " + size);
+            }
+            return (int) size;
+        }
+
+        String string() throws IOException {
+            long ref = varint();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref > 1) {
+                if (ref - 2 >= strings.size()) {
+                    throw new IOException("Ссылка на несуществующую строку: " + (ref - 2));
+                }
+                return strings.get((int) (ref - 2));
+            }
+            int length = size();
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException("Неожиданный конец сообщения " + MEDIA_TYPE);
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Слишком длинное число varint");
+        }
+
+        int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Неожиданный конец сообщения " + MEDIA_TYPE);
+            }
+            return b;
+        }
+    }
+}
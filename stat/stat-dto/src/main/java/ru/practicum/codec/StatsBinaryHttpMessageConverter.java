@@ -0,0 +1,119 @@
+package ru.practicum.codec;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Конвертер Spring для {@link StatsBinaryCodec}: посещение, список посещений, список ViewStats
+ * и пакет списков ViewStats. Остальные типы остаются за JSON-конвертером.
+ */
+public class StatsBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(StatsBinaryCodec.MEDIA_TYPE);
+
+    private final int maxListSize;
+
+    public StatsBinaryHttpMessageConverter() {
+        this(StatsBinaryCodec.DEFAULT_MAX_LIST_SIZE);
+    }
+
+    /**
+     * @param maxListSize наибольший размер списка во входящем сообщении
+     */
+    public StatsBinaryHttpMessageConverter(int maxListSize) {
+        super(MEDIA_TYPE);
+        this.maxListSize = maxListSize;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EndpointHitDto.class == clazz || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return messageType(type) != 0 && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return messageType(type != null ? type : clazz) != 0 && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readMessage(messageType(type), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return readMessage(messageType(clazz), inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte messageType = messageType(type);
+        if (messageType == 0 && value instanceof EndpointHitDto) {
+            messageType = StatsBinaryCodec.TYPE_HIT;
+        }
+        switch (messageType) {
+            case StatsBinaryCodec.TYPE_HIT -> StatsBinaryCodec.writeHit((EndpointHitDto) value, outputMessage.getBody());
+            case StatsBinaryCodec.TYPE_HITS ->
+                    StatsBinaryCodec.writeHits((List<EndpointHitDto>) value, outputMessage.getBody());
+            case StatsBinaryCodec.TYPE_STATS ->
+                    StatsBinaryCodec.writeStats((List<ViewStats>) value, outputMessage.getBody());
+            case StatsBinaryCodec.TYPE_STATS_BATCH ->
+                    StatsBinaryCodec.writeStatsBatch((List<List<ViewStats>>) value, outputMessage.getBody());
+            default -> throw new HttpMessageNotWritableException("Тип не поддерживается форматом "
+                    + StatsBinaryCodec.MEDIA_TYPE + ": " + type);
+        }
+    }
+
+    private Object readMessage(byte messageType, HttpInputMessage inputMessage) throws IOException {
+        return switch (messageType) {
+            case StatsBinaryCodec.TYPE_HIT -> StatsBinaryCodec.readHit(inputMessage.getBody());
+            case StatsBinaryCodec.TYPE_HITS -> StatsBinaryCodec.readHits(inputMessage.getBody(), maxListSize);
+            case StatsBinaryCodec.TYPE_STATS -> StatsBinaryCodec.readStats(inputMessage.getBody(), maxListSize);
+            case StatsBinaryCodec.TYPE_STATS_BATCH ->
+                    StatsBinaryCodec.readStatsBatch(inputMessage.getBody(), maxListSize);
+            default -> throw new HttpMessageNotReadableException("Тип не поддерживается форматом "
+                    + StatsBinaryCodec.MEDIA_TYPE, inputMessage);
+        };
+    }
+
+    /**
+     * Тип сообщения кодека по Java-типу или 0, если тип не поддерживается.
+     */
+    private static byte messageType(Type type) {
+        if (type == EndpointHitDto.class) {
+            return StatsBinaryCodec.TYPE_HIT;
+        }
+        if (!(type instanceof ParameterizedType parameterized) || parameterized.getRawType() != List.class) {
+            return 0;
+        }
+        Type element = parameterized.getActualTypeArguments()[0];
+        if (element == EndpointHitDto.class) {
+            return StatsBinaryCodec.TYPE_HITS;
+        }
+        if (element == ViewStats.class) {
+            return StatsBinaryCodec.TYPE_STATS;
+        }
+        if (element instanceof ParameterizedType inner && inner.getRawType() == List.class
+                && inner.getActualTypeArguments()[0] == ViewStats.class) {
+            return StatsBinaryCodec.TYPE_STATS_BATCH;
+        }
+        return 0;
+    }
+}
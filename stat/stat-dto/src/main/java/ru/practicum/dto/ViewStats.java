@@ -1,14 +1,26 @@
 package ru.practicum.dto;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class ViewStats {
     private String app;
     private String uri;
     private Long hits;
+
+    /**
+     * Значение взято из последнего известного ответа сервиса статистики, а не получено сейчас:
+     * сервис не ответил вовремя или вызовы к нему приостановлены
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;
+
+    public ViewStats(String app, String uri, Long hits) {
+        this.app = app;
+        this.uri = uri;
+        this.hits = hits;
+    }
 }
@@ -0,0 +1,24 @@
+package ru.practicum.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Число посещений app + uri за один интервал временного ряда, bucket — начало интервала.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsBucket {
+    private String app;
+    private String uri;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime bucket;
+
+    private Long hits;
+}
@@ -0,0 +1,153 @@
+package ru.practicum.codec;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsBinaryCodecTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 1, 1, 12, 0, 0);
+
+    @Test
+    void hitRoundTrip() throws IOException {
+        EndpointHitDto hit = new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", TIMESTAMP);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeHit(hit, out);
+        EndpointHitDto read = StatsBinaryCodec.readHit(new ByteArrayInputStream(out.toByteArray()));
+
+        assertHit(hit, read);
+    }
+
+    @Test
+    void hitsRoundTripWithTimestampsInAnyOrder() throws IOException {
+        List<EndpointHitDto> hits = List.of(
+                new EndpointHitDto("app", "/events/1", "10.0.0.1", TIMESTAMP),
+                new EndpointHitDto("app", "/events/2", "10.0.0.1", TIMESTAMP.minusDays(3)),
+                new EndpointHitDto("app", "/events/1", "10.0.0.2", TIMESTAMP.plusYears(1)),
+                new EndpointHitDto("app", "/события/1", "::1", LocalDateTime.of(1970, 1, 1, 0, 0)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeHits(hits, out);
+        List<EndpointHitDto> read = StatsBinaryCodec.readHits(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(hits.size(), read.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertHit(hits.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    void nullFieldsRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeHit(new EndpointHitDto(null, "/events", null, null), out);
+        EndpointHitDto read = StatsBinaryCodec.readHit(new ByteArrayInputStream(out.toByteArray()));
+
+        assertNull(read.getApp());
+        assertEquals("/events", read.getUri());
+        assertNull(read.getIp());
+        assertNull(read.getTimestamp());
+    }
+
+    @Test
+    void repeatedStringsAreWrittenOnce() throws IOException {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", "/events/1", "192.168.0.1", TIMESTAMP.plusSeconds(i)));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeHits(hits, out);
+
+        // Заголовок, строки один раз, затем по три ссылки, признак времени и разница в секунду на посещение
+        assertTrue(out.size() < 4 + 60 + 100 * 5, "размер сообщения: " + out.size());
+    }
+
+    @Test
+    void statsAndBatchRoundTrip() throws IOException {
+        List<ViewStats> first = List.of(new ViewStats("app", "/events/1", 300L), new ViewStats("app", "/events", 0L));
+        List<ViewStats> second = List.of(new ViewStats("app", "/events/1", Long.MAX_VALUE));
+        ByteArrayOutputStream stats = new ByteArrayOutputStream();
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+
+        StatsBinaryCodec.writeStats(first, stats);
+        StatsBinaryCodec.writeStatsBatch(List.of(first, List.of(), second), batch);
+
+        assertEquals(first, StatsBinaryCodec.readStats(new ByteArrayInputStream(stats.toByteArray())));
+        assertEquals(List.of(first, List.of(), second),
+                StatsBinaryCodec.readStatsBatch(new ByteArrayInputStream(batch.toByteArray())));
+    }
+
+    @Test
+    void rejectsWrongMessageType() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeStats(List.of(), out);
+
+        assertThrows(IOException.class, () -> StatsBinaryCodec.readHits(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void rejectsBadHeader() {
+        byte[] message = {'{', '"', 1, StatsBinaryCodec.TYPE_STATS, 0};
+
+        assertThrows(IOException.class, () -> StatsBinaryCodec.readStats(new ByteArrayInputStream(message)));
+    }
+
+    @Test
+    void rejectsTruncatedMessage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeHit(new EndpointHitDto("app", "/events/1", "10.0.0.1", TIMESTAMP), out);
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+
+        assertThrows(EOFException.class, () -> StatsBinaryCodec.readHit(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void rejectsListSizeAboveLimitWithoutAllocating() {
+        byte[] payload = {'E', 'S', 1, StatsBinaryCodec.TYPE_HITS, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F};
+
+        IOException e = assertThrows(IOException.class,
+                () -> StatsBinaryCodec.readHits(new ByteArrayInputStream(payload)));
+        assertTrue(e.getMessage().contains("268435455"));
+    }
+
+    @Test
+    void truncatedListWithinLimitFailsWithEof() {
+        byte[] payload = {'E', 'S', 1, StatsBinaryCodec.TYPE_STATS_BATCH, (byte) 0xFF, (byte) 0xFF, 0x03};
+
+        assertThrows(EOFException.class,
+                () -> StatsBinaryCodec.readStatsBatch(new ByteArrayInputStream(payload), 100_000));
+    }
+
+    @Test
+    void listSizeLimitIsConfigurable() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatsBinaryCodec.writeStats(List.of(new ViewStats("app", "/a", 1L), new ViewStats("app", "/b", 2L)), out);
+
+        assertEquals(2, StatsBinaryCodec.readStats(new ByteArrayInputStream(out.toByteArray()), 2).size());
+        assertThrows(IOException.class,
+                () -> StatsBinaryCodec.readStats(new ByteArrayInputStream(out.toByteArray()), 1));
+    }
+
+    private static void assertHit(EndpointHitDto expected, EndpointHitDto actual) {
+        assertEquals(expected.getApp(), actual.getApp());
+        assertEquals(expected.getUri(), actual.getUri());
+        assertEquals(expected.getIp(), actual.getIp());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    }
+}
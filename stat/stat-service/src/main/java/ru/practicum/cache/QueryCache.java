@@ -0,0 +1,265 @@
+package ru.practicum.cache;
+
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Кэш результатов запросов статистики с вытеснением давно не использованных записей.
+ * <p>
+ * Новые посещения поддерживают кэш в актуальном состоянии: в результат без уникальности и без
+ * приближённого подсчёта посещение добавляется на месте, а остальные записи, чей период и список uri
+ * его захватывают, удаляются. Чтобы не закэшировать результат, уже устаревший к моменту сохранения,
+ * кэш помнит пакеты посещений, которые фиксируются прямо сейчас, и несколько последних зафиксированных:
+ * результат не сохраняется, если такой пакет мог попасть в него частично или после начала запроса.
+ * Класс потокобезопасен.
+ */
+public class QueryCache {
+
+    private static final int RECENT_BATCHES = 1024;
+
+    /**
+     * Ключ запроса. uris отсортированы, null — все uri.
+     */
+    public record Key(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                      boolean approximate) {
+
+        boolean patchable() {
+            return !unique && !approximate;
+        }
+
+        boolean contains(LocalDateTime timestamp) {
+            return !timestamp.isBefore(start) && !timestamp.isAfter(end);
+        }
+
+        boolean overlaps(Batch batch) {
+            if (batch.max().isBefore(start) || batch.min().isAfter(end)) {
+                return false;
+            }
+            return uris == null || uris.stream().anyMatch(batch.uris()::contains);
+        }
+    }
+
+    /**
+     * Итог применения пакета посещений к кэшу.
+     */
+    public record Update(int patched, int invalidated) {
+    }
+
+    private record Batch(long version, Set<String> uris, LocalDateTime min, LocalDateTime max) {
+    }
+
+    private record AppUri(String app, String uri) {
+    }
+
+    private static final class Entry {
+        private List<ViewStats> stats;
+        private final long expiresAt;
+
+        private Entry(List<ViewStats> stats, long expiresAt) {
+            this.stats = stats;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<Key>> keysByUri = new HashMap<>();
+    private final Set<Key> allUriKeys = new HashSet<>();
+    private final Map<List<EndpointHit>, Batch> pending = new IdentityHashMap<>();
+    private final Deque<Batch> recent = new ArrayDeque<>();
+    private long version;
+    private long forgotten;
+
+    public QueryCache(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Версия кэша; её нужно запомнить перед запросом к хранилищу и передать в {@link #put}.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized List<ViewStats> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            remove(key);
+            return null;
+        }
+        return entry.stats;
+    }
+
+    /**
+     * Сохранение результата запроса, начатого при версии since. Возвращает false, если за это время
+     * фиксировались посещения, которые могли изменить результат, — тогда он не сохраняется.
+     */
+    public synchronized boolean put(Key key, List<ViewStats> stats, long since) {
+        if (since < forgotten) {
+            return false;
+        }
+        for (Batch batch : pending.values()) {
+            if (key.overlaps(batch)) {
+                return false;
+            }
+        }
+        for (Iterator<Batch> it = recent.descendingIterator(); it.hasNext(); ) {
+            Batch batch = it.next();
+            if (batch.version() <= since) {
+                break;
+            }
+            if (key.overlaps(batch)) {
+                return false;
+            }
+        }
+        remove(key);
+        entries.put(key, new Entry(List.copyOf(stats), System.nanoTime() + ttlNanos));
+        if (key.uris() == null) {
+            allUriKeys.add(key);
+        } else {
+            key.uris().forEach(uri -> keysByUri.computeIfAbsent(uri, u -> new HashSet<>()).add(key));
+        }
+        while (entries.size() > maxEntries) {
+            remove(entries.keySet().iterator().next());
+        }
+        return true;
+    }
+
+    /**
+     * Пакет посещений записан, но ещё не зафиксирован.
+     */
+    public synchronized void begin(List<EndpointHit> hits) {
+        version++;
+        pending.put(hits, summarize(hits));
+    }
+
+    /**
+     * Пакет посещений зафиксирован: затронутые записи дополняются или удаляются.
+     */
+    public synchronized Update commit(List<EndpointHit> hits) {
+        complete(hits);
+        Map<Key, Map<AppUri, Long>> deltas = new HashMap<>();
+        Set<Key> invalid = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            affect(allUriKeys, hit, deltas, invalid);
+            affect(keysByUri.getOrDefault(hit.getUri(), Collections.emptySet()), hit, deltas, invalid);
+        }
+        invalid.forEach(this::remove);
+        deltas.forEach((key, delta) -> {
+            Entry entry = entries.get(key);
+            entry.stats = patch(entry.stats, delta);
+        });
+        return new Update(deltas.size(), invalid.size());
+    }
+
+    /**
+     * Пакет посещений откатан.
+     */
+    public synchronized void rollback(List<EndpointHit> hits) {
+        complete(hits);
+    }
+
+    /**
+     * Удаление всех записей. Результаты запросов, начатых до этого момента, не сохраняются.
+     * Возвращает число удалённых записей.
+     */
+    public synchronized int clear() {
+        int removed = entries.size();
+        entries.clear();
+        keysByUri.clear();
+        allUriKeys.clear();
+        recent.clear();
+        version++;
+        forgotten = version;
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static void affect(Set<Key> keys, EndpointHit hit, Map<Key, Map<AppUri, Long>> deltas, Set<Key> invalid) {
+        for (Key key : keys) {
+            if (!key.contains(hit.getTimestamp())) {
+                continue;
+            }
+            if (key.patchable()) {
+                deltas.computeIfAbsent(key, k -> new HashMap<>())
+                        .merge(new AppUri(hit.getApp(), hit.getUri()), 1L, Long::sum);
+            } else {
+                invalid.add(key);
+            }
+        }
+    }
+
+    private void complete(List<EndpointHit> hits) {
+        Batch started = pending.remove(hits);
+        version++;
+        Batch batch = started != null ? started : summarize(hits);
+        recent.addLast(new Batch(version, batch.uris(), batch.min(), batch.max()));
+        if (recent.size() > RECENT_BATCHES) {
+            forgotten = recent.removeFirst().version();
+        }
+    }
+
+    private void remove(Key key) {
+        if (entries.remove(key) == null) {
+            return;
+        }
+        if (key.uris() == null) {
+            allUriKeys.remove(key);
+            return;
+        }
+        for (String uri : key.uris()) {
+            Set<Key> keys = keysByUri.get(uri);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                keysByUri.remove(uri);
+            }
+        }
+    }
+
+    private static Batch summarize(List<EndpointHit> hits) {
+        Set<String> uris = new HashSet<>();
+        LocalDateTime min = LocalDateTime.MAX;
+        LocalDateTime max = LocalDateTime.MIN;
+        for (EndpointHit hit : hits) {
+            uris.add(hit.getUri());
+            min = hit.getTimestamp().isBefore(min) ? hit.getTimestamp() : min;
+            max = hit.getTimestamp().isAfter(max) ? hit.getTimestamp() : max;
+        }
+        return new Batch(0, uris, min, max);
+    }
+
+    private static List<ViewStats> patch(List<ViewStats> stats, Map<AppUri, Long> delta) {
+        Map<AppUri, Long> counts = new LinkedHashMap<>();
+        for (ViewStats row : stats) {
+            counts.put(new AppUri(row.getApp(), row.getUri()), row.getHits());
+        }
+        delta.forEach((key, count) -> counts.merge(key, count, Long::sum));
+        List<ViewStats> patched = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> patched.add(new ViewStats(key.app(), key.uri(), count)));
+        patched.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return List.copyOf(patched);
+    }
+}
@@ -0,0 +1,593 @@
+package ru.practicum.cold;
+
+import ru.practicum.repository.IpCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Файл с посещениями за период, разложенными по колонкам.
+ * <p>
+ * Файл состоит из блоков не больше заданного числа посещений, поэтому пишется и читается потоком:
+ * в памяти одновременно находится только один блок. Внутри блока посещения отсортированы по app, uri
+ * и времени и разбиты на группы по app + uri; одна и та же пара app + uri может встречаться в разных
+ * блоках. Несжатый заголовок блока хранит минимальное и максимальное время, словари app и uri и число
+ * посещений в каждой группе — этого хватает, чтобы пропустить блок целиком или посчитать просмотры
+ * без распаковки. Колонки времени (разности соседних значений в секундах) и ip (номера в словаре ip
+ * блока) сжаты deflate и читаются только для неполного периода или уникальных просмотров.
+ * Время хранится с точностью до секунды.
+ */
+public final class ColdSegment {
+
+    public static final int DEFAULT_BLOCK_ROWS = 65_536;
+
+    private static final int MAGIC = 0x45574D43;
+    private static final int VERSION = 3;
+    /**
+     * magic, версия, минимальное и максимальное время, число посещений и блоков.
+     */
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 8 + 4;
+
+    public record Row(String app, String uri, String ip, LocalDateTime timestamp) {
+    }
+
+    @FunctionalInterface
+    public interface CountConsumer {
+        void accept(String app, String uri, long count);
+    }
+
+    @FunctionalInterface
+    public interface IpConsumer {
+        void accept(String app, String uri, String ip);
+    }
+
+    private final Path path;
+    private final long minSecond;
+    private final long maxSecond;
+    private final long rows;
+    private final List<Block> blocks;
+
+    private ColdSegment(Path path, long minSecond, long maxSecond, long rows, List<Block> blocks) {
+        this.path = path;
+        this.minSecond = minSecond;
+        this.maxSecond = maxSecond;
+        this.rows = rows;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Запись посещений в новый файл. Файл появляется под именем path только целиком.
+     */
+    public static ColdSegment write(Path path, List<Row> rows) throws IOException {
+        try (Writer writer = writer(path, DEFAULT_BLOCK_ROWS)) {
+            for (Row row : rows) {
+                writer.add(row);
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Потоковая запись нового файла: посещения копятся до blockRows и сбрасываются блоком.
+     */
+    public static Writer writer(Path path, int blockRows) throws IOException {
+        return new Writer(path, blockRows);
+    }
+
+    /**
+     * Чтение заголовков файла и блоков; колонки остаются на диске до первого запроса, которому они нужны.
+     */
+    public static ColdSegment open(Path path) throws IOException {
+        try (CountingInputStream counting = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(path)));
+             DataInputStream in = new DataInputStream(counting)) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Неизвестный формат сегмента: " + path);
+            }
+            long minSecond = in.readLong();
+            long maxSecond = in.readLong();
+            long rows = in.readLong();
+            int blockCount = in.readInt();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int b = 0; b < blockCount; b++) {
+                long offset = counting.count;
+                long blockMin = in.readLong();
+                long blockMax = in.readLong();
+                String[] apps = readStrings(in);
+                String[] uris = readStrings(in);
+                int groupCount = in.readInt();
+                int[] groupApps = new int[groupCount];
+                int[] groupUris = new int[groupCount];
+                int[] groupCounts = new int[groupCount];
+                for (int i = 0; i < groupCount; i++) {
+                    groupApps[i] = (int) readVarLong(in);
+                    groupUris[i] = (int) readVarLong(in);
+                    groupCounts[i] = (int) readVarLong(in);
+                }
+                long columnsOffset = counting.count;
+                for (int column = 0; column < 3; column++) {
+                    in.skipNBytes(in.readInt());
+                }
+                blocks.add(new Block(offset, counting.count - offset, blockMin, blockMax, apps, uris,
+                        groupApps, groupUris, groupCounts, columnsOffset));
+            }
+            return new ColdSegment(path, minSecond, maxSecond, rows, blocks);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public LocalDateTime minTimestamp() {
+        return LocalDateTime.ofEpochSecond(minSecond, 0, ZoneOffset.UTC);
+    }
+
+    public LocalDateTime maxTimestamp() {
+        return LocalDateTime.ofEpochSecond(maxSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Число посещений по app + uri за [start, end]. uriFilter == null — без фильтра.
+     * Пара app + uri может прийти несколько раз — по разу на блок.
+     */
+    public void counts(LocalDateTime start, LocalDateTime end, Set<String> uriFilter, CountConsumer consumer)
+            throws IOException {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = end.toEpochSecond(ZoneOffset.UTC);
+        for (Block block : blocks) {
+            if (from > block.maxSecond || to < block.minSecond || !block.containsAny(uriFilter)) {
+                continue;
+            }
+            if (from <= block.minSecond && to >= block.maxSecond) {
+                for (int g = 0; g < block.groupCounts.length; g++) {
+                    if (block.matches(g, uriFilter)) {
+                        consumer.accept(block.app(g), block.uri(g), block.groupCounts[g]);
+                    }
+                }
+                continue;
+            }
+            Columns columns = readColumns(block, false);
+            int row = 0;
+            for (int g = 0; g < block.groupCounts.length; g++) {
+                if (!block.matches(g, uriFilter)) {
+                    row += block.groupCounts[g];
+                    continue;
+                }
+                long count = 0;
+                for (int groupEnd = row + block.groupCounts[g]; row < groupEnd; row++) {
+                    if (columns.seconds[row] >= from && columns.seconds[row] <= to) {
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    consumer.accept(block.app(g), block.uri(g), count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Все посещения за [start, end] в виде app, uri, ip — для подсчёта уникальных просмотров.
+     */
+    public void ips(LocalDateTime start, LocalDateTime end, Set<String> uriFilter, IpConsumer consumer)
+            throws IOException {
+        rows(start, end, uriFilter, true, row -> consumer.accept(row.app(), row.uri(), row.ip()));
+    }
+
+    /**
+     * Посещения за [start, end] по одному — для временного ряда. Без withIps колонка ip не читается
+     * и в строках равна null.
+     */
+    public void rows(LocalDateTime start, LocalDateTime end, Set<String> uriFilter, boolean withIps,
+                     Consumer<Row> consumer) throws IOException {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = end.toEpochSecond(ZoneOffset.UTC);
+        for (Block block : blocks) {
+            if (from > block.maxSecond || to < block.minSecond || !block.containsAny(uriFilter)) {
+                continue;
+            }
+            Columns columns = readColumns(block, withIps);
+            int row = 0;
+            for (int g = 0; g < block.groupCounts.length; g++) {
+                if (!block.matches(g, uriFilter)) {
+                    row += block.groupCounts[g];
+                    continue;
+                }
+                String app = block.app(g);
+                String uri = block.uri(g);
+                for (int groupEnd = row + block.groupCounts[g]; row < groupEnd; row++) {
+                    long second = columns.seconds[row];
+                    if (second >= from && second <= to) {
+                        consumer.accept(new Row(app, uri, withIps ? columns.ipValues[columns.ips[row]] : null,
+                                LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC)));
+                    }
+                }
+            }
+        }
+    }
+
+    private Columns readColumns(Block block, boolean withIps) throws IOException {
+        int total = (int) block.rows;
+        Columns columns = new Columns();
+        columns.seconds = new long[total];
+        try (InputStream file = Files.newInputStream(path)) {
+            file.skipNBytes(block.columnsOffset);
+            DataInputStream in = new DataInputStream(file);
+            try (InputStream times = readColumn(in)) {
+                int row = 0;
+                for (int count : block.groupCounts) {
+                    long previous = 0;
+                    for (int end = row + count; row < end; row++) {
+                        previous += readVarLong(times);
+                        columns.seconds[row] = previous;
+                    }
+                }
+            }
+            if (!withIps) {
+                return columns;
+            }
+            try (InputStream values = readColumn(in)) {
+                columns.ipValues = new String[(int) readVarLong(values)];
+                for (int i = 0; i < columns.ipValues.length; i++) {
+                    columns.ipValues[i] = IpCodec.decode(values.readNBytes((int) readVarLong(values)));
+                }
+            }
+            try (InputStream ips = readColumn(in)) {
+                columns.ips = new int[total];
+                for (int row = 0; row < total; row++) {
+                    columns.ips[row] = (int) readVarLong(ips);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Потоковая запись сегмента. Блоки пишутся во временный файл рядом с path, заголовок файла
+     * дописывается в {@link #finish()}, после чего файл переименовывается в path. Незавершённая
+     * запись удаляет временный файл при закрытии.
+     */
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final Path tmp;
+        private final int blockRows;
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final List<Row> buffer = new ArrayList<>();
+        private long minSecond = Long.MAX_VALUE;
+        private long maxSecond = Long.MIN_VALUE;
+        private long rows;
+        private int blocks;
+        private boolean finished;
+
+        private Writer(Path path, int blockRows) throws IOException {
+            if (blockRows <= 0) {
+                throw new IllegalArgumentException("Размер блока сегмента должен быть положительным: " + blockRows);
+            }
+            this.path = path;
+            this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.blockRows = blockRows;
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.write(new byte[HEADER_SIZE]);
+        }
+
+        public void add(Row row) throws IOException {
+            buffer.add(row);
+            if (buffer.size() >= blockRows) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Копирование всех блоков другого сегмента без распаковки — для слияния с опоздавшими посещениями.
+         */
+        public void append(ColdSegment segment) throws IOException {
+            out.flush();
+            try (FileChannel source = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+                for (Block block : segment.blocks) {
+                    long position = block.offset;
+                    long end = block.offset + block.length;
+                    while (position < end) {
+                        position += source.transferTo(position, end - position, channel);
+                    }
+                    minSecond = Math.min(minSecond, block.minSecond);
+                    maxSecond = Math.max(maxSecond, block.maxSecond);
+                    rows += block.rows;
+                    blocks++;
+                }
+            }
+        }
+
+        /**
+         * Посещения, добавленные и скопированные на данный момент, включая ещё не сброшенный блок.
+         */
+        public long rows() {
+            return rows + buffer.size();
+        }
+
+        public ColdSegment finish() throws IOException {
+            if (!buffer.isEmpty()) {
+                writeBlock();
+            }
+            if (rows == 0) {
+                throw new IllegalArgumentException("Нельзя записать пустой сегмент");
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .put((byte) VERSION)
+                    .putLong(minSecond)
+                    .putLong(maxSecond)
+                    .putLong(rows)
+                    .putInt(blocks)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(path);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            channel.close();
+            Files.deleteIfExists(tmp);
+        }
+
+        private void writeBlock() throws IOException {
+            buffer.sort(Comparator.comparing(Row::app).thenComparing(Row::uri).thenComparing(Row::timestamp));
+            Dictionary appDictionary = new Dictionary();
+            Dictionary uriDictionary = new Dictionary();
+            Dictionary ipDictionary = new Dictionary();
+            List<int[]> groups = new ArrayList<>();
+            ByteArrayOutputStream times = new ByteArrayOutputStream();
+            ByteArrayOutputStream ips = new ByteArrayOutputStream();
+            long blockMin = Long.MAX_VALUE;
+            long blockMax = Long.MIN_VALUE;
+            int[] group = null;
+            long previous = 0;
+            for (Row row : buffer) {
+                int app = appDictionary.id(row.app());
+                int uri = uriDictionary.id(row.uri());
+                long second = row.timestamp().toEpochSecond(ZoneOffset.UTC);
+                blockMin = Math.min(blockMin, second);
+                blockMax = Math.max(blockMax, second);
+                if (group == null || group[0] != app || group[1] != uri) {
+                    group = new int[]{app, uri, 0};
+                    groups.add(group);
+                    previous = 0;
+                }
+                group[2]++;
+                writeVarLong(times, second - previous);
+                previous = second;
+                writeVarLong(ips, ipDictionary.id(row.ip()));
+            }
+
+            out.writeLong(blockMin);
+            out.writeLong(blockMax);
+            writeStrings(out, appDictionary.values);
+            writeStrings(out, uriDictionary.values);
+            out.writeInt(groups.size());
+            for (int[] g : groups) {
+                writeVarLong(out, g[0]);
+                writeVarLong(out, g[1]);
+                writeVarLong(out, g[2]);
+            }
+            ByteArrayOutputStream ipValues = new ByteArrayOutputStream();
+            writeVarLong(ipValues, ipDictionary.values.size());
+            for (String ip : ipDictionary.values) {
+                byte[] bytes = IpCodec.encode(ip);
+                writeVarLong(ipValues, bytes.length);
+                ipValues.write(bytes);
+            }
+            writeColumn(out, times.toByteArray());
+            writeColumn(out, ipValues.toByteArray());
+            writeColumn(out, ips.toByteArray());
+
+            minSecond = Math.min(minSecond, blockMin);
+            maxSecond = Math.max(maxSecond, blockMax);
+            rows += buffer.size();
+            blocks++;
+            buffer.clear();
+        }
+    }
+
+    private static void writeColumn(DataOutputStream out, byte[] column) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(column.length / 4 + 16);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            deflater.write(column);
+        }
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+
+    private static InputStream readColumn(DataInputStream in) throws IOException {
+        byte[] compressed = in.readNBytes(in.readInt());
+        return new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Неожиданный конец колонки сегмента");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Повреждённое число в колонке сегмента");
+    }
+
+    /**
+     * Заголовок блока: положение в файле, границы времени, словари app и uri и группы.
+     */
+    private static final class Block {
+        private final long offset;
+        private final long length;
+        private final long minSecond;
+        private final long maxSecond;
+        private final String[] apps;
+        private final String[] uris;
+        private final int[] groupApps;
+        private final int[] groupUris;
+        private final int[] groupCounts;
+        private final long rows;
+        private final long columnsOffset;
+
+        private Block(long offset, long length, long minSecond, long maxSecond, String[] apps, String[] uris,
+                      int[] groupApps, int[] groupUris, int[] groupCounts, long columnsOffset) {
+            this.offset = offset;
+            this.length = length;
+            this.minSecond = minSecond;
+            this.maxSecond = maxSecond;
+            this.apps = apps;
+            this.uris = uris;
+            this.groupApps = groupApps;
+            this.groupUris = groupUris;
+            this.groupCounts = groupCounts;
+            this.rows = Arrays.stream(groupCounts).asLongStream().sum();
+            this.columnsOffset = columnsOffset;
+        }
+
+        private String app(int group) {
+            return apps[groupApps[group]];
+        }
+
+        private String uri(int group) {
+            return uris[groupUris[group]];
+        }
+
+        private boolean containsAny(Set<String> uriFilter) {
+            if (uriFilter == null) {
+                return true;
+            }
+            for (String uri : uris) {
+                if (uriFilter.contains(uri)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(int group, Set<String> uriFilter) {
+            return uriFilter == null || uriFilter.contains(uris[groupUris[group]]);
+        }
+    }
+
+    private static final class Columns {
+        private long[] seconds;
+        private String[] ipValues;
+        private int[] ips;
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            return ids.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.enums.DatabaseType;
+
+@Configuration
+public class StorageConfig {
+
+    /**
+     * Тип БД определяется по метаданным соединения: часть запросов (upsert, COPY, секционирование)
+     * отличается для PostgreSQL и H2.
+     */
+    @Bean
+    public DatabaseType databaseType(JdbcTemplate jdbcTemplate) {
+        return DatabaseType.fromProductName(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()));
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.codec.StatsBinaryHttpMessageConverter;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Value("${stat-service.binary.max-list-size:100000}")
+    private int maxListSize;
+
+    /**
+     * Двоичный формат добавляется последним: он выбирается только по явному Content-Type или Accept,
+     * а для Accept: *&#47;* по-прежнему отвечает JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new StatsBinaryHttpMessageConverter(maxListSize));
+    }
+}
@@ -1,23 +1,54 @@
 package ru.practicum.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.codec.StatsBinaryCodec;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.enums.ImportFormat;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.service.HitImportService;
 import ru.practicum.service.StatsService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 public class StatsController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String TEXT_CSV = "text/csv";
+    private static final int STREAM_FLUSH_ROWS = 1000;
+
     private final StatsService statsService;
+    private final HitImportService hitImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stat-service.ingest.jdbc-batch-size:500}")
+    private int batchSize;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -26,17 +57,162 @@ public class StatsController {
         statsService.saveHit(hitDto);
     }
 
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, StatsBinaryCodec.MEDIA_TYPE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(@RequestBody List<EndpointHitDto> hitDtos) {
+        log.info("Получен пакет запросов на сохранение, количество: {}", hitDtos.size());
+        statsService.saveHits(hitDtos);
+    }
+
+    /**
+     * Приём потока посещений в формате NDJSON (по одному объекту на строку).
+     * Поток читается и сохраняется порциями, поэтому размер тела запроса не ограничен памятью.
+     */
+    @PostMapping(value = "/hits", consumes = APPLICATION_NDJSON)
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHitsStream(InputStream body) throws IOException {
+        log.info("Получен поток запросов на сохранение.");
+        int total = 0;
+        try (MappingIterator<EndpointHitDto> iterator = objectMapper.readerFor(EndpointHitDto.class).readValues(body)) {
+            List<EndpointHitDto> chunk = new ArrayList<>(batchSize);
+            while (iterator.hasNextValue()) {
+                chunk.add(iterator.nextValue());
+                if (chunk.size() == batchSize) {
+                    statsService.saveHits(chunk);
+                    total += chunk.size();
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                statsService.saveHits(chunk);
+                total += chunk.size();
+            }
+        }
+        log.info("Сохранено запросов из потока: {}", total);
+    }
+
+    /**
+     * Массовый импорт посещений из CSV (app,uri,ip,timestamp) или NDJSON, в том числе сжатых gzip
+     * (Content-Encoding: gzip). Возвращает число загруженных посещений.
+     */
+    @PostMapping(value = "/admin/hits/import", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Map<String, Long> importHits(
+            InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding)
+            throws IOException {
+        ImportFormat format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))
+                ? ImportFormat.CSV
+                : ImportFormat.NDJSON;
+        log.info("Получен запрос на импорт посещений: формат {}, сжатие {}", format, contentEncoding);
+        InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body) : body;
+        return Map.of("imported", hitImportService.importHits(in, format));
+    }
+
     @GetMapping("/stats")
     public List<ViewStats> getStats(
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(required = false) List<String> uris,
-            @RequestParam(defaultValue = "false") boolean unique) {
+            @RequestParam(defaultValue = "false") boolean unique,
+            @RequestParam(defaultValue = "false") boolean approximate) {
         log.info("Получен запрос статистики по посещениям.");
-        log.info("Запрос: start = {}, end = {}, uris = {}, unique = {}", start, end, uris, unique);
+        log.info("Запрос: start = {}, end = {}, uris = {}, unique = {}, approximate = {}",
+                start, end, uris, unique, approximate);
 
-        return statsService.getStats(start, end, uris, unique);
+        return statsService.getStats(start, end, uris, unique, approximate);
     }
 
-}
+    /**
+     * Самые посещаемые uri за период, по умолчанию — за последний час.
+     */
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTop(
+            @RequestParam(defaultValue = "10") int n,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Получен запрос популярных uri: n = {}, start = {}, end = {}, unique = {}", n, start, end, unique);
+        LocalDateTime periodEnd = end != null ? end : LocalDateTime.now();
+        LocalDateTime periodStart = start != null ? start : periodEnd.minusHours(1);
+        return statsService.getTop(periodStart, periodEnd, n, unique);
+    }
+
+    /**
+     * Посещения по uri с разбивкой на интервалы MINUTE, HOUR или DAY — вместо отдельного запроса /stats на каждый интервал.
+     */
+    @GetMapping("/stats/timeline")
+    public List<ViewStatsBucket> getTimeline(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") boolean unique,
+            @RequestParam(defaultValue = "HOUR") TimelineInterval interval) {
+        log.info("Получен запрос временного ряда: start = {}, end = {}, uris = {}, unique = {}, interval = {}",
+                start, end, uris, unique, interval);
+        return statsService.getTimeline(start, end, uris, unique, interval);
+    }
+
+    /**
+     * Потоковая выдача статистики в формате NDJSON (по одной записи на строку) для больших наборов uri.
+     * Строки читаются из хранилища курсором и пишутся в ответ по мере чтения.
+     */
+    @GetMapping(value = "/stats", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamStats(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("Получен запрос потоковой статистики: start = {}, end = {}, uris = {}, unique = {}",
+                start, end, uris == null ? 0 : uris.size(), unique);
+        return streamStatsResponse(start, end, uris, unique);
+    }
+
+    /**
+     * То же, что потоковый GET /stats, но с параметрами в теле запроса: список uri может быть любого размера.
+     */
+    @PostMapping(value = "/stats/stream", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestBody ViewsStatsRequest request) {
+        List<String> uris = request.getUris() == null ? null : List.copyOf(request.getUris());
+        log.info("Получен запрос потоковой статистики: start = {}, end = {}, uris = {}, unique = {}",
+                request.getStart(), request.getEnd(), uris == null ? 0 : uris.size(), request.isUnique());
+        return streamStatsResponse(request.getStart(), request.getEnd(), uris, request.isUnique());
+    }
 
+    /**
+     * Несколько запросов статистики за один вызов: ответ содержит список результатов в порядке запросов.
+     */
+    @PostMapping("/stats/query")
+    public List<List<ViewStats>> getStatsBatch(@RequestBody List<ViewsStatsRequest> requests) {
+        log.info("Получен пакет запросов статистики, количество: {}", requests.size());
+        return statsService.getStats(requests);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamStatsResponse(LocalDateTime start, LocalDateTime end,
+                                                                      List<String> uris, boolean unique) {
+        if (start == null || end == null) {
+            throw new ValidationException("В запросе статистики должны быть указаны начало и конец периода.");
+        }
+        if (end.isBefore(start)) {
+            throw new ValidationException("Дата начала периода не может быть ранее даты окончания периода.");
+        }
+        ObjectWriter writer = objectMapper.writerFor(ViewStats.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = out -> {
+            long[] written = new long[1];
+            statsService.streamStats(start, end, uris, unique, stats -> {
+                try {
+                    writer.writeValue(out, stats);
+                    out.write('\n');
+                    if (++written[0] % STREAM_FLUSH_ROWS == 1) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+    }
+}
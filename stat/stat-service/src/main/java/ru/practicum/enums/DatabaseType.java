@@ -0,0 +1,9 @@
+package ru.practicum.enums;
+
+public enum DatabaseType {
+    POSTGRESQL, H2;
+
+    public static DatabaseType fromProductName(String productName) {
+        return "PostgreSQL".equalsIgnoreCase(productName) ? POSTGRESQL : H2;
+    }
+}
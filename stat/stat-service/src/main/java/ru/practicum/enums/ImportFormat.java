@@ -0,0 +1,35 @@
+package ru.practicum.enums;
+
+import java.util.Locale;
+
+/**
+ * Формат файла массового импорта посещений.
+ */
+public enum ImportFormat {
+    /**
+     * Строки app,uri,ip,timestamp; необязательная первая строка — заголовок.
+     */
+    CSV,
+    /**
+     * По одному объекту EndpointHitDto на строку.
+     */
+    NDJSON;
+
+    /**
+     * Формат по расширению файла, в том числе сжатого gzip: .csv, .ndjson, .jsonl.
+     */
+    public static ImportFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Не удалось определить формат файла " + fileName
+                + ", укажите stat-service.import.format");
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.enums;
+
+public enum IngestMode {
+    /**
+     * Запись в БД в потоке запроса
+     */
+    SYNC,
+    /**
+     * Запись через буфер в памяти фоновым потоком
+     */
+    BUFFERED,
+    /**
+     * Подтверждение после дозаписи в журнал на диске, применение к БД фоновым потоком
+     */
+    LOG
+}
@@ -0,0 +1,16 @@
+package ru.practicum.enums;
+
+public enum OverflowPolicy {
+    /**
+     * Ждать освобождения места в буфере
+     */
+    BLOCK,
+    /**
+     * Вытеснить самое старое посещение
+     */
+    DROP_OLDEST,
+    /**
+     * Отклонить запрос с кодом 429
+     */
+    REJECT
+}
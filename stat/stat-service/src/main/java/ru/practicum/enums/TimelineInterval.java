@@ -0,0 +1,40 @@
+package ru.practicum.enums;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Шаг временного ряда статистики.
+ */
+public enum TimelineInterval {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    TimelineInterval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Начало интервала, в который попадает момент времени
+     */
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * Число интервалов, которые захватывает период [start, end]
+     */
+    public long count(LocalDateTime start, LocalDateTime end) {
+        return unit.between(floor(start), floor(end)) + 1;
+    }
+
+    /**
+     * Единица для DATE_TRUNC
+     */
+    public String sqlUnit() {
+        return name().toLowerCase();
+    }
+}
@@ -2,9 +2,12 @@ package ru.practicum.handler;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.practicum.exception.IngestRejectedException;
 import ru.practicum.exception.ValidationException;
 
 import java.io.PrintWriter;
@@ -25,9 +28,21 @@ public class GlobalExceptionHandler {
         return new ApiError(HttpStatus.BAD_REQUEST, "Error: ", e.getMessage(), sw.toString());
     }
 
+    /**
+     * Тип ответа задан явно: ошибка потокового запроса статистики (Accept: application/x-ndjson)
+     * тоже возвращается в JSON, а не превращается в 500 из-за несовместимого Accept.
+     */
     @ExceptionHandler(ValidationException.class)
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    public Map<String, String> handleCustomValidationException(ValidationException ex) {
+    public ResponseEntity<Map<String, String>> handleCustomValidationException(ValidationException ex) {
+        Map<String, String> errors = new HashMap<>();
+        errors.put("error", ex.getMessage());
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(errors);
+    }
+
+    @ExceptionHandler(IngestRejectedException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Map<String, String> handleIngestRejectedException(IngestRejectedException ex) {
+        log.warn("Response Status 429: {}", ex.getMessage());
         Map<String, String> errors = new HashMap<>();
         errors.put("error", ex.getMessage());
         return errors;
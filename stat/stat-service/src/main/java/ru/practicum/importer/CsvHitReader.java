@@ -0,0 +1,94 @@
+package ru.practicum.importer;
+
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение CSV: app,uri,ip,timestamp, время в формате yyyy-MM-dd HH:mm:ss. Поле в двойных кавычках
+ * может содержать запятые, кавычка внутри него удваивается. Строка заголовка пропускается.
+ */
+class CsvHitReader implements HitReader {
+
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final List<String> HEADER = List.of("app", "uri", "ip", "timestamp");
+
+    private final BufferedReader reader;
+    private long line;
+
+    CsvHitReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public EndpointHit next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            List<String> fields = split(text);
+            if (line == 1 && fields.stream().map(String::toLowerCase).toList().equals(HEADER)) {
+                continue;
+            }
+            if (fields.size() != HEADER.size()) {
+                throw new ValidationException("Строка " + line + ": ожидается 4 поля app,uri,ip,timestamp, получено "
+                        + fields.size() + ".");
+            }
+            try {
+                return HitReader.hit(line, fields.get(0), fields.get(1), fields.get(2),
+                        LocalDateTime.parse(fields.get(3), DTF));
+            } catch (DateTimeParseException e) {
+                throw new ValidationException("Строка " + line + ": время должно быть в формате yyyy-MM-dd HH:mm:ss.");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private List<String> split(String text) {
+        List<String> fields = new ArrayList<>(HEADER.size());
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new ValidationException("Строка " + line + ": не закрыта кавычка.");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
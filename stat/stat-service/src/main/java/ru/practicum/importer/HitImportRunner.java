@@ -0,0 +1,61 @@
+package ru.practicum.importer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.practicum.enums.ImportFormat;
+import ru.practicum.service.HitImportService;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Импорт посещений из файла из командной строки:
+ * {@code java -jar stat-service-exec.jar --spring.main.web-application-type=none --stat-service.import.file=hits.csv.gz}.
+ * После импорта приложение завершается с кодом 0, при ошибке — с кодом 1.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stat-service.import.file")
+public class HitImportRunner implements ApplicationRunner {
+
+    private final HitImportService hitImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${stat-service.import.file}")
+    private Path file;
+
+    @Value("${stat-service.import.format:#{null}}")
+    private ImportFormat format;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try (InputStream in = open(file)) {
+            ImportFormat fileFormat = format != null ? format : ImportFormat.fromFileName(file.getFileName().toString());
+            log.info("Импорт посещений из {}, формат {}", file.toAbsolutePath(), fileFormat);
+            hitImportService.importHits(in, fileFormat);
+        } catch (IOException | RuntimeException e) {
+            log.error("Импорт посещений из {} не выполнен: {}", file, e.getMessage(), e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        return file.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+}
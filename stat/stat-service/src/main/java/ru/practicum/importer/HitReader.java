@@ -0,0 +1,41 @@
+package ru.practicum.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.practicum.enums.ImportFormat;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+
+/**
+ * Последовательное чтение посещений из потока импорта без накопления в памяти.
+ */
+public interface HitReader extends Closeable {
+
+    /**
+     * Следующее посещение или null, если поток закончился.
+     *
+     * @throws ValidationException если запись не разобрана или в ней не хватает полей
+     */
+    EndpointHit next() throws IOException;
+
+    static HitReader open(InputStream in, ImportFormat format, ObjectMapper objectMapper) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvHitReader(in);
+            case NDJSON -> new NdjsonHitReader(in, objectMapper);
+        };
+    }
+
+    /**
+     * Посещение из полей записи с проверкой, что все поля заполнены.
+     */
+    static EndpointHit hit(long line, String app, String uri, String ip, LocalDateTime timestamp) {
+        if (app == null || uri == null || ip == null || timestamp == null) {
+            throw new ValidationException("Строка " + line + ": должны быть заполнены app, uri, ip и timestamp.");
+        }
+        return new EndpointHit(null, app, uri, ip, timestamp);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Чтение NDJSON: по одному объекту EndpointHitDto на строку, как в потоковом POST /hits.
+ */
+class NdjsonHitReader implements HitReader {
+
+    private final MappingIterator<EndpointHitDto> iterator;
+
+    NdjsonHitReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.iterator = objectMapper.readerFor(EndpointHitDto.class).readValues(in);
+    }
+
+    @Override
+    public EndpointHit next() throws IOException {
+        try {
+            if (!iterator.hasNextValue()) {
+                return null;
+            }
+            EndpointHitDto dto = iterator.nextValue();
+            return HitReader.hit(iterator.getCurrentLocation().getLineNr(), dto.getApp(), dto.getUri(), dto.getIp(),
+                    dto.getTimestamp());
+        } catch (JsonProcessingException e) {
+            long line = e.getLocation() != null ? e.getLocation().getLineNr() : iterator.getCurrentLocation().getLineNr();
+            throw new ValidationException("Строка " + line + ": " + e.getOriginalMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        iterator.close();
+    }
+}
@@ -5,11 +5,15 @@ import org.mapstruct.Mapping;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.model.EndpointHit;
 
+import java.util.List;
+
 @Mapper(componentModel = "spring")
 public interface EndpointHitMapper {
     @Mapping(target = "id", ignore = true)
     EndpointHit toEntity(EndpointHitDto dto);
 
+    List<EndpointHit> toEntityList(List<EndpointHitDto> dtos);
+
     EndpointHitDto toDto(EndpointHit entity);
 }
 
@@ -0,0 +1,165 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.cold.ColdSegment;
+import ru.practicum.enums.TimelineInterval;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Перечень файлов холодных сегментов и работа с посещениями, которые в них переносятся.
+ * Таблица cold_segments — источник истины: файл, не записанный в неё, считается недописанным.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ColdSegmentRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitStore hitStore;
+
+    public record Manifest(LocalDate day, String file) {
+    }
+
+    public record IpCount(String app, String uri, String ip, long hits) {
+    }
+
+    public record BucketIp(String app, String uri, LocalDateTime bucket, String ip) {
+    }
+
+    public List<Manifest> findAll() {
+        return jdbcTemplate.query("SELECT segment_day, file FROM cold_segments ORDER BY segment_day",
+                (rs, rowNum) -> new Manifest(rs.getDate("segment_day").toLocalDate(), rs.getString("file")));
+    }
+
+    public void save(LocalDate day, ColdSegment segment) {
+        jdbcTemplate.update("DELETE FROM cold_segments WHERE segment_day = ?", Date.valueOf(day));
+        jdbcTemplate.update("INSERT INTO cold_segments (segment_day, file, hits, min_timestamp, max_timestamp) " +
+                        "VALUES (?, ?, ?, ?, ?)",
+                Date.valueOf(day), segment.path().getFileName().toString(), segment.rows(),
+                Timestamp.valueOf(segment.minTimestamp()), Timestamp.valueOf(segment.maxTimestamp()));
+    }
+
+    public int deleteBefore(LocalDate day) {
+        return jdbcTemplate.update("DELETE FROM cold_segments WHERE segment_day < ?", Date.valueOf(day));
+    }
+
+    /**
+     * Самое раннее посещение до to, не раньше from (если задан), — следующий день для уплотнения.
+     */
+    public Optional<LocalDateTime> findFirstHit(LocalDateTime from, LocalDateTime to) {
+        Timestamp first = from == null
+                ? jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + hitStore.table() +
+                        " WHERE timestamp < ?", Timestamp.class, Timestamp.valueOf(to))
+                : jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + hitStore.table() +
+                        " WHERE timestamp >= ? AND timestamp < ?", Timestamp.class, Timestamp.valueOf(from),
+                        Timestamp.valueOf(to));
+        return Optional.ofNullable(first).map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * Перенос посещений за сутки day: каждое прочитанное посещение передаётся consumer и удаляется
+     * из таблицы по id пакетами по FETCH_SIZE. Удаляются ровно прочитанные посещения: порядок id
+     * не совпадает с порядком фиксации, поэтому граница по id могла бы удалить посещение, которое
+     * зафиксировано после чтения, но получило меньший id. Возвращает число перенесённых посещений.
+     * Читается курсором, поэтому вызывать нужно внутри транзакции.
+     */
+    public long moveDay(LocalDate day, Consumer<ColdSegment.Row> consumer) {
+        long[] moved = {0};
+        List<Long> ids = new ArrayList<>(FETCH_SIZE);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT id, app, uri, ip, timestamp FROM " + hitStore.source() +
+                    " WHERE timestamp >= ? AND timestamp < ?");
+            ps.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            consumer.accept(new ColdSegment.Row(rs.getString("app"), rs.getString("uri"), hitStore.readIp(rs),
+                    rs.getTimestamp("timestamp").toLocalDateTime()));
+            ids.add(rs.getLong("id"));
+            moved[0]++;
+            if (ids.size() == FETCH_SIZE) {
+                deleteIds(day, ids);
+            }
+        });
+        deleteIds(day, ids);
+        return moved[0];
+    }
+
+    private void deleteIds(LocalDate day, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("DELETE FROM " + hitStore.table() +
+                    " WHERE timestamp >= ? AND timestamp < ? AND id = ANY(?)");
+            ps.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            ps.setArray(3, connection.createArrayOf("BIGINT", ids.toArray()));
+            return ps;
+        });
+        ids.clear();
+    }
+
+    /**
+     * Число посещений по app, uri и ip за [start, end] — для точного подсчёта уникальных просмотров
+     * вместе с холодными сегментами. Читается курсором, поэтому вызывать нужно внутри транзакции.
+     */
+    public void streamIpCounts(LocalDateTime start, LocalDateTime end, List<String> uris, Consumer<IpCount> consumer) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String sql = "SELECT app, uri, ip, COUNT(*) AS hits FROM " + hitStore.source() +
+                " WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri = ANY(?)" : "") +
+                " GROUP BY app, uri, ip";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new IpCount(rs.getString("app"), rs.getString("uri"),
+                hitStore.readIp(rs), rs.getLong("hits"))));
+    }
+
+    /**
+     * Различные ip по app, uri и интервалу за [start, end] — для уникальных просмотров во временном ряду
+     * вместе с холодными сегментами. Читается курсором, поэтому вызывать нужно внутри транзакции.
+     */
+    public void streamBucketIps(LocalDateTime start, LocalDateTime end, List<String> uris, TimelineInterval interval,
+                                Consumer<BucketIp> consumer) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String bucket = "DATE_TRUNC('" + interval.sqlUnit() + "', timestamp)";
+        String sql = "SELECT app, uri, " + bucket + " AS bucket, ip FROM " + hitStore.source() +
+                " WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri = ANY(?)" : "") +
+                " GROUP BY app, uri, " + bucket + ", ip";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new BucketIp(rs.getString("app"), rs.getString("uri"),
+                rs.getTimestamp("bucket").toLocalDateTime(), hitStore.readIp(rs))));
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Отметки о непрерывном ведении производных данных (агрегатов, скетчей). Данные сливаются с таблицами
+ * периодически, и отметка хранит границу complete_before: часы раньше неё в таблицах полные. Отметка
+ * снимается при запуске с выключенным ведением: посещения, записанные в это время, в производные данные
+ * не попадают, и без отметки данные пересчитываются целиком при следующем включении.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DerivedStateRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Граница полноты данных; пусто, если отметки нет или граница не задана — тогда данные
+     * пересчитываются целиком.
+     */
+    public Optional<LocalDateTime> findCompleteBefore(String name) {
+        List<Timestamp> found = jdbcTemplate.queryForList(
+                "SELECT complete_before FROM derived_state WHERE name = ?", Timestamp.class, name);
+        return found.isEmpty() || found.getFirst() == null
+                ? Optional.empty()
+                : Optional.of(found.getFirst().toLocalDateTime());
+    }
+
+    public void saveCompleteBefore(String name, LocalDateTime completeBefore) {
+        int updated = jdbcTemplate.update("UPDATE derived_state SET complete_before = ? WHERE name = ?",
+                Timestamp.valueOf(completeBefore), name);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO derived_state (name, rebuilt_at, complete_before) VALUES (?, ?, ?)",
+                    name, Timestamp.valueOf(LocalDateTime.now()), Timestamp.valueOf(completeBefore));
+        }
+    }
+
+    public void clear(String name) {
+        jdbcTemplate.update("DELETE FROM derived_state WHERE name = ?", name);
+    }
+}
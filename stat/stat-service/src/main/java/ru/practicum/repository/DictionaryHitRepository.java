@@ -0,0 +1,262 @@
+package ru.practicum.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище посещений со словарным кодированием (режим dictionary): app и uri заменяются
+ * целочисленными ключами словарей hit_apps и hit_uris, ip хранится в двоичном виде (см. {@link IpCodec}).
+ * Группировка и подсчёт уникальных ip идут по ключам, строки подставляются только в итоговые записи.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "stat-service.storage.encoding", havingValue = "dictionary")
+public class DictionaryHitRepository implements HitStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO endpoint_hits_encoded (app_id, uri_id, ip, timestamp) VALUES (?, ?, ?, ?)";
+
+    private static final String SOURCE =
+            "(SELECT h.id, a.app, u.uri, h.ip, h.timestamp FROM endpoint_hits_encoded h " +
+            "JOIN hit_apps a ON a.id = h.app_id JOIN hit_uris u ON u.id = h.uri_id) h";
+
+    private static final String INTERN_POSTGRESQL =
+            "INSERT INTO %1$s (%2$s) VALUES (?) ON CONFLICT (%2$s) DO NOTHING";
+
+    private static final String INTERN_H2 =
+            "MERGE INTO %1$s d USING (SELECT CAST(? AS VARCHAR(255)) AS %2$s) v ON d.%2$s = v.%2$s " +
+            "WHEN NOT MATCHED THEN INSERT (%2$s) VALUES (v.%2$s)";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseType databaseType;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    @Value("${stat-service.ingest.jdbc-batch-size:500}")
+    private int batchSize;
+
+    public DictionaryHitRepository(JdbcTemplate jdbcTemplate, DatabaseType databaseType,
+                                   PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.databaseType = databaseType;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Перенос посещений, накопленных в режиме plain, при первом запуске в режиме dictionary.
+     */
+    @PostConstruct
+    void migrate() {
+        if (!isEmpty("endpoint_hits_encoded") || isEmpty("endpoint_hits")) {
+            return;
+        }
+        long total = transactionTemplate.execute(status -> {
+            List<EndpointHit> chunk = new ArrayList<>(batchSize);
+            long[] count = new long[1];
+            jdbcTemplate.query(connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                        "SELECT app, uri, ip, timestamp FROM endpoint_hits");
+                ps.setFetchSize(FETCH_SIZE);
+                return ps;
+            }, rs -> {
+                chunk.add(new EndpointHit(null, rs.getString("app"), rs.getString("uri"), rs.getString("ip"),
+                        rs.getTimestamp("timestamp").toLocalDateTime()));
+                if (chunk.size() == batchSize) {
+                    batchInsert(chunk);
+                    count[0] += chunk.size();
+                    chunk.clear();
+                }
+            });
+            batchInsert(chunk);
+            return count[0] + chunk.size();
+        });
+        log.info("Посещения перенесены в словарное хранилище, количество: {}", total);
+    }
+
+    @Override
+    public String table() {
+        return "endpoint_hits_encoded";
+    }
+
+    @Override
+    public String source() {
+        return SOURCE;
+    }
+
+    @Override
+    public String readIp(ResultSet rs) throws SQLException {
+        return IpCodec.decode(rs.getBytes("ip"));
+    }
+
+    @Override
+    public void batchInsert(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> apps = new HashMap<>();
+        Map<String, Integer> uris = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            apps.computeIfAbsent(hit.getApp(), app -> intern(appIds, "hit_apps", "app", app));
+            uris.computeIfAbsent(hit.getUri(), uri -> intern(uriIds, "hit_uris", "uri", uri));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, hits, batchSize, (ps, hit) -> {
+            ps.setInt(1, apps.get(hit.getApp()));
+            ps.setInt(2, uris.get(hit.getUri()));
+            ps.setBytes(3, IpCodec.encode(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    /**
+     * ip кодируется на стороне приложения, поэтому строки читаются курсором и записываются пакетами.
+     */
+    @Override
+    public void insertFrom(String table) {
+        List<EndpointHit> chunk = new ArrayList<>(batchSize);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT app, uri, ip, timestamp FROM " + table);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            chunk.add(new EndpointHit(null, rs.getString("app"), rs.getString("uri"), rs.getString("ip"),
+                    rs.getTimestamp("timestamp").toLocalDateTime()));
+            if (chunk.size() == batchSize) {
+                batchInsert(chunk);
+                chunk.clear();
+            }
+        });
+        batchInsert(chunk);
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        List<ViewStats> result = new ArrayList<>();
+        streamStats(start, end, uris, unique, result::add);
+        return result;
+    }
+
+    /**
+     * Порядок записей совпадает с JPQL-запросом режима plain: по числу посещений, а не по значению hits.
+     */
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String sql = "SELECT a.app, u.uri, s.hits FROM (" +
+                "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits, " +
+                "COUNT(*) AS total FROM endpoint_hits_encoded " +
+                "WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri_id IN (SELECT id FROM hit_uris WHERE uri = ANY(?))" : "") +
+                " GROUP BY app_id, uri_id) s " +
+                "JOIN hit_apps a ON a.id = s.app_id JOIN hit_uris u ON u.id = s.uri_id " +
+                "ORDER BY s.total DESC";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs ->
+                consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        return jdbcTemplate.query("SELECT a.app, u.uri, s.hits FROM (" +
+                        "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                        "FROM endpoint_hits_encoded WHERE timestamp BETWEEN ? AND ? GROUP BY app_id, uri_id " +
+                        "ORDER BY hits DESC LIMIT ?) s " +
+                        "JOIN hit_apps a ON a.id = s.app_id JOIN hit_uris u ON u.id = s.uri_id ORDER BY s.hits DESC",
+                (rs, rowNum) -> new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                Timestamp.valueOf(start), Timestamp.valueOf(end), n);
+    }
+
+    @Override
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                             TimelineInterval interval) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String bucket = "DATE_TRUNC('" + interval.sqlUnit() + "', timestamp)";
+        String sql = "SELECT a.app, u.uri, s.bucket, s.hits FROM (" +
+                "SELECT app_id, uri_id, " + bucket + " AS bucket, " +
+                (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                "FROM endpoint_hits_encoded WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri_id IN (SELECT id FROM hit_uris WHERE uri = ANY(?))" : "") +
+                " GROUP BY app_id, uri_id, " + bucket + ") s " +
+                "JOIN hit_apps a ON a.id = s.app_id JOIN hit_uris u ON u.id = s.uri_id " +
+                "ORDER BY u.uri, a.app, s.bucket";
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            return ps;
+        }, (rs, rowNum) -> new ViewStatsBucket(rs.getString("app"), rs.getString("uri"),
+                rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+
+    /**
+     * Ключ значения в словаре. Новое значение добавляется в транзакции записи посещений, а в кэш
+     * попадает только после её фиксации: откат записи не оставит в кэше ключ несуществующей строки,
+     * и для словаря не занимается второе соединение из пула.
+     */
+    private int intern(Map<String, Integer> cache, String table, String column, String value) {
+        Integer cached = cache.get(value);
+        if (cached != null) {
+            return cached;
+        }
+        String sql = (databaseType == DatabaseType.POSTGRESQL ? INTERN_POSTGRESQL : INTERN_H2)
+                .formatted(table, column);
+        jdbcTemplate.update(sql, value);
+        Integer id = jdbcTemplate.queryForObject("SELECT id FROM " + table + " WHERE " + column + " = ?",
+                Integer.class, value);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(value, id);
+                }
+            });
+        } else {
+            cache.put(value, id);
+        }
+        return id;
+    }
+
+    private boolean isEmpty(String table) {
+        return jdbcTemplate.queryForList("SELECT 1 FROM " + table + " LIMIT 1").isEmpty();
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище посещений в исходном виде (режим plain). Пакетная запись идёт через JDBC в обход JPA:
+ * без IDENTITY round-trip на каждую строку.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stat-service.storage.encoding", havingValue = "plain", matchIfMissing = true)
+public class EndpointHitJdbcRepository implements HitStore {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO endpoint_hits (app, uri, ip, timestamp) VALUES (?, ?, ?, ?)";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatsRepository statsRepository;
+
+    @Value("${stat-service.ingest.jdbc-batch-size:500}")
+    private int batchSize;
+
+    @Override
+    public String table() {
+        return "endpoint_hits";
+    }
+
+    @Override
+    public String source() {
+        return "endpoint_hits";
+    }
+
+    @Override
+    public String readIp(ResultSet rs) throws SQLException {
+        return rs.getString("ip");
+    }
+
+    @Override
+    public void batchInsert(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, hits, batchSize, (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setString(2, hit.getUri());
+            ps.setString(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    @Override
+    public void insertFrom(String table) {
+        jdbcTemplate.update("INSERT INTO endpoint_hits (app, uri, ip, timestamp) SELECT app, uri, ip, timestamp FROM " + table);
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return statsRepository.getStats(start, end, uris, unique);
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String sql = "SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                "FROM endpoint_hits WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri = ANY(?)" : "") +
+                " GROUP BY app, uri ORDER BY COUNT(*) DESC";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs ->
+                consumer.accept(new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    @Override
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        return jdbcTemplate.query("SELECT app, uri, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                        "FROM endpoint_hits WHERE timestamp BETWEEN ? AND ? GROUP BY app, uri ORDER BY hits DESC LIMIT ?",
+                (rs, rowNum) -> new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")),
+                Timestamp.valueOf(start), Timestamp.valueOf(end), n);
+    }
+
+    @Override
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                             TimelineInterval interval) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String bucket = "DATE_TRUNC('" + interval.sqlUnit() + "', timestamp)";
+        String sql = "SELECT app, uri, " + bucket + " AS bucket, " +
+                (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits " +
+                "FROM endpoint_hits WHERE timestamp BETWEEN ? AND ?" +
+                (filterUris ? " AND uri = ANY(?)" : "") +
+                " GROUP BY app, uri, " + bucket + " ORDER BY uri, app, bucket";
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            if (filterUris) {
+                ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            }
+            return ps;
+        }, (rs, rowNum) -> new ViewStatsBucket(rs.getString("app"), rs.getString("uri"),
+                rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+}
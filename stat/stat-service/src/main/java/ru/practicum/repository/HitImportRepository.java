@@ -0,0 +1,158 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.importer.HitReader;
+import ru.practicum.model.EndpointHit;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Временная таблица массового импорта посещений. Посещения сначала целиком загружаются в неё —
+ * в PostgreSQL через COPY, в H2 пакетными вставками, — а затем одним запросом переносятся
+ * в хранилище и агрегаты. Таблица живёт до конца транзакции импорта.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HitImportRepository {
+
+    public static final String STAGING = "endpoint_hits_import";
+
+    private static final String CREATE_STAGING =
+            "CREATE %s TABLE " + STAGING + " (app VARCHAR(255) NOT NULL, uri VARCHAR(255) NOT NULL, " +
+            "ip VARCHAR(255) NOT NULL, timestamp TIMESTAMP NOT NULL) ON COMMIT DROP";
+
+    private static final String COPY_SQL =
+            "COPY " + STAGING + " (app, uri, ip, timestamp) FROM STDIN (FORMAT csv)";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO " + STAGING + " (app, uri, ip, timestamp) VALUES (?, ?, ?, ?)";
+
+    private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseType databaseType;
+
+    @Value("${stat-service.ingest.jdbc-batch-size:500}")
+    private int batchSize;
+
+    public void createStaging() {
+        jdbcTemplate.execute(CREATE_STAGING.formatted(databaseType == DatabaseType.POSTGRESQL ? "TEMP" : "LOCAL TEMPORARY"));
+    }
+
+    /**
+     * Загрузка всех посещений из reader во временную таблицу. Возвращает их число.
+     * Вызывать в транзакции импорта, после {@link #createStaging()}.
+     */
+    public long load(HitReader reader) {
+        return databaseType == DatabaseType.POSTGRESQL ? copy(reader) : insert(reader);
+    }
+
+    /**
+     * Посещения из временной таблицы не раньше since — для структур в памяти, которые покрывают недавний период.
+     */
+    public void streamSince(LocalDateTime since, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT app, uri, ip, timestamp FROM " + STAGING + " WHERE timestamp >= ?");
+            ps.setTimestamp(1, Timestamp.valueOf(since));
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new EndpointHit(null, rs.getString("app"), rs.getString("uri"),
+                rs.getString("ip"), rs.getTimestamp("timestamp").toLocalDateTime())));
+    }
+
+    private long copy(HitReader reader) {
+        Long count = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            long copied = 0;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(pgConnection, COPY_SQL, COPY_BUFFER_SIZE), StandardCharsets.UTF_8))) {
+                EndpointHit hit;
+                while ((hit = reader.next()) != null) {
+                    writeField(out, hit.getApp());
+                    out.write(',');
+                    writeField(out, hit.getUri());
+                    out.write(',');
+                    writeField(out, hit.getIp());
+                    out.write(',');
+                    out.write(DTF.format(hit.getTimestamp()));
+                    out.write('\n');
+                    copied++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось загрузить посещения через COPY", e);
+            }
+            return copied;
+        });
+        return count == null ? 0 : count;
+    }
+
+    private long insert(HitReader reader) {
+        long inserted = 0;
+        List<EndpointHit> chunk = new ArrayList<>(batchSize);
+        try {
+            EndpointHit hit;
+            while ((hit = reader.next()) != null) {
+                chunk.add(hit);
+                if (chunk.size() == batchSize) {
+                    insertChunk(chunk);
+                    inserted += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать посещения для импорта", e);
+        }
+        insertChunk(chunk);
+        return inserted + chunk.size();
+    }
+
+    private void insertChunk(List<EndpointHit> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, chunk, chunk.size(), (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setString(2, hit.getUri());
+            ps.setString(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+
+    /**
+     * Поле CSV в кавычках: так COPY не путает запятые и переводы строк в uri с разделителями.
+     */
+    private static void writeField(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.repository;
+
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище исходных посещений. Реализация выбирается свойством stat-service.storage.encoding:
+ * plain — строки как есть, dictionary — app и uri заменены ключами словарей, ip хранится в двоичном виде.
+ */
+public interface HitStore {
+
+    /**
+     * Физическая таблица посещений (для секционирования и удаления устаревших данных).
+     */
+    String table();
+
+    /**
+     * Источник для SQL-запросов по исходным посещениям со столбцами app, uri, ip и timestamp.
+     * Значение ip читается через {@link #readIp(ResultSet)}.
+     */
+    String source();
+
+    String readIp(ResultSet rs) throws SQLException;
+
+    void batchInsert(List<EndpointHit> hits);
+
+    /**
+     * Перенос посещений из таблицы со столбцами app, uri, ip и timestamp — завершение массового импорта.
+     */
+    void insertFrom(String table);
+
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    /**
+     * Та же статистика, что и {@link #getStats}, но строки читаются курсором и передаются по одной,
+     * не накапливаясь в памяти. Вызывать внутри транзакции, иначе драйвер PostgreSQL прочитает всё сразу.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    /**
+     * Первые n записей статистики по убыванию посещений (уникальных, если unique).
+     */
+    List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n, boolean unique);
+
+    /**
+     * Временной ряд посещений за [start, end]: одно сгруппированное чтение по app, uri и интервалу.
+     * Интервалы без посещений не возвращаются. Записи упорядочены по uri, app и началу интервала.
+     */
+    List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                      TimelineInterval interval);
+}
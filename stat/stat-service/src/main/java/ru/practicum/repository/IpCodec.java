@@ -0,0 +1,95 @@
+package ru.practicum.repository;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Компактное двоичное представление ip: байт типа и значение. Тип {@link #IPV4} — 4 байта адреса,
+ * {@link #IPV6} — 16 байт, {@link #TEXT} — UTF-8 строки, которая не является адресом в канонической
+ * записи. Декодирование выбирает формат по типу и всегда возвращает исходную строку.
+ */
+public final class IpCodec {
+
+    static final byte IPV4 = 0;
+    static final byte IPV6 = 1;
+    static final byte TEXT = 2;
+
+    private static final int IPV4_LENGTH = 4;
+    private static final int IPV6_LENGTH = 16;
+
+    private IpCodec() {
+    }
+
+    public static byte[] encode(String ip) {
+        byte[] address = parseCanonical(ip);
+        byte[] value = address != null ? address : ip.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = new byte[value.length + 1];
+        encoded[0] = address == null ? TEXT : address.length == IPV4_LENGTH ? IPV4 : IPV6;
+        System.arraycopy(value, 0, encoded, 1, value.length);
+        return encoded;
+    }
+
+    public static String decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Пустое значение ip");
+        }
+        return switch (bytes[0]) {
+            case IPV4 -> address(bytes, IPV4_LENGTH);
+            case IPV6 -> address(bytes, IPV6_LENGTH);
+            case TEXT -> new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("Неизвестный тип значения ip: " + bytes[0]);
+        };
+    }
+
+    private static String address(byte[] bytes, int length) {
+        if (bytes.length != length + 1) {
+            throw new IllegalArgumentException("Некорректная длина адреса: " + (bytes.length - 1));
+        }
+        try {
+            return InetAddress.getByAddress(Arrays.copyOfRange(bytes, 1, bytes.length)).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Некорректная длина адреса: " + (bytes.length - 1), e);
+        }
+    }
+
+    /**
+     * Адрес в двоичном виде, если строка записана ровно так, как её вернёт декодирование, иначе null.
+     * Разбор не обращается к DNS: IPv4 разбирается вручную, а IPv6 передаётся в InetAddress только
+     * как литерал с двоеточием.
+     */
+    private static byte[] parseCanonical(String ip) {
+        if (ip.indexOf(':') >= 0 && ip.indexOf('%') < 0) {
+            try {
+                InetAddress address = InetAddress.getByName(ip);
+                return address.getAddress().length == IPV6_LENGTH && address.getHostAddress().equals(ip)
+                        ? address.getAddress()
+                        : null;
+            } catch (UnknownHostException e) {
+                return null;
+            }
+        }
+        if (ip.indexOf(':') >= 0) {
+            return null;
+        }
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != IPV4_LENGTH) {
+            return null;
+        }
+        byte[] address = new byte[IPV4_LENGTH];
+        for (int i = 0; i < IPV4_LENGTH; i++) {
+            String part = parts[i];
+            if (part.isEmpty() || part.length() > 3 || part.length() > 1 && part.charAt(0) == '0'
+                    || !part.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                return null;
+            }
+            int value = Integer.parseInt(part);
+            if (value > 255) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+}
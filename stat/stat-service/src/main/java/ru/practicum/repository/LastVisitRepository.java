@@ -0,0 +1,49 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Последнее посещение каждого ip по app и uri. Ip посещал uri в [from, end] тогда и только тогда,
+ * когда его последнее посещение за более широкий период [start, end] не раньше from, поэтому
+ * одно чтение за самый широкий период отвечает на запросы уникальных просмотров с любым началом внутри него.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LastVisitRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitStore hitStore;
+
+    /**
+     * Последние посещения за [start, end] по uri из списка. Читается курсором, поэтому вызывать нужно
+     * внутри транзакции.
+     */
+    public void streamLastVisits(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                 Consumer<LastVisit> consumer) {
+        String sql = "SELECT app, uri, MAX(timestamp) AS last_visit FROM " + hitStore.source() +
+                " WHERE timestamp BETWEEN ? AND ? AND uri = ANY(?) GROUP BY app, uri, ip";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(start));
+            ps.setTimestamp(2, Timestamp.valueOf(end));
+            ps.setArray(3, connection.createArrayOf("VARCHAR", uris.toArray()));
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new LastVisit(rs.getString("app"), rs.getString("uri"),
+                rs.getTimestamp("last_visit").toLocalDateTime())));
+    }
+
+    public record LastVisit(String app, String uri, LocalDateTime timestamp) {
+    }
+}
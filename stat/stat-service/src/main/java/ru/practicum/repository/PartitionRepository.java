@@ -0,0 +1,159 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Помесячные секции таблицы посещений (декларативное секционирование PostgreSQL).
+ * Секция за месяц называется &lt;таблица&gt;_yyyy_mm, строки вне созданных секций попадают в &lt;таблица&gt;_default.
+ * Таблица зависит от режима хранения, см. {@link HitStore#table()}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+
+    private static final Pattern PARTITION_SUFFIX = Pattern.compile("_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final List<String> AGGREGATE_TABLES =
+            List.of("endpoint_hits_minutely", "endpoint_hits_hourly", "endpoint_hits_hourly_sketch");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitStore hitStore;
+
+    public String partitionName(YearMonth month) {
+        return hitStore.table() + "_" + month.format(NAME_FORMAT);
+    }
+
+    public Optional<YearMonth> partitionMonth(String name) {
+        if (!name.startsWith(hitStore.table())) {
+            return Optional.empty();
+        }
+        Matcher matcher = PARTITION_SUFFIX.matcher(name.substring(hitStore.table().length()));
+        return matcher.matches()
+                ? Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))))
+                : Optional.empty();
+    }
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                "WHERE c.relname = ? AND pg_table_is_visible(c.oid))", Boolean.class, hitStore.table()));
+    }
+
+    /**
+     * Перевод несекционированной таблицы из старой схемы на секции: таблица со всеми строками становится
+     * секцией по умолчанию новой секционированной таблицы с тем же именем, столбцами и индексами.
+     * Строки не копируются; единственная долгая операция — построение первичного ключа (id, timestamp)
+     * на старой таблице при подключении, всё это время таблица заблокирована. Вызывать в транзакции.
+     */
+    public void migrateLegacyTable() {
+        String table = hitStore.table();
+        String legacy = defaultPartition();
+        String sequence = table + "_id_seq";
+        List<String> indexes = jdbcTemplate.queryForList("SELECT indexdef FROM pg_indexes " +
+                "WHERE tablename = ? AND indexname <> ? AND schemaname = current_schema()", String.class,
+                table, table + "_pkey");
+        List<String> indexNames = jdbcTemplate.queryForList("SELECT indexname FROM pg_indexes " +
+                "WHERE tablename = ? AND schemaname = current_schema()", String.class, table);
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + legacy);
+        for (String index : indexNames) {
+            jdbcTemplate.execute("ALTER INDEX " + index + " RENAME TO " + legacy + "_" + index);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + legacy + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + sequence);
+        jdbcTemplate.queryForObject("SELECT setval(?::regclass, ?, false)", Long.class, sequence, maxId + 1);
+
+        jdbcTemplate.execute("CREATE TABLE " + table + " (LIKE " + legacy + " INCLUDING DEFAULTS) " +
+                "PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id SET DEFAULT nextval('" + sequence + "')");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (id, timestamp)");
+        // Определения индексов сняты до переименования и ссылаются на новую таблицу; при подключении
+        // секции PostgreSQL сопоставит их с такими же индексами старой таблицы, а не построит заново
+        indexes.forEach(jdbcTemplate::execute);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + legacy + " DEFAULT");
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ? AND pg_table_is_visible(p.oid)",
+                String.class, hitStore.table());
+    }
+
+    public void createDefaultPartition() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + defaultPartition() + " PARTITION OF " + hitStore.table() +
+                " DEFAULT");
+    }
+
+    /**
+     * Месяцы, посещения за которые лежат в секции по умолчанию.
+     */
+    public List<YearMonth> findDefaultPartitionMonths() {
+        return jdbcTemplate.queryForList("SELECT DISTINCT DATE_TRUNC('month', timestamp) FROM " + defaultPartition(),
+                Timestamp.class).stream()
+                .map(ts -> YearMonth.from(ts.toLocalDateTime()))
+                .toList();
+    }
+
+    /**
+     * Создание секции за месяц. Строки этого месяца, попавшие в секцию по умолчанию,
+     * переносятся в новую секцию до её подключения, иначе PostgreSQL откажет в ATTACH.
+     * Вызывать в транзакции.
+     */
+    public void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + hitStore.table() + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition() +
+                " WHERE timestamp >= ? AND timestamp < ? RETURNING *) INSERT INTO " + name + " SELECT * FROM moved",
+                from, to);
+        jdbcTemplate.execute("ALTER TABLE " + hitStore.table() + " ATTACH PARTITION " + name +
+                " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    public void dropPartition(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(month));
+    }
+
+    public int deleteFromDefaultPartitionBefore(LocalDate cutoff) {
+        return jdbcTemplate.update("DELETE FROM " + defaultPartition() + " WHERE timestamp < ?",
+                Timestamp.valueOf(cutoff.atStartOfDay()));
+    }
+
+    /**
+     * Удаление посещений старше границы пакетами, для хранилищ без секций.
+     */
+    public int deleteHitsBefore(LocalDateTime cutoff, int batchSize) {
+        return jdbcTemplate.update("DELETE FROM " + hitStore.table() + " WHERE id IN " +
+                "(SELECT id FROM " + hitStore.table() + " WHERE timestamp < ? LIMIT ?)", Timestamp.valueOf(cutoff), batchSize);
+    }
+
+    /**
+     * Удаление агрегатов и скетчей за интервалы старше границы. Эти таблицы на порядки меньше
+     * исходных посещений, поэтому секционировать их не нужно.
+     */
+    public void deleteAggregatesBefore(LocalDateTime cutoff) {
+        for (String table : AGGREGATE_TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket < ?", Timestamp.valueOf(cutoff));
+        }
+    }
+
+    private String defaultPartition() {
+        return hitStore.table() + "_default";
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Чтение исходных посещений за недавний период для восстановления структур в памяти.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RecentHitRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HitStore hitStore;
+
+    /**
+     * Посещения не раньше from. Читается курсором, поэтому вызывать нужно внутри транзакции.
+     */
+    public void streamSince(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT app, uri, ip, timestamp FROM " + hitStore.source() + " WHERE timestamp >= ?");
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new EndpointHit(null, rs.getString("app"), rs.getString("uri"),
+                hitStore.readIp(rs), rs.getTimestamp("timestamp").toLocalDateTime())));
+    }
+}
@@ -0,0 +1,232 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.enums.TimelineInterval;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Агрегаты посещений по интервалам времени (поминутно и почасово) в разрезе app + uri.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RollupRepository {
+
+    public record BucketKey(String app, String uri, LocalDateTime bucket) {
+    }
+
+    /**
+     * Части периода, которые берутся из агрегатов: [minuteStart, minuteEnd) — целые минуты, внутри них
+     * [hourStart, hourEnd) — целые часы. Без почасовой части (hours = false или нет ни одного целого часа)
+     * hourStart = hourEnd = minuteEnd.
+     */
+    public record Parts(LocalDateTime minuteStart, LocalDateTime hourStart,
+                        LocalDateTime hourEnd, LocalDateTime minuteEnd) {
+
+        public static Parts of(LocalDateTime start, LocalDateTime end, boolean hours) {
+            LocalDateTime minuteStart = TimeBucket.MINUTE.ceil(start);
+            LocalDateTime minuteEnd = TimeBucket.MINUTE.floor(end);
+            LocalDateTime hourStart = TimeBucket.HOUR.ceil(minuteStart);
+            LocalDateTime hourEnd = TimeBucket.HOUR.floor(minuteEnd);
+            if (!hours || !hourStart.isBefore(hourEnd)) {
+                hourStart = minuteEnd;
+                hourEnd = minuteEnd;
+            }
+            return new Parts(minuteStart, hourStart, hourEnd, minuteEnd);
+        }
+
+        /**
+         * Агрегат интервала bucket, начинающийся в момент at, входит в ответ.
+         */
+        public boolean contains(TimeBucket bucket, LocalDateTime at) {
+            return switch (bucket) {
+                case HOUR -> !at.isBefore(hourStart) && at.isBefore(hourEnd);
+                case MINUTE -> !at.isBefore(minuteStart) && at.isBefore(hourStart)
+                        || !at.isBefore(hourEnd) && at.isBefore(minuteEnd);
+            };
+        }
+    }
+
+    private static final String UPSERT_POSTGRESQL =
+            "INSERT INTO %1$s (app, uri, bucket, hits) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri, bucket, app) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits";
+
+    private static final String UPSERT_H2 =
+            "MERGE INTO %s r USING (SELECT CAST(? AS VARCHAR(255)) AS app, CAST(? AS VARCHAR(255)) AS uri, " +
+            "CAST(? AS TIMESTAMP) AS bucket, CAST(? AS BIGINT) AS hits) v " +
+            "ON r.uri = v.uri AND r.bucket = v.bucket AND r.app = v.app " +
+            "WHEN MATCHED THEN UPDATE SET hits = r.hits + v.hits " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri, bucket, hits) VALUES (v.app, v.uri, v.bucket, v.hits)";
+
+    private static final String INCREMENT_FROM_POSTGRESQL =
+            "INSERT INTO %1$s (app, uri, bucket, hits) " +
+            "SELECT app, uri, DATE_TRUNC('%2$s', timestamp) AS bucket, COUNT(*) FROM %3$s " +
+            "GROUP BY app, uri, DATE_TRUNC('%2$s', timestamp) ORDER BY uri, bucket, app " +
+            "ON CONFLICT (uri, bucket, app) DO UPDATE SET hits = %1$s.hits + EXCLUDED.hits";
+
+    private static final String INCREMENT_FROM_H2 =
+            "MERGE INTO %1$s r USING (SELECT app, uri, DATE_TRUNC('%2$s', timestamp) AS bucket, COUNT(*) AS hits " +
+            "FROM %3$s GROUP BY app, uri, DATE_TRUNC('%2$s', timestamp)) v " +
+            "ON r.uri = v.uri AND r.bucket = v.bucket AND r.app = v.app " +
+            "WHEN MATCHED THEN UPDATE SET hits = r.hits + v.hits " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri, bucket, hits) VALUES (v.app, v.uri, v.bucket, v.hits)";
+
+    private static final String BACKFILL =
+            "INSERT INTO %s (app, uri, bucket, hits) " +
+            "SELECT app, uri, DATE_TRUNC('%s', timestamp), COUNT(*) FROM %s " +
+            "GROUP BY app, uri, DATE_TRUNC('%2$s', timestamp)";
+
+    private static final String BACKFILL_FROM =
+            "INSERT INTO %s (app, uri, bucket, hits) " +
+            "SELECT app, uri, DATE_TRUNC('%s', timestamp), COUNT(*) FROM %s WHERE timestamp >= ? " +
+            "GROUP BY app, uri, DATE_TRUNC('%2$s', timestamp)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DatabaseType databaseType;
+    private final HitStore hitStore;
+
+    public static String tableName(TimeBucket bucket) {
+        return switch (bucket) {
+            case MINUTE -> "endpoint_hits_minutely";
+            case HOUR -> "endpoint_hits_hourly";
+        };
+    }
+
+    /**
+     * Прибавляет счётчики к агрегатам. Ключи должны быть отсортированы вызывающей стороной,
+     * чтобы параллельные транзакции блокировали строки в одном порядке.
+     */
+    public void increment(TimeBucket bucket, List<Map.Entry<BucketKey, Long>> deltas) {
+        String sql = (databaseType == DatabaseType.POSTGRESQL ? UPSERT_POSTGRESQL : UPSERT_H2)
+                .formatted(tableName(bucket));
+        jdbcTemplate.batchUpdate(sql, deltas, deltas.size(), (ps, delta) -> {
+            ps.setString(1, delta.getKey().app());
+            ps.setString(2, delta.getKey().uri());
+            ps.setTimestamp(3, Timestamp.valueOf(delta.getKey().bucket()));
+            ps.setLong(4, delta.getValue());
+        });
+    }
+
+    /**
+     * Прибавляет к агрегатам посещения из таблицы со столбцами app, uri, timestamp одним запросом.
+     * Ключи обходятся в том же порядке, что и в {@link #increment}.
+     */
+    public void incrementFrom(TimeBucket bucket, String table) {
+        String sql = databaseType == DatabaseType.POSTGRESQL ? INCREMENT_FROM_POSTGRESQL : INCREMENT_FROM_H2;
+        jdbcTemplate.update(sql.formatted(tableName(bucket), bucket.name().toLowerCase(), table));
+    }
+
+    /**
+     * Пересчёт агрегатов заново по исходным посещениям.
+     */
+    public void rebuild(TimeBucket bucket) {
+        jdbcTemplate.update("DELETE FROM " + tableName(bucket));
+        jdbcTemplate.update(BACKFILL.formatted(tableName(bucket), bucket.name().toLowerCase(), hitStore.source()));
+    }
+
+    /**
+     * Пересчёт агрегатов с момента from, выровненного по часу; без from — всех.
+     */
+    public void rebuild(TimeBucket bucket, LocalDateTime from) {
+        if (from == null) {
+            rebuild(bucket);
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM " + tableName(bucket) + " WHERE bucket >= ?", Timestamp.valueOf(from));
+        jdbcTemplate.update(BACKFILL_FROM.formatted(tableName(bucket), bucket.name().toLowerCase(), hitStore.source()),
+                Timestamp.valueOf(from));
+    }
+
+    /**
+     * Статистика без учёта уникальности за [start, end]. Выровненная по часам середина периода берётся
+     * из почасовых агрегатов, выровненные по минутам края — из поминутных, а невыровненные хвосты
+     * (start, minuteStart) и [minuteEnd, end] — из исходных посещений. Всё считается одним запросом.
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return getStats(start, end, uris, null);
+    }
+
+    /**
+     * То же с ограничением числа записей: первые limit по убыванию посещений.
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Integer limit) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String uriFilter = filterUris ? " AND uri IN (:uris)" : "";
+        String sql = "SELECT app, uri, SUM(hits) AS hits FROM (" +
+                "SELECT app, uri, hits FROM endpoint_hits_hourly " +
+                "WHERE bucket >= :hourStart AND bucket < :hourEnd" + uriFilter +
+                " UNION ALL " +
+                "SELECT app, uri, hits FROM endpoint_hits_minutely " +
+                "WHERE ((bucket >= :minuteStart AND bucket < :hourStart) OR (bucket >= :hourEnd AND bucket < :minuteEnd))" +
+                uriFilter +
+                " UNION ALL " +
+                "SELECT app, uri, COUNT(*) AS hits FROM " + hitStore.source() + " " +
+                "WHERE ((timestamp >= :start AND timestamp < :minuteStart) OR (timestamp >= :minuteEnd AND timestamp <= :end))" +
+                uriFilter + " GROUP BY app, uri" +
+                ") t GROUP BY app, uri ORDER BY SUM(hits) DESC" +
+                (limit != null ? " LIMIT :limit" : "");
+
+        MapSqlParameterSource params = bounds(start, end, true, uris);
+        if (limit != null) {
+            params.addValue("limit", limit);
+        }
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new ViewStats(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+    }
+
+    /**
+     * Временной ряд без учёта уникальности за [start, end] из тех же трёх источников, что и {@link #getStats}.
+     * Почасовые агрегаты используются только для шага не меньше часа: час нельзя разложить по минутам.
+     */
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             TimelineInterval interval) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        String uriFilter = filterUris ? " AND uri IN (:uris)" : "";
+        String sql = "SELECT app, uri, DATE_TRUNC('" + interval.sqlUnit() + "', bucket) AS bucket, SUM(hits) AS hits FROM (" +
+                "SELECT app, uri, bucket, hits FROM endpoint_hits_hourly " +
+                "WHERE bucket >= :hourStart AND bucket < :hourEnd" + uriFilter +
+                " UNION ALL " +
+                "SELECT app, uri, bucket, hits FROM endpoint_hits_minutely " +
+                "WHERE ((bucket >= :minuteStart AND bucket < :hourStart) OR (bucket >= :hourEnd AND bucket < :minuteEnd))" +
+                uriFilter +
+                " UNION ALL " +
+                "SELECT app, uri, DATE_TRUNC('minute', timestamp) AS bucket, COUNT(*) AS hits FROM " + hitStore.source() +
+                " WHERE ((timestamp >= :start AND timestamp < :minuteStart) OR (timestamp >= :minuteEnd AND timestamp <= :end))" +
+                uriFilter + " GROUP BY app, uri, DATE_TRUNC('minute', timestamp)" +
+                ") t GROUP BY app, uri, DATE_TRUNC('" + interval.sqlUnit() + "', bucket) ORDER BY uri, app, bucket";
+        return namedJdbcTemplate.query(sql, bounds(start, end, interval != TimelineInterval.MINUTE, uris),
+                (rs, rowNum) -> new ViewStatsBucket(rs.getString("app"), rs.getString("uri"),
+                        rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+
+    /**
+     * Границы частей периода, см. {@link Parts}.
+     */
+    private static MapSqlParameterSource bounds(LocalDateTime start, LocalDateTime end, boolean hours,
+                                                List<String> uris) {
+        Parts parts = Parts.of(start, end, hours);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("minuteStart", Timestamp.valueOf(parts.minuteStart()))
+                .addValue("hourStart", Timestamp.valueOf(parts.hourStart()))
+                .addValue("hourEnd", Timestamp.valueOf(parts.hourEnd()))
+                .addValue("minuteEnd", Timestamp.valueOf(parts.minuteEnd()))
+                .addValue("end", Timestamp.valueOf(end));
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,144 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.repository.RollupRepository.BucketKey;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Почасовые скетчи HyperLogLog уникальных ip в разрезе app + uri.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+
+    private static final String INSERT_IF_ABSENT_POSTGRESQL =
+            "INSERT INTO endpoint_hits_hourly_sketch (app, uri, bucket, sketch) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri, bucket, app) DO NOTHING";
+
+    private static final String INSERT_IF_ABSENT_H2 =
+            "MERGE INTO endpoint_hits_hourly_sketch r USING (SELECT CAST(? AS VARCHAR(255)) AS app, " +
+            "CAST(? AS VARCHAR(255)) AS uri, CAST(? AS TIMESTAMP) AS bucket, CAST(? AS BYTEA) AS sketch) v " +
+            "ON r.uri = v.uri AND r.bucket = v.bucket AND r.app = v.app " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri, bucket, sketch) VALUES (v.app, v.uri, v.bucket, v.sketch)";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final DatabaseType databaseType;
+    private final HitStore hitStore;
+
+    /**
+     * Исходное посещение, сведённое к ключу скетча; bucket заполняется только при построении скетчей.
+     */
+    public record IpRow(String app, String uri, LocalDateTime bucket, String ip) {
+    }
+
+    /**
+     * Вставка скетча, если для ключа его ещё нет.
+     *
+     * @return false, если скетч уже существует и его нужно объединить с новым
+     */
+    public boolean insertIfAbsent(BucketKey key, byte[] sketch) {
+        String sql = databaseType == DatabaseType.POSTGRESQL ? INSERT_IF_ABSENT_POSTGRESQL : INSERT_IF_ABSENT_H2;
+        return jdbcTemplate.update(sql, key.app(), key.uri(), Timestamp.valueOf(key.bucket()), sketch) > 0;
+    }
+
+    public byte[] findForUpdate(BucketKey key) {
+        return jdbcTemplate.queryForObject(
+                "SELECT sketch FROM endpoint_hits_hourly_sketch WHERE uri = ? AND bucket = ? AND app = ? FOR UPDATE",
+                byte[].class, key.uri(), Timestamp.valueOf(key.bucket()), key.app());
+    }
+
+    public void update(BucketKey key, byte[] sketch) {
+        jdbcTemplate.update("UPDATE endpoint_hits_hourly_sketch SET sketch = ? WHERE uri = ? AND bucket = ? AND app = ?",
+                sketch, key.uri(), Timestamp.valueOf(key.bucket()), key.app());
+    }
+
+    /**
+     * Удаление скетчей за часы не раньше from; без from — всех скетчей.
+     */
+    public void deleteFrom(LocalDateTime from) {
+        if (from == null) {
+            jdbcTemplate.update("DELETE FROM endpoint_hits_hourly_sketch");
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM endpoint_hits_hourly_sketch WHERE bucket >= ?", Timestamp.valueOf(from));
+    }
+
+    /**
+     * Скетчи за часы [from, to), по строке на app + uri + час: app, uri, sketch.
+     */
+    public void findSketches(LocalDateTime from, LocalDateTime to, List<String> uris, RowCallbackHandler handler) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        if (filterUris) {
+            params.addValue("uris", uris);
+        }
+        namedJdbcTemplate.query("SELECT app, uri, sketch FROM endpoint_hits_hourly_sketch " +
+                "WHERE bucket >= :from AND bucket < :to" + (filterUris ? " AND uri IN (:uris)" : ""), params, handler);
+    }
+
+    /**
+     * Уникальные ip исходных посещений за [start, edgeStart) и [edgeEnd, end]: app, uri, ip.
+     */
+    public void findEdgeIps(LocalDateTime start, LocalDateTime edgeStart, LocalDateTime edgeEnd, LocalDateTime end,
+                            List<String> uris, Consumer<IpRow> consumer) {
+        boolean filterUris = uris != null && !uris.isEmpty();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("edgeStart", Timestamp.valueOf(edgeStart))
+                .addValue("edgeEnd", Timestamp.valueOf(edgeEnd))
+                .addValue("end", Timestamp.valueOf(end));
+        if (filterUris) {
+            params.addValue("uris", uris);
+        }
+        namedJdbcTemplate.query("SELECT DISTINCT app, uri, ip FROM " + hitStore.source() + " " +
+                "WHERE ((timestamp >= :start AND timestamp < :edgeStart) OR (timestamp >= :edgeEnd AND timestamp <= :end))" +
+                (filterUris ? " AND uri IN (:uris)" : ""), params, (RowCallbackHandler) rs ->
+                consumer.accept(new IpRow(rs.getString("app"), rs.getString("uri"), null, hitStore.readIp(rs))));
+    }
+
+    /**
+     * Исходные посещения не раньше from (без from — все), упорядоченные по ключу скетча:
+     * app, uri, bucket, ip. Читается курсором, поэтому вызывать нужно внутри транзакции.
+     */
+    public void streamHourlyIps(LocalDateTime from, Consumer<IpRow> consumer) {
+        streamHourlyIps(hitStore.source(), true, from, consumer);
+    }
+
+    /**
+     * То же для посещений массового импорта из временной таблицы, где ip хранится строкой.
+     */
+    public void streamHourlyIps(String table, Consumer<IpRow> consumer) {
+        streamHourlyIps(table, false, null, consumer);
+    }
+
+    private void streamHourlyIps(String source, boolean store, LocalDateTime from, Consumer<IpRow> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT app, uri, DATE_TRUNC('hour', timestamp) AS bucket, ip FROM " + source + " " +
+                    (from == null ? "" : "WHERE timestamp >= ? ") +
+                    "ORDER BY uri, bucket, app");
+            if (from != null) {
+                ps.setTimestamp(1, Timestamp.valueOf(from));
+            }
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new IpRow(rs.getString("app"), rs.getString("uri"),
+                rs.getTimestamp("bucket").toLocalDateTime(), store ? hitStore.readIp(rs) : rs.getString("ip"))));
+    }
+}
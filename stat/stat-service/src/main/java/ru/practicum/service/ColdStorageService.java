@@ -0,0 +1,313 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cold.ColdSegment;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.repository.ColdSegmentRepository;
+import ru.practicum.repository.HitStore;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Холодные сегменты — посещения за старые сутки, перенесённые из таблицы в сжатые файлы
+ * (см. {@link CompactionService}). Запрос, захватывающий такие сутки, складывает результат
+ * по сегментам с результатом по таблице, где остались более свежие и опоздавшие посещения.
+ * Такие запросы обходят агрегаты: неполные минуты и часы по краям периода агрегаты добирают
+ * из таблицы, где уплотнённых посещений уже нет.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ColdStorageService {
+
+    static final Pattern SEGMENT_FILE = Pattern.compile("hits-\\d{4}-\\d{2}-\\d{2}-\\d+\\.seg(\\.tmp)?");
+
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator.comparing(BucketKey::uri)
+            .thenComparing(BucketKey::app)
+            .thenComparing(BucketKey::bucket);
+
+    private final ColdSegmentRepository coldSegmentRepository;
+    private final HitStore hitStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.compaction.dir:./stat/cold}")
+    private Path dir;
+
+    @Value("${stat-service.compaction.exact-unique-limit:10000}")
+    private int exactUniqueLimit;
+
+    private final ConcurrentNavigableMap<LocalDate, ColdSegment> segments = new ConcurrentSkipListMap<>();
+
+    @PostConstruct
+    void load() throws IOException {
+        for (ColdSegmentRepository.Manifest manifest : coldSegmentRepository.findAll()) {
+            Path file = dir.resolve(manifest.file());
+            if (!Files.exists(file)) {
+                log.error("Не найден файл холодного сегмента {} за {}, посещения за эти сутки недоступны",
+                        file.toAbsolutePath(), manifest.day());
+                continue;
+            }
+            segments.put(manifest.day(), ColdSegment.open(file));
+        }
+        if (Files.isDirectory(dir)) {
+            Set<Path> known = segments.values().stream().map(ColdSegment::path).collect(Collectors.toSet());
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(file -> SEGMENT_FILE.matcher(file.getFileName().toString()).matches())
+                        .filter(file -> !known.contains(file)).toList()) {
+                    Files.delete(file);
+                    log.warn("Удалён файл недописанного холодного сегмента {}", file.getFileName());
+                }
+            }
+        }
+        if (!segments.isEmpty()) {
+            log.info("Загружены холодные сегменты: {}, с {} по {}", segments.size(), segments.firstKey(),
+                    segments.lastKey());
+        }
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    public ColdSegment get(LocalDate day) {
+        return segments.get(day);
+    }
+
+    /**
+     * Подмена сегмента за сутки после фиксации транзакции уплотнения.
+     */
+    public void replace(LocalDate day, ColdSegment segment) {
+        ColdSegment previous = segments.put(day, segment);
+        if (previous != null && !previous.path().equals(segment.path())) {
+            deleteFile(previous);
+        }
+    }
+
+    public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return !segments.subMap(start.toLocalDate(), true, end.toLocalDate(), true).isEmpty();
+    }
+
+    /**
+     * Удаление сегментов за сутки раньше day — вместе с удалением старых посещений по сроку хранения.
+     */
+    public void deleteBefore(LocalDate day) {
+        transactionTemplate.executeWithoutResult(status -> coldSegmentRepository.deleteBefore(day));
+        Map<LocalDate, ColdSegment> expired = segments.headMap(day);
+        for (Map.Entry<LocalDate, ColdSegment> entry : expired.entrySet()) {
+            segments.remove(entry.getKey());
+            deleteFile(entry.getValue());
+            log.info("Удалён устаревший холодный сегмент за {}", entry.getKey());
+        }
+    }
+
+    /**
+     * Статистика за [start, end] по холодным сегментам и таблице посещений.
+     * Записи упорядочены по общему числу посещений, как и в запросе к хранилищу.
+     * Уникальные просмотры точны; с approximate они точны до exact-unique-limit на пару app + uri,
+     * выше — оценка HyperLogLog.
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    boolean approximate) {
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        Map<Key, Accumulator> result = new HashMap<>();
+        int uniqueLimit = uniqueLimit(approximate);
+        Iterable<ColdSegment> overlapping = segments.subMap(start.toLocalDate(), true, end.toLocalDate(), true).values();
+        try {
+            for (ColdSegment segment : overlapping) {
+                if (unique) {
+                    segment.ips(start, end, uriFilter, (app, uri, ip) -> {
+                        Accumulator accumulator = accumulator(result, app, uri, uniqueLimit);
+                        accumulator.total++;
+                        accumulator.addIp(ip);
+                    });
+                } else {
+                    segment.counts(start, end, uriFilter, (app, uri, count) ->
+                            accumulator(result, app, uri, uniqueLimit).total += count);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать холодный сегмент", e);
+        }
+        if (unique) {
+            transactionTemplate.executeWithoutResult(status -> coldSegmentRepository.streamIpCounts(start, end, uris,
+                    row -> {
+                        Accumulator accumulator = accumulator(result, row.app(), row.uri(), uniqueLimit);
+                        accumulator.total += row.hits();
+                        accumulator.addIp(row.ip());
+                    }));
+        } else {
+            for (ViewStats stats : hitStore.getStats(start, end, uris, false)) {
+                accumulator(result, stats.getApp(), stats.getUri(), uniqueLimit).total += stats.getHits();
+            }
+        }
+        List<Map.Entry<Key, Accumulator>> entries = new ArrayList<>(result.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<Key, Accumulator> e) -> e.getValue().total).reversed());
+        return entries.stream()
+                .map(e -> new ViewStats(e.getKey().app(), e.getKey().uri(),
+                        unique ? e.getValue().unique() : e.getValue().total))
+                .toList();
+    }
+
+    /**
+     * Потоковая статистика за [start, end] по холодным сегментам и таблице посещений. Без учёта
+     * уникальности в памяти держится только счётчик на пару app + uri из сегментов: строки таблицы
+     * читаются курсором и передаются сразу, дополненные счётчиком из сегментов, затем передаются пары,
+     * встретившиеся только в сегментах. Порядок строк по числу посещений в этом случае не сохраняется.
+     * Уникальные просмотры требуют объединения ip из сегментов и таблицы, поэтому считаются как в
+     * {@link #getStats} и передаются по готовности. Вызывать внутри транзакции.
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            boolean approximate, Consumer<ViewStats> consumer) {
+        if (unique) {
+            getStats(start, end, uris, true, approximate).forEach(consumer);
+            return;
+        }
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        Map<Key, long[]> cold = new HashMap<>();
+        try {
+            for (ColdSegment segment : segments.subMap(start.toLocalDate(), true, end.toLocalDate(), true).values()) {
+                segment.counts(start, end, uriFilter, (app, uri, count) ->
+                        cold.computeIfAbsent(new Key(app, uri), k -> new long[1])[0] += count);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать холодный сегмент", e);
+        }
+        hitStore.streamStats(start, end, uris, false, stats -> {
+            long[] count = cold.remove(new Key(stats.getApp(), stats.getUri()));
+            consumer.accept(count == null
+                    ? stats
+                    : new ViewStats(stats.getApp(), stats.getUri(), stats.getHits() + count[0]));
+        });
+        cold.forEach((key, count) -> consumer.accept(new ViewStats(key.app(), key.uri(), count[0])));
+    }
+
+    /**
+     * Временной ряд за [start, end] по холодным сегментам и таблице посещений.
+     * Записи упорядочены по uri, app и началу интервала, как и в запросе к хранилищу.
+     * Уникальные просмотры точны.
+     */
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                             TimelineInterval interval) {
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        Map<BucketKey, Accumulator> result = new HashMap<>();
+        int uniqueLimit = uniqueLimit(false);
+        Iterable<ColdSegment> overlapping = segments.subMap(start.toLocalDate(), true, end.toLocalDate(), true).values();
+        try {
+            for (ColdSegment segment : overlapping) {
+                segment.rows(start, end, uriFilter, unique, row -> {
+                    Accumulator accumulator = result.computeIfAbsent(
+                            new BucketKey(row.app(), row.uri(), interval.floor(row.timestamp())), k -> new Accumulator(uniqueLimit));
+                    accumulator.total++;
+                    if (unique) {
+                        accumulator.addIp(row.ip());
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать холодный сегмент", e);
+        }
+        if (unique) {
+            transactionTemplate.executeWithoutResult(status -> coldSegmentRepository.streamBucketIps(start, end, uris,
+                    interval, row -> result.computeIfAbsent(new BucketKey(row.app(), row.uri(), row.bucket()),
+                            k -> new Accumulator(uniqueLimit)).addIp(row.ip())));
+        } else {
+            for (ViewStatsBucket stats : hitStore.getTimeline(start, end, uris, false, interval)) {
+                result.computeIfAbsent(new BucketKey(stats.getApp(), stats.getUri(), stats.getBucket()),
+                        k -> new Accumulator(uniqueLimit)).total += stats.getHits();
+            }
+        }
+        return result.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(BUCKET_ORDER))
+                .map(e -> new ViewStatsBucket(e.getKey().app(), e.getKey().uri(), e.getKey().bucket(),
+                        unique ? e.getValue().unique() : e.getValue().total))
+                .toList();
+    }
+
+    private static Accumulator accumulator(Map<Key, Accumulator> result, String app, String uri, int uniqueLimit) {
+        return result.computeIfAbsent(new Key(app, uri), k -> new Accumulator(uniqueLimit));
+    }
+
+    /**
+     * Без approximate ip считаются только точно: в памяти держится набор всех различных ip на пару
+     * app + uri (или интервал ряда) за период, поэтому точный подсчёт по холодным сегментам стоит
+     * памяти, пропорциональной числу уникальных посетителей.
+     */
+    private int uniqueLimit(boolean approximate) {
+        return approximate ? exactUniqueLimit : Integer.MAX_VALUE;
+    }
+
+    private static void deleteFile(ColdSegment segment) {
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл холодного сегмента {}", segment.path(), e);
+        }
+    }
+
+    private record Key(String app, String uri) {
+    }
+
+    private record BucketKey(String app, String uri, LocalDateTime bucket) {
+    }
+
+    /**
+     * Счётчик посещений и уникальных ip. Ip считаются точно, пока их не больше uniqueLimit,
+     * затем набор заменяется скетчем HyperLogLog: память на пару app + uri ограничена, а оценка
+     * больших значений — приближённая.
+     */
+    private static final class Accumulator {
+        private final int uniqueLimit;
+        private long total;
+        private Set<String> ips;
+        private HyperLogLog sketch;
+
+        private Accumulator(int uniqueLimit) {
+            this.uniqueLimit = uniqueLimit;
+        }
+
+        void addIp(String ip) {
+            if (sketch != null) {
+                sketch.add(ip);
+                return;
+            }
+            if (ips == null) {
+                ips = new HashSet<>();
+            }
+            if (ips.add(ip) && ips.size() > uniqueLimit) {
+                sketch = new HyperLogLog();
+                ips.forEach(sketch::add);
+                ips = null;
+            }
+        }
+
+        long unique() {
+            return sketch != null ? sketch.estimate() : ips == null ? 0 : ips.size();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.cold.ColdSegment;
+import ru.practicum.repository.ColdSegmentRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Уплотнение старых посещений: всё, что старше min-age, по суткам переносится из таблицы
+ * в файлы {@link ColdSegment}. Посещения удаляются по мере записи в файл, а файл регистрируется
+ * в cold_segments в той же транзакции, поэтому при сбое на любом шаге посещения
+ * остаются либо в таблице, либо в зарегистрированном файле. Опоздавшие посещения за уже уплотнённые
+ * сутки сливаются с существующим сегментом при следующем запуске: блоки прежнего файла копируются
+ * в новый без распаковки. Посещения идут из таблицы в файл потоком, в памяти — не больше block-rows строк.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CompactionService {
+
+    private final ColdSegmentRepository coldSegmentRepository;
+    private final ColdStorageService coldStorageService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.compaction.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stat-service.compaction.min-age:30d}")
+    private Duration minAge;
+
+    @Value("${stat-service.compaction.block-rows:" + ColdSegment.DEFAULT_BLOCK_ROWS + "}")
+    private int blockRows;
+
+    @Scheduled(cron = "${stat-service.compaction.cron:0 45 3 * * *}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge).toLocalDate().atStartOfDay();
+        int days = 0;
+        Optional<LocalDateTime> next = coldSegmentRepository.findFirstHit(null, cutoff);
+        while (next.isPresent()) {
+            LocalDate day = next.get().toLocalDate();
+            compactDay(day);
+            days++;
+            next = coldSegmentRepository.findFirstHit(day.plusDays(1).atStartOfDay(), cutoff);
+        }
+        if (days > 0) {
+            log.info("Уплотнение посещений старше {} завершено, обработано суток: {}", cutoff, days);
+        }
+    }
+
+    private void compactDay(LocalDate day) {
+        Path file = coldStorageService.dir().resolve("hits-" + day + "-" + System.currentTimeMillis() + ".seg");
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                Files.createDirectories(file.getParent());
+                ColdSegment segment;
+                long fresh;
+                try (ColdSegment.Writer writer = ColdSegment.writer(file, blockRows)) {
+                    long moved = coldSegmentRepository.moveDay(day, row -> {
+                        try {
+                            writer.add(row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    if (moved == 0) {
+                        return;
+                    }
+                    fresh = writer.rows();
+                    ColdSegment previous = coldStorageService.get(day);
+                    if (previous != null) {
+                        writer.append(previous);
+                    }
+                    segment = writer.finish();
+                }
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int completionStatus) {
+                        if (completionStatus == STATUS_COMMITTED) {
+                            coldStorageService.replace(day, segment);
+                        } else {
+                            deleteQuietly(file);
+                        }
+                    }
+                });
+                coldSegmentRepository.save(day, segment);
+                log.info("Посещения за {} перенесены в холодный сегмент {}: {} новых, всего {}, {} байт",
+                        day, file.getFileName(), fresh, segment.rows(), Files.size(file));
+            } catch (IOException e) {
+                deleteQuietly(file);
+                throw new UncheckedIOException("Не удалось записать холодный сегмент за " + day, e);
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл холодного сегмента {}", file, e);
+        }
+    }
+}
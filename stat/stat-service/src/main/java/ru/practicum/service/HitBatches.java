@@ -0,0 +1,37 @@
+package ru.practicum.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Запись пакетов посещений фоновыми потоками приёма.
+ */
+final class HitBatches {
+
+    private HitBatches() {
+    }
+
+    /**
+     * Запись пакета, в котором могут оказаться посещения, отвергаемые БД (нарушение ограничений,
+     * слишком длинное значение). При такой ошибке пакет делится пополам, пока отвергнутые посещения
+     * не останутся по одному; они передаются rejected, остальные записываются. Прочие ошибки
+     * пробрасываются: части пакета, записанные до них, при повторе будут записаны ещё раз.
+     */
+    static void writeIsolating(HitWriter hitWriter, List<EndpointHit> hits,
+                               BiConsumer<EndpointHit, DataIntegrityViolationException> rejected) {
+        try {
+            hitWriter.write(hits);
+        } catch (DataIntegrityViolationException e) {
+            if (hits.size() == 1) {
+                rejected.accept(hits.getFirst(), e);
+                return;
+            }
+            int middle = hits.size() / 2;
+            writeIsolating(hitWriter, hits.subList(0, middle), rejected);
+            writeIsolating(hitWriter, hits.subList(middle, hits.size()), rejected);
+        }
+    }
+}
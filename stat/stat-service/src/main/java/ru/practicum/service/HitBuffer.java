@@ -0,0 +1,283 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.enums.IngestMode;
+import ru.practicum.enums.OverflowPolicy;
+import ru.practicum.exception.IngestRejectedException;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ограниченный буфер посещений для режима write-behind.
+ * Запрос возвращается сразу после постановки посещения в очередь, а фоновый поток
+ * сбрасывает очередь в БД пакетами — по достижении batch-size или по истечении flush-interval.
+ * <p>
+ * Место в буфере резервируется сразу на весь пакет посещений: пакет либо целиком ставится
+ * в очередь, либо целиком отклоняется, поэтому повтор отклонённого пакета не считает посещения дважды.
+ * <p>
+ * Временные ошибки БД повторяются retry-attempts раз, пакет, отвергнутый ограничением БД, делится
+ * до отдельных посещений, чтобы потерять только отвергнутые. Вытесненные и потерянные посещения
+ * публикуются счётчиками stats.ingest.buffer.dropped и stats.ingest.buffer.lost.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitBuffer {
+
+    private final HitWriter hitWriter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${stat-service.ingest.mode:sync}")
+    private IngestMode mode;
+
+    @Value("${stat-service.ingest.buffer.capacity:10000}")
+    private int capacity;
+
+    @Value("${stat-service.ingest.buffer.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stat-service.ingest.buffer.flush-interval:1s}")
+    private Duration flushInterval;
+
+    @Value("${stat-service.ingest.buffer.overflow:block}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${stat-service.ingest.buffer.block-timeout:5s}")
+    private Duration blockTimeout;
+
+    @Value("${stat-service.ingest.buffer.retry-attempts:3}")
+    private int retryAttempts;
+
+    @Value("${stat-service.ingest.buffer.retry-delay:1s}")
+    private Duration retryDelay;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private long droppedLogged;
+    /**
+     * Постановка в очередь идёт под разделяемой блокировкой, остановка берёт исключительную:
+     * после остановки ни одно посещение не попадёт в очередь мимо финального сброса.
+     */
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    private BlockingQueue<EndpointHit> queue;
+    /**
+     * Свободные места в очереди: каждое посещение в очереди держит одно разрешение,
+     * фоновый поток возвращает разрешения, забирая посещения из очереди.
+     */
+    private Semaphore free;
+    private Thread flusher;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        free = new Semaphore(capacity, true);
+        running = true;
+        flusher = new Thread(this::flushLoop, "hit-buffer-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        Gauge.builder("stats.ingest.buffer.size", queue, BlockingQueue::size)
+                .description("Посещения в буфере, ожидающие записи в БД")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.ingest.buffer.dropped", dropped, AtomicLong::get)
+                .description("Посещения, вытесненные из переполненного буфера")
+                .register(meterRegistry);
+        FunctionCounter.builder("stats.ingest.buffer.lost", lost, AtomicLong::get)
+                .description("Посещения, не записанные в БД после повторов или отвергнутые ограничениями БД")
+                .register(meterRegistry);
+        log.info("Буфер посещений включён: capacity = {}, batchSize = {}, flushInterval = {}, overflow = {}",
+                capacity, batchSize, flushInterval, overflowPolicy);
+    }
+
+    public boolean isEnabled() {
+        return mode == IngestMode.BUFFERED;
+    }
+
+    public void add(EndpointHit hit) {
+        addAll(List.of(hit));
+    }
+
+    public void addAll(List<EndpointHit> hits) {
+        stopLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new IngestRejectedException("Буфер посещений остановлен.");
+            }
+            if (!hits.isEmpty()) {
+                enqueue(hits);
+            }
+        } finally {
+            stopLock.readLock().unlock();
+        }
+    }
+
+    private void enqueue(List<EndpointHit> hits) {
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                checkFits(hits);
+                acquireBlocking(hits.size());
+                queue.addAll(hits);
+            }
+            case DROP_OLDEST -> hits.forEach(this::offerDroppingOldest);
+            case REJECT -> {
+                checkFits(hits);
+                if (!free.tryAcquire(hits.size())) {
+                    throw new IngestRejectedException("Буфер посещений переполнен.");
+                }
+                queue.addAll(hits);
+            }
+        }
+    }
+
+    private void checkFits(List<EndpointHit> hits) {
+        if (hits.size() > capacity) {
+            throw new IngestRejectedException("Пакет посещений больше ёмкости буфера: " + hits.size()
+                    + " > " + capacity);
+        }
+    }
+
+    private void acquireBlocking(int permits) {
+        try {
+            if (!free.tryAcquire(permits, blockTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IngestRejectedException("Буфер посещений переполнен, истекло время ожидания.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestRejectedException("Ожидание места в буфере посещений прервано.");
+        }
+    }
+
+    /**
+     * Постановка посещения с вытеснением самого старого: вытесненное посещение передаёт
+     * своё место в очереди новому. Если очередь пуста, а мест нет, места держат посещения,
+     * которые фоновый поток уже забрал, но ещё не вернул разрешения, — их и ждём.
+     */
+    private void offerDroppingOldest(EndpointHit hit) {
+        if (!free.tryAcquire()) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            } else {
+                acquireBlocking(1);
+            }
+        }
+        queue.add(hit);
+    }
+
+    private void flushLoop() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                EndpointHit first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                free.release();
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    int drained = queue.drainTo(batch, batchSize - batch.size());
+                    if (drained > 0) {
+                        free.release(drained);
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    EndpointHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                        free.release();
+                    }
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                HitBatches.writeIsolating(hitWriter, batch, this::reject);
+                break;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException e) {
+                if (attempt >= retryAttempts) {
+                    lost.addAndGet(batch.size());
+                    log.error("Не удалось записать пакет посещений за {} попыток, потеряно: {}",
+                            attempt, batch.size(), e);
+                    break;
+                }
+                log.warn("Не удалось записать пакет посещений, попытка {} из {}, повтор через {}: {}",
+                        attempt, retryAttempts, retryDelay, e.getMessage());
+                LockSupport.parkNanos(retryDelay.toNanos());
+            } catch (Exception e) {
+                lost.addAndGet(batch.size());
+                log.error("Не удалось записать пакет посещений, потеряно: {}", batch.size(), e);
+                break;
+            }
+        }
+        long droppedTotal = dropped.get();
+        if (droppedTotal > droppedLogged) {
+            log.warn("Буфер посещений переполнен, вытеснено посещений: {}", droppedTotal - droppedLogged);
+            droppedLogged = droppedTotal;
+        }
+    }
+
+    private void reject(EndpointHit hit, DataIntegrityViolationException e) {
+        lost.incrementAndGet();
+        log.error("Посещение отвергнуто БД и потеряно: {}, причина: {}", hit, e.getMostSpecificCause().getMessage());
+    }
+
+    /**
+     * Сброс остатка буфера при штатной остановке сервиса: новые посещения отклоняются,
+     * пакет, который пишет фоновый поток, дописывается, затем сбрасывается остаток очереди.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (!isEnabled()) {
+            return;
+        }
+        stopLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            stopLock.writeLock().unlock();
+        }
+        flusher.join();
+        List<EndpointHit> rest = new ArrayList<>(queue.size());
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            flush(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+        log.info("Буфер посещений остановлен, при остановке записано: {}", rest.size());
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.enums.ImportFormat;
+import ru.practicum.importer.HitReader;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitImportRepository;
+import ru.practicum.repository.HitStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Массовый импорт посещений — выгрузок из журналов доступа или другого счётчика — в обход POST /hit.
+ * Поток читается без накопления в памяти и загружается во временную таблицу, после чего посещения
+ * одним запросом переносятся в хранилище, а агрегаты и скетчи дополняются по ней же. Импорт идёт
+ * в одной транзакции: при ошибке в любой строке не сохраняется ничего.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HitImportService {
+
+    private final HitImportRepository hitImportRepository;
+    private final HitStore hitStore;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final HitWriter hitWriter;
+    private final List<HitListener> listeners;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stat-service.hot-window.duration:26h}")
+    private Duration hotWindowDuration;
+
+    @Value("${stat-service.top.window:6h}")
+    private Duration topWindow;
+
+    /**
+     * Импорт посещений из потока. Возвращает число загруженных посещений.
+     */
+    public long importHits(InputStream in, ImportFormat format) {
+        long started = System.nanoTime();
+        LocalDateTime recentSince = LocalDateTime.now()
+                .minus(hotWindowDuration.compareTo(topWindow) >= 0 ? hotWindowDuration : topWindow);
+        Long imported = transactionTemplate.execute(status -> {
+            hitImportRepository.createStaging();
+            long count;
+            try (HitReader reader = HitReader.open(in, format, objectMapper)) {
+                count = hitImportRepository.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось прочитать посещения для импорта", e);
+            }
+            log.info("Импорт: загружено во временную таблицу {} посещений за {} мс", count, elapsed(started));
+            if (count == 0) {
+                return 0L;
+            }
+            hitStore.insertFrom(HitImportRepository.STAGING);
+            rollupService.addFrom(HitImportRepository.STAGING);
+            sketchService.addFrom(HitImportRepository.STAGING);
+            List<EndpointHit> recent = new ArrayList<>();
+            hitImportRepository.streamSince(recentSince, recent::add);
+            if (!recent.isEmpty()) {
+                hitWriter.notifyListeners(recent);
+            }
+            return count;
+        });
+        long result = imported == null ? 0 : imported;
+        if (result > 0) {
+            listeners.forEach(HitListener::onBulkLoad);
+        }
+        log.info("Импорт завершён: {} посещений за {} мс", result, elapsed(started));
+        return result;
+    }
+
+    private static long elapsed(long started) {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.service;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Получатель записанных посещений для структур в памяти. Вызывается после фиксации транзакции записи,
+ * поэтому посещения из отменённых транзакций сюда не попадают.
+ */
+public interface HitListener {
+
+    void onHits(List<EndpointHit> hits);
+
+    /**
+     * Пакет записан и вот-вот будет зафиксирован. Нужен тем, кому важно, что посещения могут стать
+     * видны в БД раньше, чем придёт {@link #onHits}.
+     */
+    default void beforeCommit(List<EndpointHit> hits) {
+    }
+
+    /**
+     * Транзакция записи пакета откатилась.
+     */
+    default void onRollback(List<EndpointHit> hits) {
+    }
+
+    /**
+     * Зафиксирован массовый импорт посещений. Недавние из них уже переданы в {@link #onHits},
+     * остальные — нет, поэтому структуры, которые могут охватывать любой период, нужно сбросить.
+     */
+    default void onBulkLoad() {
+    }
+}
@@ -0,0 +1,169 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.enums.IngestMode;
+import ru.practicum.exception.IngestRejectedException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.wal.HitLog;
+import ru.practicum.wal.HitLogFullException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Приём посещений через журнал на диске. Запрос подтверждается, как только посещения дописаны
+ * в {@link HitLog}, а фоновый поток применяет журнал к БД и агрегатам пакетами через {@link HitWriter}.
+ * При старте непримененный хвост журнала дописывается в БД до того, как сервис начнёт принимать запросы.
+ * Если БД недоступна, посещения копятся в журнале и применяются после её восстановления; размер журнала
+ * ограничен max-size, сверх него новые посещения отклоняются. Посещения, которые БД отвергает
+ * (нарушение ограничений), не повторяются: они дописываются в файл dead-letter.ndjson в каталоге журнала
+ * в формате импорта NDJSON, и применение журнала продолжается.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitLogService {
+
+    private static final String DEAD_LETTER = "dead-letter.ndjson";
+
+    private final HitWriter hitWriter;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stat-service.ingest.mode:sync}")
+    private IngestMode mode;
+
+    @Value("${stat-service.ingest.log.dir:./stat/wal}")
+    private Path dir;
+
+    @Value("${stat-service.ingest.log.segment-size:64MB}")
+    private DataSize segmentSize;
+
+    @Value("${stat-service.ingest.log.max-size:1GB}")
+    private DataSize maxSize;
+
+    @Value("${stat-service.ingest.log.fsync:false}")
+    private boolean fsync;
+
+    @Value("${stat-service.ingest.log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stat-service.ingest.log.poll-interval:200ms}")
+    private Duration pollInterval;
+
+    @Value("${stat-service.ingest.log.retry-delay:5s}")
+    private Duration retryDelay;
+
+    private HitLog hitLog;
+    private Thread applier;
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        hitLog = new HitLog(dir, Math.toIntExact(segmentSize.toBytes()), fsync, maxSize.toBytes());
+        long replayed = 0;
+        for (List<EndpointHit> batch = hitLog.read(batchSize); !batch.isEmpty(); batch = hitLog.read(batchSize)) {
+            apply(batch);
+            replayed += batch.size();
+        }
+        running = true;
+        applier = new Thread(this::applyLoop, "hit-log-applier");
+        applier.setDaemon(true);
+        applier.start();
+        log.info("Журнал посещений включён: dir = {}, segmentSize = {}, fsync = {}, при старте применено: {}",
+                dir.toAbsolutePath(), segmentSize, fsync, replayed);
+    }
+
+    public boolean isEnabled() {
+        return mode == IngestMode.LOG;
+    }
+
+    public void append(List<EndpointHit> hits) {
+        if (!running) {
+            throw new IngestRejectedException("Журнал посещений остановлен.");
+        }
+        try {
+            hitLog.append(hits);
+        } catch (HitLogFullException e) {
+            log.warn("{}", e.getMessage());
+            throw new IngestRejectedException("Журнал посещений заполнен, посещения не приняты.");
+        } catch (IOException e) {
+            log.error("Не удалось дописать посещения в журнал", e);
+            throw new IngestRejectedException("Не удалось дописать посещения в журнал.");
+        }
+        LockSupport.unpark(applier);
+    }
+
+    private void applyLoop() {
+        while (running) {
+            List<EndpointHit> batch = hitLog.read(batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(pollInterval.toNanos());
+                continue;
+            }
+            try {
+                apply(batch);
+            } catch (Exception e) {
+                hitLog.rewind();
+                log.error("Не удалось применить пакет из журнала посещений, повтор через {}", retryDelay, e);
+                LockSupport.parkNanos(retryDelay.toNanos());
+            }
+        }
+    }
+
+    private void apply(List<EndpointHit> batch) throws IOException {
+        HitBatches.writeIsolating(hitWriter, batch, this::deadLetter);
+        hitLog.commit();
+    }
+
+    private void deadLetter(EndpointHit hit, DataIntegrityViolationException e) {
+        log.error("Посещение отвергнуто БД и перенесено в {}: {}, причина: {}", DEAD_LETTER, hit,
+                e.getMostSpecificCause().getMessage());
+        try {
+            Files.writeString(dir.resolve(DEAD_LETTER), objectMapper.writeValueAsString(hit) + "\n",
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Не удалось записать отвергнутое посещение в " + DEAD_LETTER, ex);
+        }
+    }
+
+    /**
+     * Применение остатка журнала при штатной остановке. Неприменённое останется в журнале до следующего старта.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(applier);
+        applier.join(retryDelay.toMillis() * 2);
+        long applied = 0;
+        try {
+            for (List<EndpointHit> batch = hitLog.read(batchSize); !batch.isEmpty(); batch = hitLog.read(batchSize)) {
+                apply(batch);
+                applied += batch.size();
+            }
+        } catch (Exception e) {
+            log.error("Не удалось применить остаток журнала посещений, он будет применён при следующем старте", e);
+        }
+        hitLog.close();
+        log.info("Журнал посещений остановлен, при остановке применено: {}", applied);
+    }
+}
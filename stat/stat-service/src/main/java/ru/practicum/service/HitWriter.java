@@ -0,0 +1,62 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitStore;
+
+import java.util.List;
+
+/**
+ * Единая точка записи посещений в хранилище, общая для синхронного и буферизованного режимов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+
+    private final HitStore hitStore;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final List<HitListener> listeners;
+
+    @Transactional
+    public void write(List<EndpointHit> hits) {
+        hitStore.batchInsert(hits);
+        rollupService.add(hits);
+        sketchService.add(hits);
+        notifyListeners(hits);
+        log.debug("Записано посещений: {}", hits.size());
+    }
+
+    /**
+     * Передача посещений, записанных в текущей транзакции, получателям {@link HitListener}
+     * по её завершении. Нужна и тем, кто пишет посещения в обход {@link #write}.
+     */
+    public void notifyListeners(List<EndpointHit> hits) {
+        if (!listeners.isEmpty()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    listeners.forEach(listener -> listener.beforeCommit(hits));
+                }
+
+                @Override
+                public void afterCommit() {
+                    listeners.forEach(listener -> listener.onHits(hits));
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        listeners.forEach(listener -> listener.onRollback(hits));
+                    }
+                }
+            });
+        }
+    }
+}
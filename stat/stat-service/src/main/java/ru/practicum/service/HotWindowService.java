@@ -0,0 +1,95 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.RecentHitRepository;
+import ru.practicum.window.HotWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Окно последних посещений в памяти для запросов о недавнем трафике (по умолчанию main-service
+ * спрашивает «с начала суток»). Окно заполняется из хранилища при старте, пополняется после
+ * фиксации каждой записи посещений и раз в минуту сдвигается вперёд.
+ * <p>
+ * Объём окна задаётся долей кучи (stat-service.hot-window.max-heap-fraction): если за duration
+ * накопилось больше, начало окна сдвигается вперёд и более ранние запросы идут в хранилище.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotWindowService implements HitListener {
+
+    private final RecentHitRepository recentHitRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.hot-window.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stat-service.hot-window.duration:26h}")
+    private Duration duration;
+
+    @Value("${stat-service.hot-window.max-heap-fraction:0.125}")
+    private double maxHeapFraction;
+
+    private volatile HotWindow window;
+
+    @PostConstruct
+    void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        HotWindow rebuilt = new HotWindow(coverageStart(), maxBytes());
+        transactionTemplate.executeWithoutResult(status -> recentHitRepository.streamSince(rebuilt.coverageStart(),
+                hit -> rebuilt.add(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp())));
+        window = rebuilt;
+        log.info("Окно последних посещений восстановлено: с {}, посещений {}, около {} МБ из {} МБ",
+                rebuilt.coverageStart(), rebuilt.size(), rebuilt.bytes() >> 20, maxBytes() >> 20);
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        HotWindow current = window;
+        if (current == null) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            current.add(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+        }
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    void slide() {
+        HotWindow current = window;
+        if (current != null) {
+            current.advance(coverageStart());
+        }
+    }
+
+    public boolean covers(LocalDateTime start) {
+        HotWindow current = window;
+        return current != null && current.covers(start);
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return window.getStats(start, end, uris, unique);
+    }
+
+    private long maxBytes() {
+        return (long) (Runtime.getRuntime().maxMemory() * maxHeapFraction);
+    }
+
+    private LocalDateTime coverageStart() {
+        return TimeBucket.MINUTE.floor(LocalDateTime.now().minus(duration));
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.repository.PartitionRepository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Обслуживание помесячных секций таблицы посещений и политика хранения.
+ * В PostgreSQL с секционированной таблицей заранее создаются секции на ближайшие месяцы,
+ * а устаревшие удаляются целиком. Без секций (H2, таблица из старой схемы) старые посещения
+ * удаляются пакетами. Таблицу из старой схемы можно перевести на секции при старте
+ * (stat-service.partition.migrate-legacy): она становится секцией по умолчанию, а посещения из неё
+ * переносятся в помесячные секции при обслуживании, по одной транзакции на месяц.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionService {
+
+    private final PartitionRepository partitionRepository;
+    private final DatabaseType databaseType;
+    private final TransactionTemplate transactionTemplate;
+    private final ColdStorageService coldStorageService;
+
+    @Value("${stat-service.partition.premake-months:2}")
+    private int premakeMonths;
+
+    @Value("${stat-service.partition.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${stat-service.partition.delete-batch-size:10000}")
+    private int deleteBatchSize;
+
+    @Value("${stat-service.partition.migrate-legacy:false}")
+    private boolean migrateLegacy;
+
+    @PostConstruct
+    void init() {
+        if (databaseType == DatabaseType.POSTGRESQL && !partitionRepository.isPartitioned()) {
+            if (migrateLegacy) {
+                log.info("Перевод таблицы посещений из старой схемы на помесячные секции");
+                transactionTemplate.executeWithoutResult(status -> partitionRepository.migrateLegacyTable());
+                log.info("Таблица посещений переведена на секции, прежние строки — в секции по умолчанию");
+            } else {
+                log.warn("Таблица посещений создана старой схемой и не секционирована: секции не создаются, " +
+                        "устаревшие посещения удаляются пакетами DELETE, а не удалением секций. " +
+                        "Для перевода на секции включите stat-service.partition.migrate-legacy");
+            }
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${stat-service.partition.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        YearMonth current = YearMonth.now();
+        Optional<YearMonth> retainFrom = retentionMonths > 0
+                ? Optional.of(current.minusMonths(retentionMonths))
+                : Optional.empty();
+        if (databaseType == DatabaseType.POSTGRESQL && partitionRepository.isPartitioned()) {
+            createPartitions(current, retainFrom);
+            retainFrom.ifPresent(this::dropPartitions);
+        } else {
+            retainFrom.ifPresent(this::deleteHits);
+        }
+        retainFrom.ifPresent(from -> coldStorageService.deleteBefore(from.atDay(1)));
+    }
+
+    private void createPartitions(YearMonth current, Optional<YearMonth> retainFrom) {
+        transactionTemplate.executeWithoutResult(status -> partitionRepository.createDefaultPartition());
+        Set<YearMonth> existing = new HashSet<>();
+        partitionRepository.findPartitions().forEach(name -> partitionRepository.partitionMonth(name).ifPresent(existing::add));
+
+        Set<YearMonth> required = new TreeSet<>();
+        for (int i = 0; i <= premakeMonths; i++) {
+            required.add(current.plusMonths(i));
+        }
+        partitionRepository.findDefaultPartitionMonths().stream()
+                .filter(month -> retainFrom.map(from -> !month.isBefore(from)).orElse(true))
+                .forEach(required::add);
+        required.removeAll(existing);
+        for (YearMonth month : required) {
+            transactionTemplate.executeWithoutResult(status -> partitionRepository.createPartition(month));
+            log.info("Создана секция посещений {}", partitionRepository.partitionName(month));
+        }
+    }
+
+    private void dropPartitions(YearMonth retainFrom) {
+        for (String name : partitionRepository.findPartitions()) {
+            Optional<YearMonth> month = partitionRepository.partitionMonth(name);
+            if (month.isPresent() && month.get().isBefore(retainFrom)) {
+                partitionRepository.dropPartition(month.get());
+                log.info("Удалена устаревшая секция посещений {}", name);
+            }
+        }
+        int deleted = partitionRepository.deleteFromDefaultPartitionBefore(retainFrom.atDay(1));
+        if (deleted > 0) {
+            log.info("Удалено устаревших посещений из секции по умолчанию: {}", deleted);
+        }
+        partitionRepository.deleteAggregatesBefore(retainFrom.atDay(1).atStartOfDay());
+    }
+
+    private void deleteHits(YearMonth retainFrom) {
+        LocalDateTime cutoff = retainFrom.atDay(1).atStartOfDay();
+        long total = 0;
+        int deleted;
+        do {
+            deleted = partitionRepository.deleteHitsBefore(cutoff, deleteBatchSize);
+            total += deleted;
+        } while (deleted == deleteBatchSize);
+        partitionRepository.deleteAggregatesBefore(cutoff);
+        if (total > 0) {
+            log.info("Удалено посещений старше {}: {}", cutoff, total);
+        }
+    }
+}
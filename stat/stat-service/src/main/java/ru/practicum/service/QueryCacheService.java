@@ -0,0 +1,132 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.practicum.cache.QueryCache;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Кэш результатов запросов статистики. Границы периода округляются вниз до granularity, чтобы
+ * повторяющиеся запросы «до текущего момента» попадали в одну запись; за это период запроса
+ * сдвигается в прошлое не больше чем на granularity. Новые посещения обновляют кэш сразу после
+ * фиксации (см. {@link QueryCache}), а ttl ограничивает срок жизни записи на случай удаления
+ * посещений по сроку хранения.
+ * <p>
+ * Метрики: stats.query.cache.requests (result = hit/miss), stats.query.cache.updates
+ * (action = patched/invalidated) и stats.query.cache.size.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryCacheService implements HitListener {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${stat-service.query-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stat-service.query-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${stat-service.query-cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${stat-service.query-cache.granularity:1s}")
+    private Duration granularity;
+
+    private QueryCache cache;
+    private Counter hits;
+    private Counter misses;
+    private Counter patched;
+    private Counter invalidated;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = new QueryCache(maxEntries, ttl);
+        hits = meterRegistry.counter("stats.query.cache.requests", "result", "hit");
+        misses = meterRegistry.counter("stats.query.cache.requests", "result", "miss");
+        patched = meterRegistry.counter("stats.query.cache.updates", "action", "patched");
+        invalidated = meterRegistry.counter("stats.query.cache.updates", "action", "invalidated");
+        Gauge.builder("stats.query.cache.size", cache, QueryCache::size).register(meterRegistry);
+        log.info("Кэш запросов статистики включён: maxEntries = {}, ttl = {}, granularity = {}",
+                maxEntries, ttl, granularity);
+    }
+
+    /**
+     * Результат запроса из кэша или от loader, которому передаются округлённые границы периода.
+     */
+    public List<ViewStats> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                               boolean approximate, BiFunction<LocalDateTime, LocalDateTime, List<ViewStats>> loader) {
+        if (!enabled) {
+            return loader.apply(start, end);
+        }
+        QueryCache.Key key = new QueryCache.Key(snap(start), snap(end),
+                uris == null || uris.isEmpty() ? null : uris.stream().distinct().sorted().toList(), unique, approximate);
+        List<ViewStats> cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        long version = cache.version();
+        List<ViewStats> stats = loader.apply(key.start(), key.end());
+        cache.put(key, stats, version);
+        return stats;
+    }
+
+    @Override
+    public void beforeCommit(List<EndpointHit> hits) {
+        if (enabled) {
+            cache.begin(hits);
+        }
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        QueryCache.Update update = cache.commit(hits);
+        patched.increment(update.patched());
+        invalidated.increment(update.invalidated());
+    }
+
+    @Override
+    public void onRollback(List<EndpointHit> hits) {
+        if (enabled) {
+            cache.rollback(hits);
+        }
+    }
+
+    @Override
+    public void onBulkLoad() {
+        if (enabled) {
+            invalidated.increment(cache.clear());
+        }
+    }
+
+    private LocalDateTime snap(LocalDateTime time) {
+        long step = granularity.toSeconds();
+        if (step <= 1) {
+            return time;
+        }
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(seconds, step) * step, 0, ZoneOffset.UTC);
+    }
+}
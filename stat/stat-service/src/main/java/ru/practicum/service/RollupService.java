@@ -0,0 +1,415 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.DerivedStateRepository;
+import ru.practicum.repository.RollupRepository;
+import ru.practicum.repository.RollupRepository.BucketKey;
+import ru.practicum.repository.RollupRepository.Parts;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Инкрементальное ведение поминутных и почасовых агрегатов и ответы на запросы статистики по ним.
+ * <p>
+ * Записанные посещения сначала накапливаются в счётчиках в памяти и прибавляются к таблицам агрегатов
+ * пакетом раз в flush-interval (или раньше, если накопилось больше max-pending ключей), поэтому запись
+ * посещений не блокирует строки агрегатов. Запросы учитывают и ещё не слитые счётчики; на время
+ * слияния они приостанавливаются, чтобы счётчик не был учтён дважды или пропущен.
+ * <p>
+ * Счётчики в памяти теряются при аварийной остановке, поэтому каждое слияние сохраняет в derived_state
+ * границу complete_before: агрегаты за часы раньше неё в таблицах полные. Посещения за такие часы,
+ * записанные позже, прибавляются к таблицам сразу, в транзакции записи. При запуске агрегаты
+ * пересчитываются по исходным посещениям за часы начиная с границы, а без неё (первый запуск, работа
+ * с выключенными агрегатами) — целиком. Прибавление не идемпотентно, поэтому пересчёт выполняется
+ * до начала записи посещений: {@link HitWriter} создаётся только после него.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupService {
+
+    private static final Comparator<Map.Entry<BucketKey, Long>> KEY_ORDER = Comparator
+            .comparing((Map.Entry<BucketKey, Long> e) -> e.getKey().uri())
+            .thenComparing(e -> e.getKey().bucket())
+            .thenComparing(e -> e.getKey().app());
+
+    private static final String STATE = "rollup";
+
+    private final RollupRepository rollupRepository;
+    private final DerivedStateRepository derivedStateRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stat-service.rollup.max-pending:10000}")
+    private int maxPending;
+
+    /**
+     * Счётчики, ещё не слитые с таблицами.
+     */
+    private final Map<TimeBucket, Map<BucketKey, Long>> pending = counters();
+    /**
+     * Слияние берёт блокировку на запись, запросы — на чтение: запрос видит либо счётчики в очереди,
+     * либо уже прибавленные к таблицам.
+     */
+    private final ReadWriteLock flushGate = new ReentrantReadWriteLock();
+    /**
+     * Часы раньше этой границы в таблицах полные. Меняется вместе с очередью под её блокировкой.
+     */
+    private LocalDateTime completeBefore = LocalDateTime.MIN;
+    private LocalDateTime savedCompleteBefore;
+    /**
+     * Незафиксированные транзакции записи по самому раннему часу их посещений: их счётчики попадут
+     * в очередь только после фиксации, и граница не должна их обогнать.
+     */
+    private final NavigableMap<LocalDateTime, Integer> inflight = new TreeMap<>();
+
+    /**
+     * Пересчёт агрегатов за часы, которые могли остаться неполными. Запуск с выключенными агрегатами
+     * снимает границу полноты.
+     */
+    @PostConstruct
+    void backfill() {
+        if (!enabled) {
+            derivedStateRepository.clear(STATE);
+            return;
+        }
+        LocalDateTime from = derivedStateRepository.findCompleteBefore(STATE).orElse(null);
+        LocalDateTime hour = TimeBucket.HOUR.floor(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            for (TimeBucket bucket : TimeBucket.values()) {
+                rollupRepository.rebuild(bucket, from);
+            }
+            derivedStateRepository.saveCompleteBefore(STATE, hour);
+        });
+        synchronized (pending) {
+            completeBefore = hour;
+            savedCompleteBefore = hour;
+        }
+        if (from == null) {
+            log.info("Агрегаты посещений пересчитаны по всем исходным посещениям");
+        } else {
+            log.info("Агрегаты посещений пересчитаны по исходным посещениям с {}", from);
+        }
+    }
+
+    /**
+     * Слияние оставшихся счётчиков при штатной остановке.
+     */
+    @PreDestroy
+    void stop() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        synchronized (pending) {
+            if (pending.values().stream().anyMatch(counts -> !counts.isEmpty())) {
+                log.warn("Агрегаты не слиты при остановке, при следующем запуске будут пересчитаны часы с {}",
+                        savedCompleteBefore);
+            }
+        }
+    }
+
+    /**
+     * Учёт пакета посещений в агрегатах. Внутри транзакции записи посещения попадают в счётчики
+     * только после её фиксации. Посещения за часы раньше границы полноты прибавляются к таблицам
+     * сразу, в транзакции записи.
+     */
+    public void add(List<EndpointHit> hits) {
+        if (!enabled || hits.isEmpty()) {
+            return;
+        }
+        Map<TimeBucket, Map<BucketKey, Long>> counts = counters();
+        LocalDateTime oldest = LocalDateTime.MAX;
+        for (EndpointHit hit : hits) {
+            for (TimeBucket bucket : TimeBucket.values()) {
+                counts.get(bucket).merge(new BucketKey(hit.getApp(), hit.getUri(), bucket.floor(hit.getTimestamp())),
+                        1L, Long::sum);
+            }
+            LocalDateTime hour = TimeBucket.HOUR.floor(hit.getTimestamp());
+            if (hour.isBefore(oldest)) {
+                oldest = hour;
+            }
+        }
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        boolean late;
+        synchronized (pending) {
+            late = oldest.isBefore(completeBefore);
+            if (!late && transactional) {
+                inflight.merge(oldest, 1, Integer::sum);
+            }
+        }
+        if (late) {
+            transactionTemplate.executeWithoutResult(status -> increment(counts));
+            return;
+        }
+        if (transactional) {
+            LocalDateTime bucket = oldest;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(counts);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (pending) {
+                        inflight.computeIfPresent(bucket, (k, count) -> count == 1 ? null : count - 1);
+                    }
+                }
+            });
+        } else {
+            enqueue(counts);
+        }
+    }
+
+    private void enqueue(Map<TimeBucket, Map<BucketKey, Long>> counts) {
+        boolean full;
+        synchronized (pending) {
+            counts.forEach((bucket, deltas) -> deltas.forEach((key, hits) ->
+                    pending.get(bucket).merge(key, hits, Long::sum)));
+            full = pending.get(TimeBucket.MINUTE).size() > maxPending;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Слияние накопленных счётчиков с таблицами одной транзакцией вместе с новой границей полноты.
+     * При ошибке счётчики возвращаются в очередь и сливаются при следующем запуске.
+     */
+    @Scheduled(fixedDelayString = "${stat-service.rollup.flush-interval:1s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushGate.writeLock().lock();
+        try {
+            Map<TimeBucket, Map<BucketKey, Long>> batch = counters();
+            LocalDateTime hour = TimeBucket.HOUR.floor(LocalDateTime.now());
+            synchronized (pending) {
+                boolean empty = pending.values().stream().allMatch(Map::isEmpty);
+                if (empty && hour.equals(savedCompleteBefore)) {
+                    return;
+                }
+                pending.forEach((bucket, counts) -> {
+                    batch.get(bucket).putAll(counts);
+                    counts.clear();
+                });
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    increment(batch);
+                    derivedStateRepository.saveCompleteBefore(STATE, advanceCompleteBefore(hour));
+                });
+                log.debug("Слито счётчиков агрегатов: {}", batch.get(TimeBucket.MINUTE).size());
+            } catch (RuntimeException e) {
+                log.error("Не удалось слить счётчики агрегатов, повтор при следующем запуске: {}",
+                        batch.get(TimeBucket.MINUTE).size(), e);
+                synchronized (pending) {
+                    batch.forEach((bucket, counts) -> counts.forEach((key, hits) ->
+                            pending.get(bucket).merge(key, hits, Long::sum)));
+                }
+            }
+        } finally {
+            flushGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Новая граница полноты: не позже текущего часа и самого раннего часа посещений, которые ещё
+     * не слиты или не зафиксированы. Граница в памяти меняется сразу, до фиксации слияния: посещение,
+     * записанное после этого, уже сравнивается с новой границей.
+     */
+    private LocalDateTime advanceCompleteBefore(LocalDateTime hour) {
+        synchronized (pending) {
+            LocalDateTime next = hour;
+            if (!inflight.isEmpty() && inflight.firstKey().isBefore(next)) {
+                next = inflight.firstKey();
+            }
+            for (BucketKey key : pending.get(TimeBucket.HOUR).keySet()) {
+                if (key.bucket().isBefore(next)) {
+                    next = key.bucket();
+                }
+            }
+            completeBefore = next;
+            savedCompleteBefore = next;
+            return next;
+        }
+    }
+
+    /**
+     * Прибавление счётчиков к таблицам в порядке ключей, чтобы параллельные транзакции блокировали
+     * строки в одном порядке.
+     */
+    private void increment(Map<TimeBucket, Map<BucketKey, Long>> counts) {
+        counts.forEach((bucket, deltas) -> {
+            if (!deltas.isEmpty()) {
+                List<Map.Entry<BucketKey, Long>> sorted = new ArrayList<>(deltas.entrySet());
+                sorted.sort(KEY_ORDER);
+                rollupRepository.increment(bucket, sorted);
+            }
+        });
+    }
+
+    /**
+     * Учёт в агрегатах посещений массового импорта из временной таблицы. Вызывается в транзакции импорта.
+     */
+    public void addFrom(String table) {
+        if (!enabled) {
+            return;
+        }
+        for (TimeBucket bucket : TimeBucket.values()) {
+            rollupRepository.incrementFrom(bucket, table);
+        }
+    }
+
+    /**
+     * Агрегаты выгодны, если в периоде есть хотя бы одна целая минута.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return enabled && TimeBucket.MINUTE.ceil(start).isBefore(TimeBucket.MINUTE.floor(end));
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return consistent(() -> {
+            Map<Map.Entry<String, String>, Long> deltas = unflushedTotals(start, end, uris);
+            List<ViewStats> stats = rollupRepository.getStats(start, end, uris);
+            return deltas.isEmpty() ? stats : withDeltas(stats, deltas, Integer.MAX_VALUE);
+        });
+    }
+
+    /**
+     * Первые n записей по убыванию посещений. Если есть не слитые счётчики, из таблиц берутся первые
+     * n + k записей (k — число app + uri со счётчиками) и точные значения для app + uri со счётчиками:
+     * запись без счётчика за пределами первых n + k не обгонит по меньшей мере n записей без счётчика.
+     */
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n) {
+        return consistent(() -> {
+            Map<Map.Entry<String, String>, Long> deltas = unflushedTotals(start, end, null);
+            if (deltas.isEmpty()) {
+                return rollupRepository.getStats(start, end, null, n);
+            }
+            List<ViewStats> stats = new ArrayList<>(rollupRepository.getStats(start, end, null, n + deltas.size()));
+            stats.addAll(rollupRepository.getStats(start, end,
+                    deltas.keySet().stream().map(Map.Entry::getValue).distinct().toList()));
+            return withDeltas(stats, deltas, n);
+        });
+    }
+
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                             TimelineInterval interval) {
+        Map<BucketKey, Long> deltas = new HashMap<>();
+        List<ViewStatsBucket> timeline = consistent(() -> {
+            unflushed(Parts.of(start, end, interval != TimelineInterval.MINUTE), uris, (key, hits) ->
+                    deltas.merge(new BucketKey(key.app(), key.uri(), interval.floor(key.bucket())), hits, Long::sum));
+            return rollupRepository.getTimeline(start, end, uris, interval);
+        });
+        if (deltas.isEmpty()) {
+            return timeline;
+        }
+        Map<BucketKey, ViewStatsBucket> rows = new LinkedHashMap<>();
+        for (ViewStatsBucket row : timeline) {
+            rows.put(new BucketKey(row.getApp(), row.getUri(), row.getBucket()), row);
+        }
+        deltas.forEach((key, hits) -> {
+            ViewStatsBucket row = rows.computeIfAbsent(key, k -> new ViewStatsBucket(k.app(), k.uri(), k.bucket(), 0L));
+            row.setHits(row.getHits() + hits);
+        });
+        List<ViewStatsBucket> result = new ArrayList<>(rows.values());
+        result.sort(Comparator.comparing(ViewStatsBucket::getUri)
+                .thenComparing(ViewStatsBucket::getApp)
+                .thenComparing(ViewStatsBucket::getBucket));
+        return result;
+    }
+
+    /**
+     * Запрос к таблицам вместе с чтением очереди, без слияния между ними.
+     */
+    private <T> T consistent(Supplier<T> query) {
+        flushGate.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            flushGate.readLock().unlock();
+        }
+    }
+
+    /**
+     * Не слитые счётчики за части периода, которые берутся из агрегатов, по app + uri.
+     */
+    private Map<Map.Entry<String, String>, Long> unflushedTotals(LocalDateTime start, LocalDateTime end,
+                                                                 List<String> uris) {
+        Map<Map.Entry<String, String>, Long> totals = new HashMap<>();
+        unflushed(Parts.of(start, end, true), uris, (key, hits) ->
+                totals.merge(Map.entry(key.app(), key.uri()), hits, Long::sum));
+        return totals;
+    }
+
+    /**
+     * Ещё не слитые с таблицами счётчики агрегатов, входящих в части периода. Вызывается под
+     * блокировкой {@link #flushGate} на чтение.
+     */
+    private void unflushed(Parts parts, List<String> uris, BiConsumer<BucketKey, Long> consumer) {
+        synchronized (pending) {
+            pending.forEach((bucket, counts) -> counts.forEach((key, hits) -> {
+                if (parts.contains(bucket, key.bucket())
+                        && (uris == null || uris.isEmpty() || uris.contains(key.uri()))) {
+                    consumer.accept(key, hits);
+                }
+            }));
+        }
+    }
+
+    private static List<ViewStats> withDeltas(List<ViewStats> stats, Map<Map.Entry<String, String>, Long> deltas,
+                                              int limit) {
+        Map<Map.Entry<String, String>, ViewStats> rows = new LinkedHashMap<>();
+        for (ViewStats row : stats) {
+            rows.putIfAbsent(Map.entry(row.getApp(), row.getUri()), row);
+        }
+        deltas.forEach((key, hits) -> {
+            ViewStats row = rows.computeIfAbsent(key, k -> new ViewStats(k.getKey(), k.getValue(), 0L));
+            row.setHits(row.getHits() + hits);
+        });
+        List<ViewStats> result = new ArrayList<>(rows.values());
+        result.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    private static Map<TimeBucket, Map<BucketKey, Long>> counters() {
+        Map<TimeBucket, Map<BucketKey, Long>> counters = new EnumMap<>(TimeBucket.class);
+        for (TimeBucket bucket : TimeBucket.values()) {
+            counters.put(bucket, new HashMap<>());
+        }
+        return counters;
+    }
+}
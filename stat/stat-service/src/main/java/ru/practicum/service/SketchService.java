@@ -0,0 +1,379 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.DerivedStateRepository;
+import ru.practicum.repository.RollupRepository.BucketKey;
+import ru.practicum.repository.SketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Почасовые скетчи HyperLogLog для приближённого подсчёта уникальных посетителей.
+ * Целые часы периода считаются слиянием скетчей, неполные края — по исходным посещениям.
+ * <p>
+ * Записанные посещения сначала накапливаются в скетчах в памяти и сливаются с таблицей пакетом
+ * раз в flush-interval (или раньше, если накопилось больше max-pending ключей), поэтому запись
+ * посещений не блокирует строки скетчей. Запросы учитывают и ещё не слитые скетчи. Слияние
+ * идемпотентно: повтор после ошибки или повторный учёт уже слитого скетча результат не меняет.
+ * <p>
+ * Скетчи в памяти теряются при аварийной остановке, поэтому каждое слияние сохраняет в derived_state
+ * границу complete_before: скетчи за часы раньше неё в таблице полные. Посещения за такие часы,
+ * записанные позже, сливаются с таблицей сразу, в транзакции записи. При запуске скетчи пересчитываются
+ * по исходным посещениям в фоне — только за часы начиная с границы, а без неё (первый запуск, работа
+ * с выключенными скетчами) — целиком; до конца пересчёта {@link #covers} возвращает false.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SketchService {
+
+    private static final Comparator<BucketKey> KEY_ORDER = Comparator
+            .comparing(BucketKey::uri)
+            .thenComparing(BucketKey::bucket)
+            .thenComparing(BucketKey::app);
+
+    private static final String STATE = "sketch";
+
+    private final SketchRepository sketchRepository;
+    private final DerivedStateRepository derivedStateRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.sketch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stat-service.sketch.max-pending:1000}")
+    private int maxPending;
+
+    /**
+     * Скетчи, ещё не слитые с таблицей.
+     */
+    private final Map<BucketKey, HyperLogLog> pending = new HashMap<>();
+    /**
+     * Скетчи, которые сливаются с таблицей прямо сейчас; видны запросам до конца слияния.
+     */
+    private volatile Map<BucketKey, HyperLogLog> flushing = Map.of();
+    private final Object flushLock = new Object();
+    /**
+     * Часы раньше этой границы в таблице полные. Меняется вместе с очередью под её блокировкой.
+     */
+    private LocalDateTime completeBefore = LocalDateTime.MIN;
+    private LocalDateTime savedCompleteBefore;
+    /**
+     * Незафиксированные транзакции записи по самому раннему часу их посещений: их скетчи попадут
+     * в очередь только после фиксации, и граница не должна их обогнать.
+     */
+    private final NavigableMap<LocalDateTime, Integer> inflight = new TreeMap<>();
+    private volatile boolean ready;
+    private Thread rebuilder;
+
+    /**
+     * Фоновый пересчёт скетчей за часы, которые могли остаться неполными.
+     */
+    @PostConstruct
+    void backfill() {
+        if (!enabled) {
+            derivedStateRepository.clear(STATE);
+            return;
+        }
+        LocalDateTime from = derivedStateRepository.findCompleteBefore(STATE).orElse(null);
+        synchronized (pending) {
+            completeBefore = from == null ? LocalDateTime.MIN : from;
+            savedCompleteBefore = from;
+        }
+        rebuilder = new Thread(() -> rebuild(from), "sketch-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+    }
+
+    /**
+     * Пересчёт скетчей за часы не раньше from (без from — всех). Записываемые в это время посещения
+     * сливаются с пересчитанными скетчами, повторный учёт посещения результат не меняет.
+     */
+    private void rebuild(LocalDateTime from) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                sketchRepository.deleteFrom(from);
+                BucketKey[] current = new BucketKey[1];
+                HyperLogLog[] sketch = new HyperLogLog[1];
+                sketchRepository.streamHourlyIps(from, row -> {
+                    BucketKey key = new BucketKey(row.app(), row.uri(), row.bucket());
+                    if (!key.equals(current[0])) {
+                        if (current[0] != null) {
+                            merge(current[0], sketch[0]);
+                        }
+                        current[0] = key;
+                        sketch[0] = new HyperLogLog();
+                    }
+                    sketch[0].add(row.ip());
+                });
+                if (current[0] != null) {
+                    merge(current[0], sketch[0]);
+                }
+            });
+            ready = true;
+            if (from == null) {
+                log.info("Скетчи уникальных посетителей пересчитаны по всем исходным посещениям");
+            } else {
+                log.info("Скетчи уникальных посетителей пересчитаны по исходным посещениям с {}", from);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось пересчитать скетчи уникальных посетителей, они будут пересчитаны "
+                    + "при следующем запуске", e);
+        }
+    }
+
+    /**
+     * Слияние оставшихся скетчей при штатной остановке.
+     */
+    @PreDestroy
+    void stop() {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        synchronized (pending) {
+            if (!pending.isEmpty()) {
+                log.warn("Скетчи не слиты при остановке, при следующем запуске будут пересчитаны часы с {}",
+                        savedCompleteBefore);
+            }
+        }
+    }
+
+    /**
+     * Учёт пакета посещений в скетчах. Внутри транзакции записи посещения попадают в скетчи
+     * только после её фиксации. Посещения за часы раньше границы полноты сливаются с таблицей
+     * сразу, в транзакции записи.
+     */
+    public void add(List<EndpointHit> hits) {
+        if (!enabled || hits.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, HyperLogLog> sketches = new HashMap<>();
+        LocalDateTime oldest = LocalDateTime.MAX;
+        for (EndpointHit hit : hits) {
+            BucketKey key = new BucketKey(hit.getApp(), hit.getUri(), TimeBucket.HOUR.floor(hit.getTimestamp()));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+            if (key.bucket().isBefore(oldest)) {
+                oldest = key.bucket();
+            }
+        }
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        boolean late;
+        synchronized (pending) {
+            late = oldest.isBefore(completeBefore);
+            if (!late && transactional) {
+                inflight.merge(oldest, 1, Integer::sum);
+            }
+        }
+        if (late) {
+            List<BucketKey> keys = new ArrayList<>(sketches.keySet());
+            keys.sort(KEY_ORDER);
+            transactionTemplate.executeWithoutResult(status -> keys.forEach(key -> merge(key, sketches.get(key))));
+            return;
+        }
+        if (transactional) {
+            LocalDateTime bucket = oldest;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(sketches);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (pending) {
+                        inflight.computeIfPresent(bucket, (k, count) -> count == 1 ? null : count - 1);
+                    }
+                }
+            });
+        } else {
+            enqueue(sketches);
+        }
+    }
+
+    private void enqueue(Map<BucketKey, HyperLogLog> sketches) {
+        boolean full;
+        synchronized (pending) {
+            sketches.forEach((key, sketch) -> pending.merge(key, sketch, SketchService::union));
+            full = pending.size() > maxPending;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Слияние накопленных скетчей с таблицей одной транзакцией. При ошибке скетчи возвращаются
+     * в очередь и сливаются при следующем запуске. После пересчёта при запуске в той же транзакции
+     * сохраняется новая граница полноты.
+     */
+    @Scheduled(fixedDelayString = "${stat-service.sketch.flush-interval:1s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            Map<BucketKey, HyperLogLog> batch;
+            LocalDateTime hour = TimeBucket.HOUR.floor(LocalDateTime.now());
+            synchronized (pending) {
+                if (pending.isEmpty() && (!ready || hour.equals(savedCompleteBefore))) {
+                    return;
+                }
+                batch = new HashMap<>(pending);
+                pending.clear();
+                flushing = batch;
+            }
+            try {
+                List<BucketKey> keys = new ArrayList<>(batch.keySet());
+                keys.sort(KEY_ORDER);
+                transactionTemplate.executeWithoutResult(status -> {
+                    keys.forEach(key -> merge(key, batch.get(key)));
+                    if (ready) {
+                        derivedStateRepository.saveCompleteBefore(STATE, advanceCompleteBefore(hour));
+                    }
+                });
+                log.debug("Слито скетчей: {}", keys.size());
+            } catch (RuntimeException e) {
+                log.error("Не удалось слить скетчи, повтор при следующем запуске: {}", batch.size(), e);
+                synchronized (pending) {
+                    batch.forEach((key, sketch) -> pending.merge(key, sketch, SketchService::union));
+                }
+            } finally {
+                flushing = Map.of();
+            }
+        }
+    }
+
+    /**
+     * Новая граница полноты: не позже текущего часа и самого раннего часа посещений, которые ещё
+     * не слиты или не зафиксированы. Граница в памяти меняется сразу, до фиксации слияния: посещение,
+     * записанное после этого, уже сравнивается с новой границей.
+     */
+    private LocalDateTime advanceCompleteBefore(LocalDateTime hour) {
+        synchronized (pending) {
+            LocalDateTime next = hour;
+            if (!inflight.isEmpty() && inflight.firstKey().isBefore(next)) {
+                next = inflight.firstKey();
+            }
+            for (BucketKey key : pending.keySet()) {
+                if (key.bucket().isBefore(next)) {
+                    next = key.bucket();
+                }
+            }
+            completeBefore = next;
+            savedCompleteBefore = next;
+            return next;
+        }
+    }
+
+    /**
+     * Учёт в скетчах посещений массового импорта из временной таблицы. Строки идут по ключу скетча,
+     * поэтому в памяти одновременно строится только один скетч. Вызывается в транзакции импорта.
+     */
+    public void addFrom(String table) {
+        if (!enabled) {
+            return;
+        }
+        BucketKey[] current = new BucketKey[1];
+        HyperLogLog[] sketch = new HyperLogLog[1];
+        sketchRepository.streamHourlyIps(table, row -> {
+            BucketKey key = new BucketKey(row.app(), row.uri(), row.bucket());
+            if (!key.equals(current[0])) {
+                if (current[0] != null) {
+                    merge(current[0], sketch[0]);
+                }
+                current[0] = key;
+                sketch[0] = new HyperLogLog();
+            }
+            sketch[0].add(row.ip());
+        });
+        if (current[0] != null) {
+            merge(current[0], sketch[0]);
+        }
+    }
+
+    /**
+     * Скетчи выгодны, если в периоде есть хотя бы один целый час и пересчёт при запуске завершён.
+     */
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return enabled && ready && TimeBucket.HOUR.ceil(start).isBefore(TimeBucket.HOUR.floor(end));
+    }
+
+    public List<ViewStats> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        LocalDateTime hourStart = TimeBucket.HOUR.ceil(start);
+        LocalDateTime hourEnd = TimeBucket.HOUR.floor(end);
+        Map<Map.Entry<String, String>, HyperLogLog> sketches = new HashMap<>();
+        sketchRepository.findSketches(hourStart, hourEnd, uris, rs -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            sketches.merge(Map.entry(rs.getString("app"), rs.getString("uri")), sketch, (a, b) -> {
+                a.merge(b);
+                return a;
+            });
+        });
+        unflushed(hourStart, hourEnd, uris, (key, sketch) ->
+                sketches.computeIfAbsent(Map.entry(key.app(), key.uri()), k -> new HyperLogLog()).merge(sketch));
+        sketchRepository.findEdgeIps(start, hourStart, hourEnd, end, uris, row ->
+                sketches.computeIfAbsent(Map.entry(row.app(), row.uri()), k -> new HyperLogLog()).add(row.ip()));
+
+        List<ViewStats> result = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> result.add(new ViewStats(key.getKey(), key.getValue(), sketch.estimate())));
+        result.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+        return result;
+    }
+
+    /**
+     * Ещё не слитые с таблицей скетчи за часы [from, to). Скетч, который уже слит, но ещё
+     * числится в сливаемых, может попасть в ответ дважды — на результат объединения это не влияет.
+     * Переданные скетчи можно только читать.
+     */
+    private void unflushed(LocalDateTime from, LocalDateTime to, List<String> uris,
+                           BiConsumer<BucketKey, HyperLogLog> consumer) {
+        BiConsumer<BucketKey, HyperLogLog> filter = (key, sketch) -> {
+            if (!key.bucket().isBefore(from) && key.bucket().isBefore(to)
+                    && (uris == null || uris.isEmpty() || uris.contains(key.uri()))) {
+                consumer.accept(key, sketch);
+            }
+        };
+        flushing.forEach(filter);
+        synchronized (pending) {
+            pending.forEach(filter);
+        }
+    }
+
+    private static HyperLogLog union(HyperLogLog a, HyperLogLog b) {
+        a.merge(b);
+        return a;
+    }
+
+    /**
+     * Слияние скетча с таблицей; сам скетч не меняется.
+     */
+    private void merge(BucketKey key, HyperLogLog sketch) {
+        if (!sketchRepository.insertIfAbsent(key, sketch.toBytes())) {
+            HyperLogLog merged = HyperLogLog.fromBytes(sketchRepository.findForUpdate(key));
+            merged.merge(sketch);
+            sketchRepository.update(key, merged.toBytes());
+        }
+    }
+}
@@ -2,12 +2,48 @@ package ru.practicum.service;
 
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.enums.TimelineInterval;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHitDto hitDto);
 
-    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    void saveHits(List<EndpointHitDto> hitDtos);
+
+    /**
+     * Статистика посещений за период.
+     *
+     * @param approximate разрешить приближённый подсчёт уникальных посетителей по скетчам HyperLogLog
+     */
+    List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                             boolean approximate);
+
+    /**
+     * Статистика по нескольким запросам за один вызов. Результаты идут в порядке запросов.
+     */
+    List<List<ViewStats>> getStats(List<ViewsStatsRequest> requests);
+
+    /**
+     * Статистика из хранилища с чтением курсором: строки передаются получателю по мере чтения.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    /**
+     * n самых посещаемых uri за период. Без учёта уникальности недавний период считается
+     * по сводкам в памяти, иначе — запросом к хранилищу с сортировкой и ограничением.
+     */
+    List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n, boolean unique);
+
+    /**
+     * Временной ряд посещений за период с шагом interval: число посещений (уникальных, если unique)
+     * по каждому uri в каждом интервале. Интервалы без посещений не возвращаются.
+     */
+    List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                      TimelineInterval interval);
 }
@@ -2,41 +2,323 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.enums.TimelineInterval;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.mapper.EndpointHitMapper;
 import ru.practicum.model.EndpointHit;
-import ru.practicum.repository.StatsRepository;
+import ru.practicum.repository.HitStore;
+import ru.practicum.repository.LastVisitRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
 
-    private final StatsRepository statsRepository;
+    private static final int MAX_FIELD_LENGTH = 255;
+
+    private final HitStore hitStore;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final HitLogService hitLogService;
+    private final RollupService rollupService;
+    private final SketchService sketchService;
+    private final HotWindowService hotWindowService;
+    private final TopService topService;
+    private final ColdStorageService coldStorageService;
+    private final QueryCacheService queryCacheService;
+    private final LastVisitRepository lastVisitRepository;
     private final EndpointHitMapper mapper;
 
+    @Value("${stat-service.timeline.max-buckets:10000}")
+    private long maxBuckets;
+
     @Override
     public void saveHit(EndpointHitDto hitDto) {
         EndpointHit hit = mapper.toEntity(hitDto);
-        statsRepository.save(hit);
+        validate(List.of(hit));
+        if (hitLogService.isEnabled()) {
+            hitLogService.append(List.of(hit));
+            log.debug("Записали запрос в журнал {}", hit);
+            return;
+        }
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.add(hit);
+            log.debug("Поставили запрос в буфер {}", hit);
+            return;
+        }
+        hitWriter.write(List.of(hit));
         log.info("Сохранили запрос {}", hit);
     }
 
     @Override
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        log.info("Получение статистики с параметрами: start = {}, end = {}, uris = {}, unique = {}", start, end, uris, unique);
+    public void saveHits(List<EndpointHitDto> hitDtos) {
+        List<EndpointHit> hits = mapper.toEntityList(hitDtos);
+        validate(hits);
+        if (hitLogService.isEnabled()) {
+            hitLogService.append(hits);
+            log.debug("Записали пакет запросов в журнал, количество: {}", hits.size());
+            return;
+        }
+        if (hitBuffer.isEnabled()) {
+            hitBuffer.addAll(hits);
+            log.debug("Поставили пакет запросов в буфер, количество: {}", hits.size());
+            return;
+        }
+        hitWriter.write(hits);
+        log.info("Сохранили пакет запросов, количество: {}", hits.size());
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    boolean approximate) {
+        log.info("Получение статистики с параметрами: start = {}, end = {}, uris = {}, unique = {}, approximate = {}",
+                start, end, uris, unique, approximate);
+        if (end.isBefore(start)) {
+            throw new ValidationException("Дата начала периода не может быть ранее даты окончания периода.");
+        }
+
+        List<ViewStats> result = query(start, end, uris, unique, approximate);
+        log.info("Результат: записей {}", result.size());
+        log.debug("Результат: {}", result);
+        return result;
+    }
+
+    /**
+     * Запросы с одинаковыми периодом и режимом подсчёта объединяются в один запрос по всем их uri,
+     * после чего строки результата раскладываются обратно по исходным запросам.
+     * <p>
+     * Точные запросы уникальных просмотров по списку uri с общим концом и разными началами периода
+     * (так main-service спрашивает просмотры событий с момента публикации) выполняются одним чтением
+     * последних посещений за самый широкий период, а начало каждого запроса применяется в памяти.
+     * Исключения — период целиком в окне последних посещений, где запросы и так не идут в БД,
+     * и период, задевающий холодные сегменты. Запросы без учёта уникальности с разными началами
+     * по-прежнему выполняются по одному на период: их обслуживают агрегаты.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<List<ViewStats>> getStats(List<ViewsStatsRequest> requests) {
+        log.info("Получение статистики по пакету запросов, количество: {}", requests.size());
+        Map<QueryGroup, List<Integer>> groups = new LinkedHashMap<>();
+        Map<LocalDateTime, List<Integer>> uniqueByEnd = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ViewsStatsRequest request = requests.get(i);
+            if (request.getStart() == null || request.getEnd() == null) {
+                throw new ValidationException("В запросе статистики должны быть указаны начало и конец периода.");
+            }
+            if (request.getEnd().isBefore(request.getStart())) {
+                throw new ValidationException("Дата начала периода не может быть ранее даты окончания периода.");
+            }
+            boolean allUris = request.getUris() == null || request.getUris().isEmpty();
+            if (!allUris && request.isUnique() && !request.isApproximate()) {
+                uniqueByEnd.computeIfAbsent(request.getEnd(), e -> new ArrayList<>()).add(i);
+                continue;
+            }
+            groups.computeIfAbsent(new QueryGroup(request.getStart(), request.getEnd(), request.isUnique(),
+                    request.isApproximate(), allUris), g -> new ArrayList<>()).add(i);
+        }
+
+        List<List<ViewStats>> results = new ArrayList<>(Collections.nCopies(requests.size(), List.of()));
+        uniqueByEnd.forEach((end, indexes) -> {
+            LocalDateTime widest = indexes.stream().map(i -> requests.get(i).getStart())
+                    .min(Comparator.naturalOrder()).orElseThrow();
+            boolean sameStart = indexes.stream().allMatch(i -> requests.get(i).getStart().equals(widest));
+            if (sameStart || hotWindowService.covers(widest) || coldStorageService.overlaps(widest, end)) {
+                for (int i : indexes) {
+                    groups.computeIfAbsent(new QueryGroup(requests.get(i).getStart(), end, true, false, false),
+                            g -> new ArrayList<>()).add(i);
+                }
+                return;
+            }
+            loadUniqueSince(widest, end, indexes, requests, results);
+        });
+        groups.forEach((group, indexes) -> {
+            List<String> uris = group.allUris()
+                    ? null
+                    : indexes.stream().flatMap(i -> requests.get(i).getUris().stream()).distinct().toList();
+            List<ViewStats> stats = query(group.start(), group.end(), uris, group.unique(), group.approximate());
+            for (int i : indexes) {
+                Set<String> requested = requests.get(i).getUris();
+                results.set(i, group.allUris()
+                        ? stats
+                        : stats.stream().filter(s -> requested.contains(s.getUri())).toList());
+            }
+        });
+        log.info("Пакет запросов статистики обработан, групп: {}", groups.size());
+        return results;
+    }
+
+    /**
+     * Уникальные просмотры по запросам с концом end и началами не раньше widest: последние посещения
+     * каждого ip читаются один раз, для каждого запроса считаются ip с последним посещением не раньше его начала.
+     */
+    private void loadUniqueSince(LocalDateTime widest, LocalDateTime end, List<Integer> indexes,
+                                 List<ViewsStatsRequest> requests, List<List<ViewStats>> results) {
+        List<String> uris = indexes.stream().flatMap(i -> requests.get(i).getUris().stream()).distinct().toList();
+        Map<String, Map<String, List<LocalDateTime>>> visits = new HashMap<>();
+        lastVisitRepository.streamLastVisits(widest, end, uris, visit -> visits
+                .computeIfAbsent(visit.uri(), u -> new HashMap<>())
+                .computeIfAbsent(visit.app(), a -> new ArrayList<>())
+                .add(visit.timestamp()));
+        visits.values().forEach(byApp -> byApp.values().forEach(Collections::sort));
+        for (int i : indexes) {
+            ViewsStatsRequest request = requests.get(i);
+            List<ViewStats> stats = new ArrayList<>();
+            for (String uri : request.getUris()) {
+                visits.getOrDefault(uri, Map.of()).forEach((app, timestamps) -> {
+                    long hits = timestamps.size() - firstNotBefore(timestamps, request.getStart());
+                    if (hits > 0) {
+                        stats.add(new ViewStats(app, uri, hits));
+                    }
+                });
+            }
+            stats.sort(Comparator.comparingLong(ViewStats::getHits).reversed());
+            results.set(i, stats);
+        }
+        log.info("Уникальные просмотры по {} запросам получены одним чтением с {}", indexes.size(), widest);
+    }
+
+    private static int firstNotBefore(List<LocalDateTime> sorted, LocalDateTime start) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted.get(mid).isBefore(start)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            Consumer<ViewStats> consumer) {
+        long[] count = new long[1];
+        Consumer<ViewStats> counting = stats -> {
+            consumer.accept(stats);
+            count[0]++;
+        };
+        if (coldStorageService.overlaps(start, end)) {
+            coldStorageService.streamStats(start, end, uris, unique, false, counting);
+            log.info("Потоковая выдача статистики с холодными сегментами завершена, записей: {}", count[0]);
+            return;
+        }
+        hitStore.streamStats(start, end, uris, unique, counting);
+        log.info("Потоковая выдача статистики завершена, записей: {}", count[0]);
+    }
+
+    @Override
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int n, boolean unique) {
+        log.info("Получение популярных uri: start = {}, end = {}, n = {}, unique = {}", start, end, n, unique);
+        if (n <= 0) {
+            throw new ValidationException("Число записей должно быть положительным.");
+        }
         if (end.isBefore(start)) {
             throw new ValidationException("Дата начала периода не может быть ранее даты окончания периода.");
         }
+        if (!unique && topService.covers(start, n)) {
+            return topService.top(start, end, n);
+        }
+        if (coldStorageService.overlaps(start, end)) {
+            return coldStorageService.getStats(start, end, null, unique, false).stream()
+                    .sorted(Comparator.comparingLong(ViewStats::getHits).reversed())
+                    .limit(n)
+                    .toList();
+        }
+        if (!unique && rollupService.covers(start, end)) {
+            return rollupService.getTop(start, end, n);
+        }
+        return hitStore.getTop(start, end, n, unique);
+    }
 
-        List<ViewStats> result = statsRepository.getStats(start, end, uris, unique);
-        log.info("Результат: {}", result);
+    /**
+     * Без учёта уникальности ряд строится по агрегатам, иначе — одним сгруппированным запросом к хранилищу.
+     */
+    @Override
+    public List<ViewStatsBucket> getTimeline(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                             TimelineInterval interval) {
+        log.info("Получение временного ряда: start = {}, end = {}, uris = {}, unique = {}, interval = {}",
+                start, end, uris, unique, interval);
+        if (end.isBefore(start)) {
+            throw new ValidationException("Дата начала периода не может быть ранее даты окончания периода.");
+        }
+        if (interval.count(start, end) > maxBuckets) {
+            throw new ValidationException("Слишком много интервалов в периоде, допустимо не более " + maxBuckets
+                    + ". Увеличьте шаг или сократите период.");
+        }
+
+        List<ViewStatsBucket> result;
+        if (coldStorageService.overlaps(start, end)) {
+            result = coldStorageService.getTimeline(start, end, uris, unique, interval);
+        } else if (!unique && rollupService.covers(start, end)) {
+            result = rollupService.getTimeline(start, end, uris, interval);
+        } else {
+            result = hitStore.getTimeline(start, end, uris, unique, interval);
+        }
+        log.info("Результат: записей {}", result.size());
         return result;
     }
+
+    /**
+     * Проверка посещений до записи в журнал, буфер или БД: посещение, которое БД заведомо отвергнет,
+     * отклоняется запросом, а не застревает в фоновой записи.
+     */
+    private static void validate(List<EndpointHit> hits) {
+        for (int i = 0; i < hits.size(); i++) {
+            EndpointHit hit = hits.get(i);
+            if (hit == null || hit.getApp() == null || hit.getUri() == null || hit.getIp() == null
+                    || hit.getTimestamp() == null) {
+                throw new ValidationException("Посещение " + (i + 1) + ": должны быть заполнены app, uri, ip и timestamp.");
+            }
+            if (hit.getApp().length() > MAX_FIELD_LENGTH || hit.getUri().length() > MAX_FIELD_LENGTH
+                    || hit.getIp().length() > MAX_FIELD_LENGTH) {
+                throw new ValidationException("Посещение " + (i + 1) + ": app, uri и ip должны быть не длиннее "
+                        + MAX_FIELD_LENGTH + " символов.");
+            }
+        }
+    }
+
+    private List<ViewStats> query(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                  boolean approximate) {
+        return queryCacheService.get(start, end, uris, unique, approximate,
+                (from, to) -> load(from, to, uris, unique, approximate));
+    }
+
+    private List<ViewStats> load(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                 boolean approximate) {
+        if (hotWindowService.covers(start)) {
+            return hotWindowService.getStats(start, end, uris, unique);
+        } else if (coldStorageService.overlaps(start, end)) {
+            return coldStorageService.getStats(start, end, uris, unique, approximate);
+        } else if (!unique && rollupService.covers(start, end)) {
+            return rollupService.getStats(start, end, uris);
+        } else if (unique && approximate && sketchService.covers(start, end)) {
+            return sketchService.getUniqueStats(start, end, uris);
+        }
+        return hitStore.getStats(start, end, uris, unique);
+    }
+
+    private record QueryGroup(LocalDateTime start, LocalDateTime end, boolean unique, boolean approximate,
+                              boolean allUris) {
+    }
 }
@@ -0,0 +1,91 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.RecentHitRepository;
+import ru.practicum.window.TopWindow;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Популярные uri за последние часы по поминутным сводкам Space-Saving.
+ * Окно заполняется из хранилища при старте, пополняется после фиксации записи посещений
+ * и раз в минуту сдвигается вперёд.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TopService implements HitListener {
+
+    private final RecentHitRepository recentHitRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${stat-service.top.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stat-service.top.window:6h}")
+    private Duration windowDuration;
+
+    @Value("${stat-service.top.capacity:200}")
+    private int capacity;
+
+    private volatile TopWindow window;
+
+    @PostConstruct
+    void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        TopWindow rebuilt = new TopWindow(coverageStart(), capacity);
+        transactionTemplate.executeWithoutResult(status -> recentHitRepository.streamSince(rebuilt.coverageStart(),
+                hit -> rebuilt.add(hit.getApp(), hit.getUri(), hit.getTimestamp())));
+        window = rebuilt;
+        log.info("Сводки популярных uri восстановлены: с {}", rebuilt.coverageStart());
+    }
+
+    @Override
+    public void onHits(List<EndpointHit> hits) {
+        TopWindow current = window;
+        if (current == null) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            current.add(hit.getApp(), hit.getUri(), hit.getTimestamp());
+        }
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    void slide() {
+        TopWindow current = window;
+        if (current != null) {
+            current.advance(coverageStart());
+        }
+    }
+
+    /**
+     * Сводки отвечают на запрос без учёта уникальности, начинающийся в пределах окна,
+     * если n не больше ёмкости сводки.
+     */
+    public boolean covers(LocalDateTime start, int n) {
+        TopWindow current = window;
+        return current != null && current.covers(start) && n <= current.capacity();
+    }
+
+    public List<ViewStats> top(LocalDateTime start, LocalDateTime end, int n) {
+        return window.top(start, end, n);
+    }
+
+    private LocalDateTime coverageStart() {
+        return TimeBucket.MINUTE.floor(LocalDateTime.now().minus(windowDuration));
+    }
+}
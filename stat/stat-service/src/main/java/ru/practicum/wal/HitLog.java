@@ -0,0 +1,354 @@
+package ru.practicum.wal;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.model.EndpointHit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал посещений только на дозапись, разбитый на сегменты фиксированного размера.
+ * Сегмент целиком отображается в память, поэтому дозапись — это копирование байтов без системных вызовов;
+ * записанное переживает падение процесса, а при включённом fsync — и падение ОС.
+ * <p>
+ * Запись в сегменте: длина полезной нагрузки (int), CRC32C нагрузки (int), нагрузка.
+ * Нулевая длина или несовпадение CRC означают конец сегмента — так отбрасывается оборванный хвост.
+ * Когда очередная запись не помещается, сегмент запечатывается и открывается следующий.
+ * Общий размер сегментов ограничен maxSize: пакет, для которого понадобились бы новые сегменты сверх
+ * предела, отклоняется целиком с {@link HitLogFullException}, ничего не дописывая.
+ * <p>
+ * Читатель один: {@link #read(int)} выдаёт следующую порцию записей, {@link #commit()} сохраняет
+ * позицию после неё в файл checkpoint и удаляет полностью прочитанные сегменты, {@link #rewind()}
+ * возвращает чтение к последней сохранённой позиции. Доставка «не менее одного раза»: при падении
+ * между применением порции и сохранением позиции порция будет прочитана повторно.
+ */
+@Slf4j
+public class HitLog implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.log");
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER_SIZE = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final long maxSize;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private Segment active;
+
+    private long readSegment;
+    private int readOffset;
+    private long committedSegment;
+    private int committedOffset;
+
+    public HitLog(Path dir, int segmentSize, boolean fsync) throws IOException {
+        this(dir, segmentSize, fsync, Long.MAX_VALUE);
+    }
+
+    public HitLog(Path dir, int segmentSize, boolean fsync, long maxSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.maxSize = maxSize;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    /**
+     * Дозапись посещений. После возврата посещения видны читателю и сохранятся при падении процесса.
+     */
+    public synchronized void append(List<EndpointHit> hits) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(hits.size());
+        int limit = active.limit;
+        int newSegments = 0;
+        for (EndpointHit hit : hits) {
+            byte[] payload = encode(hit);
+            int recordSize = HEADER_SIZE + payload.length;
+            if (recordSize > segmentSize) {
+                throw new IOException("Запись журнала больше размера сегмента: " + recordSize);
+            }
+            if (limit + recordSize > segmentSize) {
+                newSegments++;
+                limit = 0;
+            }
+            limit += recordSize;
+            payloads.add(payload);
+        }
+        if ((long) (segments.size() + newSegments) * segmentSize > maxSize) {
+            throw new HitLogFullException("Журнал посещений заполнен: " + segments.size() + " сегментов по "
+                    + segmentSize + " байт, предел " + maxSize + " байт");
+        }
+        int start = active.limit;
+        for (byte[] payload : payloads) {
+            int recordSize = HEADER_SIZE + payload.length;
+            if (active.limit + recordSize > segmentSize) {
+                force(active, start);
+                rotate();
+                start = 0;
+            }
+            int offset = active.limit;
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            active.buffer.put(offset + HEADER_SIZE, payload);
+            active.buffer.putInt(offset + 4, (int) crc.getValue());
+            active.buffer.putInt(offset, payload.length);
+            active.limit = offset + recordSize;
+        }
+        force(active, start);
+    }
+
+    /**
+     * Размер сегментов журнала на диске в байтах.
+     */
+    public long size() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Следующая порция непрочитанных посещений, не больше max. Пустой список — новых записей пока нет.
+     */
+    public List<EndpointHit> read(int max) {
+        List<EndpointHit> hits = new ArrayList<>(Math.min(max, 1024));
+        while (hits.size() < max) {
+            Segment segment = segments.get(readSegment);
+            if (segment == null) {
+                Long next = segments.higherKey(readSegment);
+                if (next == null) {
+                    break;
+                }
+                readSegment = next;
+                readOffset = 0;
+                continue;
+            }
+            boolean sealed = segment.sealed;
+            int limit = segment.limit;
+            if (readOffset >= limit) {
+                Long next = segments.higherKey(readSegment);
+                if (!sealed || next == null) {
+                    break;
+                }
+                readSegment = next;
+                readOffset = 0;
+                continue;
+            }
+            int length = segment.buffer.getInt(readOffset);
+            byte[] payload = new byte[length];
+            segment.buffer.get(readOffset + HEADER_SIZE, payload);
+            hits.add(decode(payload));
+            readOffset += HEADER_SIZE + length;
+        }
+        return hits;
+    }
+
+    /**
+     * Сохранение позиции чтения: всё прочитанное до сих пор считается применённым.
+     */
+    public void commit() throws IOException {
+        if (readSegment == committedSegment && readOffset == committedOffset) {
+            return;
+        }
+        ByteBuffer checkpoint = ByteBuffer.allocate(12).putLong(readSegment).putInt(readOffset).flip();
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(checkpoint);
+            if (fsync) {
+                channel.force(true);
+            }
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committedSegment = readSegment;
+        committedOffset = readOffset;
+        for (Map.Entry<Long, Segment> entry : segments.headMap(committedSegment).entrySet()) {
+            segments.remove(entry.getKey());
+            entry.getValue().delete();
+        }
+    }
+
+    /**
+     * Возврат чтения к последней сохранённой позиции, например после неудачного применения порции.
+     */
+    public void rewind() {
+        readSegment = committedSegment;
+        readOffset = committedOffset;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    long sequence = Long.parseLong(matcher.group(1));
+                    segments.put(sequence, Segment.open(file, sequence, Files.size(file)));
+                }
+            }
+        }
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            committedSegment = buffer.getLong();
+            committedOffset = buffer.getInt();
+        } else {
+            committedSegment = segments.isEmpty() ? 0 : segments.firstKey();
+            committedOffset = 0;
+        }
+        for (Map.Entry<Long, Segment> entry : segments.headMap(committedSegment).entrySet()) {
+            segments.remove(entry.getKey());
+            entry.getValue().delete();
+        }
+        for (Segment segment : segments.values()) {
+            segment.limit = scan(segment);
+            segment.sealed = true;
+            if (segment.limit + 4 <= segment.buffer.capacity() && segment.buffer.getInt(segment.limit) != 0) {
+                log.warn("В сегменте журнала {} отброшен повреждённый хвост с позиции {}",
+                        segment.path.getFileName(), segment.limit);
+            }
+        }
+        rewind();
+        long last = segments.isEmpty() ? committedSegment : segments.lastKey();
+        active = Segment.create(dir, last + 1, segmentSize);
+        segments.put(active.sequence, active);
+    }
+
+    private void rotate() throws IOException {
+        Segment next = Segment.create(dir, active.sequence + 1, segmentSize);
+        segments.put(next.sequence, next);
+        active.sealed = true;
+        active = next;
+    }
+
+    private void force(Segment segment, int from) {
+        if (fsync && segment.limit > from) {
+            segment.buffer.force(from, segment.limit - from);
+        }
+    }
+
+    private static int scan(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_SIZE, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    private static byte[] encode(EndpointHit hit) {
+        byte[] app = bytes(hit.getApp());
+        byte[] uri = bytes(hit.getUri());
+        byte[] ip = bytes(hit.getIp());
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + 12 + length(app) + length(uri) + length(ip));
+        buffer.putLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(hit.getTimestamp().getNano());
+        putString(buffer, app);
+        putString(buffer, uri);
+        putString(buffer, ip);
+        return buffer.array();
+    }
+
+    private static EndpointHit decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        EndpointHit hit = new EndpointHit();
+        hit.setTimestamp(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+        hit.setApp(getString(buffer));
+        hit.setUri(getString(buffer));
+        hit.setIp(getString(buffer));
+        return hit;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private volatile int limit;
+        private volatile boolean sealed;
+
+        private Segment(long sequence, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path dir, long sequence, int size) throws IOException {
+            return open(dir.resolve(String.format("%020d.log", sequence)), sequence, size);
+        }
+
+        static Segment open(Path path, long sequence, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            return new Segment(sequence, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.wal;
+
+import java.io.IOException;
+
+/**
+ * Пакет посещений не помещается в журнал: сегменты достигли предела размера.
+ */
+public class HitLogFullException extends IOException {
+    public HitLogFullException(String message) {
+        super(message);
+    }
+}
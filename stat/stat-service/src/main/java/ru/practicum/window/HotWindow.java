@@ -0,0 +1,265 @@
+package ru.practicum.window;
+
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Посещения за последние часы в памяти, сведённые в поминутные агрегаты по app + uri.
+ * Для каждой минуты и пары app + uri хранятся секунды посещений (по байту на посещение) и набор
+ * различных ip, у каждого — маска секунд, в которые он заходил. Поэтому период с произвольными
+ * границами считается точно: целые минуты — по готовым счётчикам и наборам ip, неполные крайние
+ * минуты — по секундам и маскам. Уникальные просмотры объединяют наборы ip минут, а не исходные
+ * посещения: повторные заходы с того же ip в течение минуты не увеличивают ни память, ни время запроса.
+ * Сегменты блокируются по отдельности, так что запись в разные минуты не конкурирует.
+ * <p>
+ * Объём окна ограничен приблизительной оценкой занятой памяти: при превышении maxBytes вытесняются
+ * самые старые минуты и начало окна сдвигается. Окно отвечает за всё, что не раньше
+ * {@link #coverageStart()}: посещения старше этой границы не принимаются, а запросы, начинающиеся
+ * раньше неё, должны идти в хранилище.
+ */
+public class HotWindow {
+
+    /**
+     * Приблизительная стоимость посещения: байт секунды с запасом на рост массива.
+     */
+    static final int HIT_BYTES = 2;
+    /**
+     * Приблизительная стоимость нового ip в агрегате минуты: узел HashMap, маска секунд и строка адреса.
+     */
+    static final int IP_BYTES = 120;
+    /**
+     * Приблизительная стоимость новой пары app + uri в минуте: узел HashMap, агрегат и его массивы.
+     */
+    static final int CELL_BYTES = 160;
+
+    private static final long ALL_SECONDS = (1L << 60) - 1;
+
+    private final long maxBytes;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<Key, Key> keys = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long coverageStartMinute;
+
+    public HotWindow(LocalDateTime coverageStart, long maxBytes) {
+        this.coverageStartMinute = minuteOf(coverageStart);
+        this.maxBytes = maxBytes;
+    }
+
+    public LocalDateTime coverageStart() {
+        return LocalDateTime.ofEpochSecond(coverageStartMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Число посещений в окне.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Приблизительный объём окна в байтах.
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    public boolean covers(LocalDateTime start) {
+        return !start.isBefore(coverageStart());
+    }
+
+    public void add(String app, String uri, String ip, LocalDateTime timestamp) {
+        long minute = minuteOf(timestamp);
+        if (minute < coverageStartMinute) {
+            return;
+        }
+        Key key = keys.computeIfAbsent(new Key(app, uri), k -> k);
+        long added = segments.computeIfAbsent(minute, m -> new Segment()).add(timestamp.getSecond(), key, ip);
+        if (added < 0) {
+            return;
+        }
+        size.incrementAndGet();
+        if (bytes.addAndGet(added) > maxBytes) {
+            trimToSize();
+        }
+    }
+
+    /**
+     * Сдвиг начала окна вперёд с удалением сегментов, которые оказались за его пределами.
+     */
+    public synchronized void advance(LocalDateTime newCoverageStart) {
+        long minute = minuteOf(newCoverageStart);
+        if (minute <= coverageStartMinute) {
+            return;
+        }
+        coverageStartMinute = minute;
+        evictBefore(minute);
+    }
+
+    /**
+     * Статистика за [start, end]. Вызывать только если {@link #covers(LocalDateTime)} вернул true.
+     * Записи упорядочены по общему числу посещений, как и в запросе к хранилищу.
+     */
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, Collection<String> uris, boolean unique) {
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        Map<Key, Accumulator> result = new HashMap<>();
+        long firstMinute = minuteOf(start);
+        long lastMinute = minuteOf(end);
+        for (Map.Entry<Long, Segment> entry : segments.subMap(firstMinute, true, lastMinute, true).entrySet()) {
+            long minute = entry.getKey();
+            int fromSecond = minute == firstMinute ? start.getSecond() : 0;
+            int toSecond = minute == lastMinute ? end.getSecond() : 59;
+            entry.getValue().collect(fromSecond, toSecond, uriFilter, unique, result);
+        }
+        List<Map.Entry<Key, Accumulator>> entries = new ArrayList<>(result.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<Key, Accumulator> e) -> e.getValue().total).reversed());
+        return entries.stream()
+                .map(e -> new ViewStats(e.getKey().app(), e.getKey().uri(),
+                        unique ? (long) e.getValue().ips.size() : e.getValue().total))
+                .toList();
+    }
+
+    private synchronized void trimToSize() {
+        while (bytes.get() > maxBytes && !segments.isEmpty()) {
+            long oldest = segments.firstKey();
+            coverageStartMinute = Math.max(coverageStartMinute, oldest + 1);
+            evictBefore(coverageStartMinute);
+        }
+    }
+
+    private void evictBefore(long minute) {
+        ConcurrentNavigableMap<Long, Segment> expired = segments.headMap(minute);
+        for (Segment segment : expired.values()) {
+            segment.evict();
+            size.addAndGet(-segment.hits);
+            bytes.addAndGet(-segment.bytes);
+        }
+        expired.clear();
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /**
+     * Маска секунд [fromSecond, toSecond].
+     */
+    private static long secondsMask(int fromSecond, int toSecond) {
+        return ALL_SECONDS >>> (59 - toSecond) & ALL_SECONDS << fromSecond & ALL_SECONDS;
+    }
+
+    private record Key(String app, String uri) {
+    }
+
+    private static final class Accumulator {
+        private long total;
+        private Set<String> ips;
+    }
+
+    /**
+     * Посещения пары app + uri за одну минуту.
+     */
+    private static final class Cell {
+        private byte[] seconds = new byte[4];
+        private int size;
+        private final Map<String, Long> ips = new HashMap<>(4);
+
+        /**
+         * @return true, если ip в этой минуте встретился впервые
+         */
+        boolean add(int second, String ip) {
+            if (size == seconds.length) {
+                seconds = Arrays.copyOf(seconds, size * 2);
+            }
+            seconds[size++] = (byte) second;
+            Long previous = ips.get(ip);
+            ips.put(ip, previous == null ? 1L << second : previous | 1L << second);
+            return previous == null;
+        }
+
+        long count(int fromSecond, int toSecond) {
+            long count = 0;
+            for (int i = 0; i < size; i++) {
+                if (seconds[i] >= fromSecond && seconds[i] <= toSecond) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private static final class Segment {
+        private final Map<Key, Cell> cells = new HashMap<>();
+        private long hits;
+        private long bytes;
+        private boolean evicted;
+
+        /**
+         * @return приблизительный прирост объёма в байтах или -1, если сегмент уже вытеснен
+         */
+        synchronized long add(int second, Key key, String ip) {
+            if (evicted) {
+                return -1;
+            }
+            long added = HIT_BYTES;
+            Cell cell = cells.get(key);
+            if (cell == null) {
+                cell = new Cell();
+                cells.put(key, cell);
+                added += CELL_BYTES;
+            }
+            if (cell.add(second, ip)) {
+                added += IP_BYTES;
+            }
+            hits++;
+            bytes += added;
+            return added;
+        }
+
+        synchronized void evict() {
+            evicted = true;
+        }
+
+        synchronized void collect(int fromSecond, int toSecond, Set<String> uriFilter, boolean unique,
+                                  Map<Key, Accumulator> result) {
+            boolean whole = fromSecond == 0 && toSecond == 59;
+            long mask = secondsMask(fromSecond, toSecond);
+            cells.forEach((key, cell) -> {
+                if (uriFilter != null && !uriFilter.contains(key.uri())) {
+                    return;
+                }
+                long count = whole ? cell.size : cell.count(fromSecond, toSecond);
+                if (count == 0) {
+                    return;
+                }
+                Accumulator accumulator = result.computeIfAbsent(key, k -> new Accumulator());
+                accumulator.total += count;
+                if (unique) {
+                    if (accumulator.ips == null) {
+                        accumulator.ips = new HashSet<>();
+                    }
+                    cell.ips.forEach((ip, seconds) -> {
+                        if ((seconds & mask) != 0) {
+                            accumulator.ips.add(ip);
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
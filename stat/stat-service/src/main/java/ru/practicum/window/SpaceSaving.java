@@ -0,0 +1,119 @@
+package ru.practicum.window;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Алгоритм Space-Saving: приближённые счётчики самых частых ключей в фиксированном объёме памяти.
+ * Отслеживается не больше capacity ключей; новый ключ при заполненной таблице вытесняет ключ
+ * с наименьшим счётчиком и наследует его значение. Счётчик ключа завышен не больше чем на error,
+ * а любой ключ с реальной частотой выше total / capacity гарантированно присутствует в таблице.
+ * <p>
+ * Ключи хранятся в двоичной min-куче с индексом позиций, поэтому учёт и вытеснение стоят O(log capacity).
+ * Класс не потокобезопасен.
+ */
+public class SpaceSaving<K> {
+
+    public record Entry<K>(K key, long count, long error) {
+    }
+
+    private final int capacity;
+    private final List<Slot<K>> heap;
+    private final Map<K, Slot<K>> slots;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость Space-Saving должна быть положительной: " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new ArrayList<>(capacity);
+        this.slots = new HashMap<>(capacity * 2);
+    }
+
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    public void add(K key, long count) {
+        Slot<K> slot = slots.get(key);
+        if (slot == null) {
+            if (heap.size() < capacity) {
+                slot = new Slot<>(key, 0, 0, heap.size());
+                heap.add(slot);
+            } else {
+                slot = heap.get(0);
+                slots.remove(slot.key);
+                slot.key = key;
+                slot.error = slot.count;
+            }
+            slots.put(key, slot);
+        }
+        slot.count += count;
+        siftUp(slot.index);
+        siftDown(slot.index);
+    }
+
+    public List<Entry<K>> entries() {
+        List<Entry<K>> entries = new ArrayList<>(heap.size());
+        for (Slot<K> slot : heap) {
+            entries.add(new Entry<>(slot.key, slot.count, slot.error));
+        }
+        return entries;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap.get(parent).count <= heap.get(index).count) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        int size = heap.size();
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap.get(left).count < heap.get(smallest).count) {
+                smallest = left;
+            }
+            if (right < size && heap.get(right).count < heap.get(smallest).count) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Slot<K> a = heap.get(i);
+        Slot<K> b = heap.get(j);
+        heap.set(i, b);
+        heap.set(j, a);
+        a.index = j;
+        b.index = i;
+    }
+
+    private static final class Slot<K> {
+        private K key;
+        private long count;
+        private long error;
+        private int index;
+
+        private Slot(K key, long count, long error, int index) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.window;
+
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Самые посещаемые app + uri за последние часы: по сводке {@link SpaceSaving} на каждую минуту.
+ * Память ограничена числом минут в окне, умноженным на ёмкость сводки, и не зависит от числа uri.
+ * Период запроса округляется до целых минут, а счётчики приближённые в пределах гарантий Space-Saving,
+ * так что окно подходит для «популярного сейчас», но не для точной статистики.
+ */
+public class TopWindow {
+
+    private final int capacity;
+    private final ConcurrentNavigableMap<Long, SpaceSaving<Key>> summaries = new ConcurrentSkipListMap<>();
+    private volatile long coverageStartMinute;
+
+    public TopWindow(LocalDateTime coverageStart, int capacity) {
+        this.coverageStartMinute = minuteOf(coverageStart);
+        this.capacity = capacity;
+    }
+
+    public LocalDateTime coverageStart() {
+        return LocalDateTime.ofEpochSecond(coverageStartMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean covers(LocalDateTime start) {
+        return !start.isBefore(coverageStart());
+    }
+
+    public void add(String app, String uri, LocalDateTime timestamp) {
+        long minute = minuteOf(timestamp);
+        if (minute < coverageStartMinute) {
+            return;
+        }
+        SpaceSaving<Key> summary = summaries.computeIfAbsent(minute, m -> new SpaceSaving<>(capacity));
+        synchronized (summary) {
+            summary.add(new Key(app, uri));
+        }
+    }
+
+    public synchronized void advance(LocalDateTime newCoverageStart) {
+        long minute = minuteOf(newCoverageStart);
+        if (minute <= coverageStartMinute) {
+            return;
+        }
+        coverageStartMinute = minute;
+        summaries.headMap(minute).clear();
+    }
+
+    /**
+     * n самых посещаемых app + uri за минуты [start, end] по убыванию числа посещений.
+     */
+    public List<ViewStats> top(LocalDateTime start, LocalDateTime end, int n) {
+        Map<Key, Long> counts = new HashMap<>();
+        for (SpaceSaving<Key> summary : summaries.subMap(minuteOf(start), true, minuteOf(end), true).values()) {
+            synchronized (summary) {
+                for (SpaceSaving.Entry<Key> entry : summary.entries()) {
+                    counts.merge(entry.key(), entry.count(), Long::sum);
+                }
+            }
+        }
+        PriorityQueue<Map.Entry<Key, Long>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Key, Long> entry : counts.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > n) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<Key, Long>> top = new ArrayList<>(heap);
+        top.sort(Map.Entry.<Key, Long>comparingByValue(Comparator.reverseOrder()));
+        return top.stream()
+                .map(e -> new ViewStats(e.getKey().app(), e.getKey().uri(), e.getValue()))
+                .toList();
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private record Key(String app, String uri) {
+    }
+}
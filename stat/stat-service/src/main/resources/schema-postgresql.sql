@@ -0,0 +1,28 @@
+-- Таблица посещений, секционированная по месяцам. Секции создаёт и удаляет PartitionService,
+-- индексы из schema.sql наследуются секциями. Уже существующая несекционированная таблица здесь не меняется,
+-- её переводит на секции PartitionService при stat-service.partition.migrate-legacy=true.
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_id_seq;
+
+CREATE TABLE IF NOT EXISTS endpoint_hits (
+    id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_id_seq'),
+    app VARCHAR(255) NOT NULL,
+    uri VARCHAR (255) NOT NULL,
+    ip VARCHAR(255) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Посещения режима хранения dictionary, секционированные так же. Таблица появилась сразу секционированной,
+-- поэтому секцию по умолчанию можно создать здесь: она принимает строки до первого обслуживания секций.
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_encoded_id_seq;
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_encoded (
+    id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_encoded_id_seq'),
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_encoded_default PARTITION OF endpoint_hits_encoded DEFAULT;
@@ -5,4 +5,82 @@ CREATE TABLE IF NOT EXISTS endpoint_hits (
     uri VARCHAR (255) NOT NULL,
     ip VARCHAR(255) NOT NULL,
     timestamp TIMESTAMP NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_timestamp ON endpoint_hits (timestamp);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_uri_timestamp ON endpoint_hits (uri, timestamp);
+
+-- Поминутные агрегаты посещений
+CREATE TABLE IF NOT EXISTS endpoint_hits_minutely (
+    uri VARCHAR(255) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri, bucket, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_minutely_bucket ON endpoint_hits_minutely (bucket);
+
+-- Почасовые агрегаты посещений
+CREATE TABLE IF NOT EXISTS endpoint_hits_hourly (
+    uri VARCHAR(255) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (uri, bucket, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_hourly_bucket ON endpoint_hits_hourly (bucket);
+
+-- Почасовые скетчи HyperLogLog уникальных ip
+CREATE TABLE IF NOT EXISTS endpoint_hits_hourly_sketch (
+    uri VARCHAR(255) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    app VARCHAR(255) NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (uri, bucket, app)
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_hourly_sketch_bucket ON endpoint_hits_hourly_sketch (bucket);
+
+-- Словари и посещения для режима хранения dictionary
+CREATE TABLE IF NOT EXISTS hit_apps (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hit_uris (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_hits_encoded (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip BYTEA NOT NULL,
+    timestamp TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_encoded_timestamp ON endpoint_hits_encoded (timestamp);
+CREATE INDEX IF NOT EXISTS idx_endpoint_hits_encoded_uri_timestamp ON endpoint_hits_encoded (uri_id, timestamp);
+
+-- Перечень файлов холодных сегментов, в которые уплотнены старые посещения
+CREATE TABLE IF NOT EXISTS cold_segments (
+    segment_day DATE PRIMARY KEY,
+    file VARCHAR(255) NOT NULL,
+    hits BIGINT NOT NULL,
+    min_timestamp TIMESTAMP NOT NULL,
+    max_timestamp TIMESTAMP NOT NULL
+);
+
+-- Производные данные (агрегаты, скетчи), которые ведутся непрерывно с момента последнего пересчёта.
+-- Запись удаляется, пока их ведение выключено, и тогда при следующем включении они пересчитываются заново
+CREATE TABLE IF NOT EXISTS derived_state (
+    name VARCHAR(64) PRIMARY KEY,
+    rebuilt_at TIMESTAMP NOT NULL
+);
+
+-- Для данных, которые ведутся в памяти и сливаются с таблицей периодически: часы раньше этой границы
+-- в таблице полные, после аварийной остановки пересчитываются только более поздние часы
+ALTER TABLE derived_state ADD COLUMN IF NOT EXISTS complete_before TIMESTAMP;
@@ -0,0 +1,149 @@
+package ru.practicum.cache;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCacheTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+
+    private final QueryCache cache = new QueryCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void returnsStoredResult() {
+        QueryCache.Key key = key(null, false);
+        List<ViewStats> stats = List.of(new ViewStats("app", "/events/1", 2L));
+
+        assertTrue(cache.put(key, stats, cache.version()));
+
+        assertEquals(stats, cache.get(key));
+        assertNull(cache.get(key(List.of("/events/1"), false)));
+    }
+
+    @Test
+    void committedHitsPatchCountsInPlace() {
+        QueryCache.Key all = key(null, false);
+        QueryCache.Key one = key(List.of("/events/1"), false);
+        cache.put(all, List.of(new ViewStats("app", "/events/1", 1L), new ViewStats("app", "/events/2", 3L)),
+                cache.version());
+        cache.put(one, List.of(new ViewStats("app", "/events/1", 1L)), cache.version());
+        List<EndpointHit> hits = List.of(hit("/events/1", START.plusHours(1)), hit("/events/1", START.plusHours(2)),
+                hit("/events/3", START.plusHours(3)), hit("/events/1", END.plusHours(1)));
+
+        cache.begin(hits);
+        QueryCache.Update update = cache.commit(hits);
+
+        assertEquals(new QueryCache.Update(2, 0), update);
+        assertEquals(List.of(new ViewStats("app", "/events/1", 3L), new ViewStats("app", "/events/2", 3L),
+                new ViewStats("app", "/events/3", 1L)), cache.get(all));
+        assertEquals(List.of(new ViewStats("app", "/events/1", 3L)), cache.get(one));
+    }
+
+    @Test
+    void committedHitsInvalidateUniqueResults() {
+        QueryCache.Key unique = key(List.of("/events/1"), true);
+        QueryCache.Key other = key(List.of("/events/2"), true);
+        cache.put(unique, List.of(new ViewStats("app", "/events/1", 1L)), cache.version());
+        cache.put(other, List.of(new ViewStats("app", "/events/2", 1L)), cache.version());
+        List<EndpointHit> hits = List.of(hit("/events/1", START.plusHours(1)));
+
+        cache.begin(hits);
+        QueryCache.Update update = cache.commit(hits);
+
+        assertEquals(new QueryCache.Update(0, 1), update);
+        assertNull(cache.get(unique));
+        assertEquals(List.of(new ViewStats("app", "/events/2", 1L)), cache.get(other));
+    }
+
+    @Test
+    void resultIsNotStoredWhileOverlappingBatchIsPending() {
+        QueryCache.Key key = key(List.of("/events/1"), false);
+        List<EndpointHit> hits = List.of(hit("/events/1", START.plusHours(1)));
+        cache.begin(hits);
+
+        assertFalse(cache.put(key, List.of(), cache.version()));
+        assertTrue(cache.put(key(List.of("/events/2"), false), List.of(), cache.version()));
+
+        cache.rollback(hits);
+        assertTrue(cache.put(key, List.of(), cache.version()));
+    }
+
+    @Test
+    void resultIsNotStoredIfOverlappingBatchCommittedAfterQueryStarted() {
+        QueryCache.Key key = key(List.of("/events/1"), false);
+        long since = cache.version();
+        List<EndpointHit> overlapping = List.of(hit("/events/1", START.plusHours(1)));
+        cache.begin(overlapping);
+        cache.commit(overlapping);
+
+        assertFalse(cache.put(key, List.of(), since));
+
+        long later = cache.version();
+        List<EndpointHit> outside = List.of(hit("/events/1", END.plusDays(1)));
+        cache.begin(outside);
+        cache.commit(outside);
+
+        assertTrue(cache.put(key, List.of(), later));
+    }
+
+    @Test
+    void clearDropsEntriesAndRejectsEarlierQueries() {
+        QueryCache.Key key = key(null, false);
+        long since = cache.version();
+        cache.put(key, List.of(), since);
+
+        assertEquals(1, cache.clear());
+
+        assertNull(cache.get(key));
+        assertFalse(cache.put(key, List.of(), since));
+        assertTrue(cache.put(key, List.of(), cache.version()));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() {
+        QueryCache small = new QueryCache(2, Duration.ofMinutes(5));
+        QueryCache.Key first = key(List.of("/events/1"), false);
+        QueryCache.Key second = key(List.of("/events/2"), false);
+        QueryCache.Key third = key(List.of("/events/3"), false);
+        small.put(first, List.of(), small.version());
+        small.put(second, List.of(), small.version());
+        small.get(first);
+
+        small.put(third, List.of(), small.version());
+
+        assertEquals(2, small.size());
+        assertNull(small.get(second));
+        assertEquals(List.of(), small.get(first));
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() throws InterruptedException {
+        QueryCache shortLived = new QueryCache(100, Duration.ofMillis(1));
+        QueryCache.Key key = key(null, false);
+        shortLived.put(key, List.of(), shortLived.version());
+
+        Thread.sleep(5);
+
+        assertNull(shortLived.get(key));
+        assertEquals(0, shortLived.size());
+    }
+
+    private static QueryCache.Key key(List<String> uris, boolean unique) {
+        return new QueryCache.Key(START, END, uris, unique, false);
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return new EndpointHit(null, "app", uri, "10.0.0.1", timestamp);
+    }
+}
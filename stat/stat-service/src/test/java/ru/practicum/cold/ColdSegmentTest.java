@@ -0,0 +1,188 @@
+package ru.practicum.cold;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColdSegmentTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final Comparator<ColdSegment.Row> ROW_ORDER = Comparator.comparing(ColdSegment.Row::app)
+            .thenComparing(ColdSegment.Row::uri)
+            .thenComparing(ColdSegment.Row::timestamp)
+            .thenComparing(ColdSegment.Row::ip);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowsRoundTripAcrossBlocks() throws IOException {
+        List<ColdSegment.Row> rows = rows(0, 1000);
+
+        ColdSegment segment = write(dir.resolve("a.seg"), rows, 64);
+
+        assertEquals(1000, segment.rows());
+        assertEquals(DAY, segment.minTimestamp());
+        assertEquals(DAY.plusSeconds(999 * 60), segment.maxTimestamp());
+        assertEquals(sorted(rows), sorted(read(segment, DAY, DAY.plusDays(1))));
+        assertEquals(sorted(rows), sorted(read(ColdSegment.open(segment.path()), DAY, DAY.plusDays(1))));
+    }
+
+    @Test
+    void countsMatchRowsForFullAndPartialPeriods() throws IOException {
+        List<ColdSegment.Row> rows = rows(0, 1000);
+        ColdSegment segment = write(dir.resolve("a.seg"), rows, 100);
+
+        assertEquals(expectedCounts(rows, DAY, DAY.plusDays(1), null), counts(segment, DAY, DAY.plusDays(1), null));
+        LocalDateTime from = DAY.plusHours(3).plusSeconds(30);
+        LocalDateTime to = DAY.plusHours(9);
+        assertEquals(expectedCounts(rows, from, to, null), counts(segment, from, to, null));
+        Set<String> filter = Set.of("/events/2");
+        assertEquals(expectedCounts(rows, from, to, filter), counts(segment, from, to, filter));
+    }
+
+    @Test
+    void ipsReturnEveryHitInPeriod() throws IOException {
+        List<ColdSegment.Row> rows = rows(0, 500);
+        ColdSegment segment = write(dir.resolve("a.seg"), rows, 50);
+        Set<String> ips = new HashSet<>();
+
+        segment.ips(DAY, DAY.plusDays(1), Set.of("/events/1"), (app, uri, ip) -> ips.add(uri + " " + ip));
+
+        Set<String> expected = new HashSet<>();
+        rows.stream().filter(r -> r.uri().equals("/events/1")).forEach(r -> expected.add(r.uri() + " " + r.ip()));
+        assertEquals(expected, ips);
+    }
+
+    @Test
+    void appendCopiesBlocksOfPreviousSegment() throws IOException {
+        List<ColdSegment.Row> old = rows(0, 300);
+        List<ColdSegment.Row> late = rows(300, 350);
+        ColdSegment previous = write(dir.resolve("old.seg"), old, 64);
+
+        ColdSegment merged;
+        try (ColdSegment.Writer writer = ColdSegment.writer(dir.resolve("new.seg"), 64)) {
+            for (ColdSegment.Row row : late) {
+                writer.add(row);
+            }
+            writer.append(previous);
+            assertEquals(350, writer.rows());
+            merged = writer.finish();
+        }
+
+        List<ColdSegment.Row> all = new ArrayList<>(old);
+        all.addAll(late);
+        assertEquals(350, merged.rows());
+        assertEquals(sorted(all), sorted(read(merged, DAY, DAY.plusDays(1))));
+        assertEquals(expectedCounts(all, DAY, DAY.plusDays(1), null), counts(merged, DAY, DAY.plusDays(1), null));
+    }
+
+    @Test
+    void textIpsAndSecondsSurvive() throws IOException {
+        List<ColdSegment.Row> rows = List.of(
+                new ColdSegment.Row("app", "/events/1", "abcd", DAY.plusSeconds(1)),
+                new ColdSegment.Row("app", "/events/1", "2001:db8:0:0:0:0:0:1", DAY.plusSeconds(2)),
+                new ColdSegment.Row("app", "/events/1", "unknown", DAY.plusSeconds(2)));
+
+        ColdSegment segment = ColdSegment.write(dir.resolve("a.seg"), rows);
+
+        assertEquals(sorted(rows), sorted(read(segment, DAY, DAY.plusDays(1))));
+    }
+
+    @Test
+    void unfinishedWriterLeavesNoFiles() throws IOException {
+        Path path = dir.resolve("a.seg");
+        try (ColdSegment.Writer writer = ColdSegment.writer(path, 10)) {
+            for (ColdSegment.Row row : rows(0, 25)) {
+                writer.add(row);
+            }
+        }
+
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void emptySegmentIsRejected() throws IOException {
+        Path path = dir.resolve("a.seg");
+
+        assertThrows(IllegalArgumentException.class, () -> ColdSegment.write(path, List.of()));
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void openRejectsUnknownFormat() throws IOException {
+        Path path = dir.resolve("a.seg");
+        Files.write(path, new byte[64]);
+
+        IOException e = assertThrows(IOException.class, () -> ColdSegment.open(path));
+        assertTrue(e.getMessage().contains("Неизвестный формат"));
+    }
+
+    private static ColdSegment write(Path path, List<ColdSegment.Row> rows, int blockRows) throws IOException {
+        try (ColdSegment.Writer writer = ColdSegment.writer(path, blockRows)) {
+            for (ColdSegment.Row row : rows) {
+                writer.add(row);
+            }
+            return writer.finish();
+        }
+    }
+
+    private static List<ColdSegment.Row> read(ColdSegment segment, LocalDateTime from, LocalDateTime to)
+            throws IOException {
+        List<ColdSegment.Row> result = new ArrayList<>();
+        segment.rows(from, to, null, true, result::add);
+        return result;
+    }
+
+    private static Map<String, Long> counts(ColdSegment segment, LocalDateTime from, LocalDateTime to,
+                                            Set<String> filter) throws IOException {
+        Map<String, Long> result = new HashMap<>();
+        segment.counts(from, to, filter, (app, uri, count) -> result.merge(app + " " + uri, count, Long::sum));
+        return result;
+    }
+
+    private static Map<String, Long> expectedCounts(List<ColdSegment.Row> rows, LocalDateTime from,
+                                                    LocalDateTime to, Set<String> filter) {
+        Map<String, Long> result = new HashMap<>();
+        for (ColdSegment.Row row : rows) {
+            if (!row.timestamp().isBefore(from) && !row.timestamp().isAfter(to)
+                    && (filter == null || filter.contains(row.uri()))) {
+                result.merge(row.app() + " " + row.uri(), 1L, Long::sum);
+            }
+        }
+        return result;
+    }
+
+    private static List<ColdSegment.Row> sorted(List<ColdSegment.Row> rows) {
+        List<ColdSegment.Row> result = new ArrayList<>(rows);
+        result.sort(ROW_ORDER);
+        return result;
+    }
+
+    private static List<ColdSegment.Row> rows(int from, int to) {
+        List<ColdSegment.Row> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            rows.add(new ColdSegment.Row(i % 7 == 0 ? "other" : "ewm-main-service", "/events/" + i % 5,
+                    "10.0." + i / 256 % 4 + "." + i % 256, DAY.plusSeconds(i * 60L)));
+        }
+        return rows;
+    }
+}
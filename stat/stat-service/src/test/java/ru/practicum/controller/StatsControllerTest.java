@@ -0,0 +1,203 @@
+package ru.practicum.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-controller;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "stat-service.ingest.jdbc-batch-size=2"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class StatsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void batchOfHitsIsSaved() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(
+                                hit("/events/101", "10.0.0.1", "2026-01-01 10:00:00"),
+                                hit("/events/101", "10.0.0.2", "2026-01-01 10:01:00"),
+                                hit("/events/101", "10.0.0.1", "2026-01-01 10:02:00"))))
+                .andExpect(status().isCreated());
+
+        assertEquals(3, hits("/events/101"));
+        mockMvc.perform(get("/stats")
+                        .param("start", "2026-01-01 00:00:00")
+                        .param("end", "2026-01-02 00:00:00")
+                        .param("uris", "/events/101")
+                        .param("unique", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].uri").value("/events/101"))
+                .andExpect(jsonPath("$[0].hits").value(2));
+    }
+
+    @Test
+    void ndjsonStreamIsSavedInChunks() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson(
+                                hit("/events/102", "10.0.0.1", "2026-01-01 10:00:00"),
+                                hit("/events/102", "10.0.0.2", "2026-01-01 10:01:00"),
+                                hit("/events/102", "10.0.0.3", "2026-01-01 10:02:00"))))
+                .andExpect(status().isCreated());
+
+        assertEquals(3, hits("/events/102"));
+    }
+
+    @Test
+    void batchWithInvalidHitIsRejectedWhole() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(
+                                hit("/events/103", "10.0.0.1", "2026-01-01 10:00:00"),
+                                hit("/events/103", null, "2026-01-01 10:01:00"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Посещение 2: должны быть заполнены app, uri, ip и timestamp."));
+
+        assertEquals(0, hits("/events/103"));
+    }
+
+    @Test
+    void hitWithTooLongUriIsRejected() throws Exception {
+        mockMvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(hit("/events/" + "1".repeat(300), "10.0.0.1", "2026-01-01 10:00:00")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void statsAreStreamedAsNdjson() throws Exception {
+        mockMvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(
+                                hit("/events/104", "10.0.0.1", "2026-01-01 10:00:00"),
+                                hit("/events/104", "10.0.0.2", "2026-01-01 10:01:00"),
+                                hit("/events/105", "10.0.0.1", "2026-01-01 10:02:00"))))
+                .andExpect(status().isCreated());
+
+        MvcResult result = mockMvc.perform(get("/stats")
+                        .accept("application/x-ndjson")
+                        .param("start", "2026-01-01 00:00:00")
+                        .param("end", "2026-01-02 00:00:00")
+                        .param("uris", "/events/104", "/events/105"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(Set.of(
+                "{\"app\":\"ewm-main-service\",\"uri\":\"/events/104\",\"hits\":2}",
+                "{\"app\":\"ewm-main-service\",\"uri\":\"/events/105\",\"hits\":1}"), Set.copyOf(body.lines().toList()));
+    }
+
+    @Test
+    void streamWithoutPeriodIsRejected() throws Exception {
+        mockMvc.perform(post("/stats/stream")
+                        .accept("application/x-ndjson")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"uris\":[\"/events/104\"],\"start\":null}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void gzippedCsvIsImported() throws Exception {
+        mockMvc.perform(post("/admin/hits/import")
+                        .contentType("text/csv")
+                        .header("Content-Encoding", "gzip")
+                        .content(gzip("""
+                                app,uri,ip,timestamp
+                                ewm-main-service,/events/106,10.0.0.1,2026-01-01 10:00:00
+                                ewm-main-service,/events/106,10.0.0.2,2026-01-01 10:01:00
+                                "ewm-main-service","/events/107",10.0.0.1,2026-01-01 11:00:00
+                                """)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.imported").value(3));
+
+        assertEquals(2, hits("/events/106"));
+        assertEquals(1, hits("/events/107"));
+        mockMvc.perform(get("/stats")
+                        .param("start", "2026-01-01 00:00:00")
+                        .param("end", "2026-01-02 00:00:00")
+                        .param("uris", "/events/106"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].hits").value(2));
+    }
+
+    @Test
+    void importWithMalformedLineIsRolledBack() throws Exception {
+        mockMvc.perform(post("/admin/hits/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson(
+                                hit("/events/108", "10.0.0.1", "2026-01-01 10:00:00"),
+                                hit("/events/108", "10.0.0.2", "2026-01-01 10:01:00"),
+                                hit("/events/108", null, "2026-01-01 10:02:00"))))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(0, hits("/events/108"));
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Посещение в JSON; без ip, если он не задан
+     */
+    private static String hit(String uri, String ip, String timestamp) {
+        return "{\"app\":\"ewm-main-service\",\"uri\":\"" + uri + "\""
+                + (ip == null ? "" : ",\"ip\":\"" + ip + "\"")
+                + ",\"timestamp\":\"" + timestamp + "\"}";
+    }
+
+    private static String json(String... hits) {
+        return "[" + String.join(",", hits) + "]";
+    }
+
+    private static String ndjson(String... hits) {
+        return String.join("\n", hits) + "\n";
+    }
+
+    private long hits(String uri) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits WHERE uri = ?", Long.class, uri);
+    }
+}
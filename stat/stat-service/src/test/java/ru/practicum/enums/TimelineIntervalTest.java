@@ -0,0 +1,36 @@
+package ru.practicum.enums;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimelineIntervalTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 1, 1, 10, 15, 42);
+
+    @Test
+    void floorTruncatesToIntervalStart() {
+        assertEquals(LocalDateTime.of(2026, 1, 1, 10, 15), TimelineInterval.MINUTE.floor(TIME));
+        assertEquals(LocalDateTime.of(2026, 1, 1, 10, 0), TimelineInterval.HOUR.floor(TIME));
+        assertEquals(LocalDateTime.of(2026, 1, 1, 0, 0), TimelineInterval.DAY.floor(TIME));
+    }
+
+    @Test
+    void countIncludesPartialIntervalsAtBothEnds() {
+        assertEquals(1, TimelineInterval.HOUR.count(TIME, TIME));
+        assertEquals(2, TimelineInterval.HOUR.count(TIME, TIME.plusMinutes(50)));
+        assertEquals(25, TimelineInterval.HOUR.count(TIME, TIME.plusDays(1)));
+        assertEquals(61, TimelineInterval.MINUTE.count(TIME, TIME.plusHours(1)));
+        assertEquals(1, TimelineInterval.DAY.count(TIME, TIME.plusHours(13)));
+        assertEquals(2, TimelineInterval.DAY.count(TIME, TIME.plusHours(14)));
+    }
+
+    @Test
+    void sqlUnitMatchesDateTruncUnits() {
+        assertEquals("minute", TimelineInterval.MINUTE.sqlUnit());
+        assertEquals("hour", TimelineInterval.HOUR.sqlUnit());
+        assertEquals("day", TimelineInterval.DAY.sqlUnit());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import ru.practicum.enums.ImportFormat;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.EndpointHit;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitReaderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+    private static final LocalDateTime TIME = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    @Test
+    void csvSkipsHeaderAndBlankLinesAndUnquotesFields() throws IOException {
+        List<EndpointHit> hits = read(ImportFormat.CSV, """
+                App,URI,IP,Timestamp
+                ewm-main-service,/events/1,10.0.0.1,2026-01-01 10:00:00
+
+                "ewm,main","/events/""2""\",10.0.0.2,2026-01-01 10:00:00
+                """);
+
+        assertEquals(List.of(
+                "ewm-main-service|/events/1|10.0.0.1|" + TIME,
+                "ewm,main|/events/\"2\"|10.0.0.2|" + TIME), describe(hits));
+    }
+
+    @Test
+    void csvRejectsMalformedLinesWithLineNumber() {
+        ValidationException fields = assertThrows(ValidationException.class, () -> read(ImportFormat.CSV, """
+                ewm-main-service,/events/1,10.0.0.1,2026-01-01 10:00:00
+                ewm-main-service,/events/1,2026-01-01 10:00:00
+                """));
+        ValidationException time = assertThrows(ValidationException.class, () -> read(ImportFormat.CSV, """
+                ewm-main-service,/events/1,10.0.0.1,2026-01-01T10:00:00
+                """));
+        ValidationException quote = assertThrows(ValidationException.class, () -> read(ImportFormat.CSV, """
+                ewm-main-service,"/events/1,10.0.0.1,2026-01-01 10:00:00
+                """));
+
+        assertTrue(fields.getMessage().startsWith("Строка 2:"), fields.getMessage());
+        assertTrue(time.getMessage().startsWith("Строка 1:"), time.getMessage());
+        assertTrue(quote.getMessage().startsWith("Строка 1:"), quote.getMessage());
+    }
+
+    @Test
+    void ndjsonReadsHitsAndRejectsMissingFields() throws IOException {
+        String hit = "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\","
+                + "\"timestamp\":\"2026-01-01 10:00:00\"}\n";
+        String withoutIp = "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\","
+                + "\"timestamp\":\"2026-01-01 10:00:00\"}\n";
+
+        List<EndpointHit> hits = read(ImportFormat.NDJSON, hit);
+        ValidationException missing = assertThrows(ValidationException.class,
+                () -> read(ImportFormat.NDJSON, hit + withoutIp));
+
+        assertEquals(List.of("ewm-main-service|/events/1|10.0.0.1|" + TIME), describe(hits));
+        assertTrue(missing.getMessage().startsWith("Строка 2:"), missing.getMessage());
+    }
+
+    private static List<String> describe(List<EndpointHit> hits) {
+        return hits.stream()
+                .map(hit -> hit.getApp() + "|" + hit.getUri() + "|" + hit.getIp() + "|" + hit.getTimestamp())
+                .toList();
+    }
+
+    private static List<EndpointHit> read(ImportFormat format, String text) throws IOException {
+        List<EndpointHit> hits = new ArrayList<>();
+        try (HitReader reader = HitReader.open(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)),
+                format, MAPPER)) {
+            EndpointHit hit;
+            while ((hit = reader.next()) != null) {
+                hits.add(hit);
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DictionaryHitRepositoryTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private DictionaryHitRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        repository = new DictionaryHitRepository(jdbcTemplate, DatabaseType.H2, transactionManager);
+        ReflectionTestUtils.setField(repository, "batchSize", 100);
+    }
+
+    @Test
+    void repeatedValuesShareDictionaryKeys() {
+        repository.batchInsert(List.of(hit("/events/1", "10.0.0.1"), hit("/events/1", "10.0.0.2")));
+        repository.batchInsert(List.of(hit("/events/1", "10.0.0.1"), hit("/events/2", "10.0.0.1")));
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hit_uris", Integer.class));
+        assertEquals(List.of(new ViewStats("app", "/events/1", 2L), new ViewStats("app", "/events/2", 1L)),
+                repository.getStats(TIMESTAMP, TIMESTAMP, null, true));
+    }
+
+    @Test
+    void rolledBackInternIsNotCached() {
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.batchInsert(List.of(hit("/events/1", "10.0.0.1")));
+            status.setRollbackOnly();
+        });
+
+        transactionTemplate.executeWithoutResult(status ->
+                repository.batchInsert(List.of(hit("/events/1", "10.0.0.1"))));
+
+        assertEquals(List.of(new ViewStats("app", "/events/1", 1L)),
+                repository.getStats(TIMESTAMP, TIMESTAMP, null, false));
+    }
+
+    private static EndpointHit hit(String uri, String ip) {
+        return new EndpointHit(null, "app", uri, ip, TIMESTAMP);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IpCodecTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "192.168.0.1", "0.0.0.0", "255.255.255.255",
+            "2001:db8:0:0:0:0:0:1", "0:0:0:0:0:0:0:1",
+            "", "a", "abcd", "abcdefghijklmnop", "abc", "abcdefghijklmno", "abcdefghijklmnopq",
+            "unknown", "01.2.3.4", "1.2.3", "256.1.1.1", "2001:db8::1", "fe80:0:0:0:0:0:0:1%1", "тест"
+    })
+    void roundTrip(String ip) {
+        assertEquals(ip, IpCodec.decode(IpCodec.encode(ip)));
+    }
+
+    @Test
+    void encodeIpv4AsTaggedAddress() {
+        assertArrayEquals(new byte[]{IpCodec.IPV4, 10, 0, 0, (byte) 200}, IpCodec.encode("10.0.0.200"));
+    }
+
+    @Test
+    void encodeIpv6AsTaggedAddress() {
+        byte[] encoded = IpCodec.encode("2001:db8:0:0:0:0:0:1");
+
+        assertEquals(17, encoded.length);
+        assertEquals(IpCodec.IPV6, encoded[0]);
+        assertEquals(1, encoded[16]);
+    }
+
+    @Test
+    void encodeTextOfAddressLength() {
+        assertArrayEquals(new byte[]{IpCodec.TEXT, 'a', 'b', 'c', 'd'}, IpCodec.encode("abcd"));
+        assertEquals(17, IpCodec.encode("abcdefghijklmnop").length);
+    }
+
+    @Test
+    void decodeRejectsUnknownTagAndWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> IpCodec.decode(new byte[]{7, 1}));
+        assertThrows(IllegalArgumentException.class, () -> IpCodec.decode(new byte[]{IpCodec.IPV4, 1, 2, 3}));
+        assertThrows(IllegalArgumentException.class, () -> IpCodec.decode(new byte[0]));
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.ColdSegmentRepository;
+import ru.practicum.repository.EndpointHitJdbcRepository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColdStorageServiceTest {
+
+    private static final LocalDateTime OLD_DAY = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private EndpointHitJdbcRepository hitStore;
+    private TransactionTemplate transactionTemplate;
+    private ColdStorageService coldStorageService;
+    private CompactionService compactionService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        hitStore = new EndpointHitJdbcRepository(jdbcTemplate, null);
+        ReflectionTestUtils.setField(hitStore, "batchSize", 100);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        ColdSegmentRepository coldSegmentRepository = new ColdSegmentRepository(jdbcTemplate, hitStore);
+        coldStorageService = new ColdStorageService(coldSegmentRepository, hitStore, transactionTemplate);
+        ReflectionTestUtils.setField(coldStorageService, "dir", dir);
+        ReflectionTestUtils.setField(coldStorageService, "exactUniqueLimit", 10);
+        compactionService = new CompactionService(coldSegmentRepository, coldStorageService, transactionTemplate);
+        ReflectionTestUtils.setField(compactionService, "enabled", true);
+        ReflectionTestUtils.setField(compactionService, "minAge", Duration.ofDays(1));
+        ReflectionTestUtils.setField(compactionService, "blockRows", 16);
+    }
+
+    @Test
+    void streamAddsColdCountsToTableRows() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 20));
+        hitStore.batchInsert(hits("/events/2", OLD_DAY.plusHours(2), 5));
+        compactionService.compact();
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(3), 3));
+        hitStore.batchInsert(hits("/events/3", OLD_DAY.plusHours(3), 4));
+
+        Map<String, Long> streamed = stream(false, null);
+
+        assertEquals(Map.of("/events/1", 23L, "/events/2", 5L, "/events/3", 4L), streamed);
+    }
+
+    @Test
+    void streamFiltersUrisInSegmentsAndTable() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 6));
+        hitStore.batchInsert(hits("/events/2", OLD_DAY.plusHours(1), 5));
+        compactionService.compact();
+        hitStore.batchInsert(hits("/events/2", OLD_DAY.plusHours(3), 2));
+
+        assertEquals(Map.of("/events/2", 7L), stream(false, List.of("/events/2")));
+    }
+
+    @Test
+    void uniqueStreamCountsIpOnceAcrossSegmentsAndTable() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 5));
+        compactionService.compact();
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(3), 8));
+
+        assertEquals(Map.of("/events/1", 8L), stream(true, null));
+    }
+
+    private Map<String, Long> stream(boolean unique, List<String> uris) {
+        List<ViewStats> rows = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> coldStorageService.streamStats(
+                OLD_DAY, OLD_DAY.plusDays(1), uris, unique, false, rows::add));
+        Map<String, Long> streamed = totals(rows);
+        assertEquals(rows.size(), streamed.size());
+        return streamed;
+    }
+
+    private static Map<String, Long> totals(List<ViewStats> rows) {
+        Map<String, Long> totals = new HashMap<>();
+        rows.forEach(row -> totals.merge(row.getUri(), row.getHits(), Long::sum));
+        return totals;
+    }
+
+    /**
+     * Посещения с ip 10.0.0.0 .. 10.0.0.(count - 1), по одной секунде друг за другом.
+     */
+    private static List<EndpointHit> hits(String uri, LocalDateTime from, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EndpointHit(null, "app", uri, "10.0.0." + i, from.plusSeconds(i)))
+                .toList();
+    }
+}
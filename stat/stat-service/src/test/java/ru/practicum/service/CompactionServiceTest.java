@@ -0,0 +1,104 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.ColdSegmentRepository;
+import ru.practicum.repository.EndpointHitJdbcRepository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactionServiceTest {
+
+    private static final LocalDateTime OLD_DAY = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private EndpointHitJdbcRepository hitStore;
+    private ColdStorageService coldStorageService;
+    private CompactionService compactionService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        hitStore = new EndpointHitJdbcRepository(jdbcTemplate, null);
+        ReflectionTestUtils.setField(hitStore, "batchSize", 100);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        ColdSegmentRepository coldSegmentRepository = new ColdSegmentRepository(jdbcTemplate, hitStore);
+        coldStorageService = new ColdStorageService(coldSegmentRepository, hitStore, transactionTemplate);
+        ReflectionTestUtils.setField(coldStorageService, "dir", dir);
+        ReflectionTestUtils.setField(coldStorageService, "exactUniqueLimit", 10);
+        compactionService = new CompactionService(coldSegmentRepository, coldStorageService, transactionTemplate);
+        ReflectionTestUtils.setField(compactionService, "enabled", true);
+        ReflectionTestUtils.setField(compactionService, "minAge", Duration.ofDays(1));
+        ReflectionTestUtils.setField(compactionService, "blockRows", 16);
+    }
+
+    @Test
+    void compactionMovesOnlyOldDaysToSegments() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 20));
+        LocalDateTime today = LocalDateTime.now();
+        hitStore.batchInsert(hits("/events/1", today, 3));
+
+        compactionService.compact();
+
+        assertEquals(20, coldStorageService.get(OLD_DAY.toLocalDate()).rows());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class));
+    }
+
+    @Test
+    void uniqueViewsStayExactAboveLimitWithoutApproximate() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 50));
+        compactionService.compact();
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(2), 50));
+
+        List<ViewStats> exact = coldStorageService.getStats(OLD_DAY, OLD_DAY.plusDays(1), null, true, false);
+        List<ViewStats> approximate = coldStorageService.getStats(OLD_DAY, OLD_DAY.plusDays(1), null, true, true);
+
+        assertEquals(List.of(new ViewStats("app", "/events/1", 50L)), exact);
+        assertTrue(Math.abs(approximate.getFirst().getHits() - 50) <= 5);
+    }
+
+    @Test
+    void lateHitsAreMergedIntoExistingSegment() {
+        hitStore.batchInsert(hits("/events/1", OLD_DAY.plusHours(1), 5));
+        compactionService.compact();
+        hitStore.batchInsert(hits("/events/2", OLD_DAY.plusHours(3), 2));
+
+        compactionService.compact();
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits", Long.class));
+        assertEquals(7, coldStorageService.get(OLD_DAY.toLocalDate()).rows());
+    }
+
+    /**
+     * Посещения с ip 10.0.0.0 .. 10.0.0.(count - 1), по одной секунде друг за другом.
+     */
+    private static List<EndpointHit> hits(String uri, LocalDateTime from, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EndpointHit(null, "app", uri, "10.0.0." + i, from.plusSeconds(i)))
+                .toList();
+    }
+}
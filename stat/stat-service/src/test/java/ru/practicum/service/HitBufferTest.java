@@ -0,0 +1,190 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.practicum.enums.IngestMode;
+import ru.practicum.enums.OverflowPolicy;
+import ru.practicum.exception.IngestRejectedException;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitBufferTest {
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HitBuffer buffer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        buffer.stop();
+    }
+
+    @Test
+    void rejectedBatchLeavesNothingQueued() throws InterruptedException {
+        buffer = buffer(OverflowPolicy.REJECT);
+        buffer.add(hit("first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        buffer.add(hit("a"));
+
+        assertThrows(IngestRejectedException.class, () -> buffer.addAll(List.of(hit("b"), hit("c"))));
+
+        release.countDown();
+        buffer.stop();
+        assertEquals(List.of("first", "a"), written);
+    }
+
+    @Test
+    void blockingBatchTimesOutAsAWhole() throws InterruptedException {
+        buffer = buffer(OverflowPolicy.BLOCK);
+        buffer.add(hit("first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        buffer.add(hit("a"));
+
+        assertThrows(IngestRejectedException.class, () -> buffer.addAll(List.of(hit("b"), hit("c"))));
+
+        release.countDown();
+        buffer.stop();
+        assertEquals(List.of("first", "a"), written);
+    }
+
+    @Test
+    void batchLargerThanCapacityIsRejected() {
+        buffer = buffer(OverflowPolicy.REJECT);
+
+        assertThrows(IngestRejectedException.class,
+                () -> buffer.addAll(List.of(hit("a"), hit("b"), hit("c"))));
+    }
+
+    @Test
+    void dropOldestKeepsNewestHits() throws InterruptedException {
+        buffer = buffer(OverflowPolicy.DROP_OLDEST);
+        buffer.add(hit("first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        buffer.addAll(List.of(hit("a"), hit("b"), hit("c")));
+
+        release.countDown();
+        buffer.stop();
+        assertEquals(List.of("first", "b", "c"), written);
+        assertEquals(1.0, registry.get("stats.ingest.buffer.dropped").functionCounter().count());
+    }
+
+    @Test
+    void transientErrorIsRetried() throws InterruptedException {
+        release.countDown();
+        transientFailures.set(2);
+        buffer = buffer(OverflowPolicy.REJECT);
+
+        buffer.add(hit("a"));
+
+        buffer.stop();
+        assertEquals(List.of("a"), written);
+        assertEquals(0.0, registry.get("stats.ingest.buffer.lost").functionCounter().count());
+    }
+
+    @Test
+    void batchIsLostAfterRetriesAreExhausted() throws InterruptedException {
+        release.countDown();
+        transientFailures.set(Integer.MAX_VALUE);
+        buffer = buffer(OverflowPolicy.REJECT);
+
+        buffer.add(hit("a"));
+
+        buffer.stop();
+        assertEquals(List.of(), written);
+        assertEquals(1.0, registry.get("stats.ingest.buffer.lost").functionCounter().count());
+    }
+
+    @Test
+    void constraintViolationLosesOnlyRejectedHit() throws InterruptedException {
+        release.countDown();
+        buffer = buffer(OverflowPolicy.REJECT);
+        ReflectionTestUtils.setField(buffer, "batchSize", 2);
+
+        buffer.addAll(List.of(hit("bad"), hit("a")));
+
+        buffer.stop();
+        assertEquals(List.of("a"), written);
+        assertEquals(1.0, registry.get("stats.ingest.buffer.lost").functionCounter().count());
+    }
+
+    @Test
+    void stopWaitsForBatchInFlightAndDrainsQueue() throws InterruptedException {
+        buffer = buffer(OverflowPolicy.REJECT);
+        buffer.add(hit("first"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        buffer.add(hit("a"));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        buffer.stop();
+
+        assertEquals(List.of("first", "a"), written);
+        assertThrows(IngestRejectedException.class, () -> buffer.add(hit("late")));
+    }
+
+    /**
+     * Буфер на два посещения, запись первого пакета ждёт release.
+     */
+    private HitBuffer buffer(OverflowPolicy policy) {
+        HitWriter writer = new HitWriter(null, null, null, List.of()) {
+            @Override
+            public void write(List<EndpointHit> hits) {
+                if (transientFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new TransientDataAccessResourceException("БД недоступна");
+                }
+                if (hits.stream().anyMatch(hit -> hit.getUri().equals("bad"))) {
+                    throw new DataIntegrityViolationException("value too long");
+                }
+                hits.forEach(hit -> written.add(hit.getUri()));
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        HitBuffer hitBuffer = new HitBuffer(writer, registry);
+        ReflectionTestUtils.setField(hitBuffer, "mode", IngestMode.BUFFERED);
+        ReflectionTestUtils.setField(hitBuffer, "capacity", 2);
+        ReflectionTestUtils.setField(hitBuffer, "batchSize", 1);
+        ReflectionTestUtils.setField(hitBuffer, "flushInterval", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(hitBuffer, "overflowPolicy", policy);
+        ReflectionTestUtils.setField(hitBuffer, "blockTimeout", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(hitBuffer, "retryAttempts", 3);
+        ReflectionTestUtils.setField(hitBuffer, "retryDelay", Duration.ofMillis(10));
+        hitBuffer.start();
+        return hitBuffer;
+    }
+
+    private static EndpointHit hit(String uri) {
+        return new EndpointHit(null, "app", uri, "127.0.0.1", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,129 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.enums.IngestMode;
+import ru.practicum.exception.IngestRejectedException;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.wal.HitLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitLogServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private final AtomicInteger transientFailures = new AtomicInteger();
+    private HitLogService service;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void rejectedHitGoesToDeadLetterAndRestIsApplied() throws Exception {
+        service = service(DataSize.ofMegabytes(1));
+
+        service.append(List.of(hit("/a"), hit("/bad"), hit("/c")));
+
+        awaitWritten(List.of("/a", "/c"));
+        assertTrue(deadLetter().contains("\"uri\":\"/bad\""));
+    }
+
+    @Test
+    void transientErrorIsRetried() throws Exception {
+        transientFailures.set(2);
+        service = service(DataSize.ofMegabytes(1));
+
+        service.append(List.of(hit("/a")));
+
+        awaitWritten(List.of("/a"));
+    }
+
+    @Test
+    void replayAtStartDoesNotStopOnRejectedHit() throws Exception {
+        try (HitLog hitLog = new HitLog(dir, 4096, false)) {
+            hitLog.append(List.of(hit("/bad"), hit("/a")));
+        }
+
+        service = service(DataSize.ofMegabytes(1));
+
+        assertEquals(List.of("/a"), written);
+        assertTrue(deadLetter().contains("\"uri\":\"/bad\""));
+    }
+
+    @Test
+    void fullLogRejectsNewHits() throws Exception {
+        transientFailures.set(Integer.MAX_VALUE);
+        service = service(DataSize.ofBytes(512));
+
+        assertThrows(IngestRejectedException.class, () -> {
+            for (int i = 0; i < 100; i++) {
+                service.append(List.of(hit("/events/" + i)));
+            }
+        });
+    }
+
+    private HitLogService service(DataSize maxSize) throws IOException {
+        HitWriter writer = new HitWriter(null, null, null, List.of()) {
+            @Override
+            public void write(List<EndpointHit> hits) {
+                if (transientFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new TransientDataAccessResourceException("БД недоступна");
+                }
+                if (hits.stream().anyMatch(hit -> hit.getUri().equals("/bad"))) {
+                    throw new DataIntegrityViolationException("value too long");
+                }
+                hits.forEach(hit -> written.add(hit.getUri()));
+            }
+        };
+        HitLogService hitLogService = new HitLogService(writer, new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(hitLogService, "mode", IngestMode.LOG);
+        ReflectionTestUtils.setField(hitLogService, "dir", dir);
+        ReflectionTestUtils.setField(hitLogService, "segmentSize", DataSize.ofBytes(256));
+        ReflectionTestUtils.setField(hitLogService, "maxSize", maxSize);
+        ReflectionTestUtils.setField(hitLogService, "batchSize", 100);
+        ReflectionTestUtils.setField(hitLogService, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(hitLogService, "retryDelay", Duration.ofMillis(10));
+        hitLogService.start();
+        return hitLogService;
+    }
+
+    private void awaitWritten(List<String> expected) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!written.equals(expected) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, written);
+    }
+
+    private String deadLetter() throws IOException {
+        return Files.readString(dir.resolve("dead-letter.ndjson"));
+    }
+
+    private static EndpointHit hit(String uri) {
+        return new EndpointHit(null, "app", uri, "127.0.0.1", LocalDateTime.of(2026, 1, 1, 12, 0));
+    }
+}
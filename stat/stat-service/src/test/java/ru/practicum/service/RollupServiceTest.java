@@ -0,0 +1,211 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.DerivedStateRepository;
+import ru.practicum.repository.EndpointHitJdbcRepository;
+import ru.practicum.repository.RollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RollupServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 10, 0);
+    private static final LocalDateTime CURRENT = TimeBucket.HOUR.floor(LocalDateTime.now());
+
+    private JdbcTemplate jdbcTemplate;
+    private EndpointHitJdbcRepository hitStore;
+    private RollupRepository rollupRepository;
+    private DerivedStateRepository derivedStateRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        hitStore = new EndpointHitJdbcRepository(jdbcTemplate, null);
+        ReflectionTestUtils.setField(hitStore, "batchSize", 100);
+        rollupRepository = new RollupRepository(jdbcTemplate, new NamedParameterJdbcTemplate(dataSource),
+                DatabaseType.H2, hitStore);
+        derivedStateRepository = new DerivedStateRepository(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void backfillBuildsRollupsFromExistingHits() {
+        hitStore.batchInsert(hits("/events/1", 3));
+
+        service(true).backfill();
+
+        assertEquals(3, views("/events/1"));
+    }
+
+    @Test
+    void reenablingRebuildsHitsWrittenWhileDisabled() {
+        RollupService first = service(true);
+        first.backfill();
+        write(first, hits("/events/1", 2));
+
+        RollupService disabled = service(false);
+        disabled.backfill();
+        write(disabled, hits("/events/1", 5));
+
+        service(true).backfill();
+
+        assertEquals(7, views("/events/1"));
+    }
+
+    @Test
+    void restartWithRollupsEnabledKeepsIncrementalCounts() {
+        RollupService first = service(true);
+        first.backfill();
+        write(first, hits("/events/1", 2));
+        jdbcTemplate.update("UPDATE endpoint_hits_hourly SET hits = hits + 100");
+
+        service(true).backfill();
+
+        assertEquals(102, views("/events/1"));
+    }
+
+    @Test
+    void pendingCountsAreAnsweredBeforeFlushAndMergedOnce() {
+        RollupService service = service(true);
+        service.backfill();
+        write(service, hits("/events/1", CURRENT, 3));
+
+        assertEquals(3, views(service, "/events/1"));
+        assertEquals(0, views("/events/1", CURRENT));
+
+        service.flush();
+
+        assertEquals(3, views(service, "/events/1"));
+        assertEquals(3, views("/events/1", CURRENT));
+    }
+
+    @Test
+    void hitsBeforeMarkAreAddedImmediately() {
+        RollupService service = service(true);
+        service.backfill();
+
+        write(service, hits("/events/1", 2));
+
+        assertEquals(2, views("/events/1"));
+    }
+
+    @Test
+    void crashBeforeFlushRebuildsHoursAfterMark() {
+        RollupService first = service(true);
+        first.backfill();
+        write(first, hits("/events/1", 2));
+        write(first, hits("/events/1", CURRENT, 3));
+
+        service(true).backfill();
+
+        assertEquals(2, views("/events/1"));
+        assertEquals(3, views("/events/1", CURRENT));
+    }
+
+    @Test
+    void restartAfterFlushDoesNotCountTwice() {
+        RollupService first = service(true);
+        first.backfill();
+        write(first, hits("/events/1", CURRENT, 3));
+        first.stop();
+
+        service(true).backfill();
+
+        assertEquals(3, views("/events/1", CURRENT));
+    }
+
+    @Test
+    void rolledBackHitsAreNotCounted() {
+        RollupService service = service(true);
+        service.backfill();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            write(service, hits("/events/1", CURRENT, 3));
+            status.setRollbackOnly();
+        });
+        service.flush();
+
+        assertEquals(0, views(service, "/events/1"));
+    }
+
+    @Test
+    void topAndTimelineIncludePendingCounts() {
+        RollupService service = service(true);
+        service.backfill();
+        write(service, hits("/events/1", CURRENT, 5));
+        write(service, hits("/events/2", CURRENT, 3));
+        service.flush();
+        write(service, hits("/events/2", CURRENT, 4));
+
+        List<ViewStats> top = service.getTop(CURRENT, CURRENT.plusHours(2), 1);
+        List<ViewStatsBucket> timeline = service.getTimeline(CURRENT, CURRENT.plusHours(2), List.of("/events/2"),
+                TimelineInterval.HOUR);
+
+        assertEquals(1, top.size());
+        assertEquals("/events/2", top.getFirst().getUri());
+        assertEquals(7, top.getFirst().getHits());
+        assertEquals(1, timeline.size());
+        assertEquals(CURRENT, timeline.getFirst().getBucket());
+        assertEquals(7, timeline.getFirst().getHits());
+    }
+
+    private RollupService service(boolean enabled) {
+        RollupService service = new RollupService(rollupRepository, derivedStateRepository, transactionTemplate);
+        ReflectionTestUtils.setField(service, "enabled", enabled);
+        ReflectionTestUtils.setField(service, "maxPending", 1000);
+        return service;
+    }
+
+    private void write(RollupService service, List<EndpointHit> hits) {
+        hitStore.batchInsert(hits);
+        service.add(hits);
+    }
+
+    private long views(String uri) {
+        return views(uri, START);
+    }
+
+    private long views(String uri, LocalDateTime start) {
+        List<ViewStats> stats = rollupRepository.getStats(start, start.plusHours(2), List.of(uri));
+        return stats.isEmpty() ? 0 : stats.getFirst().getHits();
+    }
+
+    private static long views(RollupService service, String uri) {
+        List<ViewStats> stats = service.getStats(CURRENT, CURRENT.plusHours(2), List.of(uri));
+        return stats.isEmpty() ? 0 : stats.getFirst().getHits();
+    }
+
+    private static List<EndpointHit> hits(String uri, int count) {
+        return hits(uri, START, count);
+    }
+
+    private static List<EndpointHit> hits(String uri, LocalDateTime start, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new EndpointHit(null, "ewm-main-service", uri, "10.0.0." + i, start.plusMinutes(i)))
+                .toList();
+    }
+}
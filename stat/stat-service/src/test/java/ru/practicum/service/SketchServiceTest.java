@@ -0,0 +1,216 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.enums.TimeBucket;
+import ru.practicum.enums.DatabaseType;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.DerivedStateRepository;
+import ru.practicum.repository.EndpointHitJdbcRepository;
+import ru.practicum.repository.SketchRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SketchServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private EndpointHitJdbcRepository hitStore;
+    private SketchRepository sketchRepository;
+    private DerivedStateRepository derivedStateRepository;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        hitStore = new EndpointHitJdbcRepository(jdbcTemplate, null);
+        ReflectionTestUtils.setField(hitStore, "batchSize", 100);
+        sketchRepository = new SketchRepository(jdbcTemplate, new NamedParameterJdbcTemplate(dataSource),
+                DatabaseType.H2, hitStore);
+        derivedStateRepository = new DerivedStateRepository(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void unflushedSketchesAreVisibleToQueries() {
+        SketchService service = service(true, 1000);
+        start(service);
+
+        write(service, hits(0, 20));
+
+        assertEquals(0, storedSketches());
+        assertEquals(20, uniqueViews(service));
+    }
+
+    @Test
+    void flushMergesPendingSketchesIntoTable() {
+        SketchService service = service(true, 1000);
+        start(service);
+        write(service, hits(0, 20));
+        service.flush();
+        write(service, hits(10, 30));
+        service.flush();
+
+        assertEquals(1, storedSketches());
+        assertEquals(30, uniqueViews(service));
+    }
+
+    @Test
+    void tooManyPendingKeysFlushEarly() {
+        SketchService service = service(true, 1);
+        start(service);
+
+        write(service, List.of(hit("/events/1", 1), hit("/events/2", 2)));
+
+        assertEquals(2, storedSketches());
+    }
+
+    @Test
+    void cleanStopSkipsRebuild() {
+        SketchService first = service(true, 1000);
+        start(first);
+        write(first, hits(0, 20));
+        first.stop();
+        jdbcTemplate.update("DELETE FROM endpoint_hits");
+
+        SketchService second = service(true, 1000);
+        start(second);
+
+        assertEquals(20, uniqueViews(second));
+    }
+
+    @Test
+    void unflushedSketchesAreRebuiltAfterCrash() {
+        SketchService crashed = service(true, 1000);
+        start(crashed);
+        write(crashed, hits(0, 20));
+
+        SketchService restarted = service(true, 1000);
+        start(restarted);
+
+        assertEquals(20, uniqueViews(restarted));
+    }
+
+    @Test
+    void crashAfterFlushRebuildsOnlyHoursAfterMark() {
+        SketchService crashed = service(true, 1000);
+        start(crashed);
+        write(crashed, hits(0, 20));
+        crashed.flush();
+        LocalDateTime now = LocalDateTime.now();
+        write(crashed, List.of(new EndpointHit(null, "ewm-main-service", "/events/1", "10.0.1.1", now)));
+        jdbcTemplate.update("DELETE FROM endpoint_hits WHERE timestamp < ?", now.minusDays(1));
+
+        SketchService restarted = service(true, 1000);
+        start(restarted);
+
+        assertEquals(20, uniqueViews(restarted));
+        assertEquals(1, restarted.getUniqueStats(TimeBucket.HOUR.floor(now), TimeBucket.HOUR.floor(now).plusHours(1),
+                List.of("/events/1")).getFirst().getHits());
+    }
+
+    @Test
+    void lateHitsBeforeMarkAreMergedImmediately() {
+        SketchService service = service(true, 1000);
+        start(service);
+        service.flush();
+
+        write(service, hits(0, 20));
+
+        assertEquals(1, storedSketches());
+        SketchService restarted = service(true, 1000);
+        start(restarted);
+        assertEquals(20, uniqueViews(restarted));
+    }
+
+    @Test
+    void coversOnlyAfterRebuild() {
+        SketchService service = service(true, 1000);
+        assertFalse(service.covers(START, START.plusHours(2)));
+
+        start(service);
+
+        assertTrue(service.covers(START, START.plusHours(2)));
+    }
+
+    @Test
+    void reenablingRebuildsHitsWrittenWhileDisabled() {
+        SketchService first = service(true, 1000);
+        start(first);
+        write(first, hits(0, 20));
+        first.stop();
+
+        SketchService disabled = service(false, 1000);
+        start(disabled);
+        write(disabled, hits(20, 30));
+        disabled.stop();
+
+        SketchService enabled = service(true, 1000);
+        start(enabled);
+
+        assertEquals(30, uniqueViews(enabled));
+    }
+
+    private SketchService service(boolean enabled, int maxPending) {
+        SketchService service = new SketchService(sketchRepository, derivedStateRepository, transactionTemplate);
+        ReflectionTestUtils.setField(service, "enabled", enabled);
+        ReflectionTestUtils.setField(service, "maxPending", maxPending);
+        return service;
+    }
+
+    private static void start(SketchService service) {
+        service.backfill();
+        Thread rebuilder = (Thread) ReflectionTestUtils.getField(service, "rebuilder");
+        if (rebuilder != null) {
+            try {
+                rebuilder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write(SketchService service, List<EndpointHit> hits) {
+        transactionTemplate.executeWithoutResult(status -> {
+            hitStore.batchInsert(hits);
+            service.add(hits);
+        });
+    }
+
+    private long uniqueViews(SketchService service) {
+        List<ViewStats> stats = service.getUniqueStats(START, START.plusHours(1), List.of("/events/1"));
+        return stats.isEmpty() ? 0 : stats.getFirst().getHits();
+    }
+
+    private int storedSketches() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM endpoint_hits_hourly_sketch", Integer.class);
+    }
+
+    private static List<EndpointHit> hits(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> hit("/events/1", i)).toList();
+    }
+
+    private static EndpointHit hit(String uri, int ip) {
+        return new EndpointHit(null, "ewm-main-service", uri, "10.0.0." + ip, START.plusMinutes(ip % 60));
+    }
+}
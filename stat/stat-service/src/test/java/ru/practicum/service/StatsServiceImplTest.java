@@ -0,0 +1,131 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.dto.ViewsStatsRequest;
+import ru.practicum.enums.TimelineInterval;
+import ru.practicum.exception.ValidationException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-service;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+class StatsServiceImplTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final String APP = "ewm-main-service";
+
+    @Autowired
+    private StatsService statsService;
+
+    @Test
+    void groupedRequestsGetOnlyTheirOwnUris() {
+        statsService.saveHits(List.of(
+                hit("/events/201", "10.0.0.1", DAY.plusHours(10)),
+                hit("/events/201", "10.0.0.1", DAY.plusHours(11)),
+                hit("/events/202", "10.0.0.2", DAY.plusHours(10))));
+        LocalDateTime start = DAY.plusHours(9);
+        LocalDateTime end = DAY.plusHours(12);
+
+        List<List<ViewStats>> results = statsService.getStats(List.of(
+                request(start, end, false, "/events/202"),
+                request(start, end, false, "/events/201", "/events/202"),
+                request(start, end, false, "/events/201")));
+
+        assertEquals(List.of(stats("/events/202", 1)), results.get(0));
+        assertEquals(List.of(stats("/events/201", 2), stats("/events/202", 1)), results.get(1));
+        assertEquals(List.of(stats("/events/201", 2)), results.get(2));
+    }
+
+    @Test
+    void uniqueRequestsWithDifferentStartsCountLastVisitsPerStart() {
+        statsService.saveHits(List.of(
+                hit("/events/301", "10.0.0.1", DAY.plusHours(10)),
+                hit("/events/301", "10.0.0.2", DAY.plusHours(11)),
+                hit("/events/301", "10.0.0.1", DAY.plusHours(12)),
+                hit("/events/302", "10.0.0.3", DAY.plusHours(10).plusMinutes(30))));
+        LocalDateTime end = DAY.plusHours(13);
+        List<ViewsStatsRequest> requests = List.of(
+                request(DAY.plusHours(10), end, true, "/events/301"),
+                request(DAY.plusHours(11).plusMinutes(30), end, true, "/events/301"),
+                request(DAY.plusHours(10), end, true, "/events/302"),
+                request(DAY.plusHours(11), end, true, "/events/302"));
+
+        List<List<ViewStats>> results = statsService.getStats(requests);
+
+        assertEquals(List.of(stats("/events/301", 2)), results.get(0));
+        assertEquals(List.of(stats("/events/301", 1)), results.get(1));
+        assertEquals(List.of(stats("/events/302", 1)), results.get(2));
+        assertEquals(List.of(), results.get(3));
+        for (int i = 0; i < requests.size(); i++) {
+            ViewsStatsRequest request = requests.get(i);
+            assertEquals(statsService.getStats(request.getStart(), request.getEnd(),
+                    List.copyOf(request.getUris()), true, false), results.get(i));
+        }
+    }
+
+    @Test
+    void timelineGroupsHitsByInterval() {
+        statsService.saveHits(List.of(
+                hit("/events/401", "10.0.0.1", DAY.plusHours(10).plusMinutes(5)),
+                hit("/events/401", "10.0.0.1", DAY.plusHours(10).plusMinutes(40)),
+                hit("/events/401", "10.0.0.2", DAY.plusHours(12).plusMinutes(1)),
+                hit("/events/402", "10.0.0.3", DAY.plusHours(11))));
+        LocalDateTime start = DAY.plusHours(9);
+        LocalDateTime end = DAY.plusHours(13);
+
+        List<ViewStatsBucket> hits = statsService.getTimeline(start, end, List.of("/events/401", "/events/402"),
+                false, TimelineInterval.HOUR);
+        List<ViewStatsBucket> unique = statsService.getTimeline(start, end, List.of("/events/401"),
+                true, TimelineInterval.DAY);
+
+        assertEquals(List.of(
+                bucket("/events/401", DAY.plusHours(10), 2),
+                bucket("/events/401", DAY.plusHours(12), 1),
+                bucket("/events/402", DAY.plusHours(11), 1)), hits);
+        assertEquals(List.of(bucket("/events/401", DAY, 2)), unique);
+    }
+
+    @Test
+    void timelineRejectsTooManyBuckets() {
+        assertThrows(ValidationException.class, () -> statsService.getTimeline(DAY, DAY.plusYears(1),
+                List.of("/events/401"), false, TimelineInterval.MINUTE));
+        assertThrows(ValidationException.class, () -> statsService.getTimeline(DAY.plusHours(1), DAY,
+                List.of("/events/401"), false, TimelineInterval.HOUR));
+    }
+
+    private static EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return new EndpointHitDto(APP, uri, ip, timestamp);
+    }
+
+    private static ViewsStatsRequest request(LocalDateTime start, LocalDateTime end, boolean unique, String... uris) {
+        return ViewsStatsRequest.builder()
+                .uris(List.of(uris))
+                .start(start)
+                .end(end)
+                .unique(unique)
+                .build();
+    }
+
+    private static ViewStats stats(String uri, long hits) {
+        return new ViewStats(APP, uri, hits);
+    }
+
+    private static ViewStatsBucket bucket(String uri, LocalDateTime bucket, long hits) {
+        return new ViewStatsBucket(APP, uri, bucket, hits);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void smallCardinalityIsExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.add("10.0.0." + i);
+            sketch.add("10.0.0." + i);
+        }
+
+        assertEquals(100, sketch.estimate());
+    }
+
+    @Test
+    void largeCardinalityWithinStandardError() {
+        HyperLogLog sketch = ips(0, 100_000);
+
+        assertWithin(100_000, sketch.estimate(), 0.05);
+    }
+
+    @Test
+    void mergeEstimatesUnion() {
+        HyperLogLog first = ips(0, 60_000);
+        HyperLogLog second = ips(40_000, 100_000);
+
+        first.merge(second);
+
+        assertWithin(100_000, first.estimate(), 0.05);
+    }
+
+    @Test
+    void mergeIsIdempotent() {
+        HyperLogLog sketch = ips(0, 50_000);
+        long estimate = sketch.estimate();
+
+        sketch.merge(ips(0, 50_000));
+        sketch.merge(sketch);
+
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    void mergeRejectsDifferentPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void sparseRoundTrip() {
+        HyperLogLog sketch = ips(0, 50);
+        byte[] bytes = sketch.toBytes();
+
+        assertTrue(bytes.length < 1 << HyperLogLog.DEFAULT_PRECISION);
+        assertArrayEquals(bytes, HyperLogLog.fromBytes(bytes).toBytes());
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void denseRoundTrip() {
+        HyperLogLog sketch = ips(0, 100_000);
+        byte[] bytes = sketch.toBytes();
+
+        assertEquals(2 + (1 << HyperLogLog.DEFAULT_PRECISION), bytes.length);
+        assertArrayEquals(bytes, HyperLogLog.fromBytes(bytes).toBytes());
+        assertEquals(sketch.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    private static HyperLogLog ips(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add("10." + (i >> 16) + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+        }
+        return sketch;
+    }
+
+    private static void assertWithin(long expected, long actual, double error) {
+        assertTrue(Math.abs(actual - expected) <= expected * error,
+                "Оценка " + actual + " отличается от " + expected + " больше чем на " + error * 100 + "%");
+    }
+}
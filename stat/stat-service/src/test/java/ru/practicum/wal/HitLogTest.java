@@ -0,0 +1,156 @@
+package ru.practicum.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitLogTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2026, 1, 1, 12, 0, 0, 123_000_000);
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readReturnsAppendedHitsInOrder() throws IOException {
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            log.append(hits(0, 3));
+            log.append(hits(3, 5));
+
+            assertEquals(uris(hits(0, 3)), uris(log.read(3)));
+            assertEquals(uris(hits(3, 5)), uris(log.read(10)));
+            assertEquals(List.of(), log.read(10));
+        }
+    }
+
+    @Test
+    void decodesAllFields() throws IOException {
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            log.append(List.of(new EndpointHit(null, "ewm-main-service", "/events/1", "192.168.0.1", TIMESTAMP)));
+
+            EndpointHit hit = log.read(1).getFirst();
+            assertEquals("ewm-main-service", hit.getApp());
+            assertEquals("/events/1", hit.getUri());
+            assertEquals("192.168.0.1", hit.getIp());
+            assertEquals(TIMESTAMP, hit.getTimestamp());
+        }
+    }
+
+    @Test
+    void rotatesFullSegmentsAndDeletesThemAfterCommit() throws IOException {
+        try (HitLog log = new HitLog(dir, 128, false)) {
+            for (int i = 0; i < 20; i++) {
+                log.append(hits(i, i + 1));
+            }
+            assertTrue(segmentFiles() > 5);
+
+            assertEquals(uris(hits(0, 20)), uris(log.read(100)));
+            log.commit();
+
+            assertEquals(1, segmentFiles());
+        }
+    }
+
+    @Test
+    void recoveryResumesAfterCommittedPosition() throws IOException {
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            log.append(hits(0, 5));
+            log.read(2);
+            log.commit();
+            log.read(2);
+        }
+
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            assertEquals(uris(hits(2, 5)), uris(log.read(10)));
+            log.append(hits(5, 6));
+            assertEquals(uris(hits(5, 6)), uris(log.read(10)));
+        }
+    }
+
+    @Test
+    void rewindReturnsToCommittedPosition() throws IOException {
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            log.append(hits(0, 4));
+            log.read(1);
+            log.commit();
+            log.read(2);
+
+            log.rewind();
+
+            assertEquals(uris(hits(1, 4)), uris(log.read(10)));
+        }
+    }
+
+    @Test
+    void recoveryDropsCorruptedTail() throws IOException {
+        int secondRecord;
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            log.append(hits(0, 1));
+            secondRecord = 8 + encodedSize(hits(0, 1).getFirst());
+            log.append(hits(1, 3));
+        }
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), secondRecord + 8);
+        }
+
+        try (HitLog log = new HitLog(dir, SEGMENT_SIZE, false)) {
+            assertEquals(uris(hits(0, 1)), uris(log.read(10)));
+        }
+    }
+
+    @Test
+    void rejectsRecordLargerThanSegment() throws IOException {
+        try (HitLog log = new HitLog(dir, 64, false)) {
+            List<EndpointHit> hits = List.of(new EndpointHit(null, "app", "/" + "x".repeat(100), "10.0.0.1", TIMESTAMP));
+
+            assertThrows(IOException.class, () -> log.append(hits));
+        }
+    }
+
+    private static List<EndpointHit> hits(int from, int to) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            hits.add(new EndpointHit(null, "app", "/events/" + i, "10.0.0." + i, TIMESTAMP.plusSeconds(i)));
+        }
+        return hits;
+    }
+
+    private static List<String> uris(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getUri).toList();
+    }
+
+    /**
+     * Размер нагрузки записи: время (8 + 4) и три строки с длиной (4 + байты).
+     */
+    private static int encodedSize(EndpointHit hit) {
+        return 12 + 12 + hit.getApp().length() + hit.getUri().length() + hit.getIp().length();
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().findFirst().orElseThrow();
+        }
+    }
+}
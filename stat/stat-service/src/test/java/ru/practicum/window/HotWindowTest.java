@@ -0,0 +1,133 @@
+package ru.practicum.window;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotWindowTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    @Test
+    void matchesRawHitsForArbitraryPeriods() {
+        HotWindow window = new HotWindow(START, Long.MAX_VALUE);
+        List<Hit> hits = randomHits(20_000, 180);
+        hits.forEach(hit -> window.add("app", hit.uri(), hit.ip(), hit.timestamp()));
+
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            LocalDateTime from = START.plusSeconds(random.nextInt(180 * 60));
+            LocalDateTime to = from.plusSeconds(random.nextInt(90 * 60));
+            for (boolean unique : new boolean[]{false, true}) {
+                assertEquals(expected(hits, from, to, null, unique), actual(window.getStats(from, to, null, unique)));
+                assertEquals(expected(hits, from, to, List.of("/events/1"), unique),
+                        actual(window.getStats(from, to, List.of("/events/1"), unique)));
+            }
+        }
+    }
+
+    @Test
+    void edgeSecondsAreInclusive() {
+        HotWindow window = new HotWindow(START, Long.MAX_VALUE);
+        window.add("app", "/events", "10.0.0.1", START.plusSeconds(10));
+        window.add("app", "/events", "10.0.0.1", START.plusSeconds(70));
+        window.add("app", "/events", "10.0.0.2", START.plusSeconds(71));
+
+        assertEquals(List.of(new ViewStats("app", "/events", 3L)),
+                window.getStats(START.plusSeconds(10), START.plusSeconds(71), null, false));
+        assertEquals(List.of(new ViewStats("app", "/events", 1L)),
+                window.getStats(START.plusSeconds(11), START.plusSeconds(70), null, true));
+        assertEquals(List.of(), window.getStats(START.plusSeconds(11), START.plusSeconds(69), null, false));
+    }
+
+    @Test
+    void repeatedVisitsFromSameIpDoNotAddIpEntries() {
+        HotWindow window = new HotWindow(START, Long.MAX_VALUE);
+        for (int i = 0; i < 60; i++) {
+            window.add("app", "/events", "10.0.0.1", START.plusSeconds(i));
+        }
+
+        assertEquals(60, window.size());
+        assertEquals(60L * HotWindow.HIT_BYTES + HotWindow.CELL_BYTES + HotWindow.IP_BYTES, window.bytes());
+    }
+
+    @Test
+    void evictsOldestMinutesWhenOverBudget() {
+        long perMinute = HotWindow.HIT_BYTES + HotWindow.CELL_BYTES + HotWindow.IP_BYTES;
+        HotWindow window = new HotWindow(START, perMinute * 10);
+        for (int minute = 0; minute < 15; minute++) {
+            window.add("app", "/events", "10.0.0.1", START.plusMinutes(minute));
+        }
+
+        assertEquals(10, window.size());
+        assertEquals(perMinute * 10, window.bytes());
+        assertEquals(START.plusMinutes(5), window.coverageStart());
+        assertFalse(window.covers(START.plusMinutes(4)));
+        assertTrue(window.covers(START.plusMinutes(5)));
+    }
+
+    @Test
+    void advanceDropsExpiredMinutesAndRejectsOlderHits() {
+        HotWindow window = new HotWindow(START, Long.MAX_VALUE);
+        window.add("app", "/events", "10.0.0.1", START);
+        window.add("app", "/events", "10.0.0.1", START.plusMinutes(2));
+
+        window.advance(START.plusMinutes(1));
+        window.add("app", "/events", "10.0.0.2", START);
+
+        assertEquals(1, window.size());
+        assertEquals(List.of(new ViewStats("app", "/events", 1L)),
+                window.getStats(START.plusMinutes(1), START.plusMinutes(3), null, false));
+    }
+
+    private static List<Hit> randomHits(int count, int minutes) {
+        Random random = new Random(42);
+        List<Hit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hits.add(new Hit("/events/" + random.nextInt(5), "10.0.0." + random.nextInt(300),
+                    START.plusSeconds(random.nextInt(minutes * 60))));
+        }
+        return hits;
+    }
+
+    private static Map<String, Long> expected(List<Hit> hits, LocalDateTime from, LocalDateTime to,
+                                              List<String> uris, boolean unique) {
+        Map<String, Set<String>> ips = new HashMap<>();
+        Map<String, Long> counts = new HashMap<>();
+        for (Hit hit : hits) {
+            if (hit.timestamp().isBefore(from) || hit.timestamp().isAfter(to)
+                    || uris != null && !uris.contains(hit.uri())) {
+                continue;
+            }
+            ips.computeIfAbsent(hit.uri(), u -> new HashSet<>()).add(hit.ip());
+            counts.merge(hit.uri(), 1L, Long::sum);
+        }
+        if (unique) {
+            Map<String, Long> result = new HashMap<>();
+            ips.forEach((uri, set) -> result.put(uri, (long) set.size()));
+            return result;
+        }
+        return counts;
+    }
+
+    private static Map<String, Long> actual(List<ViewStats> stats) {
+        Map<String, Long> result = new HashMap<>();
+        stats.forEach(row -> result.put(row.getUri(), row.getHits()));
+        return result;
+    }
+
+    private record Hit(String uri, String ip, LocalDateTime timestamp) {
+    }
+}
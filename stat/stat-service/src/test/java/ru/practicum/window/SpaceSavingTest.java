@@ -0,0 +1,83 @@
+package ru.practicum.window;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.add("a");
+        summary.add("b", 4);
+        summary.add("a");
+
+        Map<String, SpaceSaving.Entry<String>> entries = byKey(summary);
+
+        assertEquals(2, entries.size());
+        assertEquals(new SpaceSaving.Entry<>("a", 2, 0), entries.get("a"));
+        assertEquals(new SpaceSaving.Entry<>("b", 4, 0), entries.get("b"));
+    }
+
+    @Test
+    void newKeyEvictsMinimumAndInheritsItsCount() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a", 5);
+        summary.add("b", 2);
+
+        summary.add("c");
+
+        Map<String, SpaceSaving.Entry<String>> entries = byKey(summary);
+        assertEquals(2, entries.size());
+        assertEquals(new SpaceSaving.Entry<>("a", 5, 0), entries.get("a"));
+        assertEquals(new SpaceSaving.Entry<>("c", 3, 2), entries.get("c"));
+    }
+
+    @Test
+    void countsStayWithinErrorBoundsAndFrequentKeysSurvive() {
+        int capacity = 20;
+        SpaceSaving<Integer> summary = new SpaceSaving<>(capacity);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        int total = 20_000;
+        for (int i = 0; i < total; i++) {
+            // Ключ 0 встречается в каждом пятом посещении, остальные распределены по длинному хвосту
+            int key = i % 5 == 0 ? 0 : 1 + (int) Math.floor(Math.pow(random.nextDouble(), 3) * 1000);
+            summary.add(key);
+            exact.merge(key, 1L, Long::sum);
+        }
+
+        List<SpaceSaving.Entry<Integer>> entries = summary.entries();
+        assertEquals(capacity, entries.size());
+        assertEquals(total, entries.stream().mapToLong(SpaceSaving.Entry::count).sum());
+        for (SpaceSaving.Entry<Integer> entry : entries) {
+            long real = exact.get(entry.key());
+            assertTrue(entry.count() >= real);
+            assertTrue(entry.count() - entry.error() <= real);
+        }
+        exact.forEach((key, count) -> {
+            if (count > total / capacity) {
+                assertTrue(byKey(summary).containsKey(key), "частый ключ вытеснен: " + key);
+            }
+        });
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0));
+    }
+
+    private static <K> Map<K, SpaceSaving.Entry<K>> byKey(SpaceSaving<K> summary) {
+        return summary.entries().stream().collect(Collectors.toMap(SpaceSaving.Entry::key, Function.identity()));
+    }
+}
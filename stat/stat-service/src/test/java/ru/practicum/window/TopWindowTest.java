@@ -0,0 +1,63 @@
+package ru.practicum.window;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.ViewStats;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopWindowTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 10, 0);
+    private static final String APP = "ewm-main-service";
+
+    @Test
+    void topSumsMinutesOfPeriodInDescendingOrder() {
+        TopWindow window = new TopWindow(START, 10);
+        add(window, "/events/1", START, 3);
+        add(window, "/events/2", START.plusMinutes(1), 5);
+        add(window, "/events/1", START.plusMinutes(2).plusSeconds(30), 4);
+        add(window, "/events/3", START.plusMinutes(2), 1);
+
+        assertEquals(List.of(stats("/events/1", 7), stats("/events/2", 5)),
+                window.top(START, START.plusMinutes(5), 2));
+        assertEquals(List.of(stats("/events/2", 5), stats("/events/1", 4), stats("/events/3", 1)),
+                window.top(START.plusMinutes(1), START.plusMinutes(2), 10));
+    }
+
+    @Test
+    void hitsBeforeCoverageAreIgnored() {
+        TopWindow window = new TopWindow(START, 10);
+        add(window, "/events/1", START.minusMinutes(1), 3);
+        add(window, "/events/1", START, 1);
+
+        assertEquals(List.of(stats("/events/1", 1)), window.top(START.minusMinutes(5), START.plusMinutes(1), 10));
+    }
+
+    @Test
+    void advanceDropsOldMinutes() {
+        TopWindow window = new TopWindow(START, 10);
+        add(window, "/events/1", START, 3);
+        add(window, "/events/2", START.plusMinutes(10), 1);
+
+        window.advance(START.plusMinutes(5));
+
+        assertFalse(window.covers(START));
+        assertTrue(window.covers(START.plusMinutes(5)));
+        assertEquals(List.of(stats("/events/2", 1)), window.top(START, START.plusMinutes(20), 10));
+    }
+
+    private static void add(TopWindow window, String uri, LocalDateTime timestamp, int count) {
+        for (int i = 0; i < count; i++) {
+            window.add(APP, uri, timestamp);
+        }
+    }
+
+    private static ViewStats stats(String uri, long hits) {
+        return new ViewStats(APP, uri, hits);
+    }
+}